@@ -0,0 +1,65 @@
+package com.innowise.userservice.config;
+
+import com.innowise.userservice.datasource.ShardFanOut;
+import com.innowise.userservice.datasource.ShardSet;
+import com.innowise.userservice.repository.UserRepository;
+import com.innowise.userservice.service.archive.UserArchiver;
+import com.innowise.userservice.service.archive.UserPurger;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.stream.Stream;
+
+@Configuration
+public class ArchiveConfig {
+
+    /**
+     * Always present for the table size metrics, moves users only when enabled.
+     */
+    @Bean
+    public UserArchiver userArchiver(
+            UserRepository userRepository,
+            JdbcClient jdbcClient,
+            TransactionTemplate transactionTemplate,
+            ShardFanOut shardFanOut,
+            CacheManager cacheManager,
+            @Value("${service.archive.enabled:false}") boolean enabled,
+            @Value("${service.archive.horizon:365d}") Duration horizon,
+            @Value("${service.archive.batch-size:500}") int batchSize,
+            @Value("${service.archive.max-batches-per-run:20}") int maxBatches
+    ) {
+        return new UserArchiver(userRepository, jdbcClient, transactionTemplate, shardFanOut, cacheManager,
+                enabled, horizon, batchSize, maxBatches);
+    }
+
+    /**
+     * Watches the pools writes go to, replicas are not affected by purging.
+     */
+    @Bean
+    @ConditionalOnProperty(value = "service.purge.enabled", havingValue = "true", matchIfMissing = true)
+    public UserPurger userPurger(
+            UserRepository userRepository,
+            TransactionTemplate transactionTemplate,
+            ShardFanOut shardFanOut,
+            ObjectProvider<HikariDataSource> poolBeans,
+            ObjectProvider<ShardSet> shardSet,
+            @Value("${service.purge.batch-size:500}") int batchSize,
+            @Value("${service.purge.max-batches-per-run:20}") int maxBatches,
+            @Value("${service.purge.max-pool-usage:0.5}") double maxPoolUsage
+    ) {
+        return new UserPurger(userRepository, transactionTemplate, shardFanOut,
+                () -> Stream.concat(
+                        poolBeans.stream(),
+                        shardSet.stream().flatMap(shards -> shards.dataSources().stream())
+                ).toList(),
+                batchSize, maxBatches, maxPoolUsage);
+    }
+}
@@ -0,0 +1,86 @@
+package com.innowise.userservice.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.lang.Nullable;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.util.UrlPathHelper;
+
+import java.lang.reflect.Type;
+
+/**
+ * Binary encodings picked by the Accept and Content-Type headers, for the service to
+ * service calls under /internal only: elsewhere, and outside of a request, both converters
+ * decline, so the public API stays JSON. They share the modules and settings of the JSON
+ * mapper, except that dates go out as numbers: the textual ISO form is most of what a
+ * binary payload would still spend on a user.
+ */
+@Configuration
+public class BinaryCodecConfig {
+
+    private static final String INTERNAL_PATH = "/internal/";
+    private static final UrlPathHelper PATH_HELPER = new UrlPathHelper();
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new InternalCborHttpMessageConverter(builder.factory(new CBORFactory())
+                .featuresToEnable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build());
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new InternalSmileHttpMessageConverter(builder.factory(new SmileFactory())
+                .featuresToEnable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build());
+    }
+
+    private static boolean internalRequest() {
+        return RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes
+                && PATH_HELPER.getPathWithinApplication(attributes.getRequest()).startsWith(INTERNAL_PATH);
+    }
+
+    // canRead(Class, ...) and canWrite(Type, ...) delegate to the overridden variants
+    private static final class InternalCborHttpMessageConverter extends MappingJackson2CborHttpMessageConverter {
+
+        private InternalCborHttpMessageConverter(ObjectMapper objectMapper) {
+            super(objectMapper);
+        }
+
+        @Override
+        public boolean canRead(Type type, @Nullable Class<?> contextClass, @Nullable MediaType mediaType) {
+            return internalRequest() && super.canRead(type, contextClass, mediaType);
+        }
+
+        @Override
+        public boolean canWrite(Class<?> clazz, @Nullable MediaType mediaType) {
+            return internalRequest() && super.canWrite(clazz, mediaType);
+        }
+    }
+
+    private static final class InternalSmileHttpMessageConverter extends MappingJackson2SmileHttpMessageConverter {
+
+        private InternalSmileHttpMessageConverter(ObjectMapper objectMapper) {
+            super(objectMapper);
+        }
+
+        @Override
+        public boolean canRead(Type type, @Nullable Class<?> contextClass, @Nullable MediaType mediaType) {
+            return internalRequest() && super.canRead(type, contextClass, mediaType);
+        }
+
+        @Override
+        public boolean canWrite(Class<?> clazz, @Nullable MediaType mediaType) {
+            return internalRequest() && super.canWrite(clazz, mediaType);
+        }
+    }
+}
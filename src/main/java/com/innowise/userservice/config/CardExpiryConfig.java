@@ -0,0 +1,31 @@
+package com.innowise.userservice.config;
+
+import com.innowise.userservice.datasource.ShardFanOut;
+import com.innowise.userservice.repository.CardRepository;
+import com.innowise.userservice.repository.UserRepository;
+import com.innowise.userservice.service.expiry.CardExpirySweeper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@Configuration
+public class CardExpiryConfig {
+
+    @Bean
+    @ConditionalOnProperty(value = "service.card-expiry.enabled", havingValue = "true")
+    public CardExpirySweeper cardExpirySweeper(
+            CardRepository cardRepository,
+            UserRepository userRepository,
+            TransactionTemplate transactionTemplate,
+            ShardFanOut shardFanOut,
+            CacheManager cacheManager,
+            @Value("${service.card-expiry.batch-size:500}") int batchSize,
+            @Value("${service.card-expiry.max-batches-per-run:20}") int maxBatches
+    ) {
+        return new CardExpirySweeper(cardRepository, userRepository, transactionTemplate, shardFanOut, cacheManager,
+                batchSize, maxBatches);
+    }
+}
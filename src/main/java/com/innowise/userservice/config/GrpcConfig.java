@@ -0,0 +1,32 @@
+package com.innowise.userservice.config;
+
+import com.innowise.userservice.grpc.GrpcServer;
+import com.innowise.userservice.grpc.ServiceKeyInterceptor;
+import io.grpc.BindableService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.List;
+
+@Configuration
+@ConditionalOnProperty(value = "service.grpc.enabled", havingValue = "true")
+public class GrpcConfig {
+
+    /**
+     * Serves every gRPC service bean behind the service key of /internal.
+     */
+    @Bean
+    public GrpcServer grpcServer(
+            List<BindableService> services,
+            @Value("${service.api.key:service-key}") String serviceKey,
+            @Value("${service.grpc.port:9090}") int port,
+            @Value("${service.grpc.shutdown-grace-period:10s}") Duration shutdownGracePeriod,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads
+    ) {
+        return new GrpcServer(port, services, new ServiceKeyInterceptor(serviceKey), shutdownGracePeriod,
+                virtualThreads);
+    }
+}
@@ -0,0 +1,108 @@
+package com.innowise.userservice.config;
+
+import com.innowise.userservice.datasource.AdaptivePoolSizer;
+import com.innowise.userservice.datasource.ConnectionBulkheads;
+import com.innowise.userservice.datasource.PoolMetricsTrackerFactory;
+import com.innowise.userservice.datasource.ReplicaSet;
+import com.innowise.userservice.datasource.ShardSet;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.NonNull;
+import org.springframework.aop.framework.Advised;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.stream.Stream;
+
+@Configuration
+public class PoolMetricsConfig {
+
+    @Bean
+    public PoolMetricsTrackerFactory poolMetricsTrackerFactory(MeterRegistry meterRegistry) {
+        return new PoolMetricsTrackerFactory(meterRegistry);
+    }
+
+    /**
+     * Installs the tracker on every Hikari pool bean before it starts, Boot's pool metrics
+     * binder then leaves the pool alone instead of adding the plain Micrometer tracker.
+     */
+    @Bean
+    public static BeanPostProcessor poolMetricsPostProcessor(ObjectProvider<PoolMetricsTrackerFactory> factory) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(@NonNull Object bean, @NonNull String beanName) {
+                if (bean instanceof HikariDataSource pool
+                        && pool.getMetricsTrackerFactory() == null
+                        && pool.getMetricRegistry() == null) {
+                    pool.setMetricsTrackerFactory(factory.getObject());
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    @ConditionalOnProperty(value = "service.datasource.bulkhead.enabled", havingValue = "true", matchIfMissing = true)
+    public ConnectionBulkheads connectionBulkheads(
+            PoolMetricsTrackerFactory poolMetricsTrackerFactory,
+            MeterRegistry meterRegistry,
+            @Value("${service.datasource.bulkhead.max-waiting:10000}") int maxWaiting
+    ) {
+        return new ConnectionBulkheads(poolMetricsTrackerFactory, meterRegistry, maxWaiting);
+    }
+
+    /**
+     * Puts every Hikari pool bean behind its bulkhead. Unnamed pools take their bean name,
+     * the bulkhead tags its meters with it before Hikari would pick one.
+     */
+    @Bean
+    public static BeanPostProcessor connectionBulkheadPostProcessor(ObjectProvider<ConnectionBulkheads> bulkheads) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(@NonNull Object bean, @NonNull String beanName) {
+                if (!(bean instanceof HikariDataSource pool) || bean instanceof Advised) {
+                    return bean;
+                }
+                ConnectionBulkheads connectionBulkheads = bulkheads.getIfAvailable();
+                if (connectionBulkheads == null) {
+                    return bean;
+                }
+                if (pool.getPoolName() == null) {
+                    pool.setPoolName(beanName);
+                }
+                return connectionBulkheads.protect(pool);
+            }
+        };
+    }
+
+    @Bean
+    @ConditionalOnProperty(value = "service.datasource.adaptive-pool.enabled", havingValue = "true")
+    public AdaptivePoolSizer adaptivePoolSizer(
+            ObjectProvider<HikariDataSource> poolBeans,
+            ObjectProvider<ReplicaSet> replicaSet,
+            ObjectProvider<ShardSet> shardSet,
+            PoolMetricsTrackerFactory poolMetricsTrackerFactory,
+            @Value("${service.datasource.adaptive-pool.min-size:5}") int minSize,
+            @Value("${service.datasource.adaptive-pool.max-size:30}") int maxSize,
+            @Value("${service.datasource.adaptive-pool.target-acquire-ms:10}") long targetAcquireMs,
+            @Value("${service.datasource.adaptive-pool.max-usage-ms:250}") long maxUsageMs
+    ) {
+        return new AdaptivePoolSizer(
+                () -> Stream.of(
+                        poolBeans.stream(),
+                        replicaSet.stream().flatMap(replicas -> replicas.dataSources().values().stream()),
+                        shardSet.stream().flatMap(shards -> shards.dataSources().stream())
+                ).flatMap(pools -> pools).toList(),
+                poolMetricsTrackerFactory,
+                minSize,
+                maxSize,
+                Duration.ofMillis(targetAcquireMs),
+                Duration.ofMillis(maxUsageMs)
+        );
+    }
+}
@@ -0,0 +1,97 @@
+package com.innowise.userservice.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.innowise.userservice.datasource.ReactiveDatabase;
+import com.innowise.userservice.reactive.ReactiveReadServer;
+import com.innowise.userservice.reactive.ReactiveUserHandler;
+import com.innowise.userservice.reactive.ServiceKeyFilter;
+import com.innowise.userservice.repository.ReactiveUserRepository;
+import com.innowise.userservice.service.ReactiveUserService;
+import com.innowise.userservice.service.cache.ReactiveUserCache;
+import com.innowise.userservice.service.etag.EntityTags;
+import com.innowise.userservice.service.impl.ReactiveUserServiceImpl;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import java.time.Duration;
+
+/**
+ * Serves the internal user lookups without blocking on service.reactive.port: WebFlux
+ * functional routes on Reactor Netty, R2DBC and reactive Redis. Writes stay on the
+ * servlet path and JPA. Reads one database with the credentials of spring.datasource,
+ * the primary unless service.reactive.r2dbc-url points at a replica; shards are not
+ * supported.
+ */
+@Configuration
+@ConditionalOnProperty(value = "service.reactive.enabled", havingValue = "true")
+public class ReactiveReadConfig {
+
+    @Bean(destroyMethod = "close")
+    public ReactiveDatabase reactiveDatabase(
+            DataSourceProperties properties,
+            @Value("${service.reactive.r2dbc-url:}") String r2dbcUrl,
+            @Value("${service.reactive.pool.max-size:20}") int maxPoolSize,
+            @Value("${service.reactive.pool.max-acquire-time:5s}") Duration maxAcquireTime,
+            @Value("${service.shards.enabled:false}") boolean sharded
+    ) {
+        if (sharded) {
+            throw new IllegalStateException("The reactive read path reads a single database, disable service.shards");
+        }
+        String url = r2dbcUrl.isBlank() ? ReactiveDatabase.r2dbcUrl(properties.determineUrl()) : r2dbcUrl;
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(url).mutate()
+                .option(ConnectionFactoryOptions.USER, properties.determineUsername())
+                .option(ConnectionFactoryOptions.PASSWORD, properties.determinePassword())
+                .build();
+        return new ReactiveDatabase(options, maxPoolSize, maxAcquireTime);
+    }
+
+    @Bean
+    public ReactiveUserService reactiveUserService(
+            ReactiveDatabase reactiveDatabase,
+            ObjectMapper objectMapper,
+            CacheManager cacheManager,
+            ReactiveRedisConnectionFactory redisConnectionFactory,
+            @Value("${service.read-model.enabled:true}") boolean readModelEnabled
+    ) {
+        return new ReactiveUserServiceImpl(
+                new ReactiveUserRepository(reactiveDatabase.client(), objectMapper, readModelEnabled),
+                new ReactiveUserCache((RedisCacheManager) cacheManager, redisConnectionFactory)
+        );
+    }
+
+    @Bean
+    public RouterFunction<ServerResponse> reactiveUserRoutes(
+            ReactiveUserService reactiveUserService,
+            EntityTags entityTags,
+            @Value("${service.api.key:service-key}") String serviceKey,
+            @Value("${service.http.internal-max-age:30s}") Duration internalMaxAge
+    ) {
+        ReactiveUserHandler handler = new ReactiveUserHandler(reactiveUserService, entityTags, internalMaxAge);
+        return RouterFunctions.route()
+                .GET("/internal/users/by-email", handler::getUserByEmail)
+                .GET("/internal/users/{userId:\\d+}", handler::getUserById)
+                .filter(new ServiceKeyFilter(serviceKey))
+                .onError(Throwable.class, handler::error)
+                .build();
+    }
+
+    @Bean
+    public ReactiveReadServer reactiveReadServer(
+            RouterFunction<ServerResponse> reactiveUserRoutes,
+            ObjectMapper objectMapper,
+            @Value("${service.reactive.port:8082}") int port,
+            @Value("${service.reactive.shutdown-grace-period:10s}") Duration shutdownGracePeriod
+    ) {
+        return new ReactiveReadServer(port, reactiveUserRoutes, objectMapper, shutdownGracePeriod);
+    }
+}
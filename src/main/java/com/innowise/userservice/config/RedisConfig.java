@@ -1,9 +1,12 @@
 package com.innowise.userservice.config;
 
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.annotation.OptBoolean;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.innowise.userservice.dto.PageResponseDto;
+import com.innowise.userservice.dto.user.UserResponseDto;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
@@ -26,6 +29,11 @@ public class RedisConfig {
         ObjectMapper objectMapper = new ObjectMapper();
         objectMapper.registerModule(new JavaTimeModule());
 
+        // Records are final, default typing leaves them out. The type id is only needed in
+        // the cache, HTTP responses and read model documents go without it
+        objectMapper.addMixIn(UserResponseDto.class, TypedUserEntry.class);
+        objectMapper.addMixIn(PageResponseDto.class, TypedPageEntry.class);
+
         objectMapper.activateDefaultTyping(
                 BasicPolymorphicTypeValidator.builder()
                         .allowIfBaseType(Object.class)
@@ -50,12 +58,24 @@ public class RedisConfig {
 
         return RedisCacheManager.builder(connectionFactory)
                 .cacheDefaults(defaultConfig)
+                .enableStatistics() // cache.gets/puts and lock wait metrics per cache
                 .withCacheConfiguration("users",
                         defaultConfig.entryTtl(Duration.ofMinutes(30))) // Users cache ttl 30 min
                 .withCacheConfiguration("user",
                         defaultConfig.entryTtl(Duration.ofMinutes(15))) // User cache ttl 15 min
+                .withCacheConfiguration("userSummary",
+                        defaultConfig.entryTtl(Duration.ofMinutes(15))) // UserSummary cache ttl 15 min
                 .withCacheConfiguration("userCards",
                         defaultConfig.entryTtl(Duration.ofMinutes(10))) // UserCards cache ttl 10 min
                 .build();
     }
-}
\ No newline at end of file
+
+    // Plain documents without a type id still read as the record
+    @JsonTypeInfo(use = JsonTypeInfo.Id.CLASS, requireTypeIdForSubtypes = OptBoolean.FALSE)
+    private interface TypedUserEntry {
+    }
+
+    @JsonTypeInfo(use = JsonTypeInfo.Id.CLASS)
+    private interface TypedPageEntry {
+    }
+}
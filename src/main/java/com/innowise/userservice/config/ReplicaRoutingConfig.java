@@ -0,0 +1,88 @@
+package com.innowise.userservice.config;
+
+import com.innowise.userservice.datasource.ConnectionBulkheads;
+import com.innowise.userservice.datasource.ConsistencyTokens;
+import com.innowise.userservice.datasource.PoolMetricsTrackerFactory;
+import com.innowise.userservice.datasource.ReplicaRoutingDataSource;
+import com.innowise.userservice.datasource.ReplicaSet;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Routes read-only transactions to the replicas in service.replicas.urls. Replicas
+ * share the credentials of spring.datasource; without this config everything uses
+ * the auto-configured single datasource. Left out with service.shards enabled, whose
+ * datasource then rejects the combination instead of clashing with this one.
+ */
+@Configuration
+@ConditionalOnProperty(value = "service.replicas.enabled", havingValue = "true")
+@ConditionalOnProperty(value = "service.shards.enabled", havingValue = "false", matchIfMissing = true)
+public class ReplicaRoutingConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean(destroyMethod = "close")
+    public ReplicaSet replicaSet(
+            DataSourceProperties properties,
+            PoolMetricsTrackerFactory poolMetricsTrackerFactory,
+            ObjectProvider<ConnectionBulkheads> bulkheads,
+            @Value("${service.replicas.urls:}") List<String> urls,
+            @Value("${service.replicas.max-lag-ms:5000}") long maxLagMs
+    ) {
+        ConnectionBulkheads connectionBulkheads = bulkheads.getIfAvailable();
+        Map<String, HikariDataSource> replicas = new LinkedHashMap<>();
+        for (String url : urls) {
+            if (url.isBlank()) {
+                continue;
+            }
+            HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                    .type(HikariDataSource.class)
+                    .url(url.trim())
+                    .build();
+            dataSource.setPoolName("replica-" + (replicas.size() + 1));
+            dataSource.setReadOnly(true);
+            dataSource.setMetricsTrackerFactory(poolMetricsTrackerFactory);
+            replicas.put(dataSource.getPoolName(),
+                    connectionBulkheads == null ? dataSource : connectionBulkheads.protect(dataSource));
+        }
+        return new ReplicaSet(replicas, Duration.ofMillis(maxLagMs));
+    }
+
+    @Bean
+    public ConsistencyTokens consistencyTokens(HikariDataSource primaryDataSource) {
+        return new ConsistencyTokens(primaryDataSource);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(
+            HikariDataSource primaryDataSource,
+            ReplicaSet replicaSet,
+            ConsistencyTokens consistencyTokens
+    ) {
+        ReplicaRoutingDataSource routingDataSource =
+                new ReplicaRoutingDataSource(primaryDataSource, replicaSet, consistencyTokens);
+        routingDataSource.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+}
@@ -2,6 +2,7 @@ package com.innowise.userservice.config;
 
 import com.innowise.userservice.security.HeaderAuthenticationFilter;
 import com.innowise.userservice.security.SecurityKeyFilter;
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -28,6 +29,7 @@ public class SecurityConfig {
         http
                 .csrf(AbstractHttpConfigurer::disable)
                 .authorizeHttpRequests(auth -> auth
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll() // Already authorized on the initial dispatch
                         .requestMatchers("/actuator/**").permitAll()
                         .requestMatchers("/internal/**").hasRole("SERVICE")
                         .anyRequest().authenticated()
@@ -0,0 +1,154 @@
+package com.innowise.userservice.config;
+
+import com.innowise.userservice.datasource.ConnectionBulkheads;
+import com.innowise.userservice.datasource.PoolMetricsTrackerFactory;
+import com.innowise.userservice.datasource.ShardDirectory;
+import com.innowise.userservice.datasource.ShardFanOut;
+import com.innowise.userservice.datasource.ShardRoutingDataSource;
+import com.innowise.userservice.datasource.ShardRoutingInterceptor;
+import com.innowise.userservice.datasource.ShardSet;
+import com.innowise.userservice.datasource.ShardedLiquibase;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.NonNull;
+import org.springframework.aop.framework.Advised;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.repository.Repository;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Spreads users over the databases in service.shards.urls, each user together with
+ * its cards. Shards share the credentials of spring.datasource. Replaces the replica
+ * routing of ReplicaRoutingConfig, enabling both fails at startup.
+ * Emails and card numbers stay unique across shards through {@link ShardDirectory}.
+ */
+@Configuration
+public class ShardingConfig {
+
+    @Configuration
+    @ConditionalOnProperty(value = "service.shards.enabled", havingValue = "true")
+    static class Sharded {
+
+        @Bean(destroyMethod = "close")
+        public ShardSet shardSet(
+                DataSourceProperties properties,
+                PoolMetricsTrackerFactory poolMetricsTrackerFactory,
+                ObjectProvider<ConnectionBulkheads> bulkheads,
+                @Value("${service.shards.urls}") List<String> urls
+        ) {
+            ConnectionBulkheads connectionBulkheads = bulkheads.getIfAvailable();
+            List<HikariDataSource> dataSources = new ArrayList<>();
+            for (String url : urls) {
+                if (url.isBlank()) {
+                    continue;
+                }
+                HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                        .type(HikariDataSource.class)
+                        .url(url.trim())
+                        .build();
+                dataSource.setPoolName("shard-" + dataSources.size());
+                dataSource.setMetricsTrackerFactory(poolMetricsTrackerFactory);
+                dataSources.add(connectionBulkheads == null ? dataSource : connectionBulkheads.protect(dataSource));
+            }
+            return new ShardSet(dataSources);
+        }
+
+        @Bean(destroyMethod = "close")
+        public ShardDirectory shardDirectory(
+                ShardSet shardSet,
+                DataSourceProperties properties,
+                PoolMetricsTrackerFactory poolMetricsTrackerFactory,
+                @Value("${service.shards.urls}") List<String> urls,
+                @Value("${service.shards.directory-pool-size:10}") int directoryPoolSize
+        ) {
+            // Same database as shard 0, but not its pool: see ShardDirectory
+            HikariDataSource leasePool = properties.initializeDataSourceBuilder()
+                    .type(HikariDataSource.class)
+                    .url(urls.stream().filter(url -> !url.isBlank()).findFirst().orElseThrow().trim())
+                    .build();
+            leasePool.setPoolName("shard-directory");
+            leasePool.setMaximumPoolSize(directoryPoolSize);
+            leasePool.setMetricsTrackerFactory(poolMetricsTrackerFactory);
+            return new ShardDirectory(shardSet, leasePool);
+        }
+
+        @Bean
+        @Primary
+        public DataSource dataSource(
+                ShardSet shardSet,
+                @Value("${service.replicas.enabled:false}") boolean replicated
+        ) {
+            if (replicated) {
+                throw new IllegalStateException("Shards route by user and replica routing by transaction, "
+                        + "enable only one of service.shards and service.replicas");
+            }
+            ShardRoutingDataSource routingDataSource = new ShardRoutingDataSource(shardSet);
+            routingDataSource.afterPropertiesSet();
+            return new LazyConnectionDataSourceProxy(routingDataSource);
+        }
+
+        @Bean
+        public ShardedLiquibase liquibase(
+                ShardSet shardSet,
+                @Value("${spring.liquibase.change-log:classpath:/db/changelog/db.changelog-master.yaml}")
+                String changeLog,
+                @Value("${spring.liquibase.enabled:true}") boolean enabled
+        ) {
+            ShardedLiquibase liquibase = new ShardedLiquibase(shardSet);
+            liquibase.setChangeLog(changeLog);
+            liquibase.setShouldRun(enabled);
+            return liquibase;
+        }
+
+        @Bean(destroyMethod = "close")
+        public ShardFanOut shardFanOut(
+                ShardSet shardSet,
+                PlatformTransactionManager transactionManager,
+                @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads
+        ) {
+            return ShardFanOut.sharded(shardSet, transactionManager, virtualThreads);
+        }
+
+        /**
+         * Spring Data repositories are AOP proxies already, the routing goes in front of
+         * their advice chain so the shard is set before any transaction advice runs.
+         */
+        @Bean
+        public static BeanPostProcessor shardRoutingPostProcessor(
+                ObjectProvider<ShardSet> shardSet,
+                ObjectProvider<ShardDirectory> shardDirectory
+        ) {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(@NonNull Object bean, @NonNull String beanName) {
+                    if (bean instanceof Repository<?, ?> && bean instanceof Advised advised) {
+                        advised.addAdvice(0, new ShardRoutingInterceptor(
+                                shardSet.getObject(), shardDirectory.getObject()));
+                    }
+                    return bean;
+                }
+            };
+        }
+    }
+
+    @Configuration
+    @ConditionalOnProperty(value = "service.shards.enabled", havingValue = "false", matchIfMissing = true)
+    static class SingleDatabase {
+
+        @Bean
+        public ShardFanOut shardFanOut() {
+            return ShardFanOut.singleDatabase();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.innowise.userservice.config;
+
+import com.innowise.userservice.datasource.ShardFanOut;
+import com.innowise.userservice.repository.UserRepository;
+import com.innowise.userservice.service.statistics.StatisticsSettler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@Configuration
+public class StatisticsConfig {
+
+    /**
+     * Always present, the card counters of GET /api/v1/statistics only move when it runs.
+     */
+    @Bean
+    public StatisticsSettler statisticsSettler(
+            UserRepository userRepository,
+            TransactionTemplate transactionTemplate,
+            ShardFanOut shardFanOut,
+            @Value("${service.statistics.settle-batch-size:1000}") int batchSize,
+            @Value("${service.statistics.settle-max-batches-per-run:50}") int maxBatches
+    ) {
+        return new StatisticsSettler(userRepository, transactionTemplate, shardFanOut, batchSize, maxBatches);
+    }
+}
@@ -1,10 +1,16 @@
 package com.innowise.userservice.controller;
 
+import com.innowise.userservice.dto.CursorPageResponseDto;
 import com.innowise.userservice.dto.card.CardRequestDto;
 import com.innowise.userservice.dto.card.CardResponseDto;
 import com.innowise.userservice.service.CardService;
+import com.innowise.userservice.service.etag.EntityTags;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -18,6 +24,8 @@ import java.util.List;
  * Paths:
  * - /api/v1/users/{userId}/cards - for cards of specific user
  * - /api/v1/cards/{id} - for specific card
+ * - /api/v1/cards/scroll - for admin listing of cards
+ * - /api/v1/cards/search - for admin search of cards by holder
  */
 @RestController
 @RequestMapping("/api/v1/")
@@ -25,6 +33,7 @@ import java.util.List;
 public class CardController {
 
     private final CardService cardService;
+    private final EntityTags entityTags;
 
     /**
      * Adding a new card to user (user can add card only to itself)
@@ -46,6 +55,7 @@ public class CardController {
 
     /**
      * Receiving all user cards (user can get only itself)
+     * Answers 304 NOT MODIFIED when If-None-Match holds the current ETag
      * @param userId
      * @return list of user cards
      */
@@ -53,6 +63,43 @@ public class CardController {
     @PreAuthorize("hasRole('ADMIN') or #userId == authentication.principal")
     public ResponseEntity<List<CardResponseDto>> getUserCards(@PathVariable Long userId) {
         List<CardResponseDto> cards = cardService.findCardsByUserId(userId);
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .eTag(entityTags.of(cards))
+                .body(cards);
+    }
+
+    /**
+     * Keyset (cursor) listing of cards by activity (only ADMIN)
+     * @param active filter by active
+     * @param cursor token from previous page nextCursor, absent for the first page
+     * @param size page size (max 100)
+     * @return page with cards data and next cursor
+     */
+    @GetMapping("cards/scroll")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<CursorPageResponseDto<CardResponseDto>> scrollCards(
+            @RequestParam(defaultValue = "true") Boolean active,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size
+    ) {
+        CursorPageResponseDto<CardResponseDto> cards = cardService.scrollCardsByActivity(active, cursor, size);
+        return ResponseEntity.ok(cards);
+    }
+
+    /**
+     * Search cards by holder substring, case-insensitive (only ADMIN)
+     * @param holder part of holder name
+     * @param pageable pagination and sort params
+     * @return page with cards data
+     */
+    @GetMapping("cards/search")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Page<CardResponseDto>> searchCardsByHolder(
+            @RequestParam String holder,
+            @PageableDefault(size = 20, sort = "id") Pageable pageable
+    ) {
+        Page<CardResponseDto> cards = cardService.searchCardsByHolder(holder, pageable);
         return ResponseEntity.ok(cards);
     }
 
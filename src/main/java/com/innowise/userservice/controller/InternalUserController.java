@@ -2,15 +2,22 @@ package com.innowise.userservice.controller;
 
 import com.innowise.userservice.dto.user.UserRequestDto;
 import com.innowise.userservice.dto.user.UserResponseDto;
+import com.innowise.userservice.dto.user.UserView;
 import com.innowise.userservice.service.UserService;
+import com.innowise.userservice.service.etag.EntityTags;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
+
 /**
  * Internal REST controller for inter-service communication only
  * Requires X-Service-Key
@@ -23,6 +30,11 @@ import org.springframework.web.bind.annotation.*;
 public class InternalUserController {
 
     private final UserService userService;
+    private final EntityTags entityTags;
+
+    // Callers may reuse a response this long before revalidating with If-None-Match
+    @Value("${service.http.internal-max-age:30s}")
+    private Duration internalMaxAge;
 
     /**
      * Create new user (called in Auth Service during registration)
@@ -52,27 +64,52 @@ public class InternalUserController {
 
     /**
      * Get user by email (called in Auth Service during login)
+     * Login only needs fields=id,email,active, which skips the cards entirely
      * @param email user email
+     * @param fields comma separated fields to return, all by default
+     * @param include "cards" to return cards along with the fields
      * @return user data
      */
     @GetMapping("/by-email")
-    public ResponseEntity<UserResponseDto> getUserByEmail(@RequestParam String email) {
+    public ResponseEntity<Object> getUserByEmail(
+            @RequestParam String email,
+            @RequestParam(required = false) String fields,
+            @RequestParam(required = false) String include
+    ) {
         log.info("Internal call: getting user by email: {}", email);
-        UserResponseDto userResponseDto = userService.findUserByEmail(email);
-        return ResponseEntity.ok(userResponseDto);
+        UserView view = UserView.of(fields, include);
+        Object body = view.render(view.includeCards()
+                ? userService.findUserByEmail(email)
+                : userService.findUserSummaryByEmail(email));
+        return ResponseEntity.ok(body);
     }
 
     /**
      * Get user by ID (for inter-service calls)
      * Duplicates /api/v1/users/{id} but requires X-Service-Key
-     * Used by Order Service
+     * Used by Order Service, answers 304 NOT MODIFIED when If-None-Match holds the current ETag
      * @param userId user id
+     * @param fields comma separated fields to return, all by default
+     * @param include "cards" to return cards along with the fields
      * @return user data
      */
     @GetMapping("/{userId}")
-    public ResponseEntity<UserResponseDto> getUserById(@PathVariable Long userId) {
+    public ResponseEntity<Object> getUserById(
+            @PathVariable Long userId,
+            @RequestParam(required = false) String fields,
+            @RequestParam(required = false) String include
+    ) {
         log.info("Internal call: getting user by id: {}", userId);
-        UserResponseDto userResponseDto = userService.findUserById(userId);
-        return ResponseEntity.ok(userResponseDto);
+        UserView view = UserView.of(fields, include);
+        Object body = view.render(view.includeCards()
+                ? userService.findUserById(userId)
+                : userService.findUserSummaryById(userId));
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(internalMaxAge).cachePrivate())
+                // JSON, CBOR and Smile bodies differ byte for byte, a weak tag claims no more
+                // than the same user; If-None-Match compares weakly
+                .varyBy(HttpHeaders.ACCEPT)
+                .eTag(entityTags.weakOf(body))
+                .body(body);
     }
 }
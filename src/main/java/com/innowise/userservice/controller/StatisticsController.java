@@ -0,0 +1,33 @@
+package com.innowise.userservice.controller;
+
+import com.innowise.userservice.dto.statistics.StatisticsResponseDto;
+import com.innowise.userservice.service.StatisticsService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * REST controller for user and card statistics
+ * Path: /api/v1/statistics
+ */
+@RestController
+@RequestMapping("/api/v1/statistics")
+@RequiredArgsConstructor
+public class StatisticsController {
+
+    private final StatisticsService statisticsService;
+
+    /**
+     * Totals for the admin dashboard (only ADMIN), answered from counters
+     * maintained on every write
+     * @return user and card totals, users per number of cards
+     */
+    @GetMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StatisticsResponseDto> getStatistics() {
+        return ResponseEntity.ok(statisticsService.getStatistics());
+    }
+}
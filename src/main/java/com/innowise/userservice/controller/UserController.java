@@ -1,17 +1,29 @@
 package com.innowise.userservice.controller;
 
+import com.innowise.userservice.dto.CountMode;
+import com.innowise.userservice.dto.CursorPageResponseDto;
+import com.innowise.userservice.dto.PageResponseDto;
+import com.innowise.userservice.dto.user.ExportFormat;
 import com.innowise.userservice.dto.user.UserRequestDto;
 import com.innowise.userservice.dto.user.UserResponseDto;
+import com.innowise.userservice.dto.user.UserView;
+import com.innowise.userservice.service.UserExportService;
 import com.innowise.userservice.service.UserService;
+import com.innowise.userservice.service.etag.EntityTags;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.data.web.SortDefault;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /**
  * REST controller for managing users
@@ -24,17 +36,33 @@ import org.springframework.web.bind.annotation.*;
 public class UserController {
 
     private final UserService userService;
+    private final UserExportService userExportService;
+    private final EntityTags entityTags;
 
     /**
      * Retrieves a user by id (user can get only itself)
+     * Answers 304 NOT MODIFIED when If-None-Match holds the current ETag
      * @param id
+     * @param fields comma separated fields to return, all by default
+     * @param include "cards" to return cards along with the fields, cards are skipped once fields are given
      * @return user data
      */
     @GetMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN') or hasRole('SERVICE') or #id == authentication.principal")
-    public ResponseEntity<UserResponseDto> getUserById(@PathVariable Long id)  {
-        UserResponseDto userResponseDto = userService.findUserById(id);
-        return ResponseEntity.ok(userResponseDto);
+    public ResponseEntity<Object> getUserById(
+            @PathVariable Long id,
+            @RequestParam(required = false) String fields,
+            @RequestParam(required = false) String include
+    ) {
+        UserView view = UserView.of(fields, include);
+        Object body = view.render(view.includeCards()
+                ? userService.findUserById(id)
+                : userService.findUserSummaryById(id));
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .varyBy(HttpHeaders.ACCEPT)
+                .eTag(entityTags.of(body))
+                .body(body);
     }
 
     /**
@@ -42,35 +70,96 @@ public class UserController {
      * @param name filter by name
      * @param surname filter by surname
      * @param active filter by active
+     * @param count total mode: NONE (default, has-next only), ESTIMATED (unfiltered only) or EXACT
      * @param pageable pagination and sort params
      * @return page with users data
      */
     @GetMapping
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<Page<UserResponseDto>> getAllUsers(
+    public ResponseEntity<PageResponseDto<UserResponseDto>> getAllUsers(
             @RequestParam(required = false) String name,
             @RequestParam(required = false) String surname,
             @RequestParam(required = false) Boolean active,
+            @RequestParam(defaultValue = "NONE") CountMode count,
             @PageableDefault(size = 20, sort = "id") Pageable pageable
             ) {
-        Page<UserResponseDto> users = userService.findAllUsers(name, surname, active, pageable);
+        PageResponseDto<UserResponseDto> users = userService.findAllUsers(name, surname, active, pageable, count);
+        return ResponseEntity.ok(users);
+    }
+
+    /**
+     * Keyset (cursor) listing of users with filtering (only ADMIN)
+     * Cost of a page does not depend on its depth, no total count is computed
+     * @param name filter by name
+     * @param surname filter by surname
+     * @param active filter by active
+     * @param cursor token from previous page nextCursor, absent for the first page
+     * @param size page size (max 100)
+     * @param sort sort params, id is always appended as tie-breaker
+     * @return page with users data and next cursor
+     */
+    @GetMapping("/scroll")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<CursorPageResponseDto<UserResponseDto>> scrollUsers(
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String surname,
+            @RequestParam(required = false) Boolean active,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @SortDefault(sort = "id") Sort sort
+    ) {
+        CursorPageResponseDto<UserResponseDto> users =
+                userService.scrollUsers(name, surname, active, cursor, size, sort);
         return ResponseEntity.ok(users);
     }
 
+    /**
+     * Streaming export of users with their cards (only ADMIN)
+     * Rows are read through a database cursor and written as they arrive
+     * @param name filter by name
+     * @param surname filter by surname
+     * @param active filter by active
+     * @param format NDJSON (one user per line) or CSV (one user/card pair per line)
+     * @return streamed export file
+     */
+    @GetMapping("/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportUsers(
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String surname,
+            @RequestParam(required = false) Boolean active,
+            @RequestParam(defaultValue = "NDJSON") ExportFormat format
+    ) {
+        StreamingResponseBody body = outputStream ->
+                userExportService.exportUsers(name, surname, active, format, outputStream);
+
+        return ResponseEntity.ok()
+                .contentType(format.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("users." + format.getExtension())
+                        .build()
+                        .toString())
+                .body(body);
+    }
+
     /**
      * Full user data update (user can update only itself)
      * @param id
      * @param userRequestDto new user data
+     * @param ifMatch optional ETag of the version being replaced, 412 PRECONDITION FAILED if outdated
      * @return updated user data
      */
     @PutMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN') or #id == authentication.principal")
     public ResponseEntity<UserResponseDto> updateUser(
             @PathVariable Long id,
-            @Valid @RequestBody UserRequestDto userRequestDto
+            @Valid @RequestBody UserRequestDto userRequestDto,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
     ) {
-        UserResponseDto updatedUser = userService.updateUser(id, userRequestDto);
-        return ResponseEntity.ok(updatedUser);
+        UserResponseDto updatedUser = userService.updateUser(id, userRequestDto, ifMatch);
+        return ResponseEntity.ok()
+                .eTag(entityTags.of(updatedUser))
+                .body(updatedUser);
     }
 
     /**
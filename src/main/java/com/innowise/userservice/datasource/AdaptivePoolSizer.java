@@ -0,0 +1,82 @@
+package com.innowise.userservice.datasource;
+
+import com.innowise.userservice.datasource.PoolMetricsTrackerFactory.PoolWindow;
+import com.zaxxer.hikari.HikariConfigMXBean;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Moves the maximum size of every Hikari pool within [minSize, maxSize]. A pool grows
+ * while callers wait for connections and the database still answers within maxUsage;
+ * when the database slows down it shrinks instead, more connections would only queue
+ * there. Without waits and with idle connections it gives one connection back per check.
+ * The database is judged by the median hold time: the mean counts application work done
+ * while a connection is held, one long export would read as a slow database.
+ */
+@Slf4j
+public class AdaptivePoolSizer {
+
+    private final Supplier<List<HikariDataSource>> pools;
+    private final PoolMetricsTrackerFactory metrics;
+    private final int minSize;
+    private final int maxSize;
+    private final Duration targetAcquire;
+    private final Duration maxUsage;
+
+    public AdaptivePoolSizer(Supplier<List<HikariDataSource>> pools, PoolMetricsTrackerFactory metrics, int minSize,
+                             int maxSize, Duration targetAcquire, Duration maxUsage) {
+        if (minSize < 1 || maxSize < minSize) {
+            throw new IllegalArgumentException("Adaptive pool bounds must satisfy 1 <= min <= max");
+        }
+        this.pools = pools;
+        this.metrics = metrics;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.targetAcquire = targetAcquire;
+        this.maxUsage = maxUsage;
+    }
+
+    @Scheduled(fixedDelayString = "${service.datasource.adaptive-pool.interval-ms:5000}")
+    public void adjust() {
+        pools.get().forEach(this::adjust);
+    }
+
+    private void adjust(HikariDataSource pool) {
+        HikariPoolMXBean state = pool.getHikariPoolMXBean();
+        if (state == null) {
+            // Not started yet, nothing observed
+            return;
+        }
+        HikariConfigMXBean config = pool.getHikariConfigMXBean();
+        // Connections above a lowered cap are only retired by the idle timeout, which
+        // Hikari applies while minimumIdle is below the maximum
+        if (config.getMinimumIdle() > minSize) {
+            config.setMinimumIdle(minSize);
+        }
+        PoolWindow window = metrics.drain(pool.getPoolName());
+        int current = config.getMaximumPoolSize();
+
+        int target = current;
+        if (window.medianUsage().compareTo(maxUsage) > 0) {
+            target = current - 1;
+        } else if (window.timeouts() > 0 || window.meanAcquire().compareTo(targetAcquire) > 0) {
+            target = current + Math.max(1, state.getThreadsAwaitingConnection());
+        } else if (state.getThreadsAwaitingConnection() == 0 && state.getIdleConnections() > 1) {
+            target = current - 1;
+        }
+        target = Math.clamp(target, minSize, maxSize);
+
+        if (target != current) {
+            config.setMaximumPoolSize(target);
+            log.info("Pool {} resized {} -> {} (mean acquire {} ms, median usage {} ms, timeouts {})",
+                    pool.getPoolName(), current, target, window.meanAcquire().toMillis(),
+                    window.medianUsage().toMillis(), window.timeouts());
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.innowise.userservice.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Puts a fair semaphore in front of Hikari pools, one permit per connection the pool may
+ * open. Platform threads were capped by the Tomcat pool before they reached the database;
+ * virtual threads are not, and thousands of them spinning in Hikari's handoff queue cost
+ * more than parking them here. Callers wait up to the pool's connection timeout, and
+ * beyond maxWaiting queued callers fail at once instead of piling up. The permits follow
+ * the maximum pool size, so {@link AdaptivePoolSizer} resizes both.
+ */
+public class ConnectionBulkheads {
+
+    private final PoolMetricsTrackerFactory metrics;
+    private final MeterRegistry registry;
+    private final int maxWaiting;
+
+    public ConnectionBulkheads(PoolMetricsTrackerFactory metrics, MeterRegistry registry, int maxWaiting) {
+        if (maxWaiting < 0) {
+            throw new IllegalArgumentException("maxWaiting must not be negative");
+        }
+        this.metrics = metrics;
+        this.registry = registry;
+        this.maxWaiting = maxWaiting;
+    }
+
+    /**
+     * The pool behind a bulkhead. The proxy is still a HikariDataSource, everything but
+     * getConnection goes straight to the pool. The pool needs its name by now, Hikari only
+     * makes one up when the pool starts.
+     */
+    public HikariDataSource protect(HikariDataSource pool) {
+        if (pool.getPoolName() == null) {
+            throw new IllegalArgumentException("Pool must be named before it gets a bulkhead");
+        }
+        ProxyFactory proxyFactory = new ProxyFactory(pool);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice(new Bulkhead(pool));
+        return (HikariDataSource) proxyFactory.getProxy(pool.getClass().getClassLoader());
+    }
+
+    private final class Bulkhead implements MethodInterceptor {
+
+        private final HikariDataSource pool;
+        private final PermitSemaphore permits;
+        private final ReentrantLock resizeLock = new ReentrantLock();
+        private final AtomicInteger waiting = new AtomicInteger();
+        private volatile int size;
+
+        private Bulkhead(HikariDataSource pool) {
+            this.pool = pool;
+            this.size = pool.getMaximumPoolSize();
+            this.permits = new PermitSemaphore(size);
+            Gauge.builder("db.bulkhead.waiting", waiting, AtomicInteger::get)
+                    .description("Callers queued for a connection permit")
+                    .tag("pool", pool.getPoolName())
+                    .register(registry);
+        }
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            if (!"getConnection".equals(invocation.getMethod().getName())) {
+                return invocation.proceed();
+            }
+            resize();
+            acquire(pool.getPoolName());
+            try {
+                return releasingOnClose((Connection) invocation.proceed());
+            } catch (Throwable e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        private void acquire(String poolName) throws SQLTransientConnectionException, InterruptedException {
+            // The untimed tryAcquire would barge past the queue
+            if (permits.tryAcquire(0, TimeUnit.NANOSECONDS)) {
+                return;
+            }
+            if (waiting.incrementAndGet() > maxWaiting) {
+                waiting.decrementAndGet();
+                metrics.recordBulkheadRejection(poolName);
+                throw new SQLTransientConnectionException(
+                        poolName + " - Connection is not available, " + maxWaiting + " callers already waiting");
+            }
+            long started = System.nanoTime();
+            boolean acquired;
+            try {
+                acquired = permits.tryAcquire(pool.getConnectionTimeout(), TimeUnit.MILLISECONDS);
+            } finally {
+                waiting.decrementAndGet();
+            }
+            metrics.recordBulkheadWait(poolName, System.nanoTime() - started);
+            if (!acquired) {
+                metrics.recordBulkheadRejection(poolName);
+                throw new SQLTransientConnectionException(
+                        poolName + " - Connection is not available, request timed out after "
+                                + pool.getConnectionTimeout() + "ms in the bulkhead");
+            }
+        }
+
+        private void resize() {
+            int target = pool.getMaximumPoolSize();
+            if (target == size) {
+                return;
+            }
+            resizeLock.lock();
+            try {
+                if (target > size) {
+                    permits.release(target - size);
+                } else if (target < size) {
+                    // Borrowed permits still come back, the surplus is retired as they do
+                    permits.reducePermits(size - target);
+                }
+                size = target;
+            } finally {
+                resizeLock.unlock();
+            }
+        }
+
+        private Connection releasingOnClose(Connection connection) {
+            AtomicBoolean released = new AtomicBoolean();
+            return (Connection) Proxy.newProxyInstance(ConnectionProxy.class.getClassLoader(),
+                    new Class<?>[]{ConnectionProxy.class}, (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "equals" -> {
+                                return proxy == args[0];
+                            }
+                            case "hashCode" -> {
+                                return System.identityHashCode(proxy);
+                            }
+                            case "getTargetConnection" -> {
+                                return connection;
+                            }
+                            default -> {
+                            }
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        } finally {
+                            if ("close".equals(method.getName()) && released.compareAndSet(false, true)) {
+                                permits.release();
+                            }
+                        }
+                    });
+        }
+    }
+
+    private static final class PermitSemaphore extends Semaphore {
+
+        private PermitSemaphore(int permits) {
+            super(permits, true);
+        }
+
+        @Override
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+}
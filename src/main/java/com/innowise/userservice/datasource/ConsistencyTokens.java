@@ -0,0 +1,102 @@
+package com.innowise.userservice.datasource;
+
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.sql.DataSource;
+
+/**
+ * Read-your-writes tokens. A request whose write transaction committed gets the
+ * primary WAL position back in the {@value #HEADER} header; reads that send it back
+ * (or run later in the same request) are only routed to replicas that replayed that far.
+ */
+@Slf4j
+public class ConsistencyTokens {
+
+    public static final String HEADER = "X-Consistency-Token";
+
+    private static final String WRITTEN_LSN = ConsistencyTokens.class.getName() + ".WRITTEN_LSN";
+
+    private final JdbcClient primary;
+
+    /**
+     * @param primary the primary pool itself, not the routing datasource
+     */
+    public ConsistencyTokens(DataSource primary) {
+        this.primary = JdbcClient.create(primary);
+    }
+
+    /**
+     * WAL position the current request has to observe, null when any healthy replica will do.
+     */
+    public Long requiredLsn() {
+        if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)) {
+            return null;
+        }
+        Object written = attributes.getAttribute(WRITTEN_LSN, RequestAttributes.SCOPE_REQUEST);
+        if (written != null) {
+            return (Long) written;
+        }
+
+        String token = attributes.getRequest().getHeader(HEADER);
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            return Lsn.parse(token.trim());
+        } catch (IllegalArgumentException e) {
+            log.debug("Ignoring malformed consistency token: {}", token);
+            return null;
+        }
+    }
+
+    /**
+     * Issues a token once the current read-write transaction commits. Only requests get
+     * one, there is nobody to hand it to otherwise.
+     */
+    public void trackWrite() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(this)
+                || !(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes)) {
+            return;
+        }
+
+        TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                issue();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(ConsistencyTokens.this);
+            }
+        });
+    }
+
+    private void issue() {
+        // Hibernate has released the committed connection by now, so this borrows another one
+        // from the primary pool. Its WAL position is at or past the commit record: a replica
+        // that replayed that far sees the write. Read before commit, the position would still
+        // be short of the commit record
+        long lsn = Lsn.parse(primary
+                .sql("SELECT pg_current_wal_lsn()::text")
+                .query(String.class)
+                .single());
+
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes) {
+            attributes.setAttribute(WRITTEN_LSN, lsn, RequestAttributes.SCOPE_REQUEST);
+            HttpServletResponse response = attributes.getResponse();
+            if (response != null && !response.isCommitted()) {
+                response.setHeader(HEADER, Lsn.format(lsn));
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.innowise.userservice.datasource;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a card request parameter whose number is written to the shard of the call. The
+ * directory entry is claimed for that shard first, a number still used on another shard
+ * is rejected like a payment_cards_number_key violation.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface DirectoryCardNumber {
+}
@@ -0,0 +1,24 @@
+package com.innowise.userservice.datasource;
+
+/**
+ * PostgreSQL WAL positions ({@code pg_lsn}, e.g. {@code 16/B374D848}) as comparable longs.
+ */
+final class Lsn {
+
+    private Lsn() {
+        throw new UnsupportedOperationException("Cannot create an object of utility class");
+    }
+
+    static long parse(String text) {
+        int slash = text.indexOf('/');
+        if (slash <= 0 || slash == text.length() - 1) {
+            throw new IllegalArgumentException("Malformed LSN: " + text);
+        }
+        return (Long.parseUnsignedLong(text.substring(0, slash), 16) << 32)
+                | Long.parseUnsignedLong(text.substring(slash + 1), 16);
+    }
+
+    static String format(long lsn) {
+        return Long.toHexString(lsn >>> 32).toUpperCase() + "/" + Long.toHexString(lsn & 0xFFFFFFFFL).toUpperCase();
+    }
+}
@@ -0,0 +1,197 @@
+package com.innowise.userservice.datasource;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hikari metrics: the standard hikaricp.* meters, how long each endpoint holds a
+ * connection (db.connection.hold, tagged with the route that borrowed it), the queue of
+ * {@link ConnectionBulkheads} in front of the pool and per-pool totals that
+ * {@link AdaptivePoolSizer} drains every interval. Hikari reports borrow and
+ * return on the calling thread, so the current request identifies the endpoint.
+ */
+public class PoolMetricsTrackerFactory implements MetricsTrackerFactory {
+
+    private static final String NO_ENDPOINT = "none";
+
+    private final MeterRegistry registry;
+    private final MicrometerMetricsTrackerFactory micrometer;
+    private final Map<String, Totals> totals = new ConcurrentHashMap<>();
+
+    public PoolMetricsTrackerFactory(MeterRegistry registry) {
+        this.registry = registry;
+        this.micrometer = new MicrometerMetricsTrackerFactory(registry);
+    }
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        IMetricsTracker delegate = micrometer.create(poolName, poolStats);
+        Totals pool = totals.computeIfAbsent(poolName, name -> new Totals());
+
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+                delegate.recordConnectionCreatedMillis(connectionCreatedMillis);
+            }
+
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                delegate.recordConnectionAcquiredNanos(elapsedAcquiredNanos);
+                pool.acquireNanos.add(elapsedAcquiredNanos);
+                pool.acquires.increment();
+            }
+
+            @Override
+            public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+                delegate.recordConnectionUsageMillis(elapsedBorrowedMillis);
+                pool.usages.increment();
+                pool.usageBuckets[Totals.bucket(elapsedBorrowedMillis)].increment();
+                Timer.builder("db.connection.hold")
+                        .description("Time a connection is held between borrow and return, per endpoint")
+                        .tag("pool", poolName)
+                        .tag("endpoint", endpoint())
+                        .register(registry)
+                        .record(elapsedBorrowedMillis, TimeUnit.MILLISECONDS);
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                delegate.recordConnectionTimeout();
+                pool.timeouts.increment();
+            }
+
+            @Override
+            public void close() {
+                delegate.close();
+            }
+        };
+    }
+
+    /**
+     * Time a caller queued in {@link ConnectionBulkheads} before it was let through to the
+     * pool. It counts into the mean acquire time: behind the bulkhead the pool itself
+     * hardly sees a wait, the queue is in front of it.
+     */
+    public void recordBulkheadWait(String poolName, long waitedNanos) {
+        totals.computeIfAbsent(poolName, name -> new Totals()).acquireNanos.add(waitedNanos);
+        Timer.builder("db.bulkhead.wait")
+                .description("Time a caller queued for a connection permit")
+                .tag("pool", poolName)
+                .register(registry)
+                .record(waitedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * A caller the bulkhead turned away, a timeout as far as pool sizing is concerned.
+     */
+    public void recordBulkheadRejection(String poolName) {
+        totals.computeIfAbsent(poolName, name -> new Totals()).timeouts.increment();
+        Counter.builder("db.bulkhead.rejected")
+                .description("Callers refused after waiting too long for a connection permit")
+                .tag("pool", poolName)
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * Totals of the pool since the previous call.
+     */
+    public PoolWindow drain(String poolName) {
+        Totals pool = totals.get(poolName);
+        if (pool == null) {
+            return new PoolWindow(0, Duration.ZERO, Duration.ZERO, 0);
+        }
+        long acquires = pool.acquires.sumThenReset();
+        long acquireNanos = pool.acquireNanos.sumThenReset();
+        long usages = pool.usages.sumThenReset();
+        long[] buckets = new long[pool.usageBuckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = pool.usageBuckets[i].sumThenReset();
+        }
+        return new PoolWindow(
+                acquires,
+                acquires == 0 ? Duration.ZERO : Duration.ofNanos(acquireNanos / acquires),
+                Duration.ofMillis(Totals.median(buckets, usages)),
+                pool.timeouts.sumThenReset()
+        );
+    }
+
+    private String endpoint() {
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes) {
+            Object pattern = attributes.getRequest().getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            if (pattern != null) {
+                return attributes.getRequest().getMethod() + " " + pattern;
+            }
+        }
+        return NO_ENDPOINT;
+    }
+
+    /**
+     * @param meanAcquire mean wait for a connection
+     * @param medianUsage median time a connection was held, i.e. how fast the database
+     *                    answers; a few long holds, such as a streamed export that works
+     *                    between fetches, do not move it
+     */
+    public record PoolWindow(long acquires, Duration meanAcquire, Duration medianUsage, long timeouts) {
+    }
+
+    private static final class Totals {
+
+        // Four buckets per power of two, a bucket reads as its lower bound (within 25 %)
+        private static final int BUCKETS = 248;
+
+        private final LongAdder acquires = new LongAdder();
+        private final LongAdder acquireNanos = new LongAdder();
+        private final LongAdder usages = new LongAdder();
+        private final LongAdder[] usageBuckets = new LongAdder[BUCKETS];
+        private final LongAdder timeouts = new LongAdder();
+
+        private Totals() {
+            for (int i = 0; i < BUCKETS; i++) {
+                usageBuckets[i] = new LongAdder();
+            }
+        }
+
+        private static int bucket(long millis) {
+            if (millis < 4) {
+                return (int) Math.max(millis, 0);
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(millis);
+            return exponent * 4 + (int) ((millis >>> (exponent - 2)) & 3) - 4;
+        }
+
+        private static long lowerBound(int bucket) {
+            if (bucket < 4) {
+                return bucket;
+            }
+            return (4L + bucket % 4) << (bucket / 4 - 1);
+        }
+
+        // The usage total and the buckets are drained one after another, a few holds can
+        // land in between
+        private static long median(long[] buckets, long usages) {
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen > 0 && seen * 2 >= usages) {
+                    return lowerBound(i);
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.innowise.userservice.datasource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import lombok.NonNull;
+import org.springframework.boot.actuate.metrics.r2dbc.ConnectionPoolMetrics;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import java.time.Duration;
+
+/**
+ * The R2DBC pool of the reactive read path. Deliberately not a ConnectionFactory bean:
+ * Boot's DataSource auto-configuration backs off as soon as one exists, and JPA still
+ * needs it for every write.
+ */
+public class ReactiveDatabase implements MeterBinder, AutoCloseable {
+
+    private static final String POOL_NAME = "reactive";
+
+    private final ConnectionPool pool;
+    private final DatabaseClient client;
+
+    public ReactiveDatabase(ConnectionFactoryOptions options, int maxSize, Duration maxAcquireTime) {
+        this.pool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options))
+                .name(POOL_NAME)
+                .initialSize(Math.min(maxSize, 2))
+                .maxSize(maxSize)
+                .maxAcquireTime(maxAcquireTime)
+                .build());
+        this.client = DatabaseClient.create(pool);
+    }
+
+    /**
+     * The R2DBC url of a JDBC one, without the JDBC driver's parameters.
+     */
+    public static String r2dbcUrl(String jdbcUrl) {
+        int parameters = jdbcUrl.indexOf('?');
+        String url = parameters < 0 ? jdbcUrl : jdbcUrl.substring(0, parameters);
+        if (!url.startsWith("jdbc:")) {
+            throw new IllegalArgumentException("Not a JDBC url: " + url);
+        }
+        return "r2dbc:" + url.substring("jdbc:".length());
+    }
+
+    public DatabaseClient client() {
+        return client;
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        new ConnectionPoolMetrics(pool, POOL_NAME, Tags.empty()).bindTo(registry);
+    }
+
+    @Override
+    public void close() {
+        pool.dispose();
+    }
+}
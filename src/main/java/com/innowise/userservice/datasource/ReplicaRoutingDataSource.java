@@ -0,0 +1,42 @@
+package com.innowise.userservice.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sends read-only transactions to a replica and everything else to the primary.
+ * Has to sit behind a LazyConnectionDataSourceProxy: the transaction is only marked
+ * read-only after the JPA transaction has begun, the lookup runs on the first statement.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARY = "primary";
+
+    private final ReplicaSet replicas;
+    private final ConsistencyTokens consistencyTokens;
+
+    public ReplicaRoutingDataSource(DataSource primary, ReplicaSet replicas, ConsistencyTokens consistencyTokens) {
+        this.replicas = replicas;
+        this.consistencyTokens = consistencyTokens;
+
+        Map<Object, Object> targets = new HashMap<>(replicas.dataSources());
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                consistencyTokens.trackWrite();
+            }
+            return PRIMARY;
+        }
+        return replicas.select(consistencyTokens.requiredLsn()).orElse(PRIMARY);
+    }
+}
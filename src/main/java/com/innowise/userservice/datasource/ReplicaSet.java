@@ -0,0 +1,119 @@
+package com.innowise.userservice.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Read replicas with their pools and the last observed replication state.
+ * A replica serves reads only while it is in recovery and its replay lag is
+ * within the limit; until its first successful check it serves nothing.
+ */
+@Slf4j
+public class ReplicaSet implements MeterBinder, AutoCloseable {
+
+    // An idle primary sends no transactions to replay, so a replica that replayed
+    // everything it received counts as up to date whatever the last replay time is
+    private static final String REPLICA_STATE = """
+            SELECT pg_is_in_recovery() AS in_recovery,
+                   COALESCE(pg_last_wal_replay_lsn(), '0/0')::text AS replay_lsn,
+                   CASE WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                        ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0)
+                   END::bigint AS lag_ms
+            """;
+
+    private final Map<String, HikariDataSource> dataSources;
+    private final Map<String, JdbcClient> clients = new LinkedHashMap<>();
+    private final Duration maxLag;
+    private final Map<String, ReplicaState> states = new ConcurrentHashMap<>();
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaSet(Map<String, HikariDataSource> dataSources, Duration maxLag) {
+        this.dataSources = dataSources;
+        this.maxLag = maxLag;
+        dataSources.forEach((name, dataSource) -> clients.put(name, JdbcClient.create(dataSource)));
+    }
+
+    public Map<String, HikariDataSource> dataSources() {
+        return Collections.unmodifiableMap(dataSources);
+    }
+
+    /**
+     * Picks a usable replica round-robin. With {@code minLsn} only replicas that
+     * replayed at least up to it qualify; empty means the primary has to serve the read.
+     */
+    public Optional<String> select(Long minLsn) {
+        List<String> candidates = states.entrySet().stream()
+                .filter(entry -> isHealthy(entry.getValue()))
+                .filter(entry -> minLsn == null || entry.getValue().replayLsn() >= minLsn)
+                .map(Map.Entry::getKey)
+                .toList();
+        if (candidates.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(candidates.get(Math.floorMod(next.getAndIncrement(), candidates.size())));
+    }
+
+    @Scheduled(fixedDelayString = "${service.replicas.lag-check-interval-ms:1000}")
+    public void refresh() {
+        clients.forEach((name, client) -> {
+            try {
+                ReplicaState state = client.sql(REPLICA_STATE)
+                        .query((rs, rowNum) -> new ReplicaState(
+                                rs.getBoolean("in_recovery"),
+                                Lsn.parse(rs.getString("replay_lsn")),
+                                Duration.ofMillis(rs.getLong("lag_ms"))))
+                        .single();
+                ReplicaState previous = states.put(name, state);
+                if (previous == null || isHealthy(previous) != isHealthy(state)) {
+                    log.info("Replica {} {} reads (in recovery: {}, lag: {} ms)", name,
+                            isHealthy(state) ? "serves" : "no longer serves", state.inRecovery(),
+                            state.lag().toMillis());
+                }
+            } catch (DataAccessException e) {
+                if (states.remove(name) != null) {
+                    log.warn("Replica {} is unreachable, its reads go to the primary: {}", name, e.getMessage());
+                }
+            }
+        });
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        dataSources.keySet().forEach(name -> Gauge.builder("db.replica.lag", states,
+                        replicaStates -> Optional.ofNullable(replicaStates.get(name))
+                                .map(state -> (double) state.lag().toMillis())
+                                .orElse(Double.NaN))
+                .description("Replay lag of the read replica, NaN while it is unreachable")
+                .baseUnit("milliseconds")
+                .tag("replica", name)
+                .register(registry));
+    }
+
+    @Override
+    public void close() {
+        dataSources.values().forEach(HikariDataSource::close);
+    }
+
+    private boolean isHealthy(ReplicaState state) {
+        return state.inRecovery() && state.lag().compareTo(maxLag) <= 0;
+    }
+
+    private record ReplicaState(boolean inRecovery, long replayLsn, Duration lag) {
+    }
+}
@@ -0,0 +1,83 @@
+package com.innowise.userservice.datasource;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.Supplier;
+
+/**
+ * The shard the current call is routed to. Inside a transaction the first shard used
+ * is bound to it: its connection is already open on that shard, so a call for another
+ * shard fails instead of silently reading or writing the wrong database.
+ */
+public final class ShardContext {
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    public static <T> T callOn(int shard, Supplier<T> call) {
+        Integer previous = enter(shard);
+        try {
+            return call.get();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    /**
+     * Routes the calls of this thread to {@code shard} until {@link #restore} with the returned value.
+     */
+    public static Integer enter(int shard) {
+        bind(shard);
+        Integer previous = CURRENT.get();
+        CURRENT.set(shard);
+        return previous;
+    }
+
+    public static void restore(Integer previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * Shard of the running call, else the one bound to the transaction, else {@code null}.
+     */
+    public static Integer current() {
+        Integer shard = CURRENT.get();
+        return shard != null ? shard : boundShard();
+    }
+
+    static void bind(int shard) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        Integer bound = boundShard();
+        if (bound == null) {
+            TransactionSynchronizationManager.registerSynchronization(new Binding(shard));
+        } else if (bound != shard) {
+            throw new IllegalStateException(
+                    "Transaction already uses shard " + bound + ", shard " + shard + " needs its own transaction");
+        }
+    }
+
+    // Suspended transactions take their synchronizations along, so a REQUIRES_NEW
+    // transaction starts unbound
+    private static Integer boundShard() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        return TransactionSynchronizationManager.getSynchronizations().stream()
+                .filter(Binding.class::isInstance)
+                .map(synchronization -> ((Binding) synchronization).shard())
+                .findFirst()
+                .orElse(null);
+    }
+
+    private record Binding(int shard) implements TransactionSynchronization {
+    }
+}
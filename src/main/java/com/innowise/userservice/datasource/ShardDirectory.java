@@ -0,0 +1,261 @@
+package com.innowise.userservice.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Email and card number to shard directories in user_shard_directory and
+ * card_number_directory on shard 0. A write that places or claims a key holds its
+ * directory row locked, in a transaction of its own, until the shard write commits, so
+ * two shards cannot take the same email or card number at once. An entry left behind by
+ * a change or a delete is stale and gets taken over by the next claim; a key without an
+ * entry, written before sharding was enabled, is looked up on every other shard first.
+ * Uniqueness on the shard itself is still enforced by users_email_key and
+ * payment_cards_number_key.
+ * <p>
+ * Leases come from a pool of their own on the shard 0 database: a write to shard 0 takes
+ * its lease before its shard connection, and with both from one pool, as many concurrent
+ * writes as connections would each hold one and wait for the second. A transaction that
+ * claims a key again reuses its lease rather than waiting for its own row lock.
+ */
+@Slf4j
+public class ShardDirectory implements AutoCloseable {
+
+    private final ShardSet shards;
+    private final HikariDataSource leasePool;
+    private final JdbcClient directory;
+
+    public ShardDirectory(ShardSet shards, HikariDataSource leasePool) {
+        this.shards = shards;
+        this.leasePool = leasePool;
+        this.directory = JdbcClient.create(shards.dataSource(0));
+    }
+
+    public Optional<Integer> find(String email) {
+        return directory.sql("SELECT shard FROM user_shard_directory WHERE email = :email")
+                .param("email", email)
+                .query(Integer.class)
+                .optional();
+    }
+
+    /**
+     * Shard for a new user with this email: the one of an existing entry, so a duplicate
+     * meets users_email_key there, or the hash placement, which is recorded.
+     */
+    public Lease place(String email) {
+        return lease(Entry.EMAIL, email, shards.placementOf(email), false);
+    }
+
+    /**
+     * Moves the email to {@code shard} before a user there takes it. Rejected while
+     * another shard still has a user with this email.
+     */
+    public Lease claim(String email, int shard) {
+        return lease(Entry.EMAIL, email, shard, true);
+    }
+
+    /**
+     * Moves the card number to {@code shard} before a card there takes it. Rejected while
+     * another shard still has a card with this number.
+     */
+    public Lease claimCardNumber(String number, int shard) {
+        return lease(Entry.CARD_NUMBER, number, shard, true);
+    }
+
+    private Lease lease(Entry entry, String key, int shard, boolean move) {
+        String resource = entry.table + ":" + key;
+        Lease held = heldLeases().get(resource);
+        Connection connection = held == null ? null : held.connection;
+        try {
+            if (connection == null) {
+                connection = leasePool.getConnection();
+                connection.setAutoCommit(false);
+            }
+            JdbcClient locked = JdbcClient.create(new SingleConnectionDataSource(connection, true));
+
+            // Locks the entry, a concurrent place or claim of the key waits for release
+            Reservation reservation = reserve(locked, entry, key, shard);
+            int current = reservation.shard();
+            if (reservation.created()) {
+                for (int other = 0; other < shards.count(); other++) {
+                    if (other != current && taken(entry, key, other)) {
+                        throw duplicate(entry, other);
+                    }
+                }
+            }
+            if (!move || current == shard) {
+                return new Lease(connection, current, resource, held != null);
+            }
+            if (taken(entry, key, current)) {
+                throw duplicate(entry, current);
+            }
+
+            locked.sql("UPDATE %s SET shard = :shard WHERE %s = :key".formatted(entry.table, entry.column))
+                    .param("shard", shard)
+                    .param("key", key)
+                    .update();
+            log.debug("Directory entry of {} moved from shard {} to {}", key, current, shard);
+            return new Lease(connection, shard, resource, held != null);
+        } catch (SQLException e) {
+            if (held == null) {
+                release(connection, false);
+            }
+            throw new CannotGetJdbcConnectionException("Failed to open a shard directory transaction", e);
+        } catch (RuntimeException e) {
+            // A held lease ends with its transaction, which this failure rolls back
+            if (held == null) {
+                release(connection, false);
+            }
+            throw e;
+        }
+    }
+
+    // Existing entry wins, the no-op update makes RETURNING report it
+    private Reservation reserve(JdbcClient locked, Entry entry, String key, int shard) {
+        return locked.sql("""
+                        INSERT INTO %1$s (%2$s, shard) VALUES (:key, :shard)
+                        ON CONFLICT (%2$s) DO UPDATE SET %2$s = EXCLUDED.%2$s
+                        RETURNING shard, xmax = 0 AS created
+                        """.formatted(entry.table, entry.column))
+                .param("key", key)
+                .param("shard", shard)
+                .query((rs, rowNum) -> new Reservation(rs.getInt("shard"), rs.getBoolean("created")))
+                .single();
+    }
+
+    private boolean taken(Entry entry, String key, int shard) {
+        return JdbcClient.create(shards.dataSource(shard))
+                .sql(entry.takenSql)
+                .param("key", key)
+                .query(Boolean.class)
+                .single();
+    }
+
+    private static DuplicateKeyException duplicate(Entry entry, int shard) {
+        return new DuplicateKeyException(entry.label + " is used on shard " + shard +
+                ": duplicate key value violates unique constraint \"" + entry.constraint + "\"");
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Lease> heldLeases() {
+        Object leases = TransactionSynchronizationManager.getResource(this);
+        return leases == null ? Map.of() : (Map<String, Lease>) leases;
+    }
+
+    @Override
+    public void close() {
+        leasePool.close();
+    }
+
+    private static void release(Connection connection, boolean commit) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            if (commit) {
+                connection.commit();
+            } else {
+                connection.rollback();
+            }
+        } catch (SQLException e) {
+            log.warn("Failed to end shard directory transaction, the entry may be stale", e);
+        } finally {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                log.debug("Failed to close shard directory connection", e);
+            }
+        }
+    }
+
+    private enum Entry {
+        EMAIL("user_shard_directory", "email", "Email", "users_email_key",
+                "SELECT EXISTS (SELECT 1 FROM users WHERE email = :key AND deleted_at IS NULL)"),
+        // Cards of a deleted user keep their number, like payment_cards_number_key does
+        CARD_NUMBER("card_number_directory", "number", "Card number", "payment_cards_number_key",
+                "SELECT EXISTS (SELECT 1 FROM payment_card_numbers WHERE number = :key)");
+
+        private final String table;
+        private final String column;
+        private final String label;
+        private final String constraint;
+        private final String takenSql;
+
+        Entry(String table, String column, String label, String constraint, String takenSql) {
+            this.table = table;
+            this.column = column;
+            this.label = label;
+            this.constraint = constraint;
+            this.takenSql = takenSql;
+        }
+    }
+
+    private record Reservation(int shard, boolean created) {
+    }
+
+    /**
+     * A locked directory entry and the shard it points to. Released with the surrounding
+     * transaction when there is one, otherwise by the caller once the write returns.
+     */
+    public final class Lease {
+
+        private final Connection connection;
+        private final int shard;
+        private final String resource;
+        private final boolean reused;
+
+        private Lease(Connection connection, int shard, String resource, boolean reused) {
+            this.connection = connection;
+            this.shard = shard;
+            this.resource = resource;
+            this.reused = reused;
+        }
+
+        public int shard() {
+            return shard;
+        }
+
+        /**
+         * Ends the directory transaction with the current transaction, committed only if
+         * that one commits. False if there is no transaction to wait for.
+         */
+        public boolean bindToTransaction() {
+            if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                return false;
+            }
+            if (reused) {
+                return true;
+            }
+            Map<String, Lease> held = heldLeases();
+            if (held.isEmpty()) {
+                held = new HashMap<>();
+                TransactionSynchronizationManager.bindResource(ShardDirectory.this, held);
+            }
+            held.put(resource, this);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(ShardDirectory.this);
+                    release(status == STATUS_COMMITTED);
+                }
+            });
+            return true;
+        }
+
+        public void release(boolean commit) {
+            ShardDirectory.release(connection, commit);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.innowise.userservice.datasource;
+
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Runs listings on every shard. Each shard gets its own read-only transaction, the
+ * query has to return plain results (DTOs, counts) since its persistence context is
+ * closed afterwards. Without sharding the query runs once, in the caller's transaction.
+ * With virtual threads each shard query gets a thread of its own, concurrent listings
+ * then wait on the shard pools rather than on a fixed thread per shard.
+ */
+public class ShardFanOut implements AutoCloseable {
+
+    private final int shards;
+    private final TransactionTemplate readOnlyTransaction;
+    private final TransactionTemplate newReadOnlyTransaction;
+    private final ExecutorService executor;
+
+    private ShardFanOut(int shards, PlatformTransactionManager transactionManager, boolean virtualThreads) {
+        this.shards = shards;
+        if (transactionManager == null) {
+            this.readOnlyTransaction = null;
+            this.newReadOnlyTransaction = null;
+            this.executor = null;
+            return;
+        }
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.newReadOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.newReadOnlyTransaction.setReadOnly(true);
+        this.newReadOnlyTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.executor = virtualThreads
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(shards);
+    }
+
+    public static ShardFanOut sharded(ShardSet shards, PlatformTransactionManager transactionManager,
+                                      boolean virtualThreads) {
+        return new ShardFanOut(shards.count(), transactionManager, virtualThreads);
+    }
+
+    public static ShardFanOut singleDatabase() {
+        return new ShardFanOut(1, null, false);
+    }
+
+    public boolean isSharded() {
+        return executor != null;
+    }
+
+    public int shardCount() {
+        return shards;
+    }
+
+    /**
+     * Runs the query on all shards in parallel and returns the results in shard order.
+     */
+    public <T> List<T> onEachShard(Supplier<T> query) {
+        if (!isSharded()) {
+            return List.of(query.get());
+        }
+
+        List<CompletableFuture<T>> results = new ArrayList<>(shards);
+        for (int shard = 0; shard < shards; shard++) {
+            int target = shard;
+            results.add(CompletableFuture.supplyAsync(() -> readOnlyTransaction.execute(status ->
+                    ShardContext.callOn(target, query)), executor));
+        }
+        try {
+            return results.stream().map(CompletableFuture::join).toList();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Runs the action on one shard after the other on the calling thread, for results
+     * that are streamed rather than collected.
+     */
+    public void forEachShard(Runnable action) {
+        if (!isSharded()) {
+            action.run();
+            return;
+        }
+        for (int shard = 0; shard < shards; shard++) {
+            int target = shard;
+            newReadOnlyTransaction.executeWithoutResult(status -> ShardContext.callOn(target, () -> {
+                action.run();
+                return null;
+            }));
+        }
+    }
+
+    /**
+     * Merges per-shard results that are each sorted by {@code order} and keeps the first
+     * {@code limit}. Rows of one shard keep the order the database returned them in.
+     */
+    public static <T> List<T> merge(List<List<T>> sortedRuns, Comparator<? super T> order, int limit) {
+        PriorityQueue<Run<T>> heads = new PriorityQueue<>((a, b) -> order.compare(a.head(), b.head()));
+        for (List<T> run : sortedRuns) {
+            Iterator<T> rows = run.iterator();
+            if (rows.hasNext()) {
+                heads.add(new Run<>(rows.next(), rows));
+            }
+        }
+
+        List<T> merged = new ArrayList<>(limit);
+        while (merged.size() < limit && !heads.isEmpty()) {
+            Run<T> run = heads.poll();
+            merged.add(run.head());
+            if (run.rest().hasNext()) {
+                heads.add(new Run<>(run.rest().next(), run.rest()));
+            }
+        }
+        return merged;
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private record Run<T>(T head, Iterator<T> rest) {
+    }
+}
@@ -0,0 +1,16 @@
+package com.innowise.userservice.datasource;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks the repository parameter that decides the shard of the call: a user id, the id
+ * of one of their cards (cards live on the owner's shard and share its id residue), or
+ * an email, which is looked up in the shard directory.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ShardKey {
+}
@@ -0,0 +1,36 @@
+package com.innowise.userservice.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Opens connections on the shard of {@link ShardContext}. Calls that name no shard go
+ * to shard 0, which is then bound to their transaction like any other shard. Has to sit
+ * behind a LazyConnectionDataSourceProxy so the lookup runs on the first statement,
+ * inside the repository call that set the shard.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final int DEFAULT_SHARD = 0;
+
+    public ShardRoutingDataSource(ShardSet shards) {
+        Map<Object, Object> targets = new HashMap<>();
+        for (int shard = 0; shard < shards.count(); shard++) {
+            targets.put(shard, shards.dataSource(shard));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(shards.dataSource(DEFAULT_SHARD));
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Integer shard = ShardContext.current();
+        if (shard == null) {
+            ShardContext.bind(DEFAULT_SHARD);
+            return DEFAULT_SHARD;
+        }
+        return shard;
+    }
+}
@@ -0,0 +1,125 @@
+package com.innowise.userservice.datasource;
+
+import com.innowise.userservice.dto.card.CardRequestDto;
+import com.innowise.userservice.entity.Card;
+import com.innowise.userservice.entity.User;
+import lombok.NonNull;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.ListCrudRepository;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sets the shard around repository calls. The shard comes from the {@link ShardKey}
+ * parameter, for the inherited CRUD methods from the id or the saved entity. Calls
+ * without a key run on shard 0; listings across all shards go through {@link ShardFanOut}.
+ */
+public class ShardRoutingInterceptor implements MethodInterceptor {
+
+    private static final int NONE = -1;
+
+    private final ShardSet shards;
+    private final ShardDirectory directory;
+    private final Map<Method, RoutedParameters> parameters = new ConcurrentHashMap<>();
+
+    public ShardRoutingInterceptor(ShardSet shards, ShardDirectory directory) {
+        this.shards = shards;
+        this.directory = directory;
+    }
+
+    @Override
+    public Object invoke(@NonNull MethodInvocation invocation) throws Throwable {
+        Route route = route(invocation.getMethod(), invocation.getArguments());
+        if (route == null) {
+            return invocation.proceed();
+        }
+
+        // Without a surrounding transaction the repository call is the whole write
+        ShardDirectory.Lease lease = route.lease();
+        boolean releaseHere = lease != null && !lease.bindToTransaction();
+        boolean completed = false;
+        Integer previous = ShardContext.enter(route.shard());
+        try {
+            Object result = invocation.proceed();
+            completed = true;
+            return result;
+        } finally {
+            ShardContext.restore(previous);
+            if (releaseHere) {
+                lease.release(completed);
+            }
+        }
+    }
+
+    private Route route(Method method, Object[] arguments) {
+        RoutedParameters routed = parameters.computeIfAbsent(method, RoutedParameters::of);
+
+        if (routed.shardKey() != NONE) {
+            int shard = shardOf(arguments[routed.shardKey()]);
+            if (routed.directoryEmail() != NONE) {
+                return new Route(shard, directory.claim((String) arguments[routed.directoryEmail()], shard));
+            }
+            if (routed.directoryCardNumber() != NONE) {
+                CardRequestDto card = (CardRequestDto) arguments[routed.directoryCardNumber()];
+                return new Route(shard, directory.claimCardNumber(card.number(), shard));
+            }
+            return new Route(shard, null);
+        }
+
+        Class<?> declaringClass = method.getDeclaringClass();
+        if (arguments.length == 1
+                && (declaringClass == CrudRepository.class || declaringClass == ListCrudRepository.class)) {
+            return switch (arguments[0]) {
+                case Long id -> new Route(shards.shardOf(id), null);
+                case User user when user.getId() != null -> new Route(shards.shardOf(user.getId()), null);
+                case User user -> {
+                    ShardDirectory.Lease lease = directory.place(user.getEmail());
+                    yield new Route(lease.shard(), lease);
+                }
+                case Card card when card.getUser() != null && card.getUser().getId() != null ->
+                        new Route(shards.shardOf(card.getUser().getId()), null);
+                case null, default -> null;
+            };
+        }
+        return null;
+    }
+
+    private int shardOf(Object key) {
+        return switch (key) {
+            case Long id -> shards.shardOf(id);
+            case String email -> directory.find(email).orElse(ShardRoutingDataSource.DEFAULT_SHARD);
+            default -> throw new IllegalArgumentException("Unsupported shard key " + key);
+        };
+    }
+
+    // The directory lease is held by writes that place or claim an email or a card number
+    private record Route(int shard, ShardDirectory.Lease lease) {
+    }
+
+    private record RoutedParameters(int shardKey, int directoryEmail, int directoryCardNumber) {
+
+        static RoutedParameters of(Method method) {
+            Annotation[][] annotations = method.getParameterAnnotations();
+            int shardKey = NONE;
+            int directoryEmail = NONE;
+            int directoryCardNumber = NONE;
+            for (int i = 0; i < annotations.length; i++) {
+                for (Annotation annotation : annotations[i]) {
+                    if (annotation instanceof ShardKey) {
+                        shardKey = i;
+                    } else if (annotation instanceof DirectoryEmail) {
+                        directoryEmail = i;
+                    } else if (annotation instanceof DirectoryCardNumber) {
+                        directoryCardNumber = i;
+                    }
+                }
+            }
+            return new RoutedParameters(shardKey, directoryEmail, directoryCardNumber);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.innowise.userservice.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+/**
+ * The shard databases, in configuration order. Shard {@code s} of {@code n} hands out
+ * user and card ids with {@code id % n == s}, so an id alone names its shard; the
+ * shard count is therefore fixed once data is written, changing it needs a rebalance.
+ */
+@Slf4j
+public class ShardSet implements AutoCloseable {
+
+    // Restarts each id sequence at the next free value of the shard's residue class.
+    // The advisory lock serializes instances starting at the same time
+    private static final String ALIGN_SEQUENCE = """
+            DO $$
+            DECLARE
+                used BIGINT;
+            BEGIN
+                PERFORM pg_advisory_xact_lock(hashtext('%1$s'));
+                SELECT GREATEST(last_value, (SELECT COALESCE(max(id), 0) FROM %2$s)) INTO used FROM %1$s;
+                ALTER SEQUENCE %1$s INCREMENT BY %3$d;
+                PERFORM setval('%1$s', used + 1 + ((%4$d - (used + 1)) %% %3$d + %3$d) %% %3$d, false);
+            END;
+            $$
+            """;
+
+    private final List<HikariDataSource> dataSources;
+
+    public ShardSet(List<HikariDataSource> dataSources) {
+        if (dataSources.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.dataSources = List.copyOf(dataSources);
+    }
+
+    public int count() {
+        return dataSources.size();
+    }
+
+    public List<HikariDataSource> dataSources() {
+        return dataSources;
+    }
+
+    public HikariDataSource dataSource(int shard) {
+        return dataSources.get(shard);
+    }
+
+    public int shardOf(long id) {
+        return (int) Math.floorMod(id, (long) dataSources.size());
+    }
+
+    /**
+     * Shard for a new user that has no directory entry yet.
+     */
+    public int placementOf(String email) {
+        return Math.floorMod(email.hashCode(), dataSources.size());
+    }
+
+    /**
+     * Makes the id sequences of a migrated shard hand out only ids of that shard.
+     */
+    public void alignSequences(int shard) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource(shard));
+        jdbcTemplate.execute(ALIGN_SEQUENCE.formatted("users_id_seq", "users", count(), shard));
+        jdbcTemplate.execute(ALIGN_SEQUENCE.formatted("payment_cards_id_seq", "payment_cards", count(), shard));
+        log.info("Shard {} of {} hands out ids {} mod {}", shard, count(), shard, count());
+    }
+
+    @Override
+    public void close() {
+        dataSources.forEach(HikariDataSource::close);
+    }
+}
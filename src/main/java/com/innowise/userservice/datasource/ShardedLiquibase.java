@@ -0,0 +1,27 @@
+package com.innowise.userservice.datasource;
+
+import liquibase.exception.LiquibaseException;
+import liquibase.integration.spring.SpringLiquibase;
+
+/**
+ * Runs the changelog on every shard, then aligns the shard's id sequences. Being a
+ * SpringLiquibase it replaces Boot's single-datasource migration, and JPA still waits
+ * for it before validating the schema.
+ */
+public class ShardedLiquibase extends SpringLiquibase {
+
+    private final ShardSet shards;
+
+    public ShardedLiquibase(ShardSet shards) {
+        this.shards = shards;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws LiquibaseException {
+        for (int shard = 0; shard < shards.count(); shard++) {
+            setDataSource(shards.dataSource(shard));
+            super.afterPropertiesSet();
+            shards.alignSequences(shard);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.innowise.userservice.dto;
+
+/**
+ * How the total of a paged listing is computed.
+ */
+public enum CountMode {
+    /** count(*) with the same filters as the page */
+    EXACT,
+    /** planner statistics (pg_class.reltuples), only for unfiltered listings */
+    ESTIMATED,
+    /** no total, has-next from a size + 1 fetch */
+    NONE
+}
@@ -0,0 +1,17 @@
+package com.innowise.userservice.dto;
+
+import lombok.Builder;
+
+import java.util.List;
+
+/**
+ * Keyset page: no total count, only an opaque token pointing after the last row.
+ */
+@Builder
+public record CursorPageResponseDto<T>(
+        List<T> content,
+        int size,
+        boolean hasNext,
+        String nextCursor
+) {
+}
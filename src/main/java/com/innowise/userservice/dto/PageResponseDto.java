@@ -0,0 +1,22 @@
+package com.innowise.userservice.dto;
+
+import lombok.Builder;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Offset page whose totals depend on the requested {@link CountMode}:
+ * totalElements/totalPages are null when no total was computed.
+ */
+@Builder
+public record PageResponseDto<T>(
+        List<T> content,
+        int number,
+        int size,
+        boolean hasNext,
+        Long totalElements,
+        Integer totalPages,
+        CountMode countMode
+) implements Serializable {
+}
@@ -0,0 +1,9 @@
+package com.innowise.userservice.dto.card;
+
+import java.util.List;
+
+/**
+ * One batch of the expiry sweep: how many cards were deactivated and their owners, each once.
+ */
+public record ExpiredCardsDto(int deactivated, List<Long> userIds) {
+}
@@ -0,0 +1,11 @@
+package com.innowise.userservice.dto.card;
+
+/**
+ * Card row returned by a write together with the id of its owner,
+ * so the owner's read model can be refreshed without another lookup.
+ */
+public record OwnedCardDto(
+        Long userId,
+        CardResponseDto card
+) {
+}
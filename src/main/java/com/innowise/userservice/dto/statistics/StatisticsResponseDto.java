@@ -0,0 +1,20 @@
+package com.innowise.userservice.dto.statistics;
+
+import lombok.Builder;
+
+import java.util.Map;
+
+/**
+ * Totals over live users and their cards. usersByCardCount maps a number of cards
+ * (0 to 5) to the number of users holding that many.
+ */
+@Builder
+public record StatisticsResponseDto(
+        Long totalUsers,
+        Long activeUsers,
+        Long totalCards,
+        Long activeCards,
+        Long activeCardsExpiringThisMonth,
+        Map<Integer, Long> usersByCardCount
+) {
+}
@@ -0,0 +1,31 @@
+package com.innowise.userservice.dto.user;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.innowise.userservice.dto.card.CardResponseDto;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Body of a user read shaped by {@link UserView}: what was not asked for is null and
+ * left out. Every other user response keeps its null properties.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record SparseUserResponseDto(
+        Long id,
+        String name,
+        String surname,
+        LocalDate birthDate,
+        String email,
+        Boolean active,
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt,
+        List<CardResponseDto> cards
+) {
+
+    static SparseUserResponseDto of(UserResponseDto user) {
+        return new SparseUserResponseDto(user.id(), user.name(), user.surname(), user.birthDate(), user.email(),
+                user.active(), user.createdAt(), user.updatedAt(), user.cards());
+    }
+}
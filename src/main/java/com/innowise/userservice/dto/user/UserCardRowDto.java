@@ -0,0 +1,25 @@
+package com.innowise.userservice.dto.user;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Flat user + card row produced by the export cursor.
+ * Card columns are null for users without cards.
+ */
+public record UserCardRowDto(
+        Long userId,
+        String name,
+        String surname,
+        LocalDate birthDate,
+        String email,
+        Boolean active,
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt,
+        Long cardId,
+        String cardNumber,
+        String cardHolder,
+        LocalDate cardExpirationDate,
+        Boolean cardActive
+) {
+}
@@ -0,0 +1,92 @@
+package com.innowise.userservice.dto.user;
+
+import com.innowise.userservice.exception.InvalidFieldsException;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Shape of a single user read from the {@code fields} and {@code include} query parameters.
+ * Without either the full document with cards is served, as before. Cards are only
+ * rendered when asked for with {@code include=cards}, so a lean read never touches
+ * payment_cards.
+ *
+ * @param fields scalar fields to render, empty for all of them
+ */
+public record UserView(Set<String> fields, boolean includeCards) {
+
+    public static final UserView FULL = new UserView(Set.of(), true);
+
+    // Every scalar field, what the lean projection holds
+    public static final UserView SUMMARY = new UserView(Set.of(), false);
+
+    public static final String CARDS = "cards";
+
+    private static final Set<String> SCALAR_FIELDS = Set.of(
+            "id", "name", "surname", "birthDate", "email", "active", "createdAt", "updatedAt");
+
+    public static UserView of(String fields, String include) {
+        if (fields == null && include == null) {
+            return FULL;
+        }
+        Set<String> requested = split(fields);
+        Set<String> unknown = requested.stream()
+                .filter(field -> !SCALAR_FIELDS.contains(field))
+                .collect(Collectors.toSet());
+        if (!unknown.isEmpty()) {
+            throw new InvalidFieldsException("Unknown fields " + unknown + ", supported are " + SCALAR_FIELDS);
+        }
+
+        Set<String> included = split(include);
+        if (!included.isEmpty() && !included.equals(Set.of(CARDS))) {
+            throw new InvalidFieldsException("Only " + CARDS + " can be included");
+        }
+        return new UserView(requested, !included.isEmpty());
+    }
+
+    /**
+     * Nulls whatever was not asked for.
+     */
+    public UserResponseDto shape(UserResponseDto user) {
+        if (isFull()) {
+            return user;
+        }
+        return new UserResponseDto(
+                rendered("id") ? user.id() : null,
+                rendered("name") ? user.name() : null,
+                rendered("surname") ? user.surname() : null,
+                rendered("birthDate") ? user.birthDate() : null,
+                rendered("email") ? user.email() : null,
+                rendered("active") ? user.active() : null,
+                rendered("createdAt") ? user.createdAt() : null,
+                rendered("updatedAt") ? user.updatedAt() : null,
+                includeCards ? user.cards() : null);
+    }
+
+    /**
+     * Response body of this view: the document as it is, or a shaped one that leaves out
+     * the nulled properties.
+     */
+    public Object render(UserResponseDto user) {
+        return isFull() ? user : SparseUserResponseDto.of(shape(user));
+    }
+
+    private boolean isFull() {
+        return fields.isEmpty() && includeCards;
+    }
+
+    private boolean rendered(String field) {
+        return fields.isEmpty() || fields.contains(field);
+    }
+
+    private static Set<String> split(String value) {
+        if (value == null || value.isBlank()) {
+            return Set.of();
+        }
+        return Arrays.stream(value.split(","))
+                .map(String::trim)
+                .filter(token -> !token.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+    }
+}
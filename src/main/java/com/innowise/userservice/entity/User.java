@@ -3,6 +3,8 @@ package com.innowise.userservice.entity;
 import com.innowise.userservice.exception.CardLimitExceededException;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.SQLRestriction;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
@@ -14,6 +16,7 @@ import java.util.List;
 
 @Entity
 @Table(name = "users")
+@SQLRestriction("deleted_at IS NULL") // Tombstoned users are invisible to every entity query
 @EntityListeners(AuditingEntityListener.class)
 @Getter
 @Setter
@@ -49,12 +52,17 @@ public class User {
     @Column(name = "updated_at", nullable = false)
     private LocalDateTime updatedAt;
 
+    // Only set by UserRepository.tombstoneUser
+    @Column(name = "deleted_at", insertable = false, updatable = false)
+    private LocalDateTime deletedAt;
+
     @OneToMany(
             mappedBy = "user",
             cascade = CascadeType.ALL,
             orphanRemoval = true,
             fetch = FetchType.LAZY
     )
+    @BatchSize(size = 100) // Cards of a whole page (max size 100) are loaded with one IN query
     @Builder.Default
     private List<Card> cards = new ArrayList<>();
 
@@ -0,0 +1,7 @@
+package com.innowise.userservice.exception;
+
+public class InvalidFieldsException extends RuntimeException {
+    public InvalidFieldsException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,86 @@
+package com.innowise.userservice.grpc;
+
+import io.grpc.BindableService;
+import io.grpc.Server;
+import io.grpc.ServerInterceptors;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Netty gRPC server next to the servlet container, started and stopped with the context.
+ * On shutdown running calls get the grace period to finish before they are cancelled.
+ * With virtual threads every call runs on one of its own instead of gRPC's cached pool.
+ */
+@Slf4j
+public class GrpcServer implements SmartLifecycle {
+
+    private final Server server;
+    private final ExecutorService executor;
+    private final Duration shutdownGracePeriod;
+    private volatile boolean running;
+
+    public GrpcServer(int port, List<BindableService> services, ServiceKeyInterceptor serviceKeyInterceptor,
+                      Duration shutdownGracePeriod, boolean virtualThreads) {
+        if (port < 0) {
+            throw new IllegalArgumentException("port must not be negative");
+        }
+        NettyServerBuilder builder = NettyServerBuilder.forPort(port);
+        services.forEach(service -> builder.addService(ServerInterceptors.intercept(service, serviceKeyInterceptor)));
+        this.executor = virtualThreads ? Executors.newVirtualThreadPerTaskExecutor() : null;
+        if (executor != null) {
+            builder.executor(executor);
+        }
+        this.server = builder.build();
+        this.shutdownGracePeriod = shutdownGracePeriod;
+    }
+
+    /**
+     * The bound port, the actual one when configured with 0.
+     */
+    public int getPort() {
+        return server.getPort();
+    }
+
+    @Override
+    public void start() {
+        try {
+            server.start();
+        } catch (IOException e) {
+            throw new UncheckedIOException("gRPC server failed to start", e);
+        }
+        running = true;
+        log.info("gRPC server started on port {}", server.getPort());
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        server.shutdown();
+        try {
+            if (!server.awaitTermination(shutdownGracePeriod.toMillis(), TimeUnit.MILLISECONDS)) {
+                server.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            server.shutdownNow();
+            Thread.currentThread().interrupt();
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
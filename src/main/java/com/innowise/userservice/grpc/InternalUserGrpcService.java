@@ -0,0 +1,151 @@
+package com.innowise.userservice.grpc;
+
+import com.innowise.userservice.dto.user.UserRequestDto;
+import com.innowise.userservice.dto.user.UserResponseDto;
+import com.innowise.userservice.exception.BusinessException;
+import com.innowise.userservice.exception.ResourceNotFoundException;
+import com.innowise.userservice.grpc.v1.BatchGetUsersResponse;
+import com.innowise.userservice.grpc.v1.CreateUserRequest;
+import com.innowise.userservice.grpc.v1.GetUserByEmailRequest;
+import com.innowise.userservice.grpc.v1.GetUserRequest;
+import com.innowise.userservice.grpc.v1.InternalUserServiceGrpc;
+import com.innowise.userservice.grpc.v1.User;
+import com.innowise.userservice.service.UserService;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.StreamObserver;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.DateTimeException;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * gRPC counterpart of {@link com.innowise.userservice.controller.InternalUserController}.
+ * Goes through the same {@link UserService}, so lookups share its caches and its routing.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class InternalUserGrpcService extends InternalUserServiceGrpc.InternalUserServiceImplBase {
+
+    private final UserService userService;
+    private final Validator validator;
+
+    @Override
+    public void getUser(GetUserRequest request, StreamObserver<User> responseObserver) {
+        log.debug("gRPC call: getting user by id: {}", request.getId());
+        try {
+            responseObserver.onNext(UserMessages.toUser(findUser(request)));
+            responseObserver.onCompleted();
+        } catch (RuntimeException e) {
+            responseObserver.onError(toStatus(e));
+        }
+    }
+
+    @Override
+    public void getUserByEmail(GetUserByEmailRequest request, StreamObserver<User> responseObserver) {
+        log.debug("gRPC call: getting user by email: {}", request.getEmail());
+        try {
+            UserResponseDto user = request.getIncludeCards()
+                    ? userService.findUserByEmail(request.getEmail())
+                    : userService.findUserSummaryByEmail(request.getEmail());
+            responseObserver.onNext(UserMessages.toUser(user));
+            responseObserver.onCompleted();
+        } catch (RuntimeException e) {
+            responseObserver.onError(toStatus(e));
+        }
+    }
+
+    /**
+     * Answers every request as it arrives, so a caller streaming ids over one HTTP/2 stream
+     * pays the call setup once. A missing user is an entry of the stream, anything else
+     * ends it.
+     */
+    @Override
+    public StreamObserver<GetUserRequest> batchGetUsers(StreamObserver<BatchGetUsersResponse> responseObserver) {
+        return new StreamObserver<>() {
+
+            private boolean failed;
+
+            @Override
+            public void onNext(GetUserRequest request) {
+                if (failed) {
+                    return;
+                }
+                BatchGetUsersResponse.Builder response = BatchGetUsersResponse.newBuilder().setId(request.getId());
+                try {
+                    response.setUser(UserMessages.toUser(findUser(request)));
+                } catch (ResourceNotFoundException e) {
+                    response.setNotFound(e.getMessage());
+                } catch (RuntimeException e) {
+                    failed = true;
+                    responseObserver.onError(toStatus(e));
+                    return;
+                }
+                responseObserver.onNext(response.build());
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                log.debug("gRPC batch lookup cancelled by the caller: {}", t.getMessage());
+            }
+
+            @Override
+            public void onCompleted() {
+                if (!failed) {
+                    responseObserver.onCompleted();
+                }
+            }
+        };
+    }
+
+    @Override
+    public void createUser(CreateUserRequest request, StreamObserver<User> responseObserver) {
+        log.info("gRPC call: creating user with email: {}", request.getEmail());
+        try {
+            UserRequestDto userRequestDto = UserMessages.toUserRequestDto(request);
+            Set<ConstraintViolation<UserRequestDto>> violations = validator.validate(userRequestDto);
+            if (!violations.isEmpty()) {
+                throw Status.INVALID_ARGUMENT
+                        .withDescription(violations.stream()
+                                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                                .sorted()
+                                .collect(Collectors.joining(", ")))
+                        .asRuntimeException();
+            }
+            responseObserver.onNext(UserMessages.toUser(userService.saveUser(userRequestDto)));
+            responseObserver.onCompleted();
+        } catch (RuntimeException e) {
+            responseObserver.onError(toStatus(e));
+        }
+    }
+
+    private UserResponseDto findUser(GetUserRequest request) {
+        return request.getIncludeCards()
+                ? userService.findUserById(request.getId())
+                : userService.findUserSummaryById(request.getId());
+    }
+
+    // The status codes of the REST handlers in GlobalExceptionHandler
+    private StatusRuntimeException toStatus(RuntimeException e) {
+        if (e instanceof StatusRuntimeException status) {
+            return status;
+        }
+        if (e instanceof ResourceNotFoundException) {
+            return Status.NOT_FOUND.withDescription(e.getMessage()).asRuntimeException();
+        }
+        if (e instanceof BusinessException) {
+            return Status.ALREADY_EXISTS.withDescription(e.getMessage()).asRuntimeException();
+        }
+        if (e instanceof DateTimeException) {
+            return Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException();
+        }
+        log.error("Unexpected error in gRPC call", e);
+        return Status.INTERNAL.withDescription("An unexpected error occurred").asRuntimeException();
+    }
+}
@@ -0,0 +1,35 @@
+package com.innowise.userservice.grpc;
+
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+
+/**
+ * The gRPC side of {@link com.innowise.userservice.security.SecurityKeyFilter}: every call
+ * must carry the service key, there are no user facing methods.
+ */
+public class ServiceKeyInterceptor implements ServerInterceptor {
+
+    public static final Metadata.Key<String> SERVICE_KEY =
+            Metadata.Key.of("x-service-key", Metadata.ASCII_STRING_MARSHALLER);
+
+    private final String expectedKey;
+
+    public ServiceKeyInterceptor(String expectedKey) {
+        this.expectedKey = expectedKey;
+    }
+
+    @Override
+    public <Q, R> ServerCall.Listener<Q> interceptCall(ServerCall<Q, R> call, Metadata headers,
+                                                        ServerCallHandler<Q, R> next) {
+        String serviceKey = headers.get(SERVICE_KEY);
+        if (serviceKey == null || !serviceKey.equals(expectedKey)) {
+            call.close(Status.PERMISSION_DENIED.withDescription("Invalid service key"), new Metadata());
+            return new ServerCall.Listener<>() {
+            };
+        }
+        return next.startCall(call, headers);
+    }
+}
@@ -0,0 +1,90 @@
+package com.innowise.userservice.grpc;
+
+import com.google.protobuf.Timestamp;
+import com.innowise.userservice.dto.card.CardResponseDto;
+import com.innowise.userservice.dto.user.UserRequestDto;
+import com.innowise.userservice.dto.user.UserResponseDto;
+import com.innowise.userservice.grpc.v1.Card;
+import com.innowise.userservice.grpc.v1.CreateUserRequest;
+import com.innowise.userservice.grpc.v1.Date;
+import com.innowise.userservice.grpc.v1.User;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Converts between the service DTOs and the protobuf messages. Timestamps are local date
+ * times of the service zone, as auditing writes them, and go out as instants.
+ */
+final class UserMessages {
+
+    private UserMessages() {
+    }
+
+    static User toUser(UserResponseDto user) {
+        User.Builder message = User.newBuilder()
+                .setId(user.id())
+                .setName(user.name())
+                .setSurname(user.surname())
+                .setEmail(user.email())
+                .setActive(user.active());
+        if (user.birthDate() != null) {
+            message.setBirthDate(toDate(user.birthDate()));
+        }
+        if (user.createdAt() != null) {
+            message.setCreatedAt(toTimestamp(user.createdAt()));
+        }
+        if (user.updatedAt() != null) {
+            message.setUpdatedAt(toTimestamp(user.updatedAt()));
+        }
+        // Null for the lean projection, empty for a user without cards
+        if (user.cards() != null) {
+            user.cards().forEach(card -> message.addCards(toCard(card)));
+        }
+        return message.build();
+    }
+
+    static UserRequestDto toUserRequestDto(CreateUserRequest request) {
+        return UserRequestDto.builder()
+                .name(request.getName())
+                .surname(request.getSurname())
+                .birthDate(request.hasBirthDate() ? toLocalDate(request.getBirthDate()) : null)
+                .email(request.getEmail())
+                .active(request.getActive())
+                .build();
+    }
+
+    private static Card toCard(CardResponseDto card) {
+        Card.Builder message = Card.newBuilder()
+                .setId(card.id())
+                .setNumber(card.number())
+                .setHolder(card.holder())
+                .setActive(card.active());
+        if (card.expirationDate() != null) {
+            message.setExpirationDate(toDate(card.expirationDate()));
+        }
+        return message.build();
+    }
+
+    private static Date toDate(LocalDate date) {
+        return Date.newBuilder()
+                .setYear(date.getYear())
+                .setMonth(date.getMonthValue())
+                .setDay(date.getDayOfMonth())
+                .build();
+    }
+
+    private static LocalDate toLocalDate(Date date) {
+        return LocalDate.of(date.getYear(), date.getMonth(), date.getDay());
+    }
+
+    private static Timestamp toTimestamp(LocalDateTime dateTime) {
+        Instant instant = dateTime.atZone(ZoneId.systemDefault()).toInstant();
+        return Timestamp.newBuilder()
+                .setSeconds(instant.getEpochSecond())
+                .setNanos(instant.getNano())
+                .build();
+    }
+}
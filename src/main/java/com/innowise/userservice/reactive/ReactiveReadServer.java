@@ -0,0 +1,80 @@
+package com.innowise.userservice.reactive;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.time.Duration;
+
+/**
+ * Reactor Netty server of the reactive read path next to the servlet container, started
+ * and stopped with the context. The servlet app stays the main one: WebFlux is only
+ * wired into this server, JSON written by the application's ObjectMapper.
+ */
+@Slf4j
+public class ReactiveReadServer implements SmartLifecycle {
+
+    private final int port;
+    private final ReactorHttpHandlerAdapter handlerAdapter;
+    private final Duration shutdownGracePeriod;
+    private volatile DisposableServer server;
+
+    public ReactiveReadServer(int port, RouterFunction<ServerResponse> routes, ObjectMapper objectMapper,
+                              Duration shutdownGracePeriod) {
+        if (port < 0) {
+            throw new IllegalArgumentException("port must not be negative");
+        }
+        HandlerStrategies strategies = HandlerStrategies.builder()
+                .codecs(codecs -> {
+                    codecs.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper));
+                    codecs.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper));
+                })
+                .build();
+        this.port = port;
+        this.handlerAdapter = new ReactorHttpHandlerAdapter(RouterFunctions.toHttpHandler(routes, strategies));
+        this.shutdownGracePeriod = shutdownGracePeriod;
+    }
+
+    /**
+     * The bound port, the actual one when configured with 0.
+     */
+    public int getPort() {
+        DisposableServer current = server;
+        if (current == null) {
+            throw new IllegalStateException("Reactive read server is not running");
+        }
+        return current.port();
+    }
+
+    @Override
+    public void start() {
+        server = HttpServer.create()
+                .port(port)
+                .handle(handlerAdapter)
+                .bindNow();
+        log.info("Reactive read server started on port {}", server.port());
+    }
+
+    @Override
+    public void stop() {
+        DisposableServer current = server;
+        server = null;
+        if (current != null) {
+            current.disposeNow(shutdownGracePeriod);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return server != null;
+    }
+}
@@ -0,0 +1,116 @@
+package com.innowise.userservice.reactive;
+
+import com.innowise.userservice.dto.ErrorResponseDto;
+import com.innowise.userservice.dto.user.UserResponseDto;
+import com.innowise.userservice.dto.user.UserView;
+import com.innowise.userservice.exception.InvalidFieldsException;
+import com.innowise.userservice.exception.ResourceNotFoundException;
+import com.innowise.userservice.service.ReactiveUserService;
+import com.innowise.userservice.service.etag.EntityTags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * The lookups of InternalUserController on the reactive read path: same parameters,
+ * headers and error bodies, so a caller can switch ports without other changes.
+ */
+@Slf4j
+public class ReactiveUserHandler {
+
+    private final ReactiveUserService userService;
+    private final EntityTags entityTags;
+    private final CacheControl cacheControl;
+
+    public ReactiveUserHandler(ReactiveUserService userService, EntityTags entityTags, Duration internalMaxAge) {
+        this.userService = userService;
+        this.entityTags = entityTags;
+        this.cacheControl = CacheControl.maxAge(internalMaxAge).cachePrivate();
+    }
+
+    public Mono<ServerResponse> getUserById(ServerRequest request) {
+        // Deferred: a bad parameter fails the Mono and reaches the error handler of the routes
+        return Mono.defer(() -> findUserById(request));
+    }
+
+    public Mono<ServerResponse> getUserByEmail(ServerRequest request) {
+        return Mono.defer(() -> findUserByEmail(request));
+    }
+
+    private Mono<ServerResponse> findUserById(ServerRequest request) {
+        Long userId = Long.valueOf(request.pathVariable("userId"));
+        log.debug("Reactive internal call: getting user by id: {}", userId);
+        UserView view = view(request);
+        Mono<UserResponseDto> user = view.includeCards()
+                ? userService.findUserById(userId)
+                : userService.findUserSummaryById(userId);
+        return user.map(view::render).flatMap(body -> {
+            // Weak like the servlet path, the body is encoded as negotiated
+            String etag = entityTags.weakOf(body);
+            return request.checkNotModified(etag)
+                    .flatMap(notModified -> ServerResponse.from(notModified)
+                            .cacheControl(cacheControl)
+                            .varyBy(HttpHeaders.ACCEPT)
+                            .build())
+                    .switchIfEmpty(Mono.defer(() -> ServerResponse.ok()
+                            .cacheControl(cacheControl)
+                            .varyBy(HttpHeaders.ACCEPT)
+                            .eTag(etag)
+                            .bodyValue(body)));
+        });
+    }
+
+    private Mono<ServerResponse> findUserByEmail(ServerRequest request) {
+        String email = request.queryParam("email")
+                .orElseThrow(() -> new ServerWebInputException("Required parameter 'email' is not present."));
+        log.debug("Reactive internal call: getting user by email: {}", email);
+        UserView view = view(request);
+        Mono<UserResponseDto> user = view.includeCards()
+                ? userService.findUserByEmail(email)
+                : userService.findUserSummaryByEmail(email);
+        return user.map(view::render).flatMap(body -> ServerResponse.ok().bodyValue(body));
+    }
+
+    /**
+     * Error bodies as GlobalExceptionHandler renders them.
+     */
+    public Mono<ServerResponse> error(Throwable e, ServerRequest request) {
+        HttpStatus status;
+        String message = e.getMessage();
+        if (e instanceof ResourceNotFoundException) {
+            status = HttpStatus.NOT_FOUND;
+            log.error("Resource not found: {}", message);
+        } else if (e instanceof InvalidFieldsException) {
+            status = HttpStatus.BAD_REQUEST;
+            log.error("Invalid fields: {}", message);
+        } else if (e instanceof ResponseStatusException statusException) {
+            status = HttpStatus.valueOf(statusException.getStatusCode().value());
+            message = statusException.getReason();
+            log.error("Invalid request: {}", message);
+        } else {
+            status = HttpStatus.INTERNAL_SERVER_ERROR;
+            message = "An unexpected error occurred. Please try again later.";
+            log.error("Unexpected error: {}", e.getMessage(), e);
+        }
+        return ServerResponse.status(status).bodyValue(ErrorResponseDto.builder()
+                .timestamp(LocalDateTime.now())
+                .status(status.value())
+                .error(status.getReasonPhrase())
+                .message(message)
+                .path(request.path())
+                .build());
+    }
+
+    private UserView view(ServerRequest request) {
+        return UserView.of(request.queryParam("fields").orElse(null), request.queryParam("include").orElse(null));
+    }
+}
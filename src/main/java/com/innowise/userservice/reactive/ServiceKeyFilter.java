@@ -0,0 +1,33 @@
+package com.innowise.userservice.reactive;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.server.HandlerFilterFunction;
+import org.springframework.web.reactive.function.server.HandlerFunction;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+/**
+ * The reactive side of {@link com.innowise.userservice.security.SecurityKeyFilter}, with
+ * the same 403 body: every route of the reactive read path is internal.
+ */
+public class ServiceKeyFilter implements HandlerFilterFunction<ServerResponse, ServerResponse> {
+
+    private final String expectedKey;
+
+    public ServiceKeyFilter(String expectedKey) {
+        this.expectedKey = expectedKey;
+    }
+
+    @Override
+    public Mono<ServerResponse> filter(ServerRequest request, HandlerFunction<ServerResponse> next) {
+        String serviceKey = request.headers().firstHeader("X-Service-Key");
+        if (serviceKey == null || !serviceKey.equals(expectedKey)) {
+            return ServerResponse.status(HttpStatus.FORBIDDEN)
+                    .bodyValue(Map.of("error", "Access Denied", "message", "Invalid service key"));
+        }
+        return next.handle(request);
+    }
+}
@@ -0,0 +1,16 @@
+package com.innowise.userservice.repository;
+
+import com.innowise.userservice.dto.card.ExpiredCardsDto;
+
+import java.time.LocalDate;
+
+public interface CardExpiryRepository {
+
+    /**
+     * Deactivates up to {@code batchSize} active cards that expired before {@code today}.
+     * Cards locked by a concurrent writer or another instance are skipped, so concurrent
+     * sweeps take disjoint batches, and so are cards whose owner is locked; those are left
+     * for a later call. Must be called inside a transaction.
+     */
+    ExpiredCardsDto deactivateExpiredCards(LocalDate today, int batchSize);
+}
@@ -0,0 +1,72 @@
+package com.innowise.userservice.repository;
+
+import com.innowise.userservice.dto.card.ExpiredCardsDto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.simple.JdbcClient;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class CardExpiryRepositoryImpl implements CardExpiryRepository {
+
+    // Oldest first, over idx_payment_cards_active_expiration
+    private static final String LOCK_EXPIRED_BATCH = """
+            SELECT id, user_id
+            FROM payment_cards
+            WHERE active = true AND expiration_date < :today
+            ORDER BY expiration_date
+            LIMIT :batchSize
+            FOR UPDATE SKIP LOCKED
+            """;
+
+    // Two sweeps never refresh the same owner, so they cannot deadlock on the read model
+    // locks. Owners held by a request or another sweep are skipped rather than waited for,
+    // their cards stay active and are picked up again by the next run
+    private static final String LOCK_OWNERS = """
+            SELECT id
+            FROM users
+            WHERE id IN (:userIds)
+            ORDER BY id
+            FOR NO KEY UPDATE SKIP LOCKED
+            """;
+
+    // user_id prunes the partitions
+    private static final String DEACTIVATE = """
+            UPDATE payment_cards
+            SET active = false, updated_at = now()
+            WHERE id IN (:ids) AND user_id IN (:userIds) AND active = true
+            """;
+
+    private final JdbcClient jdbcClient;
+
+    @Override
+    public ExpiredCardsDto deactivateExpiredCards(LocalDate today, int batchSize) {
+        List<Long> ids = new ArrayList<>();
+        List<Long> userIds = new ArrayList<>();
+        jdbcClient.sql(LOCK_EXPIRED_BATCH)
+                .param("today", today)
+                .param("batchSize", batchSize)
+                .query(rs -> {
+                    ids.add(rs.getLong("id"));
+                    userIds.add(rs.getLong("user_id"));
+                });
+        if (ids.isEmpty()) {
+            return new ExpiredCardsDto(0, List.of());
+        }
+
+        List<Long> owners = jdbcClient.sql(LOCK_OWNERS)
+                .param("userIds", userIds)
+                .query(Long.class)
+                .list();
+        if (owners.isEmpty()) {
+            return new ExpiredCardsDto(0, List.of());
+        }
+        int deactivated = jdbcClient.sql(DEACTIVATE)
+                .param("ids", ids)
+                .param("userIds", owners)
+                .update();
+        return new ExpiredCardsDto(deactivated, owners);
+    }
+}
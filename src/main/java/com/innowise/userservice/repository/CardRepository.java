@@ -1,11 +1,13 @@
 package com.innowise.userservice.repository;
 
+import com.innowise.userservice.datasource.ShardKey;
+import com.innowise.userservice.dto.card.CardResponseDto;
 import com.innowise.userservice.entity.Card;
 import com.innowise.userservice.entity.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -14,29 +16,41 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface CardRepository extends JpaRepository<Card,Long> {
+public interface CardRepository extends JpaRepository<Card,Long>, CardSlotRepository, CardUpdateRepository,
+        CardExpiryRepository {
 
-    List<Card> findByUserId(Long userId);
+    List<Card> findByUserId(@ShardKey Long userId);
 
     Optional<Card> findByNumber(String number);
 
-    int countByUserId(Long userId);
+    int countByUserId(@ShardKey Long userId);
 
-    // JPQL
-
-    @Query("SELECT c FROM Card c JOIN FETCH c.user WHERE c.active = :active")
-    Page<Card> findActiveCardsWithUser(@Param("active") Boolean active, Pageable pageable);
+    // existsById with the owner check of the card writes, cards of a tombstoned user are missing
+    @Query("SELECT count(c) > 0 FROM Card c WHERE c.id = :cardId AND c.user.deletedAt IS NULL")
+    boolean existsLiveCardById(@ShardKey @Param("cardId") Long cardId);
 
-    @Query("SELECT c FROM Card c WHERE LOWER(c.holder) LIKE LOWER(CONCAT('%', :holder, '%'))")
-    List<Card> findByHolderContaining(@Param("holder") String holder);
+    // JPQL
 
-    // Native sql
+    // Constructor expression: response records without managed Card entities
+    @Query("SELECT new com.innowise.userservice.dto.card.CardResponseDto(c.id, c.number, c.holder, " +
+            "c.expirationDate, c.active) FROM Card c WHERE c.user.id = :userId AND c.user.deletedAt IS NULL " +
+            "ORDER BY c.id")
+    List<CardResponseDto> findCardResponsesByUserId(@ShardKey @Param("userId") Long userId);
 
-    @Modifying(clearAutomatically = true)
-    @Query(value = "UPDATE payment_cards SET active = true WHERE id = :cardId", nativeQuery = true)
-    int activateCard(@Param("cardId") Long cardId);
+    // Cards of tombstoned users wait for the purger, the user restriction does not reach joins
+    @Query("SELECT c FROM Card c JOIN FETCH c.user u WHERE c.active = :active AND u.deletedAt IS NULL")
+    Page<Card> findActiveCardsWithUser(@Param("active") Boolean active, Pageable pageable);
 
-    @Modifying(clearAutomatically = true)
-    @Query(value = "UPDATE payment_cards SET active = false WHERE id = :cardId", nativeQuery = true)
-    int deactivateCard(@Param("cardId") Long cardId);
+    @Query("SELECT c FROM Card c JOIN FETCH c.user u " +
+            "WHERE c.active = :active AND c.id > :afterId AND u.deletedAt IS NULL ORDER BY c.id")
+    List<Card> findActiveCardsWithUserAfter(
+            @Param("active") Boolean active,
+            @Param("afterId") Long afterId,
+            Limit limit
+    );
+
+    // LOWER(holder) matches the idx_payment_cards_holder_trgm expression, so '%x%' is served by the trigram index
+    @Query("SELECT c FROM Card c WHERE LOWER(c.holder) LIKE LOWER(CONCAT('%', :holder, '%')) " +
+            "AND c.user.deletedAt IS NULL")
+    Page<Card> findByHolderContaining(@Param("holder") String holder, Pageable pageable);
 }
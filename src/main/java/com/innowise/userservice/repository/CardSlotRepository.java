@@ -0,0 +1,19 @@
+package com.innowise.userservice.repository;
+
+import com.innowise.userservice.datasource.DirectoryCardNumber;
+import com.innowise.userservice.datasource.ShardKey;
+import com.innowise.userservice.dto.card.CardRequestDto;
+import com.innowise.userservice.dto.card.CardResponseDto;
+
+import java.util.Optional;
+
+public interface CardSlotRepository {
+
+    /**
+     * Inserts the card into the first free slot (1..5) of the user in a single statement.
+     * Empty when the user does not exist, has no free slot, or a concurrent insert took
+     * the chosen slot first; the UNIQUE (user_id, card_slot) constraint is what enforces
+     * the limit, no user row is locked.
+     */
+    Optional<CardResponseDto> insertIntoFreeSlot(@ShardKey Long userId, @DirectoryCardNumber CardRequestDto card);
+}
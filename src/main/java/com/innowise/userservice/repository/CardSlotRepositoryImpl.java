@@ -0,0 +1,54 @@
+package com.innowise.userservice.repository;
+
+import com.innowise.userservice.dto.card.CardRequestDto;
+import com.innowise.userservice.dto.card.CardResponseDto;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.simple.JdbcClient;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+@RequiredArgsConstructor
+public class CardSlotRepositoryImpl implements CardSlotRepository {
+
+    private static final String INSERT_INTO_FREE_SLOT = """
+            INSERT INTO payment_cards (user_id, card_slot, number, holder, expiration_date, active, created_at, updated_at)
+            SELECT u.id, s.slot, :number, :holder, :expirationDate, COALESCE(CAST(:active AS boolean), true), now(), now()
+            FROM users u
+            CROSS JOIN generate_series(1, 5) AS s(slot)
+            WHERE u.id = :userId AND u.deleted_at IS NULL
+              AND NOT EXISTS (SELECT 1 FROM payment_cards c WHERE c.user_id = u.id AND c.card_slot = s.slot)
+            ORDER BY s.slot
+            LIMIT 1
+            ON CONFLICT (user_id, card_slot) DO NOTHING
+            RETURNING id, number, holder, expiration_date, active
+            """;
+
+    private final JdbcClient jdbcClient;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Optional<CardResponseDto> insertIntoFreeSlot(Long userId, CardRequestDto card) {
+        // Slots freed by pending JPA deletes must be visible to the NOT EXISTS check
+        entityManager.flush();
+
+        return jdbcClient.sql(INSERT_INTO_FREE_SLOT)
+                .param("userId", userId)
+                .param("number", card.number())
+                .param("holder", card.holder())
+                .param("expirationDate", card.expirationDate())
+                .param("active", card.active())
+                .query((rs, rowNum) -> CardResponseDto.builder()
+                        .id(rs.getLong("id"))
+                        .number(rs.getString("number"))
+                        .holder(rs.getString("holder"))
+                        .expirationDate(rs.getObject("expiration_date", LocalDate.class))
+                        .active(rs.getBoolean("active"))
+                        .build())
+                .optional();
+    }
+}
@@ -0,0 +1,42 @@
+package com.innowise.userservice.repository;
+
+import com.innowise.userservice.datasource.DirectoryCardNumber;
+import com.innowise.userservice.datasource.ShardKey;
+import com.innowise.userservice.dto.card.CardRequestDto;
+import com.innowise.userservice.dto.card.OwnedCardDto;
+
+import java.util.Optional;
+
+/**
+ * Card writes by id, each a single statement around the persistence context: pending
+ * changes are flushed first and the context is cleared afterwards, so a Card loaded
+ * earlier in the transaction is not served stale. Must be called inside a transaction.
+ */
+public interface CardUpdateRepository {
+
+    /**
+     * Updates the card in a single statement. With a non-null {@code ownerId} the
+     * ownership check is part of the WHERE clause, so empty means the card is missing
+     * or belongs to someone else; with {@code null} any card can be updated. Cards of a
+     * tombstoned user are treated as missing.
+     */
+    Optional<OwnedCardDto> updateCard(@ShardKey Long cardId, Long ownerId, @DirectoryCardNumber CardRequestDto card);
+
+    /**
+     * Activates the card and returns its owner. Empty means the card is missing, its owner
+     * is tombstoned or it is already active.
+     */
+    Optional<Long> activateCard(@ShardKey Long cardId);
+
+    /**
+     * Deactivates the card and returns its owner. Empty means the card is missing, its
+     * owner is tombstoned or it is already inactive.
+     */
+    Optional<Long> deactivateCard(@ShardKey Long cardId);
+
+    /**
+     * Deletes the card and returns its owner. Empty means the card is missing or its owner
+     * is tombstoned.
+     */
+    Optional<Long> deleteCardReturningUserId(@ShardKey Long cardId);
+}
@@ -0,0 +1,108 @@
+package com.innowise.userservice.repository;
+
+import com.innowise.userservice.dto.card.CardRequestDto;
+import com.innowise.userservice.dto.card.CardResponseDto;
+import com.innowise.userservice.dto.card.OwnedCardDto;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.simple.JdbcClient;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+@RequiredArgsConstructor
+public class CardUpdateRepositoryImpl implements CardUpdateRepository {
+
+    private static final String UPDATE_CARD = """
+            UPDATE payment_cards
+            SET number = :number, holder = :holder, expiration_date = :expirationDate,
+                active = COALESCE(CAST(:active AS boolean), active), updated_at = now()
+            WHERE id = :cardId AND user_id IN (SELECT id FROM users WHERE deleted_at IS NULL)
+            """;
+
+    private static final String RETURNING = """
+            RETURNING user_id, id, number, holder, expiration_date, active
+            """;
+
+    private static final String UPDATE_ANY_CARD = UPDATE_CARD + RETURNING;
+
+    private static final String UPDATE_OWNED_CARD = UPDATE_CARD + "  AND user_id = :ownerId\n" + RETURNING;
+
+    // RETURNING gives the owner in the same round trip
+    private static final String ACTIVATE_CARD = """
+            UPDATE payment_cards SET active = true, updated_at = now()
+            WHERE id = :cardId AND active = false AND user_id IN (SELECT id FROM users WHERE deleted_at IS NULL)
+            RETURNING user_id
+            """;
+
+    private static final String DEACTIVATE_CARD = """
+            UPDATE payment_cards SET active = false, updated_at = now()
+            WHERE id = :cardId AND active = true AND user_id IN (SELECT id FROM users WHERE deleted_at IS NULL)
+            RETURNING user_id
+            """;
+
+    private static final String DELETE_CARD = """
+            DELETE FROM payment_cards
+            WHERE id = :cardId AND user_id IN (SELECT id FROM users WHERE deleted_at IS NULL)
+            RETURNING user_id
+            """;
+
+    private final JdbcClient jdbcClient;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Optional<OwnedCardDto> updateCard(Long cardId, Long ownerId, CardRequestDto card) {
+        entityManager.flush();
+        JdbcClient.StatementSpec statement = jdbcClient.sql(ownerId == null ? UPDATE_ANY_CARD : UPDATE_OWNED_CARD)
+                .param("cardId", cardId)
+                .param("number", card.number())
+                .param("holder", card.holder())
+                .param("expirationDate", card.expirationDate())
+                .param("active", card.active());
+        if (ownerId != null) {
+            statement = statement.param("ownerId", ownerId);
+        }
+
+        Optional<OwnedCardDto> updated = statement
+                .query((rs, rowNum) -> new OwnedCardDto(
+                        rs.getLong("user_id"),
+                        CardResponseDto.builder()
+                                .id(rs.getLong("id"))
+                                .number(rs.getString("number"))
+                                .holder(rs.getString("holder"))
+                                .expirationDate(rs.getObject("expiration_date", LocalDate.class))
+                                .active(rs.getBoolean("active"))
+                                .build()))
+                .optional();
+        entityManager.clear();
+        return updated;
+    }
+
+    @Override
+    public Optional<Long> activateCard(Long cardId) {
+        return writeReturningOwner(ACTIVATE_CARD, cardId);
+    }
+
+    @Override
+    public Optional<Long> deactivateCard(Long cardId) {
+        return writeReturningOwner(DEACTIVATE_CARD, cardId);
+    }
+
+    @Override
+    public Optional<Long> deleteCardReturningUserId(Long cardId) {
+        return writeReturningOwner(DELETE_CARD, cardId);
+    }
+
+    private Optional<Long> writeReturningOwner(String sql, Long cardId) {
+        entityManager.flush();
+        Optional<Long> owner = jdbcClient.sql(sql)
+                .param("cardId", cardId)
+                .query(Long.class)
+                .optional();
+        entityManager.clear();
+        return owner;
+    }
+}
@@ -0,0 +1,117 @@
+package com.innowise.userservice.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.innowise.userservice.dto.user.UserResponseDto;
+import io.r2dbc.spi.Readable;
+import org.springframework.dao.DataRetrievalFailureException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static com.innowise.userservice.repository.UserProjectionRepositoryImpl.SELECT_USER_DOCUMENT;
+import static com.innowise.userservice.repository.UserProjectionRepositoryImpl.SELECT_USER_SUMMARY;
+
+/**
+ * The lookups of {@link UserProjectionRepository} over R2DBC, same statements and the
+ * same read model first order. Read only: every write goes through JPA.
+ */
+public class ReactiveUserRepository {
+
+    private final DatabaseClient client;
+    private final ObjectMapper objectMapper;
+    private final boolean readModelEnabled;
+
+    public ReactiveUserRepository(DatabaseClient client, ObjectMapper objectMapper, boolean readModelEnabled) {
+        this.client = client;
+        this.objectMapper = objectMapper;
+        this.readModelEnabled = readModelEnabled;
+    }
+
+    public Mono<UserResponseDto> findUserResponseById(Long id) {
+        Mono<UserResponseDto> document = client.sql(SELECT_USER_DOCUMENT + "AND u.id = :id")
+                .bind("id", id)
+                .map(this::mapDocument)
+                .one();
+        if (!readModelEnabled) {
+            return document;
+        }
+        return client.sql("SELECT document FROM user_read_model WHERE user_id = :id")
+                .bind("id", id)
+                .map(this::mapDocument)
+                .one()
+                .switchIfEmpty(document);
+    }
+
+    public Mono<UserResponseDto> findUserResponseByEmail(String email) {
+        Mono<UserResponseDto> document = client.sql(SELECT_USER_DOCUMENT + "AND u.email = :email")
+                .bind("email", email)
+                .map(this::mapDocument)
+                .one();
+        if (!readModelEnabled) {
+            return document;
+        }
+        return client.sql("SELECT document FROM user_read_model WHERE email = :email")
+                .bind("email", email)
+                .map(this::mapDocument)
+                .one()
+                .switchIfEmpty(document);
+    }
+
+    public Mono<UserResponseDto> findUserSummaryById(Long id) {
+        return client.sql(SELECT_USER_SUMMARY + "AND u.id = :id")
+                .bind("id", id)
+                .map(this::mapSummary)
+                .one();
+    }
+
+    public Mono<UserResponseDto> findUserSummaryByEmail(String email) {
+        return client.sql(SELECT_USER_SUMMARY + "AND u.email = :email")
+                .bind("email", email)
+                .map(this::mapSummary)
+                .one();
+    }
+
+    public Mono<UserResponseDto> findArchivedUserResponseById(Long id) {
+        return client.sql("SELECT document FROM users_archive WHERE id = :id")
+                .bind("id", id)
+                .map(this::mapDocument)
+                .one();
+    }
+
+    public Mono<UserResponseDto> findArchivedUserResponseByEmail(String email) {
+        return client.sql("""
+                        SELECT document
+                        FROM users_archive
+                        WHERE email = :email
+                        ORDER BY archived_at DESC
+                        LIMIT 1
+                        """)
+                .bind("email", email)
+                .map(this::mapDocument)
+                .one();
+    }
+
+    private UserResponseDto mapSummary(Readable row) {
+        return UserResponseDto.builder()
+                .id(row.get("id", Long.class))
+                .name(row.get("name", String.class))
+                .surname(row.get("surname", String.class))
+                .birthDate(row.get("birth_date", LocalDate.class))
+                .email(row.get("email", String.class))
+                .active(row.get("active", Boolean.class))
+                .createdAt(row.get("created_at", LocalDateTime.class))
+                .updatedAt(row.get("updated_at", LocalDateTime.class))
+                .build();
+    }
+
+    private UserResponseDto mapDocument(Readable row) {
+        try {
+            return objectMapper.readValue(row.get("document", String.class), UserResponseDto.class);
+        } catch (JsonProcessingException e) {
+            throw new DataRetrievalFailureException("Malformed user document", e);
+        }
+    }
+}
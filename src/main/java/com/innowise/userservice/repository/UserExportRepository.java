@@ -0,0 +1,16 @@
+package com.innowise.userservice.repository;
+
+import com.innowise.userservice.dto.user.UserCardRowDto;
+import com.innowise.userservice.entity.User;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.stream.Stream;
+
+public interface UserExportRepository {
+
+    /**
+     * Streams users left-joined with their cards, ordered by user id and card id,
+     * over a forward-only cursor. Must be consumed inside a transaction and closed.
+     */
+    Stream<UserCardRowDto> streamUsersWithCards(Specification<User> spec);
+}
@@ -0,0 +1,63 @@
+package com.innowise.userservice.repository;
+
+import com.innowise.userservice.dto.user.UserCardRowDto;
+import com.innowise.userservice.entity.Card;
+import com.innowise.userservice.entity.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.stream.Stream;
+
+public class UserExportRepositoryImpl implements UserExportRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${service.export.fetch-size:500}")
+    private int fetchSize;
+
+    @Override
+    public Stream<UserCardRowDto> streamUsersWithCards(Specification<User> spec) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<UserCardRowDto> query = cb.createQuery(UserCardRowDto.class);
+        Root<User> user = query.from(User.class);
+        Join<User, Card> card = user.join("cards", JoinType.LEFT);
+
+        query.select(cb.construct(UserCardRowDto.class,
+                user.get("id"),
+                user.get("name"),
+                user.get("surname"),
+                user.get("birthDate"),
+                user.get("email"),
+                user.get("active"),
+                user.get("createdAt"),
+                user.get("updatedAt"),
+                card.get("id"),
+                card.get("number"),
+                card.get("holder"),
+                card.get("expirationDate"),
+                card.get("active")
+        ));
+
+        Predicate predicate = spec.toPredicate(user, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(cb.asc(user.get("id")), cb.asc(card.get("id")));
+
+        // Rows are DTOs, so nothing is attached to the persistence context while streaming
+        return entityManager.createQuery(query)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream();
+    }
+}
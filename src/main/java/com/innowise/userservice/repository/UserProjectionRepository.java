@@ -0,0 +1,65 @@
+package com.innowise.userservice.repository;
+
+import com.innowise.userservice.datasource.ShardKey;
+import com.innowise.userservice.dto.user.UserResponseDto;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface UserProjectionRepository {
+
+    /**
+     * Reads a user with its cards straight into the response record. With the read model
+     * enabled this is a primary key fetch of the stored document, otherwise a single
+     * statement aggregating cards as JSON. Nothing is attached to the persistence context.
+     */
+    Optional<UserResponseDto> findUserResponseById(@ShardKey Long id);
+
+    Optional<UserResponseDto> findUserResponseByEmail(@ShardKey String email);
+
+    /**
+     * The user row alone, {@code cards} is null. Reads the users table by key and never
+     * payment_cards or the larger read model document.
+     */
+    Optional<UserResponseDto> findUserSummaryById(@ShardKey Long id);
+
+    Optional<UserResponseDto> findUserSummaryByEmail(@ShardKey String email);
+
+    /**
+     * Renders the document of a live user from the tables and locks the user row until
+     * commit. Card writes lock the same row, so the document cannot change before the
+     * transaction ends. Must be called inside a transaction.
+     */
+    Optional<UserResponseDto> lockUserResponseById(@ShardKey Long id);
+
+    /**
+     * Re-renders the user_read_model document of a user from the current transaction state
+     * and returns it, empty if the user does not exist. Must be called inside the write
+     * transaction after the change.
+     */
+    Optional<UserResponseDto> refreshReadModel(@ShardKey Long userId);
+
+    /**
+     * {@link #refreshReadModel} for many users in one statement, all on the current shard.
+     * Returns the documents of the users that exist.
+     */
+    List<UserResponseDto> refreshReadModels(Collection<Long> userIds);
+
+    /**
+     * The document a user was archived with, for ids and emails no longer in users.
+     * An email may have been archived more than once, the latest archive wins.
+     */
+    Optional<UserResponseDto> findArchivedUserResponseById(@ShardKey Long id);
+
+    Optional<UserResponseDto> findArchivedUserResponseByEmail(@ShardKey String email);
+
+    /**
+     * Moves up to {@code batchSize} users inactive since before {@code inactiveBefore} into
+     * users_archive and deletes them, their cards go through ON DELETE CASCADE. Users locked
+     * by a concurrent writer are skipped. Must be called inside a transaction; returns the
+     * archived ids.
+     */
+    List<Long> archiveInactiveUsers(LocalDateTime inactiveBefore, int batchSize);
+}
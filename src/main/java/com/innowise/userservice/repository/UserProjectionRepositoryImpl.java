@@ -0,0 +1,265 @@
+package com.innowise.userservice.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.innowise.userservice.dto.user.UserResponseDto;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.simple.JdbcClient;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@RequiredArgsConstructor
+public class UserProjectionRepositoryImpl implements UserProjectionRepository {
+
+    // Same document as the backfill in db.changelog-1.2.sql
+    private static final String USER_DOCUMENT = """
+            jsonb_build_object(
+                    'id', u.id,
+                    'name', u.name,
+                    'surname', u.surname,
+                    'birthDate', u.birth_date,
+                    'email', u.email,
+                    'active', u.active,
+                    'createdAt', u.created_at,
+                    'updatedAt', u.updated_at,
+                    'cards', COALESCE((SELECT jsonb_agg(jsonb_build_object(
+                                                'id', c.id,
+                                                'number', c.number,
+                                                'holder', c.holder,
+                                                'expirationDate', c.expiration_date,
+                                                'active', c.active) ORDER BY c.id)
+                                       FROM payment_cards c
+                                       WHERE c.user_id = u.id), '[]'::jsonb))
+            """;
+
+    // Shared with ReactiveUserRepository
+    static final String SELECT_USER_DOCUMENT =
+            "SELECT " + USER_DOCUMENT + " AS document FROM users u WHERE u.deleted_at IS NULL ";
+
+    static final String SELECT_USER_SUMMARY = """
+            SELECT u.id, u.name, u.surname, u.birth_date, u.email, u.active, u.created_at, u.updated_at
+            FROM users u
+            WHERE u.deleted_at IS NULL
+            """;
+
+    private static final String UPSERT_READ_MODEL_WHERE = """
+            INSERT INTO user_read_model (user_id, email, document, refreshed_at)
+            SELECT u.id, u.email, %s, now()
+            FROM users u
+            WHERE %s AND u.deleted_at IS NULL
+            ON CONFLICT (user_id) DO UPDATE
+                SET email = EXCLUDED.email,
+                    document = EXCLUDED.document,
+                    refreshed_at = EXCLUDED.refreshed_at
+            RETURNING document
+            """;
+
+    private static final String UPSERT_READ_MODEL =
+            UPSERT_READ_MODEL_WHERE.formatted(USER_DOCUMENT, "u.id = :userId");
+
+    private static final String UPSERT_READ_MODELS =
+            UPSERT_READ_MODEL_WHERE.formatted(USER_DOCUMENT, "u.id IN (:userIds)");
+
+    // Oldest first, over idx_users_inactive_updated_at
+    private static final String LOCK_ARCHIVE_BATCH = """
+            SELECT id
+            FROM users
+            WHERE active = false AND updated_at < :inactiveBefore AND deleted_at IS NULL
+            ORDER BY updated_at
+            LIMIT :batchSize
+            FOR UPDATE SKIP LOCKED
+            """;
+
+    private static final String MOVE_ARCHIVE_BATCH = """
+            WITH archived AS (
+                INSERT INTO users_archive (id, email, document, archived_at)
+                SELECT u.id, u.email, %s, now()
+                FROM users u
+                WHERE u.id IN (:ids)
+                RETURNING id
+            )
+            DELETE FROM users u
+            USING archived a
+            WHERE u.id = a.id
+            RETURNING u.id
+            """.formatted(USER_DOCUMENT);
+
+    private final JdbcClient jdbcClient;
+    private final ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${service.read-model.enabled:true}")
+    private boolean readModelEnabled;
+
+    @Override
+    public Optional<UserResponseDto> findUserResponseById(Long id) {
+        if (readModelEnabled) {
+            Optional<UserResponseDto> user = jdbcClient
+                    .sql("SELECT document FROM user_read_model WHERE user_id = :id")
+                    .param("id", id)
+                    .query(this::mapDocument)
+                    .optional();
+            if (user.isPresent()) {
+                return user;
+            }
+        }
+        return jdbcClient.sql(SELECT_USER_DOCUMENT + "AND u.id = :id")
+                .param("id", id)
+                .query(this::mapDocument)
+                .optional();
+    }
+
+    @Override
+    public Optional<UserResponseDto> findUserResponseByEmail(String email) {
+        if (readModelEnabled) {
+            Optional<UserResponseDto> user = jdbcClient
+                    .sql("SELECT document FROM user_read_model WHERE email = :email")
+                    .param("email", email)
+                    .query(this::mapDocument)
+                    .optional();
+            if (user.isPresent()) {
+                return user;
+            }
+        }
+        return jdbcClient.sql(SELECT_USER_DOCUMENT + "AND u.email = :email")
+                .param("email", email)
+                .query(this::mapDocument)
+                .optional();
+    }
+
+    @Override
+    public Optional<UserResponseDto> findUserSummaryById(Long id) {
+        return jdbcClient.sql(SELECT_USER_SUMMARY + "AND u.id = :id")
+                .param("id", id)
+                .query(this::mapSummary)
+                .optional();
+    }
+
+    @Override
+    public Optional<UserResponseDto> findUserSummaryByEmail(String email) {
+        return jdbcClient.sql(SELECT_USER_SUMMARY + "AND u.email = :email")
+                .param("email", email)
+                .query(this::mapSummary)
+                .optional();
+    }
+
+    @Override
+    public Optional<UserResponseDto> lockUserResponseById(Long id) {
+        return jdbcClient.sql(SELECT_USER_DOCUMENT + "AND u.id = :id FOR NO KEY UPDATE")
+                .param("id", id)
+                .query(this::mapDocument)
+                .optional();
+    }
+
+    @Override
+    public Optional<UserResponseDto> refreshReadModel(Long userId) {
+        // Pending JPA changes must be visible to the aggregate below
+        entityManager.flush();
+
+        // Serializes refreshes of one user until commit: after the lock the upsert statement
+        // sees every card committed by a concurrent writer of the same user. Advisory rather
+        // than a row lock, so card inserts (FK checks) on the user are never blocked
+        jdbcClient.sql("SELECT pg_advisory_xact_lock(:userId)")
+                .param("userId", userId)
+                .query((rs, rowNum) -> rowNum)
+                .list();
+
+        return jdbcClient.sql(UPSERT_READ_MODEL)
+                .param("userId", userId)
+                .query(this::mapDocument)
+                .optional();
+    }
+
+    @Override
+    public List<UserResponseDto> refreshReadModels(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return List.of();
+        }
+        entityManager.flush();
+
+        // Volatile select list expressions run in ORDER BY order, so concurrent batches
+        // take the locks in the same order
+        jdbcClient.sql("SELECT pg_advisory_xact_lock(u.id) FROM users u WHERE u.id IN (:userIds) ORDER BY u.id")
+                .param("userIds", userIds)
+                .query((rs, rowNum) -> rowNum)
+                .list();
+
+        return jdbcClient.sql(UPSERT_READ_MODELS)
+                .param("userIds", userIds)
+                .query(this::mapDocument)
+                .list();
+    }
+
+    @Override
+    public Optional<UserResponseDto> findArchivedUserResponseById(Long id) {
+        return jdbcClient.sql("SELECT document FROM users_archive WHERE id = :id")
+                .param("id", id)
+                .query(this::mapDocument)
+                .optional();
+    }
+
+    @Override
+    public Optional<UserResponseDto> findArchivedUserResponseByEmail(String email) {
+        return jdbcClient.sql("""
+                        SELECT document
+                        FROM users_archive
+                        WHERE email = :email
+                        ORDER BY archived_at DESC
+                        LIMIT 1
+                        """)
+                .param("email", email)
+                .query(this::mapDocument)
+                .optional();
+    }
+
+    @Override
+    public List<Long> archiveInactiveUsers(LocalDateTime inactiveBefore, int batchSize) {
+        List<Long> ids = jdbcClient.sql(LOCK_ARCHIVE_BATCH)
+                .param("inactiveBefore", inactiveBefore)
+                .param("batchSize", batchSize)
+                .query(Long.class)
+                .list();
+        if (ids.isEmpty()) {
+            return ids;
+        }
+
+        // A statement of its own: its snapshot is taken under the row locks, so it sees every
+        // card committed before them, and no card can be added to a locked user after
+        return jdbcClient.sql(MOVE_ARCHIVE_BATCH)
+                .param("ids", ids)
+                .query(Long.class)
+                .list();
+    }
+
+    private UserResponseDto mapSummary(ResultSet rs, int rowNum) throws SQLException {
+        return UserResponseDto.builder()
+                .id(rs.getLong("id"))
+                .name(rs.getString("name"))
+                .surname(rs.getString("surname"))
+                .birthDate(rs.getObject("birth_date", LocalDate.class))
+                .email(rs.getString("email"))
+                .active(rs.getBoolean("active"))
+                .createdAt(rs.getObject("created_at", LocalDateTime.class))
+                .updatedAt(rs.getObject("updated_at", LocalDateTime.class))
+                .build();
+    }
+
+    private UserResponseDto mapDocument(ResultSet rs, int rowNum) throws SQLException {
+        try {
+            return objectMapper.readValue(rs.getString("document"), UserResponseDto.class);
+        } catch (JsonProcessingException e) {
+            throw new SQLException("Malformed user document", e);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.innowise.userservice.repository;
 
+import com.innowise.userservice.datasource.DirectoryEmail;
+import com.innowise.userservice.datasource.ShardKey;
 import com.innowise.userservice.entity.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -7,39 +9,82 @@ import org.springframework.data.jpa.repository.*;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface UserRepository extends JpaRepository<User, Long>, JpaSpecificationExecutor<User> {
+public interface UserRepository extends JpaRepository<User, Long>, JpaSpecificationExecutor<User>,
+        UserExportRepository, UserProjectionRepository, UserStatisticsRepository {
 
     // Named methods
 
-    Optional<User> findByEmail(String email);
+    Optional<User> findByEmail(@ShardKey String email);
 
-    List<User> findByActive(Boolean active);
+    // Write paths that need the cards load them in the same statement
+    @EntityGraph(attributePaths = "cards")
+    Optional<User> findWithCardsById(@ShardKey Long id);
 
-    List<User> findByNameAndSurname(String name, String surname);
+    List<User> findByActive(Boolean active);
 
     boolean existsByEmail(String email);
 
     // JPQL
 
+    // Both sides are served by idx_users_name_trgm / idx_users_surname_trgm (bitmap OR)
     @Query("SELECT u FROM User u WHERE " +
             "LOWER(u.name) LIKE LOWER(CONCAT('%', :searchParam, '%')) OR " +
             "LOWER(u.surname) LIKE LOWER(CONCAT('%', :searchParam, '%'))")
     Page<User> searchByNameOrSurname(@Param("searchParam") String searchParam, Pageable pageable);
 
     @Query("SELECT COUNT(c) FROM User u JOIN u.cards c WHERE u.id = :userId")
-    long countCardsByUserId(@Param("userId") Long userId);
+    long countCardsByUserId(@ShardKey @Param("userId") Long userId);
 
     // Native sql
 
+    // Row estimate kept by ANALYZE/autovacuum, -1 if the table was never analyzed
+    @Query(value = "SELECT reltuples::bigint FROM pg_class WHERE oid = 'users'::regclass", nativeQuery = true)
+    long estimateCount();
+
+    // Zero rows means the user is missing or already has the requested status
     @Modifying
-    @Query(value = "UPDATE users SET active = true WHERE id = :userId", nativeQuery = true)
-    int activateUser(@Param("userId") Long userId);
+    @Query(value = "UPDATE users SET active = true, updated_at = now() " +
+            "WHERE id = :userId AND active = false AND deleted_at IS NULL", nativeQuery = true)
+    int activateUser(@ShardKey @Param("userId") Long userId);
+
+    @Modifying
+    @Query(value = "UPDATE users SET active = false, updated_at = now() " +
+            "WHERE id = :userId AND active = true AND deleted_at IS NULL", nativeQuery = true)
+    int deactivateUser(@ShardKey @Param("userId") Long userId);
+
+    // users_email_key rejects a taken email. Returns the email before the update, which
+    // cache entries may still be keyed by; empty means the user is missing. The row is
+    // locked by the subquery, so the email it read is the one replaced
+    @Query(value = "UPDATE users u SET name = :name, surname = :surname, birth_date = :birthDate, " +
+            "email = :email, active = :active, updated_at = now() " +
+            "FROM (SELECT id, email FROM users WHERE id = :userId AND deleted_at IS NULL FOR NO KEY UPDATE) previous " +
+            "WHERE u.id = previous.id RETURNING previous.email", nativeQuery = true)
+    Optional<String> updateUser(
+            @ShardKey @Param("userId") Long userId,
+            @Param("name") String name,
+            @Param("surname") String surname,
+            @Param("birthDate") LocalDate birthDate,
+            @DirectoryEmail @Param("email") String email,
+            @Param("active") Boolean active
+    );
+
+    // Only marks the user, UserPurger deletes the row and its cards later. The read model
+    // row goes right away so the by-id and by-email paths miss. Returns the email, empty
+    // if the user is missing or already deleted
+    @Query(value = "WITH tombstoned AS (" +
+            "UPDATE users SET deleted_at = now() WHERE id = :userId AND deleted_at IS NULL RETURNING id, email), " +
+            "unpublished AS (DELETE FROM user_read_model r USING tombstoned t WHERE r.user_id = t.id) " +
+            "SELECT email FROM tombstoned", nativeQuery = true)
+    Optional<String> tombstoneUser(@ShardKey @Param("userId") Long userId);
 
+    // Cards, card number reservations and the read model row go through ON DELETE CASCADE
     @Modifying
-    @Query(value = "UPDATE users SET active = false WHERE id = :userId", nativeQuery = true)
-    int deactivateUser(@Param("userId") Long userId);
+    @Query(value = "DELETE FROM users WHERE id IN (SELECT id FROM users WHERE deleted_at IS NOT NULL " +
+            "ORDER BY deleted_at LIMIT :batchSize FOR UPDATE SKIP LOCKED)", nativeQuery = true)
+    int purgeDeletedUsers(@Param("batchSize") int batchSize);
 }
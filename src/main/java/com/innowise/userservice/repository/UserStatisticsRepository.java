@@ -0,0 +1,22 @@
+package com.innowise.userservice.repository;
+
+import java.util.Collection;
+import java.util.Map;
+
+public interface UserStatisticsRepository {
+
+    /**
+     * Sums the stripes of the named statistics_counters (maintained by triggers and the
+     * settler, see db.changelog-1.9.sql and db.changelog-1.11.sql) of the current database.
+     * A primary key lookup of at most 16 rows per name; counters never written are missing
+     * from the result.
+     */
+    Map<String, Long> sumStatisticsCounters(Collection<String> names);
+
+    /**
+     * Recomputes the card counters of up to batchSize pending marks of the current database.
+     *
+     * @return number of marks taken, less than batchSize once none are left
+     */
+    int settleCardStatistics(int batchSize);
+}
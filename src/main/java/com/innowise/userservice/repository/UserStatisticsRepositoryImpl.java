@@ -0,0 +1,38 @@
+package com.innowise.userservice.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.simple.JdbcClient;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+@RequiredArgsConstructor
+public class UserStatisticsRepositoryImpl implements UserStatisticsRepository {
+
+    private final JdbcClient jdbcClient;
+
+    @Override
+    public Map<String, Long> sumStatisticsCounters(Collection<String> names) {
+        Map<String, Long> counters = new HashMap<>();
+        jdbcClient.sql("""
+                        SELECT name, sum(value) AS value
+                        FROM statistics_counters
+                        WHERE name IN (:names)
+                        GROUP BY name
+                        """)
+                .param("names", names)
+                .query(rs -> {
+                    counters.put(rs.getString("name"), rs.getLong("value"));
+                });
+        return counters;
+    }
+
+    @Override
+    public int settleCardStatistics(int batchSize) {
+        return jdbcClient.sql("SELECT settle_card_statistics(:batchSize)")
+                .param("batchSize", batchSize)
+                .query(Integer.class)
+                .single();
+    }
+}
@@ -9,6 +9,14 @@ public class UserSpecification {
         throw new UnsupportedOperationException("Cannot create an object of utility class");
     }
 
+    public static Specification<User> withFilters(String name, String surname, Boolean active) {
+        return hasName(name)
+                .and(hasSurname(surname))
+                .and(isActive(active));
+    }
+
+    // lower(column) LIKE '%x%' is kept in this exact shape to match the trigram expression indexes
+
     public static Specification<User> hasName(String name) {
         return ((root, query, criteriaBuilder) -> {
            if (name == null || name.isBlank()) {
@@ -1,8 +1,12 @@
 package com.innowise.userservice.service;
 
+import com.innowise.userservice.dto.CursorPageResponseDto;
 import com.innowise.userservice.dto.card.CardRequestDto;
 import com.innowise.userservice.dto.card.CardResponseDto;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
 import java.util.List;
 
 public interface CardService {
@@ -11,9 +15,16 @@ public interface CardService {
 
     List<CardResponseDto> findCardsByUserId(Long userId);
 
+    CursorPageResponseDto<CardResponseDto> scrollCardsByActivity(Boolean active, String cursor, int size);
+
+    Page<CardResponseDto> searchCardsByHolder(String holder, Pageable pageable);
+
     CardResponseDto updateCard(Long cardId, CardRequestDto cardRequestDto, Long userId);
 
     void deleteCard(Long cardId);
 
-    void changeCardActivity(Long cardId, Boolean isActive);
+    /**
+     * @return true if the status changed, false if the card already had it
+     */
+    boolean changeCardActivity(Long cardId, Boolean isActive);
 }
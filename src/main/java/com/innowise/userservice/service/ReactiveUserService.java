@@ -0,0 +1,20 @@
+package com.innowise.userservice.service;
+
+import com.innowise.userservice.dto.user.UserResponseDto;
+import reactor.core.publisher.Mono;
+
+/**
+ * The single user reads of {@link UserService} without blocking a thread, over R2DBC and
+ * the same Redis entries. Each Mono fails with ResourceNotFoundException when the user
+ * is neither live nor archived.
+ */
+public interface ReactiveUserService {
+
+    Mono<UserResponseDto> findUserById(Long id);
+
+    Mono<UserResponseDto> findUserByEmail(String email);
+
+    Mono<UserResponseDto> findUserSummaryById(Long id);
+
+    Mono<UserResponseDto> findUserSummaryByEmail(String email);
+}
@@ -0,0 +1,12 @@
+package com.innowise.userservice.service;
+
+import com.innowise.userservice.dto.statistics.StatisticsResponseDto;
+
+public interface StatisticsService {
+
+    /**
+     * Reads the counters maintained on every write, so the cost does not depend on the
+     * number of users or cards. With sharding the counters of all shards are added up.
+     */
+    StatisticsResponseDto getStatistics();
+}
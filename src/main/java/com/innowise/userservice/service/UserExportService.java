@@ -0,0 +1,12 @@
+package com.innowise.userservice.service;
+
+import com.innowise.userservice.dto.user.ExportFormat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public interface UserExportService {
+
+    void exportUsers(String name, String surname, Boolean active, ExportFormat format,
+                     OutputStream outputStream) throws IOException;
+}
@@ -1,23 +1,48 @@
 package com.innowise.userservice.service;
 
+import com.innowise.userservice.dto.CountMode;
+import com.innowise.userservice.dto.CursorPageResponseDto;
+import com.innowise.userservice.dto.PageResponseDto;
 import com.innowise.userservice.dto.user.UserRequestDto;
 import com.innowise.userservice.dto.user.UserResponseDto;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 
 public interface UserService {
 
+    /**
+     * Falls back to the archive for users moved out as long inactive, likewise by email.
+     */
     UserResponseDto findUserById(Long id);
 
-    Page<UserResponseDto> findAllUsers(String name, String surname, Boolean active, Pageable pageable);
+    /**
+     * The user without cards, cached apart from the full document so card writes leave it
+     * in place. For callers that never render cards, likewise by email.
+     */
+    UserResponseDto findUserSummaryById(Long id);
+
+    UserResponseDto findUserSummaryByEmail(String email);
+
+    PageResponseDto<UserResponseDto> findAllUsers(String name, String surname, Boolean active,
+                                                  Pageable pageable, CountMode countMode);
+
+    CursorPageResponseDto<UserResponseDto> scrollUsers(String name, String surname, Boolean active,
+                                                       String cursor, int size, Sort sort);
 
     UserResponseDto saveUser(UserRequestDto userRequestDto);
 
-    UserResponseDto updateUser(Long id, UserRequestDto userRequestDto);
+    /**
+     * @param ifMatch If-Match header or {@code null}; checked against the current document
+     *                under the user row lock, so no other write slips in between
+     */
+    UserResponseDto updateUser(Long id, UserRequestDto userRequestDto, String ifMatch);
 
     void deleteUser(Long id);
 
-    void changeUserActivity(Long id, Boolean isActive);
+    /**
+     * @return true if the status changed, false if the user already had it
+     */
+    boolean changeUserActivity(Long id, Boolean isActive);
 
     UserResponseDto findUserByEmail(String email);
 }
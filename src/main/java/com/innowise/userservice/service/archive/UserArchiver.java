@@ -0,0 +1,164 @@
+package com.innowise.userservice.service.archive;
+
+import com.innowise.userservice.datasource.ShardContext;
+import com.innowise.userservice.datasource.ShardFanOut;
+import com.innowise.userservice.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves users inactive for longer than the horizon out of the hot users table into
+ * users_archive. Each batch is a short transaction of its own that skips users locked by
+ * a request, and a run stops after maxBatches per shard, so a large backlog is worked off
+ * over several runs instead of holding the scheduler. Also reports the size of both tables.
+ */
+@Slf4j
+public class UserArchiver implements MeterBinder {
+
+    private static final List<String> TABLES = List.of("users", "users_archive");
+
+    // reltuples is -1 until the first ANALYZE
+    private static final String TABLE_STATS = """
+            SELECT relname, GREATEST(reltuples, 0)::bigint AS estimated_rows, pg_total_relation_size(oid) AS bytes
+            FROM pg_class
+            WHERE oid IN ('users'::regclass, 'users_archive'::regclass)
+            """;
+
+    private final UserRepository userRepository;
+    private final JdbcClient jdbcClient;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardFanOut shardFanOut;
+    private final CacheManager cacheManager;
+    private final boolean enabled;
+    private final Duration horizon;
+    private final int batchSize;
+    private final int maxBatches;
+
+    private final Map<String, AtomicLong> rows = Map.of("users", new AtomicLong(), "users_archive", new AtomicLong());
+    private final Map<String, AtomicLong> bytes = Map.of("users", new AtomicLong(), "users_archive", new AtomicLong());
+    private Counter archived;
+
+    public UserArchiver(UserRepository userRepository, JdbcClient jdbcClient, TransactionTemplate transactionTemplate,
+                        ShardFanOut shardFanOut, CacheManager cacheManager, boolean enabled, Duration horizon,
+                        int batchSize, int maxBatches) {
+        if (batchSize < 1 || maxBatches < 1) {
+            throw new IllegalArgumentException("Archive batch size and batches per run must be positive");
+        }
+        this.userRepository = userRepository;
+        this.jdbcClient = jdbcClient;
+        this.transactionTemplate = transactionTemplate;
+        this.shardFanOut = shardFanOut;
+        this.cacheManager = cacheManager;
+        this.enabled = enabled;
+        this.horizon = horizon;
+        this.batchSize = batchSize;
+        this.maxBatches = maxBatches;
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        for (String table : TABLES) {
+            Gauge.builder("db.table.rows", rows.get(table), AtomicLong::get)
+                    .description("Estimated rows of the table, all shards")
+                    .tag("table", table)
+                    .register(registry);
+            Gauge.builder("db.table.size", bytes.get(table), AtomicLong::get)
+                    .description("Size of the table with its indexes and TOAST, all shards")
+                    .tag("table", table)
+                    .baseUnit("bytes")
+                    .register(registry);
+        }
+        archived = Counter.builder("users.archived")
+                .description("Users moved to users_archive")
+                .register(registry);
+    }
+
+    @Scheduled(fixedDelayString = "${service.archive.interval-ms:600000}")
+    public void run() {
+        if (enabled) {
+            archive();
+        }
+        refreshTableStats();
+    }
+
+    /**
+     * @return number of users archived by this run
+     */
+    public int archive() {
+        LocalDateTime inactiveBefore = LocalDateTime.now().minus(horizon);
+        int total = 0;
+        for (int shard = 0; shard < shardFanOut.shardCount(); shard++) {
+            total += ShardContext.callOn(shard, () -> archiveShard(inactiveBefore));
+        }
+        if (total > 0) {
+            log.info("Archived {} users inactive since before {}", total, inactiveBefore);
+        }
+        return total;
+    }
+
+    public void refreshTableStats() {
+        Map<String, Long> shardRows = new HashMap<>();
+        Map<String, Long> shardBytes = new HashMap<>();
+        for (int shard = 0; shard < shardFanOut.shardCount(); shard++) {
+            ShardContext.callOn(shard, () -> jdbcClient.sql(TABLE_STATS)
+                    .query((rs, rowNum) -> {
+                        shardRows.merge(rs.getString("relname"), rs.getLong("estimated_rows"), Long::sum);
+                        shardBytes.merge(rs.getString("relname"), rs.getLong("bytes"), Long::sum);
+                        return rowNum;
+                    })
+                    .list());
+        }
+        TABLES.forEach(table -> {
+            rows.get(table).set(shardRows.getOrDefault(table, 0L));
+            bytes.get(table).set(shardBytes.getOrDefault(table, 0L));
+        });
+    }
+
+    private int archiveShard(LocalDateTime inactiveBefore) {
+        int moved = 0;
+        for (int batch = 0; batch < maxBatches; batch++) {
+            List<Long> ids = transactionTemplate.execute(status ->
+                    userRepository.archiveInactiveUsers(inactiveBefore, batchSize));
+            if (ids == null || ids.isEmpty()) {
+                break;
+            }
+            evict(ids);
+            moved += ids.size();
+            if (archived != null) {
+                archived.increment(ids.size());
+            }
+            if (ids.size() < batchSize) {
+                break;
+            }
+        }
+        return moved;
+    }
+
+    // Cached documents by id or email stay valid, the archive serves the same ones
+    private void evict(List<Long> ids) {
+        Cache userCards = cacheManager.getCache("userCards");
+        if (userCards != null) {
+            ids.forEach(userCards::evict);
+        }
+        Cache users = cacheManager.getCache("users");
+        if (users != null) {
+            users.clear();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.innowise.userservice.service.archive;
+
+import com.innowise.userservice.datasource.ShardContext;
+import com.innowise.userservice.datasource.ShardFanOut;
+import com.innowise.userservice.repository.UserRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Deletes tombstoned users with their cards in batches. Before every batch it looks at
+ * the connection pools and stops the run while requests wait for connections or hold
+ * more than maxPoolUsage of a pool, so purging only uses the quiet periods.
+ */
+@Slf4j
+public class UserPurger implements MeterBinder {
+
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardFanOut shardFanOut;
+    private final Supplier<List<HikariDataSource>> pools;
+    private final int batchSize;
+    private final int maxBatches;
+    private final double maxPoolUsage;
+
+    private Counter purged;
+
+    public UserPurger(UserRepository userRepository, TransactionTemplate transactionTemplate, ShardFanOut shardFanOut,
+                      Supplier<List<HikariDataSource>> pools, int batchSize, int maxBatches, double maxPoolUsage) {
+        if (batchSize < 1 || maxBatches < 1) {
+            throw new IllegalArgumentException("Purge batch size and batches per run must be positive");
+        }
+        this.userRepository = userRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.shardFanOut = shardFanOut;
+        this.pools = pools;
+        this.batchSize = batchSize;
+        this.maxBatches = maxBatches;
+        this.maxPoolUsage = maxPoolUsage;
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        purged = Counter.builder("users.purged")
+                .description("Tombstoned users deleted with their cards")
+                .register(registry);
+    }
+
+    @Scheduled(fixedDelayString = "${service.purge.interval-ms:60000}")
+    public void run() {
+        purge();
+    }
+
+    /**
+     * @return number of users deleted by this run
+     */
+    public int purge() {
+        int total = 0;
+        for (int shard = 0; shard < shardFanOut.shardCount(); shard++) {
+            total += ShardContext.callOn(shard, this::purgeShard);
+        }
+        if (total > 0) {
+            log.info("Purged {} deleted users", total);
+        }
+        return total;
+    }
+
+    private int purgeShard() {
+        int deleted = 0;
+        for (int batch = 0; batch < maxBatches; batch++) {
+            if (busy()) {
+                log.debug("Purge paused, connection pools are busy");
+                break;
+            }
+            Integer rows = transactionTemplate.execute(status -> userRepository.purgeDeletedUsers(batchSize));
+            if (rows == null || rows == 0) {
+                break;
+            }
+            deleted += rows;
+            if (purged != null) {
+                purged.increment(rows);
+            }
+            if (rows < batchSize) {
+                break;
+            }
+        }
+        return deleted;
+    }
+
+    private boolean busy() {
+        return pools.get().stream().anyMatch(pool -> {
+            HikariPoolMXBean state = pool.getHikariPoolMXBean();
+            return state != null && (state.getThreadsAwaitingConnection() > 0
+                    || state.getActiveConnections() > maxPoolUsage * pool.getMaximumPoolSize());
+        });
+    }
+}
@@ -0,0 +1,58 @@
+package com.innowise.userservice.service.cache;
+
+import com.innowise.userservice.dto.user.UserResponseDto;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Non-blocking access to the entries of {@link RedisCacheManager}: same keys, serializer
+ * and TTLs as its caches. Evictions of the servlet path's writes therefore reach the
+ * reactive reads, and entries put here are hits for the servlet path.
+ */
+public class ReactiveUserCache {
+
+    private final RedisCacheManager cacheManager;
+    private final ReactiveRedisTemplate<String, Object> template;
+
+    public ReactiveUserCache(RedisCacheManager cacheManager, ReactiveRedisConnectionFactory connectionFactory) {
+        this.cacheManager = cacheManager;
+        RedisCacheConfiguration defaults = configuration("user");
+        this.template = new ReactiveRedisTemplate<>(connectionFactory, RedisSerializationContext
+                .<String, Object>newSerializationContext(RedisSerializer.string())
+                .key(defaults.getKeySerializationPair())
+                .value(defaults.getValueSerializationPair())
+                .build());
+    }
+
+    public Mono<UserResponseDto> get(String cacheName, Object key) {
+        return template.opsForValue().get(redisKey(cacheName, key)).cast(UserResponseDto.class);
+    }
+
+    public Mono<UserResponseDto> put(String cacheName, Object key, UserResponseDto user) {
+        Duration ttl = configuration(cacheName).getTtlFunction().getTimeToLive(key, user);
+        Mono<Boolean> stored = ttl.isZero() || ttl.isNegative()
+                ? template.opsForValue().set(redisKey(cacheName, key), user)
+                : template.opsForValue().set(redisKey(cacheName, key), user, ttl);
+        return stored.thenReturn(user);
+    }
+
+    // RedisCache converts keys with toString as well: user::42, user::ivan@example.com
+    private String redisKey(String cacheName, Object key) {
+        return configuration(cacheName).getKeyPrefixFor(cacheName) + key;
+    }
+
+    private RedisCacheConfiguration configuration(String cacheName) {
+        RedisCacheConfiguration configuration = cacheManager.getCacheConfigurations().get(cacheName);
+        if (configuration == null) {
+            throw new IllegalArgumentException("No cache configured as " + cacheName);
+        }
+        return configuration;
+    }
+}
@@ -0,0 +1,49 @@
+package com.innowise.userservice.service.etag;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+/**
+ * Strong ETags of response bodies: a digest of the JSON representation. The tag of a
+ * cached entry is computed from the entry itself, so answering a conditional request
+ * costs a cache hit and no database round trip. Card writes do not move users.updated_at
+ * and cards carry no timestamp of their own, so the representation is what versions both.
+ */
+@Component
+@RequiredArgsConstructor
+public class EntityTags {
+
+    private final ObjectMapper objectMapper;
+
+    public String of(Object body) {
+        try {
+            return "\"" + DigestUtils.md5DigestAsHex(objectMapper.writeValueAsBytes(body)) + "\"";
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot compute ETag", e);
+        }
+    }
+
+    /**
+     * Weak variant of {@link #of} for a body served in several encodings, whose bytes
+     * differ per negotiated media type while the user is the same.
+     */
+    public String weakOf(Object body) {
+        return "W/" + of(body);
+    }
+
+    /**
+     * Strong comparison of an If-Match header against the current tag: a weak tag never matches.
+     */
+    public static boolean matches(String ifMatch, String etag) {
+        for (String candidate : ifMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
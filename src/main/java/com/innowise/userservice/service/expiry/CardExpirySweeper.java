@@ -0,0 +1,127 @@
+package com.innowise.userservice.service.expiry;
+
+import com.innowise.userservice.datasource.ShardContext;
+import com.innowise.userservice.datasource.ShardFanOut;
+import com.innowise.userservice.dto.card.ExpiredCardsDto;
+import com.innowise.userservice.dto.user.UserResponseDto;
+import com.innowise.userservice.repository.CardRepository;
+import com.innowise.userservice.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Deactivates cards past their expiration date in batches. Each batch is a short
+ * transaction that skips cards locked by a request or by the sweep of another instance,
+ * so instances share the work instead of queueing on each other. Read model documents
+ * and cache entries are refreshed for the owners of the deactivated cards only.
+ */
+@Slf4j
+public class CardExpirySweeper implements MeterBinder {
+
+    private final CardRepository cardRepository;
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardFanOut shardFanOut;
+    private final CacheManager cacheManager;
+    private final int batchSize;
+    private final int maxBatches;
+
+    private Counter expired;
+
+    public CardExpirySweeper(CardRepository cardRepository, UserRepository userRepository,
+                             TransactionTemplate transactionTemplate, ShardFanOut shardFanOut,
+                             CacheManager cacheManager, int batchSize, int maxBatches) {
+        if (batchSize < 1 || maxBatches < 1) {
+            throw new IllegalArgumentException("Card expiry batch size and batches per run must be positive");
+        }
+        this.cardRepository = cardRepository;
+        this.userRepository = userRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.shardFanOut = shardFanOut;
+        this.cacheManager = cacheManager;
+        this.batchSize = batchSize;
+        this.maxBatches = maxBatches;
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        expired = Counter.builder("cards.expired")
+                .description("Cards deactivated after their expiration date")
+                .register(registry);
+    }
+
+    @Scheduled(fixedDelayString = "${service.card-expiry.interval-ms:600000}")
+    public void run() {
+        sweep();
+    }
+
+    /**
+     * @return number of cards deactivated by this run
+     */
+    public int sweep() {
+        LocalDate today = LocalDate.now();
+        int total = 0;
+        for (int shard = 0; shard < shardFanOut.shardCount(); shard++) {
+            total += ShardContext.callOn(shard, () -> sweepShard(today));
+        }
+        if (total > 0) {
+            // Listing pages are not keyed by user, they are dropped once per run
+            Cache users = cacheManager.getCache("users");
+            if (users != null) {
+                users.clear();
+            }
+            log.info("Deactivated {} expired cards", total);
+        }
+        return total;
+    }
+
+    private int sweepShard(LocalDate today) {
+        int deactivated = 0;
+        for (int batch = 0; batch < maxBatches; batch++) {
+            Batch swept = transactionTemplate.execute(status -> {
+                ExpiredCardsDto cards = cardRepository.deactivateExpiredCards(today, batchSize);
+                return new Batch(cards, userRepository.refreshReadModels(cards.userIds()));
+            });
+            if (swept == null || swept.cards().userIds().isEmpty()) {
+                break;
+            }
+            evict(swept);
+            deactivated += swept.cards().deactivated();
+            if (expired != null) {
+                expired.increment(swept.cards().deactivated());
+            }
+            if (swept.cards().deactivated() < batchSize) {
+                break;
+            }
+        }
+        return deactivated;
+    }
+
+    // Deleted users are not refreshed, their entries went with the tombstone
+    private void evict(Batch swept) {
+        Cache userCards = cacheManager.getCache("userCards");
+        if (userCards != null) {
+            swept.cards().userIds().forEach(userCards::evict);
+        }
+        Cache user = cacheManager.getCache("user");
+        if (user != null) {
+            swept.users().forEach(document -> {
+                user.evict(document.id());
+                user.evict(document.email());
+            });
+        }
+    }
+
+    private record Batch(ExpiredCardsDto cards, List<UserResponseDto> users) {
+    }
+}
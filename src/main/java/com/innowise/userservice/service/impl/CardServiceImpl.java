@@ -1,9 +1,12 @@
 package com.innowise.userservice.service.impl;
 
+import com.innowise.userservice.datasource.ShardFanOut;
+import com.innowise.userservice.dto.CursorPageResponseDto;
 import com.innowise.userservice.dto.card.CardRequestDto;
 import com.innowise.userservice.dto.card.CardResponseDto;
+import com.innowise.userservice.dto.card.OwnedCardDto;
+import com.innowise.userservice.dto.user.UserResponseDto;
 import com.innowise.userservice.entity.Card;
-import com.innowise.userservice.entity.User;
 import com.innowise.userservice.exception.BusinessException;
 import com.innowise.userservice.exception.CardLimitExceededException;
 import com.innowise.userservice.exception.ForbiddenException;
@@ -12,124 +15,238 @@ import com.innowise.userservice.mapper.CardMapper;
 import com.innowise.userservice.repository.CardRepository;
 import com.innowise.userservice.repository.UserRepository;
 import com.innowise.userservice.service.CardService;
+import com.innowise.userservice.service.pagination.CursorCodec;
+import com.innowise.userservice.service.pagination.RecordSort;
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.cache.annotation.Caching;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 @Service
 @RequiredArgsConstructor
 public class CardServiceImpl implements CardService {
 
+    private static final int MAX_SCROLL_SIZE = 100;
+    private static final Sort SCROLL_SORT = Sort.by("id");
+    private static final Map<String, Class<?>> SCROLL_KEYS = Map.of("id", Long.class);
+    private static final GrantedAuthority ADMIN_AUTHORITY = new SimpleGrantedAuthority("ROLE_ADMIN");
+
     private final CardRepository cardRepository;
     private final CardMapper cardMapper;
     private final UserRepository userRepository;
+    private final CursorCodec cursorCodec;
+    private final ShardFanOut shardFanOut;
+    private final CacheManager cacheManager;
 
     @Override
-    @Caching(evict = {
-            @CacheEvict(value = "userCards", key = "#userId"),
-            @CacheEvict(value = "user", key = "#userId")
-    })
+    @CacheEvict(value = "userCards", key = "#userId")
     @Transactional
     public CardResponseDto addCardToUser(Long userId, CardRequestDto cardRequestDto) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new ResourceNotFoundException("User", "id " + userId));
+        // An empty insert is either a missing user, a full user or a slot taken by a
+        // concurrent add; only the last one is retried, with a fresh snapshot
+        for (int attempt = 0; attempt < CardLimitExceededException.MAX_CARDS; attempt++) {
+            Optional<CardResponseDto> card;
+            try {
+                card = cardRepository.insertIntoFreeSlot(userId, cardRequestDto);
+            } catch (DataIntegrityViolationException e) {
+                if (ConstraintViolations.isViolationOf(e, ConstraintViolations.PAYMENT_CARDS_NUMBER_KEY)) {
+                    throw new BusinessException("Card with number " + cardRequestDto.number() + " already exists");
+                }
+                throw e;
+            }
+            if (card.isPresent()) {
+                evictUser(userRepository.refreshReadModel(userId));
+                return card.get();
+            }
 
-        cardRepository.findByNumber(cardRequestDto.number()).ifPresent(card -> {
-            throw new BusinessException("Card with number " + cardRequestDto.number() + " already exists");
-        });
+            if (!userRepository.existsById(userId)) {
+                throw new ResourceNotFoundException("User", "id " + userId);
+            }
+            if (cardRepository.countByUserId(userId) >= CardLimitExceededException.MAX_CARDS) {
+                throw new CardLimitExceededException(userId);
+            }
+        }
+        throw new CardLimitExceededException(userId);
+    }
+
+    @Override
+    @Cacheable(value = "userCards", key = "#userId")
+    @Transactional(readOnly = true)
+    public List<CardResponseDto> findCardsByUserId(Long userId) {
+        List<CardResponseDto> cards = cardRepository.findCardResponsesByUserId(userId);
+        // Existence only matters when there is nothing to return
+        if (cards.isEmpty() && !userRepository.existsById(userId)) {
+            throw new ResourceNotFoundException("User", "id " + userId);
+        }
+        return cards;
+    }
 
-        Card newCard = cardMapper.toCard(cardRequestDto);
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPageResponseDto<CardResponseDto> scrollCardsByActivity(Boolean active, String cursor, int size) {
+        int limit = Math.clamp(size, 1, MAX_SCROLL_SIZE);
+        Long afterId = cursor == null || cursor.isBlank()
+                ? 0L
+                : (Long) cursorCodec.decode(cursor, SCROLL_SORT, SCROLL_KEYS).get("id");
 
-        if (user.getCards().size() >= 5) {
-            throw new CardLimitExceededException(user.getId());
+        if (shardFanOut.isSharded()) {
+            return scrollCardsAcrossShards(active, afterId, limit);
         }
-        user.addCard(newCard);
 
-        User savedUser = userRepository.save(user);
+        // One extra row tells whether there is a next page without counting
+        List<Card> cards = cardRepository.findActiveCardsWithUserAfter(active, afterId, Limit.of(limit + 1));
+        boolean hasNext = cards.size() > limit;
+        List<Card> page = hasNext ? cards.subList(0, limit) : cards;
 
-        Card savedCard = savedUser.getCards().getLast();
+        String nextCursor = hasNext
+                ? cursorCodec.encode(SCROLL_SORT, Map.of("id", page.getLast().getId()))
+                : null;
 
+        return CursorPageResponseDto.<CardResponseDto>builder()
+                .content(cardMapper.toCardResponseDtoList(page))
+                .size(page.size())
+                .hasNext(hasNext)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    /**
+     * Ids are unique across shards, so the first {@code limit + 1} ids of the merge are
+     * exactly the rows a single database would have returned.
+     */
+    private CursorPageResponseDto<CardResponseDto> scrollCardsAcrossShards(Boolean active, Long afterId, int limit) {
+        List<List<CardResponseDto>> shards = shardFanOut.onEachShard(() -> cardMapper.toCardResponseDtoList(
+                cardRepository.findActiveCardsWithUserAfter(active, afterId, Limit.of(limit + 1))));
+        List<CardResponseDto> cards = ShardFanOut.merge(shards, Comparator.comparing(CardResponseDto::id), limit + 1);
+        boolean hasNext = cards.size() > limit;
+        List<CardResponseDto> page = hasNext ? cards.subList(0, limit) : cards;
+
+        String nextCursor = hasNext
+                ? cursorCodec.encode(SCROLL_SORT, Map.of("id", page.getLast().id()))
+                : null;
 
-        return cardMapper.toCardResponseDto(savedCard);
+        return CursorPageResponseDto.<CardResponseDto>builder()
+                .content(page)
+                .size(page.size())
+                .hasNext(hasNext)
+                .nextCursor(nextCursor)
+                .build();
     }
 
     @Override
-    @Cacheable(value = "userCards", key = "#userId")
     @Transactional(readOnly = true)
-    public List<CardResponseDto> findCardsByUserId(Long userId) {
-        if (!userRepository.existsById(userId)) {
-            throw new ResourceNotFoundException("User", "id " + userId);
+    public Page<CardResponseDto> searchCardsByHolder(String holder, Pageable pageable) {
+        if (!shardFanOut.isSharded()) {
+            return cardRepository.findByHolderContaining(holder, pageable)
+                    .map(cardMapper::toCardResponseDto);
         }
 
-        List<Card> cards = cardRepository.findByUserId(userId);
-        return cardMapper.toCardResponseDtoList(cards);
+        // Each shard returns everything up to the end of the page, the merge cuts it out
+        Sort sort = pageable.getSort().and(Sort.by("id"));
+        int offset = (int) pageable.getOffset();
+        int head = offset + pageable.getPageSize();
+        List<Page<CardResponseDto>> shards = shardFanOut.onEachShard(() -> cardRepository
+                .findByHolderContaining(holder, PageRequest.of(0, head, sort))
+                .map(cardMapper::toCardResponseDto));
+
+        List<CardResponseDto> merged = ShardFanOut.merge(
+                shards.stream().map(Page::getContent).toList(),
+                RecordSort.comparator(sort, CardResponseDto.class),
+                head);
+        long total = shards.stream().mapToLong(Page::getTotalElements).sum();
+        return new PageImpl<>(new ArrayList<>(merged.subList(Math.min(offset, merged.size()), merged.size())),
+                pageable, total);
     }
 
     @Override
     @CacheEvict(value = "userCards", allEntries = true)
     @Transactional
     public CardResponseDto updateCard(Long cardId, CardRequestDto cardRequestDto, Long userId) {
-        Card cardToUpdate = cardRepository.findById(cardId)
-                .orElseThrow(() -> new ResourceNotFoundException("Card", "id " + cardId));
-
-        checkCardOwner(cardToUpdate, userId);
+        // Non-admins can only match their own card, so ownership costs no extra query
+        Long ownerId = isAdmin() ? null : userId;
 
-        cardRepository.findByNumber(cardRequestDto.number()).ifPresent(card -> {
-            if (!card.getId().equals(cardId)) {
+        Optional<OwnedCardDto> updatedCard;
+        try {
+            updatedCard = cardRepository.updateCard(cardId, ownerId, cardRequestDto);
+        } catch (DataIntegrityViolationException e) {
+            if (ConstraintViolations.isViolationOf(e, ConstraintViolations.PAYMENT_CARDS_NUMBER_KEY)) {
                 throw new BusinessException("Card with number " + cardRequestDto.number() + " already taken");
             }
-        });
+            throw e;
+        }
+
+        if (updatedCard.isEmpty()) {
+            // 404 vs 403 is only worked out when nothing was updated
+            if (ownerId != null && cardRepository.existsLiveCardById(cardId)) {
+                throw new ForbiddenException("You cant update this card.");
+            }
+            throw new ResourceNotFoundException("Card", "id " + cardId);
+        }
 
-        cardMapper.updateCardFromDto(cardRequestDto, cardToUpdate);
-        Card updatedCard = cardRepository.save(cardToUpdate);
-        return cardMapper.toCardResponseDto(updatedCard);
+        evictUser(userRepository.refreshReadModel(updatedCard.get().userId()));
+        return updatedCard.get().card();
     }
 
     @Override
-    @Caching(evict = {
-            @CacheEvict(value = "userCards", allEntries = true),
-            @CacheEvict(value = "user", allEntries = true)
-    })
+    @CacheEvict(value = "userCards", allEntries = true)
     @Transactional
     public void deleteCard(Long cardId) {
-        if  (!cardRepository.existsById(cardId)) {
-            throw new ResourceNotFoundException("Card", "id " + cardId);
-        }
+        Long ownerId = cardRepository.deleteCardReturningUserId(cardId)
+                .orElseThrow(() -> new ResourceNotFoundException("Card", "id " + cardId));
 
-        cardRepository.deleteById(cardId);
+        evictUser(userRepository.refreshReadModel(ownerId));
     }
 
     @Override
-    @CacheEvict(value = "userCards", allEntries = true)
+    @CacheEvict(value = "userCards", allEntries = true, condition = "#result")
     @Transactional
-    public void changeCardActivity(Long cardId, Boolean isActive) {
-        if (!cardRepository.existsById(cardId)) {
-            throw new ResourceNotFoundException("Card", "id " + cardId);
-        }
+    public boolean changeCardActivity(Long cardId, Boolean isActive) {
+        Optional<Long> ownerId = isActive
+                ? cardRepository.activateCard(cardId)
+                : cardRepository.deactivateCard(cardId);
 
-        if (isActive) {
-            cardRepository.activateCard(cardId);
-        } else {
-            cardRepository.deactivateCard(cardId);
+        if (ownerId.isEmpty()) {
+            // Either a missing card or a no-op, only this path pays for the lookup
+            if (!cardRepository.existsLiveCardById(cardId)) {
+                throw new ResourceNotFoundException("Card", "id " + cardId);
+            }
+            return false;
         }
+        evictUser(userRepository.refreshReadModel(ownerId.get()));
+        return true;
     }
 
-    private void checkCardOwner(Card card, Long userId) {
-        if (isAdmin()) {
-            return;
-        }
-
-        if (!card.getUser().getId().equals(userId)) {
-            throw new ForbiddenException("You cant update this card.");
-        }
+    // The user documents embed the cards and are cached by id and by email, the refreshed
+    // document names both keys
+    private void evictUser(Optional<UserResponseDto> owner) {
+        owner.ifPresent(document -> {
+            Cache user = cacheManager.getCache("user");
+            if (user != null) {
+                user.evict(document.id());
+                user.evict(document.email());
+            }
+        });
     }
 
     private boolean isAdmin() {
@@ -139,7 +256,6 @@ public class CardServiceImpl implements CardService {
             return false;
         }
 
-        return authentication.getAuthorities().stream()
-                .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
+        return authentication.getAuthorities().contains(ADMIN_AUTHORITY);
     }
 }
@@ -0,0 +1,22 @@
+package com.innowise.userservice.service.impl;
+
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataIntegrityViolationException;
+
+/**
+ * Maps a failed write to the constraint that rejected it, so write paths can rely on
+ * the database instead of checking beforehand.
+ */
+final class ConstraintViolations {
+
+    static final String USERS_EMAIL_KEY = "users_email_key";
+    static final String PAYMENT_CARDS_NUMBER_KEY = "payment_cards_number_key";
+
+    private ConstraintViolations() {
+    }
+
+    static boolean isViolationOf(DataIntegrityViolationException ex, String constraint) {
+        String message = NestedExceptionUtils.getMostSpecificCause(ex).getMessage();
+        return message != null && message.contains("\"" + constraint + "\"");
+    }
+}
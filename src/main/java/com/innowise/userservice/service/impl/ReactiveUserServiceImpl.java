@@ -0,0 +1,56 @@
+package com.innowise.userservice.service.impl;
+
+import com.innowise.userservice.dto.user.UserResponseDto;
+import com.innowise.userservice.dto.user.UserView;
+import com.innowise.userservice.exception.ResourceNotFoundException;
+import com.innowise.userservice.repository.ReactiveUserRepository;
+import com.innowise.userservice.service.ReactiveUserService;
+import com.innowise.userservice.service.cache.ReactiveUserCache;
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Supplier;
+
+/**
+ * Cache names and keys as on {@link UserServiceImpl}, so both read paths share entries.
+ * Created by ReactiveReadConfig only when the reactive read path is enabled.
+ */
+@RequiredArgsConstructor
+public class ReactiveUserServiceImpl implements ReactiveUserService {
+
+    private final ReactiveUserRepository userRepository;
+    private final ReactiveUserCache userCache;
+
+    @Override
+    public Mono<UserResponseDto> findUserById(Long id) {
+        return cached("user", id, () -> userRepository.findUserResponseById(id)
+                .switchIfEmpty(userRepository.findArchivedUserResponseById(id)))
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("User", String.format("id %d", id))));
+    }
+
+    @Override
+    public Mono<UserResponseDto> findUserByEmail(String email) {
+        return cached("user", email, () -> userRepository.findUserResponseByEmail(email)
+                .switchIfEmpty(userRepository.findArchivedUserResponseByEmail(email)))
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("User", "email" + email)));
+    }
+
+    @Override
+    public Mono<UserResponseDto> findUserSummaryById(Long id) {
+        return cached("userSummary", id, () -> userRepository.findUserSummaryById(id)
+                .switchIfEmpty(userRepository.findArchivedUserResponseById(id).map(UserView.SUMMARY::shape)))
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("User", String.format("id %d", id))));
+    }
+
+    @Override
+    public Mono<UserResponseDto> findUserSummaryByEmail(String email) {
+        return cached("userSummary", email, () -> userRepository.findUserSummaryByEmail(email)
+                .switchIfEmpty(userRepository.findArchivedUserResponseByEmail(email).map(UserView.SUMMARY::shape)))
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("User", "email" + email)));
+    }
+
+    private Mono<UserResponseDto> cached(String cacheName, Object key, Supplier<Mono<UserResponseDto>> lookup) {
+        return userCache.get(cacheName, key)
+                .switchIfEmpty(Mono.defer(lookup).flatMap(user -> userCache.put(cacheName, key, user)));
+    }
+}
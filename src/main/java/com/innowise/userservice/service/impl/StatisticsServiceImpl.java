@@ -0,0 +1,59 @@
+package com.innowise.userservice.service.impl;
+
+import com.innowise.userservice.datasource.ShardFanOut;
+import com.innowise.userservice.dto.statistics.StatisticsResponseDto;
+import com.innowise.userservice.exception.CardLimitExceededException;
+import com.innowise.userservice.repository.UserRepository;
+import com.innowise.userservice.service.StatisticsService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Service
+@RequiredArgsConstructor
+public class StatisticsServiceImpl implements StatisticsService {
+
+    private static final String USERS = "users";
+    private static final String ACTIVE_USERS = "users.active";
+    private static final String USERS_WITH_CARDS = "users.cards.";
+    private static final String CARDS = "cards";
+    private static final String ACTIVE_CARDS = "cards.active";
+    private static final String CARDS_EXPIRING = "cards.expiring.";
+
+    private final UserRepository userRepository;
+    private final ShardFanOut shardFanOut;
+
+    @Override
+    @Transactional(readOnly = true)
+    public StatisticsResponseDto getStatistics() {
+        String expiringThisMonth = CARDS_EXPIRING + YearMonth.now();
+        List<String> names = new ArrayList<>(List.of(USERS, ACTIVE_USERS, CARDS, ACTIVE_CARDS, expiringThisMonth));
+        for (int cards = 0; cards <= CardLimitExceededException.MAX_CARDS; cards++) {
+            names.add(USERS_WITH_CARDS + cards);
+        }
+
+        Map<String, Long> counters = new HashMap<>();
+        shardFanOut.onEachShard(() -> userRepository.sumStatisticsCounters(names))
+                .forEach(shard -> shard.forEach((name, value) -> counters.merge(name, value, Long::sum)));
+
+        Map<Integer, Long> usersByCardCount = new LinkedHashMap<>();
+        for (int cards = 0; cards <= CardLimitExceededException.MAX_CARDS; cards++) {
+            usersByCardCount.put(cards, counters.getOrDefault(USERS_WITH_CARDS + cards, 0L));
+        }
+        return StatisticsResponseDto.builder()
+                .totalUsers(counters.getOrDefault(USERS, 0L))
+                .activeUsers(counters.getOrDefault(ACTIVE_USERS, 0L))
+                .totalCards(counters.getOrDefault(CARDS, 0L))
+                .activeCards(counters.getOrDefault(ACTIVE_CARDS, 0L))
+                .activeCardsExpiringThisMonth(counters.getOrDefault(expiringThisMonth, 0L))
+                .usersByCardCount(usersByCardCount)
+                .build();
+    }
+}
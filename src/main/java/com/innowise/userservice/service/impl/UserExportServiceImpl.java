@@ -0,0 +1,161 @@
+package com.innowise.userservice.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.innowise.userservice.datasource.ShardFanOut;
+import com.innowise.userservice.dto.card.CardResponseDto;
+import com.innowise.userservice.dto.user.ExportFormat;
+import com.innowise.userservice.dto.user.UserCardRowDto;
+import com.innowise.userservice.dto.user.UserResponseDto;
+import com.innowise.userservice.entity.User;
+import com.innowise.userservice.repository.UserRepository;
+import com.innowise.userservice.repository.specification.UserSpecification;
+import com.innowise.userservice.service.UserExportService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+@Service
+@RequiredArgsConstructor
+public class UserExportServiceImpl implements UserExportService {
+
+    private static final String CSV_HEADER = "user_id,name,surname,birth_date,email,active,created_at,updated_at," +
+            "card_id,card_number,card_holder,card_expiration_date,card_active";
+
+    private final UserRepository userRepository;
+    private final ObjectMapper objectMapper;
+    private final ShardFanOut shardFanOut;
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportUsers(String name, String surname, Boolean active, ExportFormat format,
+                            OutputStream outputStream) throws IOException {
+        Specification<User> spec = UserSpecification.withFilters(name, surname, active);
+        if (format == ExportFormat.CSV) {
+            outputStream.write((CSV_HEADER + '\n').getBytes(StandardCharsets.UTF_8));
+        }
+
+        // With sharding the shards are exported one after the other, each in user id order
+        try {
+            shardFanOut.forEachShard(() -> {
+                try (Stream<UserCardRowDto> rows = userRepository.streamUsersWithCards(spec)) {
+                    switch (format) {
+                        case NDJSON -> writeNdjson(rows.iterator(), outputStream);
+                        case CSV -> writeCsv(rows.iterator(), outputStream);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * One user per line. Rows arrive ordered by user id, so a user is complete
+     * as soon as the next user id shows up and only its cards are buffered.
+     */
+    private void writeNdjson(Iterator<UserCardRowDto> rows, OutputStream outputStream) throws IOException {
+        ObjectWriter writer = objectMapper.writer();
+        OutputStream out = new BufferedOutputStream(outputStream);
+        UserCardRowDto current = null;
+        List<CardResponseDto> cards = new ArrayList<>();
+
+        while (rows.hasNext()) {
+            UserCardRowDto row = rows.next();
+            if (current != null && !current.userId().equals(row.userId())) {
+                writeLine(writer, out, toUserResponseDto(current, cards));
+                cards = new ArrayList<>();
+            }
+            current = row;
+            if (row.cardId() != null) {
+                cards.add(toCardResponseDto(row));
+            }
+        }
+
+        if (current != null) {
+            writeLine(writer, out, toUserResponseDto(current, cards));
+        }
+        out.flush();
+    }
+
+    private void writeLine(ObjectWriter writer, OutputStream out, UserResponseDto user) throws IOException {
+        out.write(writer.writeValueAsBytes(user));
+        out.write('\n');
+    }
+
+    private void writeCsv(Iterator<UserCardRowDto> rows, OutputStream outputStream) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+
+        while (rows.hasNext()) {
+            UserCardRowDto row = rows.next();
+            writer.write(String.join(",",
+                    csv(row.userId()),
+                    csv(row.name()),
+                    csv(row.surname()),
+                    csv(row.birthDate()),
+                    csv(row.email()),
+                    csv(row.active()),
+                    csv(row.createdAt()),
+                    csv(row.updatedAt()),
+                    csv(row.cardId()),
+                    csv(row.cardNumber()),
+                    csv(row.cardHolder()),
+                    csv(row.cardExpirationDate()),
+                    csv(row.cardActive())
+            ));
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    private String csv(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+            return '"' + text.replace("\"", "\"\"") + '"';
+        }
+        return text;
+    }
+
+    private UserResponseDto toUserResponseDto(UserCardRowDto row, List<CardResponseDto> cards) {
+        return UserResponseDto.builder()
+                .id(row.userId())
+                .name(row.name())
+                .surname(row.surname())
+                .birthDate(row.birthDate())
+                .email(row.email())
+                .active(row.active())
+                .createdAt(row.createdAt())
+                .updatedAt(row.updatedAt())
+                .cards(cards)
+                .build();
+    }
+
+    private CardResponseDto toCardResponseDto(UserCardRowDto row) {
+        return CardResponseDto.builder()
+                .id(row.cardId())
+                .number(row.cardNumber())
+                .holder(row.cardHolder())
+                .expirationDate(row.cardExpirationDate())
+                .active(row.cardActive())
+                .build();
+    }
+}
@@ -1,118 +1,392 @@
 package com.innowise.userservice.service.impl;
 
+import com.innowise.userservice.datasource.ShardFanOut;
+import com.innowise.userservice.dto.CountMode;
+import com.innowise.userservice.dto.CursorPageResponseDto;
+import com.innowise.userservice.dto.PageResponseDto;
 import com.innowise.userservice.dto.user.UserRequestDto;
 import com.innowise.userservice.dto.user.UserResponseDto;
+import com.innowise.userservice.dto.user.UserView;
 import com.innowise.userservice.entity.User;
 import com.innowise.userservice.exception.BusinessException;
+import com.innowise.userservice.exception.InvalidCursorException;
+import com.innowise.userservice.exception.PreconditionFailedException;
 import com.innowise.userservice.exception.ResourceNotFoundException;
 import com.innowise.userservice.mapper.UserMapper;
 import com.innowise.userservice.repository.UserRepository;
 import com.innowise.userservice.repository.specification.UserSpecification;
 import com.innowise.userservice.service.UserService;
+import com.innowise.userservice.service.etag.EntityTags;
+import com.innowise.userservice.service.pagination.CursorCodec;
+import com.innowise.userservice.service.pagination.RecordSort;
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.KeysetScrollPosition;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 @Service
 @RequiredArgsConstructor
 public class UserServiceImpl implements UserService {
 
+    private static final int MAX_SCROLL_SIZE = 100;
+
+    // Properties usable as keyset sort keys, all NOT NULL columns
+    private static final Map<String, Class<?>> SCROLL_KEYS = Map.of(
+            "id", Long.class,
+            "name", String.class,
+            "surname", String.class,
+            "email", String.class,
+            "birthDate", LocalDate.class,
+            "createdAt", LocalDateTime.class
+    );
+
     private final UserRepository userRepository;
     private final UserMapper userMapper;
+    private final CursorCodec cursorCodec;
+    private final ShardFanOut shardFanOut;
+    private final CacheManager cacheManager;
+    private final EntityTags entityTags;
 
     @Override
     @Cacheable(value = "user", key = "#id", unless = "#result == null")
     @Transactional(readOnly = true)
     public UserResponseDto findUserById(Long id) {
-        return userRepository.findById(id)
-                .map(userMapper::toUserResponseDto)
+        return userRepository.findUserResponseById(id)
+                .or(() -> userRepository.findArchivedUserResponseById(id))
                 .orElseThrow(() -> new ResourceNotFoundException("User", String.format("id %d", id)));
     }
 
+    @Override
+    @Cacheable(value = "userSummary", key = "#id", unless = "#result == null")
+    @Transactional(readOnly = true)
+    public UserResponseDto findUserSummaryById(Long id) {
+        return userRepository.findUserSummaryById(id)
+                .or(() -> userRepository.findArchivedUserResponseById(id).map(UserView.SUMMARY::shape))
+                .orElseThrow(() -> new ResourceNotFoundException("User", String.format("id %d", id)));
+    }
+
+    @Override
+    @Cacheable(value = "userSummary", key = "#email", unless = "#result == null")
+    @Transactional(readOnly = true)
+    public UserResponseDto findUserSummaryByEmail(String email) {
+        return userRepository.findUserSummaryByEmail(email)
+                .or(() -> userRepository.findArchivedUserResponseByEmail(email).map(UserView.SUMMARY::shape))
+                .orElseThrow(() -> new ResourceNotFoundException("User", "email" + email));
+    }
+
     @Override
     @Cacheable(
             value = "users",
-            key = "#name + '_' + #surname + '_' + #active + '_' + #pageable.pageNumber + '_' + #pageable.pageSize + '_' + #pageable.sort.toString()",
-            unless = "#result.isEmpty()"
+            key = "#name + '_' + #surname + '_' + #active + '_' + #pageable.pageNumber + '_' + #pageable.pageSize + '_' + #pageable.sort.toString() + '_' + #countMode",
+            unless = "#result.content().isEmpty()"
     )
     @Transactional(readOnly = true)
-    public Page<UserResponseDto> findAllUsers(String name, String surname, Boolean active, Pageable pageable) {
-        Specification<User> spec = UserSpecification.hasName(name)
-                .and(UserSpecification.hasSurname(surname))
-                .and(UserSpecification.isActive(active));
-        return userRepository.findAll(spec, pageable)
-                .map(userMapper::toUserResponseDto);
+    public PageResponseDto<UserResponseDto> findAllUsers(String name, String surname, Boolean active,
+                                                         Pageable pageable, CountMode countMode) {
+        Specification<User> spec = UserSpecification.withFilters(name, surname, active);
+        boolean estimable = countMode == CountMode.ESTIMATED && name == null && surname == null && active == null;
+
+        if (shardFanOut.isSharded()) {
+            return findAllUsersAcrossShards(spec, pageable, countMode, estimable);
+        }
+
+        if (countMode == CountMode.EXACT) {
+            Page<User> page = userRepository.findAll(spec, pageable);
+            return toPageResponseDto(page.map(userMapper::toUserResponseDto), page.getTotalElements(), countMode);
+        }
+
+        Slice<User> slice = userRepository.findBy(spec, query -> query.slice(pageable));
+        Long total = estimable ? estimateTotal(slice) : null;
+        return toPageResponseDto(slice.map(userMapper::toUserResponseDto), total, countMode);
+    }
+
+    /**
+     * Every shard returns its first offset + size + 1 rows in the requested order and the
+     * page is cut from their merge, so a deep page costs its offset on every shard.
+     */
+    private PageResponseDto<UserResponseDto> findAllUsersAcrossShards(Specification<User> spec, Pageable pageable,
+                                                                      CountMode countMode, boolean estimable) {
+        Sort sort = pageable.getSort().and(Sort.by("id"));
+        int offset = (int) pageable.getOffset();
+        int head = offset + pageable.getPageSize() + 1;
+
+        List<ShardRows<UserResponseDto>> shards = shardFanOut.onEachShard(() -> new ShardRows<>(
+                userRepository.findBy(spec, query -> query.sortBy(sort).limit(head).all()).stream()
+                        .map(userMapper::toUserResponseDto)
+                        .toList(),
+                switch (countMode) {
+                    case EXACT -> userRepository.count(spec);
+                    case ESTIMATED -> estimable ? Math.max(userRepository.estimateCount(), 0) : null;
+                    default -> null;
+                }));
+
+        List<UserResponseDto> merged = ShardFanOut.merge(
+                shards.stream().map(ShardRows::rows).toList(),
+                RecordSort.comparator(sort, UserResponseDto.class),
+                head);
+        int end = Math.min(merged.size(), offset + pageable.getPageSize());
+        List<UserResponseDto> content = new ArrayList<>(merged.subList(Math.min(offset, end), end));
+        boolean hasNext = merged.size() > end;
+
+        Long total = null;
+        if (countMode == CountMode.EXACT || estimable) {
+            total = shards.stream().mapToLong(ShardRows::total).sum();
+            if (estimable) {
+                // Same correction as for a single database: what the page proves wins
+                long seen = offset + content.size();
+                if (hasNext) {
+                    total = Math.max(total, seen + 1);
+                } else {
+                    total = content.isEmpty() ? Math.min(total, offset) : seen;
+                }
+            }
+        }
+        return toPageResponseDto(new SliceImpl<>(content, pageable, hasNext), total, countMode);
+    }
+
+    /**
+     * Planner estimate of the table size, corrected by what the slice itself proves:
+     * a non-empty last page gives the exact total, any other page a lower bound, and an
+     * empty page past the end an upper bound of its offset.
+     */
+    private long estimateTotal(Slice<User> slice) {
+        long offset = slice.getPageable().getOffset();
+        long seen = offset + slice.getNumberOfElements();
+        if (!slice.hasNext() && (slice.hasContent() || offset == 0)) {
+            return seen;
+        }
+        long estimate = userRepository.estimateCount();
+        if (estimate < 0) {
+            return userRepository.count();
+        }
+        return slice.hasNext() ? Math.max(estimate, seen + 1) : Math.min(estimate, offset);
+    }
+
+    private PageResponseDto<UserResponseDto> toPageResponseDto(Slice<UserResponseDto> slice, Long total,
+                                                               CountMode countMode) {
+        Integer totalPages = total == null ? null : (int) Math.ceilDiv(total, (long) slice.getSize());
+        return PageResponseDto.<UserResponseDto>builder()
+                // ArrayList keeps the cached value readable with default typing
+                .content(new ArrayList<>(slice.getContent()))
+                .number(slice.getNumber())
+                .size(slice.getSize())
+                .hasNext(slice.hasNext())
+                .totalElements(total)
+                .totalPages(totalPages)
+                .countMode(countMode)
+                .build();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPageResponseDto<UserResponseDto> scrollUsers(String name, String surname, Boolean active,
+                                                              String cursor, int size, Sort sort) {
+        sort.forEach(order -> {
+            if (!SCROLL_KEYS.containsKey(order.getProperty())) {
+                throw new InvalidCursorException("Unsupported sort property " + order.getProperty());
+            }
+        });
+        int limit = Math.clamp(size, 1, MAX_SCROLL_SIZE);
+
+        ScrollPosition position = cursor == null || cursor.isBlank()
+                ? ScrollPosition.keyset()
+                : ScrollPosition.forward(cursorCodec.decode(cursor, sort, SCROLL_KEYS));
+
+        Specification<User> spec = UserSpecification.withFilters(name, surname, active);
+        if (shardFanOut.isSharded()) {
+            return scrollUsersAcrossShards(spec, sort, limit, position);
+        }
+
+        Window<User> window = userRepository.findBy(spec, query -> query
+                .sortBy(sort)
+                .limit(limit)
+                .scroll(position));
+
+        String nextCursor = null;
+        if (window.hasNext() && !window.isEmpty()) {
+            KeysetScrollPosition last = (KeysetScrollPosition) window.positionAt(window.size() - 1);
+            nextCursor = cursorCodec.encode(sort, last.getKeys());
+        }
+
+        return CursorPageResponseDto.<UserResponseDto>builder()
+                .content(window.map(userMapper::toUserResponseDto).getContent())
+                .size(window.size())
+                .hasNext(window.hasNext())
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    /**
+     * Each shard scrolls from the same position; the first {@code limit} rows of the merge
+     * form the page and the last of them is the next position for every shard.
+     */
+    private CursorPageResponseDto<UserResponseDto> scrollUsersAcrossShards(Specification<User> spec, Sort sort,
+                                                                           int limit, ScrollPosition position) {
+        // Keyset scrolling appends the id as the tie-breaker, the merge has to as well
+        Sort keyset = sort.and(Sort.by("id"));
+
+        List<ShardRows<UserResponseDto>> shards = shardFanOut.onEachShard(() -> {
+            Window<User> window = userRepository.findBy(spec, query -> query
+                    .sortBy(sort)
+                    .limit(limit)
+                    .scroll(position));
+            return new ShardRows<>(window.map(userMapper::toUserResponseDto).getContent(), window.hasNext() ? 1L : 0L);
+        });
+
+        List<UserResponseDto> content = ShardFanOut.merge(
+                shards.stream().map(ShardRows::rows).toList(),
+                RecordSort.comparator(keyset, UserResponseDto.class),
+                limit);
+        boolean hasNext = shards.stream().anyMatch(shard -> shard.total() > 0)
+                || shards.stream().mapToInt(shard -> shard.rows().size()).sum() > content.size();
+
+        String nextCursor = hasNext && !content.isEmpty()
+                ? cursorCodec.encode(sort, RecordSort.keys(keyset, content.getLast()))
+                : null;
+
+        return CursorPageResponseDto.<UserResponseDto>builder()
+                .content(content)
+                .size(content.size())
+                .hasNext(hasNext)
+                .nextCursor(nextCursor)
+                .build();
     }
 
     @Override
-    @CachePut(value = "user", key = "#result.id()")
-    @CacheEvict(value = "users", allEntries = true)
+    @Caching(
+            put = @CachePut(value = "user", key = "#result.id()"),
+            evict = {
+                    // An archived user with the same email may have left a summary behind
+                    @CacheEvict(value = "userSummary", key = "#userRequestDto.email()"),
+                    @CacheEvict(value = "users", allEntries = true)
+            }
+    )
     @Transactional
     public UserResponseDto saveUser(UserRequestDto userRequestDto) {
-        if (userRepository.existsByEmail(userRequestDto.email())) {
-            throw new BusinessException("User with email" + userRequestDto.email() + " already exists");
-        }
         User userToSave = userMapper.toUser(userRequestDto);
-        User savedUser = userRepository.save(userToSave);
-        return userMapper.toUserResponseDto(savedUser);
+        User savedUser;
+        try {
+            savedUser = userRepository.save(userToSave);
+        } catch (DataIntegrityViolationException e) {
+            if (ConstraintViolations.isViolationOf(e, ConstraintViolations.USERS_EMAIL_KEY)) {
+                throw new BusinessException("User with email" + userRequestDto.email() + " already exists");
+            }
+            throw e;
+        }
+        // The stored document rather than the entity: timestamps as the database keeps them,
+        // so the cached entry has the same ETag as every later read
+        return userRepository.refreshReadModel(savedUser.getId())
+                .orElseThrow(() -> new ResourceNotFoundException("User", String.format("id %d", savedUser.getId())));
     }
 
     @Override
-    @CachePut(value = "user", key = "#id")
-    @CacheEvict(value = "users", allEntries = true)
+    @Caching(
+            put = @CachePut(value = "user", key = "#id"),
+            evict = {
+                    // Summaries are also keyed by the email, which the update may change
+                    @CacheEvict(value = {"userSummary", "users"}, allEntries = true),
+                    @CacheEvict(value = "user", key = "#userRequestDto.email()")
+            }
+    )
     @Transactional
-    public UserResponseDto updateUser(Long id, UserRequestDto userRequestDto) {
-        User userToUpdate = userRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("User", String.format("id %d", id)));
+    public UserResponseDto updateUser(Long id, UserRequestDto userRequestDto, String ifMatch) {
+        if (ifMatch != null) {
+            UserResponseDto current = userRepository.lockUserResponseById(id)
+                    .orElseThrow(() -> new ResourceNotFoundException("User", String.format("id %d", id)));
+            if (!EntityTags.matches(ifMatch, entityTags.of(current))) {
+                throw new PreconditionFailedException(String.format("User with id %d has been modified", id));
+            }
+        }
 
-        userRepository.findByEmail(userRequestDto.email()).ifPresent(user -> {
-            if (!user.getId().equals(id)) {
+        String previousEmail;
+        try {
+            previousEmail = userRepository.updateUser(id, userRequestDto.name(), userRequestDto.surname(),
+                            userRequestDto.birthDate(), userRequestDto.email(), userRequestDto.active())
+                    .orElseThrow(() -> new ResourceNotFoundException("User", String.format("id %d", id)));
+        } catch (DataIntegrityViolationException e) {
+            if (ConstraintViolations.isViolationOf(e, ConstraintViolations.USERS_EMAIL_KEY)) {
                 throw new BusinessException("Email " + userRequestDto.email() + " is already taken");
             }
-        });
-
-        userMapper.updateUserFromDto(userRequestDto, userToUpdate);
-        User updatedUser = userRepository.save(userToUpdate);
-        return userMapper.toUserResponseDto(updatedUser);
+            throw e;
+        }
+        // The by-email entry under the old address, only the update returned it
+        Cache user = cacheManager.getCache("user");
+        if (user != null) {
+            user.evict(previousEmail);
+        }
+        return userRepository.refreshReadModel(id)
+                .orElseThrow(() -> new ResourceNotFoundException("User", String.format("id %d", id)));
     }
 
     @Override
-    @CacheEvict(value = {"user", "users", "userCards"}, allEntries = true)
+    @Caching(evict = {
+            @CacheEvict(value = {"user", "userSummary", "userCards"}, key = "#id"),
+            @CacheEvict(value = "users", allEntries = true)
+    })
     @Transactional
     public void deleteUser(Long id) {
-        if (!userRepository.existsById(id)) {
-            throw new ResourceNotFoundException("User", String.format("id %d", id));
+        // Only a tombstone, UserPurger deletes the row with its cards in the background
+        String email = userRepository.tombstoneUser(id)
+                .orElseThrow(() -> new ResourceNotFoundException("User", String.format("id %d", id)));
+        // The by-email entry is keyed by a value only the tombstone returned
+        for (String cacheName : List.of("user", "userSummary")) {
+            Cache cache = cacheManager.getCache(cacheName);
+            if (cache != null) {
+                cache.evict(email);
+            }
         }
-        userRepository.deleteById(id);
     }
 
     @Override
-    @CacheEvict(value = {"user", "users"}, allEntries = true)
+    @CacheEvict(value = {"user", "userSummary", "users"}, allEntries = true, condition = "#result")
     @Transactional
-    public void changeUserActivity(Long id, Boolean isActive) {
-        if (!userRepository.existsById(id)) {
-            throw new ResourceNotFoundException("User", String.format("id %d", id));
-        }
+    public boolean changeUserActivity(Long id, Boolean isActive) {
+        int updated = isActive
+                ? userRepository.activateUser(id)
+                : userRepository.deactivateUser(id);
 
-        if (isActive) {
-            userRepository.activateUser(id);
-        } else {
-            userRepository.deactivateUser(id);
+        if (updated == 0) {
+            // Either a missing user or a no-op, only this path pays for the lookup
+            if (!userRepository.existsById(id)) {
+                throw new ResourceNotFoundException("User", String.format("id %d", id));
+            }
+            return false;
         }
+        userRepository.refreshReadModel(id);
+        return true;
     }
 
     @Override
     @Cacheable(value = "user", key = "#email")
     @Transactional(readOnly = true)
     public UserResponseDto findUserByEmail(String email) {
-        return userRepository.findByEmail(email)
-                .map(userMapper::toUserResponseDto)
+        return userRepository.findUserResponseByEmail(email)
+                .or(() -> userRepository.findArchivedUserResponseByEmail(email))
                 .orElseThrow(() -> new ResourceNotFoundException("User", "email" + email));
     }
+
+    private record ShardRows<T>(List<T> rows, Long total) {
+    }
 }
@@ -0,0 +1,66 @@
+package com.innowise.userservice.service.pagination;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.innowise.userservice.exception.InvalidCursorException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Encodes keyset positions (last sort key values + id) into opaque URL-safe tokens.
+ * The sort is part of the token, so a cursor cannot be reused with a different order.
+ */
+@Component
+@RequiredArgsConstructor
+public class CursorCodec {
+
+    private final ObjectMapper objectMapper;
+
+    public String encode(Sort sort, Map<String, Object> keys) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(new Cursor(sort.toString(), keys));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(json);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot encode cursor", e);
+        }
+    }
+
+    /**
+     * @param keyTypes allowed key properties and their types
+     * @return typed keys in token order
+     */
+    public Map<String, Object> decode(String token, Sort sort, Map<String, Class<?>> keyTypes) {
+        Cursor cursor;
+        try {
+            cursor = objectMapper.readValue(Base64.getUrlDecoder().decode(token), Cursor.class);
+        } catch (Exception e) {
+            throw new InvalidCursorException("Malformed cursor");
+        }
+
+        if (cursor.sort() == null || cursor.keys() == null || !cursor.sort().equals(sort.toString())) {
+            throw new InvalidCursorException("Cursor does not match requested sort " + sort);
+        }
+
+        Map<String, Object> keys = new LinkedHashMap<>();
+        cursor.keys().forEach((property, value) -> {
+            Class<?> type = keyTypes.get(property);
+            if (type == null) {
+                throw new InvalidCursorException("Cursor contains unknown key " + property);
+            }
+            try {
+                keys.put(property, value == null ? null : objectMapper.convertValue(value, type));
+            } catch (IllegalArgumentException e) {
+                throw new InvalidCursorException("Cursor contains invalid value for " + property);
+            }
+        });
+        return keys;
+    }
+
+    private record Cursor(String sort, Map<String, Object> keys) {
+    }
+}
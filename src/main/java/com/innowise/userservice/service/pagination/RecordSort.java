@@ -0,0 +1,68 @@
+package com.innowise.userservice.service.pagination;
+
+import org.springframework.data.domain.Sort;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.RecordComponent;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Applies a {@link Sort} over entity properties to response records with the same
+ * component names, for merging rows sorted by different databases. Nulls are ordered
+ * as Postgres does; strings compare by code point, which matches the C collation.
+ */
+public final class RecordSort {
+
+    private RecordSort() {
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static <T extends Record> Comparator<T> comparator(Sort sort, Class<T> type) {
+        Comparator<T> comparator = (a, b) -> 0;
+        for (Sort.Order order : sort) {
+            Method accessor = accessor(type, order.getProperty());
+            Comparator<T> byProperty = Comparator.comparing(
+                    row -> {
+                        Object value = read(accessor, row);
+                        return order.isIgnoreCase() && value instanceof String text
+                                ? text.toLowerCase(Locale.ROOT)
+                                : value;
+                    },
+                    Comparator.nullsLast((Comparator) Comparator.naturalOrder()));
+            comparator = comparator.thenComparing(order.isAscending() ? byProperty : byProperty.reversed());
+        }
+        return comparator;
+    }
+
+    /**
+     * Values of the sort properties of {@code row}, as keyset cursor keys.
+     */
+    public static Map<String, Object> keys(Sort sort, Record row) {
+        Map<String, Object> keys = new LinkedHashMap<>();
+        for (Sort.Order order : sort) {
+            keys.put(order.getProperty(), read(accessor(row.getClass(), order.getProperty()), row));
+        }
+        return keys;
+    }
+
+    private static Method accessor(Class<?> type, String property) {
+        for (RecordComponent component : type.getRecordComponents()) {
+            if (component.getName().equals(property)) {
+                return component.getAccessor();
+            }
+        }
+        throw new IllegalArgumentException(type.getSimpleName() + " has no property " + property);
+    }
+
+    private static Object read(Method accessor, Object row) {
+        try {
+            return accessor.invoke(row);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Cannot read " + accessor.getName(), e);
+        }
+    }
+}
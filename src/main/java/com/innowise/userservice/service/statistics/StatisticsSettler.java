@@ -0,0 +1,85 @@
+package com.innowise.userservice.service.statistics;
+
+import com.innowise.userservice.datasource.ShardContext;
+import com.innowise.userservice.datasource.ShardFanOut;
+import com.innowise.userservice.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Brings the card statistics up to date with the card writes since the last run. Card
+ * writes only mark their owner as pending, so they never lock the user row; every batch
+ * recomputes the card counters of the marked users in a short transaction of its own.
+ */
+@Slf4j
+public class StatisticsSettler implements MeterBinder {
+
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardFanOut shardFanOut;
+    private final int batchSize;
+    private final int maxBatches;
+
+    private Counter settled;
+
+    public StatisticsSettler(UserRepository userRepository, TransactionTemplate transactionTemplate,
+                             ShardFanOut shardFanOut, int batchSize, int maxBatches) {
+        if (batchSize < 1 || maxBatches < 1) {
+            throw new IllegalArgumentException("Statistics settle batch size and batches per run must be positive");
+        }
+        this.userRepository = userRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.shardFanOut = shardFanOut;
+        this.batchSize = batchSize;
+        this.maxBatches = maxBatches;
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        settled = Counter.builder("statistics.settled")
+                .description("Pending card statistics marks settled")
+                .register(registry);
+    }
+
+    @Scheduled(fixedDelayString = "${service.statistics.settle-interval-ms:5000}")
+    public void run() {
+        settle();
+    }
+
+    /**
+     * @return number of pending marks settled by this run
+     */
+    public int settle() {
+        int total = 0;
+        for (int shard = 0; shard < shardFanOut.shardCount(); shard++) {
+            total += ShardContext.callOn(shard, this::settleShard);
+        }
+        if (total > 0) {
+            log.debug("Settled {} pending card statistics marks", total);
+        }
+        return total;
+    }
+
+    private int settleShard() {
+        int marks = 0;
+        for (int batch = 0; batch < maxBatches; batch++) {
+            Integer taken = transactionTemplate.execute(status -> userRepository.settleCardStatistics(batchSize));
+            if (taken == null || taken == 0) {
+                break;
+            }
+            marks += taken;
+            if (settled != null) {
+                settled.increment(taken);
+            }
+            if (taken < batchSize) {
+                break;
+            }
+        }
+        return marks;
+    }
+}
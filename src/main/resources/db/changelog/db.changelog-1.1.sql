@@ -0,0 +1,11 @@
+-- liquibase formatted sql
+
+-- changeset dolartand:4
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+-- changeset dolartand:5 runInTransaction:false
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_name_trgm ON users USING gin (lower(name) gin_trgm_ops);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_surname_trgm ON users USING gin (lower(surname) gin_trgm_ops);
+
+-- changeset dolartand:6 runInTransaction:false
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_payment_cards_holder_trgm ON payment_cards USING gin (lower(holder) gin_trgm_ops);
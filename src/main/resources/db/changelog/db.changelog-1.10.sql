@@ -0,0 +1,39 @@
+-- liquibase formatted sql
+
+-- changeset dolartand:23 runInTransaction:false
+-- Expiry sweep candidates, oldest first. CONCURRENTLY does not work on a partitioned table:
+-- the index is created on the parent only, built on every partition without blocking
+-- writes and attached; it becomes valid once all partitions are attached
+CREATE INDEX IF NOT EXISTS idx_payment_cards_active_expiration ON ONLY payment_cards (active, expiration_date);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_payment_cards_0_active_expiration ON payment_cards_0 (active, expiration_date);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_payment_cards_1_active_expiration ON payment_cards_1 (active, expiration_date);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_payment_cards_2_active_expiration ON payment_cards_2 (active, expiration_date);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_payment_cards_3_active_expiration ON payment_cards_3 (active, expiration_date);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_payment_cards_4_active_expiration ON payment_cards_4 (active, expiration_date);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_payment_cards_5_active_expiration ON payment_cards_5 (active, expiration_date);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_payment_cards_6_active_expiration ON payment_cards_6 (active, expiration_date);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_payment_cards_7_active_expiration ON payment_cards_7 (active, expiration_date);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_payment_cards_8_active_expiration ON payment_cards_8 (active, expiration_date);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_payment_cards_9_active_expiration ON payment_cards_9 (active, expiration_date);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_payment_cards_10_active_expiration ON payment_cards_10 (active, expiration_date);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_payment_cards_11_active_expiration ON payment_cards_11 (active, expiration_date);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_payment_cards_12_active_expiration ON payment_cards_12 (active, expiration_date);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_payment_cards_13_active_expiration ON payment_cards_13 (active, expiration_date);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_payment_cards_14_active_expiration ON payment_cards_14 (active, expiration_date);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_payment_cards_15_active_expiration ON payment_cards_15 (active, expiration_date);
+ALTER INDEX idx_payment_cards_active_expiration ATTACH PARTITION idx_payment_cards_0_active_expiration;
+ALTER INDEX idx_payment_cards_active_expiration ATTACH PARTITION idx_payment_cards_1_active_expiration;
+ALTER INDEX idx_payment_cards_active_expiration ATTACH PARTITION idx_payment_cards_2_active_expiration;
+ALTER INDEX idx_payment_cards_active_expiration ATTACH PARTITION idx_payment_cards_3_active_expiration;
+ALTER INDEX idx_payment_cards_active_expiration ATTACH PARTITION idx_payment_cards_4_active_expiration;
+ALTER INDEX idx_payment_cards_active_expiration ATTACH PARTITION idx_payment_cards_5_active_expiration;
+ALTER INDEX idx_payment_cards_active_expiration ATTACH PARTITION idx_payment_cards_6_active_expiration;
+ALTER INDEX idx_payment_cards_active_expiration ATTACH PARTITION idx_payment_cards_7_active_expiration;
+ALTER INDEX idx_payment_cards_active_expiration ATTACH PARTITION idx_payment_cards_8_active_expiration;
+ALTER INDEX idx_payment_cards_active_expiration ATTACH PARTITION idx_payment_cards_9_active_expiration;
+ALTER INDEX idx_payment_cards_active_expiration ATTACH PARTITION idx_payment_cards_10_active_expiration;
+ALTER INDEX idx_payment_cards_active_expiration ATTACH PARTITION idx_payment_cards_11_active_expiration;
+ALTER INDEX idx_payment_cards_active_expiration ATTACH PARTITION idx_payment_cards_12_active_expiration;
+ALTER INDEX idx_payment_cards_active_expiration ATTACH PARTITION idx_payment_cards_13_active_expiration;
+ALTER INDEX idx_payment_cards_active_expiration ATTACH PARTITION idx_payment_cards_14_active_expiration;
+ALTER INDEX idx_payment_cards_active_expiration ATTACH PARTITION idx_payment_cards_15_active_expiration;
@@ -0,0 +1,187 @@
+-- liquibase formatted sql
+
+-- Card writes no longer lock the owner row to keep the card counters exact. The lock
+-- took card -> user order, the archiver and the purger delete users and cascade to cards
+-- in user -> card order, and two such transactions could deadlock. Now a card write only
+-- appends its owner to statistics_pending_users, and settle_card_statistics (called by
+-- StatisticsSettler) recomputes the card counters of pending users from their cards:
+--   users, users.active                 still kept by the users trigger, right away
+--   users.cards.<n>, cards, cards.active, cards.expiring.<yyyy-mm>
+--                                       settled, lag behind writes by the settle interval
+-- statistics_contributions holds what each live user last added to the card counters, so
+-- a settle adds the difference. An append-only log without a unique key never blocks a
+-- writer: the settler only takes committed marks, and a mark committed after its claim
+-- stays for the next run.
+
+-- changeset dolartand:24 splitStatements:false
+LOCK TABLE users, payment_cards IN SHARE ROW EXCLUSIVE MODE;
+
+CREATE TABLE statistics_pending_users (
+    id BIGSERIAL PRIMARY KEY,
+    user_id BIGINT NOT NULL
+);
+
+CREATE TABLE statistics_contributions (
+    user_id BIGINT NOT NULL,
+    name VARCHAR(64) NOT NULL,
+    value BIGINT NOT NULL,
+    PRIMARY KEY (user_id, name)
+);
+
+CREATE OR REPLACE FUNCTION mark_statistics_pending(user_id BIGINT) RETURNS void AS $$
+BEGIN
+    INSERT INTO statistics_pending_users (user_id) VALUES (user_id);
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION remove_user_statistics(removed users) RETURNS void AS $$
+BEGIN
+    PERFORM bump_statistic('users', removed.id, -1);
+    PERFORM bump_statistic('users.active', removed.id, CASE WHEN removed.active THEN -1 ELSE 0 END);
+    PERFORM mark_statistics_pending(removed.id);
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION maintain_user_statistics() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        IF NEW.deleted_at IS NULL THEN
+            PERFORM bump_statistic('users', NEW.id, 1);
+            PERFORM bump_statistic('users.active', NEW.id, CASE WHEN NEW.active THEN 1 ELSE 0 END);
+            PERFORM mark_statistics_pending(NEW.id);
+        END IF;
+    ELSIF TG_OP = 'UPDATE' THEN
+        IF OLD.deleted_at IS NULL AND NEW.deleted_at IS NOT NULL THEN
+            PERFORM remove_user_statistics(OLD);
+        ELSIF NEW.deleted_at IS NULL AND NEW.active IS DISTINCT FROM OLD.active THEN
+            PERFORM bump_statistic('users.active', NEW.id, CASE WHEN NEW.active THEN 1 ELSE -1 END);
+        END IF;
+    ELSIF OLD.deleted_at IS NULL THEN
+        PERFORM remove_user_statistics(OLD);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- The cards are no longer read on delete, so it runs with the other events after the row
+DROP TRIGGER trg_users_statistics_delete ON users;
+DROP TRIGGER trg_users_statistics ON users;
+CREATE TRIGGER trg_users_statistics
+    AFTER INSERT OR DELETE OR UPDATE OF active, deleted_at ON users
+    FOR EACH ROW EXECUTE FUNCTION maintain_user_statistics();
+
+-- A plain read of the owner, nothing is locked. Cards of a deleted user (tombstoned, or
+-- removed by the cascade of its delete) are settled through the mark of the user trigger
+CREATE OR REPLACE FUNCTION maintain_card_statistics() RETURNS trigger AS $$
+DECLARE
+    owner BIGINT := COALESCE(NEW.user_id, OLD.user_id);
+BEGIN
+    IF TG_OP = 'UPDATE' AND NEW.active IS NOT DISTINCT FROM OLD.active
+            AND NEW.expiration_date IS NOT DISTINCT FROM OLD.expiration_date THEN
+        RETURN NULL;
+    END IF;
+    IF EXISTS (SELECT 1 FROM users WHERE id = owner AND deleted_at IS NULL) THEN
+        PERFORM mark_statistics_pending(owner);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Settles up to batch_size marks, oldest first, and returns how many were taken. Settlers
+-- queue on an advisory lock, so two of them never compute the same user from the same
+-- previous contributions. The lock is only taken here, no request waits for it; the card
+-- counters it writes are not touched by the triggers, so it holds no row a request needs.
+CREATE OR REPLACE FUNCTION settle_card_statistics(batch_size INT) RETURNS INT AS $$
+DECLARE
+    settled BIGINT[];
+    marks INT;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('settle_card_statistics'));
+
+    WITH taken AS (
+        DELETE FROM statistics_pending_users
+        WHERE id IN (SELECT id FROM statistics_pending_users ORDER BY id LIMIT batch_size)
+        RETURNING user_id
+    )
+    SELECT count(*), array_agg(DISTINCT user_id) INTO marks, settled FROM taken;
+    IF marks = 0 THEN
+        RETURN 0;
+    END IF;
+
+    -- One statement, so the cards and the previous contributions come from one snapshot.
+    -- The upsert and the delete touch different contribution rows
+    WITH live AS (
+        SELECT u.id FROM users u WHERE u.id = ANY (settled) AND u.deleted_at IS NULL
+    ), current AS (
+        SELECT l.id AS user_id,
+               'users.cards.' || (SELECT count(*) FROM payment_cards c WHERE c.user_id = l.id) AS name,
+               1::BIGINT AS value
+        FROM live l
+        UNION ALL
+        SELECT c.user_id, 'cards', count(*)
+        FROM payment_cards c
+        JOIN live l ON l.id = c.user_id
+        GROUP BY c.user_id
+        UNION ALL
+        SELECT c.user_id, counter, count(*)
+        FROM payment_cards c
+        JOIN live l ON l.id = c.user_id
+        CROSS JOIN LATERAL (VALUES ('cards.active'), ('cards.expiring.' || to_char(c.expiration_date, 'YYYY-MM')))
+            AS counters(counter)
+        WHERE c.active
+        GROUP BY c.user_id, counter
+    ), previous AS (
+        SELECT user_id, name, value FROM statistics_contributions WHERE user_id = ANY (settled)
+    ), saved AS (
+        INSERT INTO statistics_contributions (user_id, name, value)
+        SELECT user_id, name, value FROM current
+        ON CONFLICT (user_id, name) DO UPDATE SET value = EXCLUDED.value
+    ), dropped AS (
+        DELETE FROM statistics_contributions p
+        WHERE p.user_id = ANY (settled)
+          AND NOT EXISTS (SELECT 1 FROM current c WHERE c.user_id = p.user_id AND c.name = p.name)
+    )
+    INSERT INTO statistics_counters (name, stripe, value)
+    SELECT name, user_id % 16, sum(value)
+    FROM (
+        SELECT user_id, name, value FROM current
+        UNION ALL
+        SELECT user_id, name, -value FROM previous
+    ) AS delta
+    GROUP BY name, user_id % 16
+    HAVING sum(value) <> 0
+    ORDER BY name, user_id % 16
+    ON CONFLICT (name, stripe) DO UPDATE SET value = statistics_counters.value + EXCLUDED.value;
+
+    RETURN marks;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Writers are locked out until commit, the contributions and the recomputed card counters
+-- see the same rows as the new triggers
+INSERT INTO statistics_contributions (user_id, name, value)
+SELECT user_id, name, count(*)
+FROM (
+    SELECT u.id AS user_id, 'users.cards.' || (SELECT count(*) FROM payment_cards c WHERE c.user_id = u.id) AS name
+    FROM users u
+    WHERE u.deleted_at IS NULL
+    UNION ALL
+    SELECT c.user_id, 'cards'
+    FROM payment_cards c
+    JOIN users u ON u.id = c.user_id AND u.deleted_at IS NULL
+    UNION ALL
+    SELECT c.user_id, counter
+    FROM payment_cards c
+    JOIN users u ON u.id = c.user_id AND u.deleted_at IS NULL
+    CROSS JOIN LATERAL (VALUES ('cards.active'), ('cards.expiring.' || to_char(c.expiration_date, 'YYYY-MM')))
+        AS counters(counter)
+    WHERE c.active
+) AS contributed
+GROUP BY user_id, name;
+
+DELETE FROM statistics_counters WHERE name = 'cards' OR name LIKE 'cards.%' OR name LIKE 'users.cards.%';
+
+INSERT INTO statistics_counters (name, stripe, value)
+SELECT name, user_id % 16, sum(value)
+FROM statistics_contributions
+GROUP BY name, user_id % 16;
@@ -0,0 +1,9 @@
+-- liquibase formatted sql
+
+-- changeset dolartand:25
+-- Card number to shard directory, only used on shard 0 when sharding is enabled.
+-- payment_card_numbers reserves a number on its own shard only
+CREATE TABLE card_number_directory (
+    number VARCHAR(19) PRIMARY KEY,
+    shard INT NOT NULL
+);
@@ -0,0 +1,35 @@
+-- liquibase formatted sql
+
+-- changeset dolartand:7
+CREATE TABLE user_read_model (
+    user_id BIGINT PRIMARY KEY REFERENCES users(id) ON DELETE CASCADE,
+    email VARCHAR(255) NOT NULL,
+    document JSONB NOT NULL,
+    refreshed_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX idx_user_read_model_email ON user_read_model(email);
+
+-- changeset dolartand:8
+INSERT INTO user_read_model (user_id, email, document, refreshed_at)
+SELECT u.id,
+       u.email,
+       jsonb_build_object(
+               'id', u.id,
+               'name', u.name,
+               'surname', u.surname,
+               'birthDate', u.birth_date,
+               'email', u.email,
+               'active', u.active,
+               'createdAt', u.created_at,
+               'updatedAt', u.updated_at,
+               'cards', COALESCE((SELECT jsonb_agg(jsonb_build_object(
+                                                   'id', c.id,
+                                                   'number', c.number,
+                                                   'holder', c.holder,
+                                                   'expirationDate', c.expiration_date,
+                                                   'active', c.active) ORDER BY c.id)
+                                  FROM payment_cards c
+                                  WHERE c.user_id = u.id), '[]'::jsonb)),
+       now()
+FROM users u;
@@ -0,0 +1,37 @@
+-- liquibase formatted sql
+
+-- changeset dolartand:9
+ALTER TABLE payment_cards ADD COLUMN card_slot SMALLINT;
+
+UPDATE payment_cards c
+SET card_slot = s.slot
+FROM (SELECT id, row_number() OVER (PARTITION BY user_id ORDER BY id) AS slot FROM payment_cards) s
+WHERE c.id = s.id;
+
+ALTER TABLE payment_cards ALTER COLUMN card_slot SET NOT NULL;
+ALTER TABLE payment_cards ADD CONSTRAINT chk_payment_cards_card_slot CHECK (card_slot BETWEEN 1 AND 5);
+-- One card per slot: at most 5 cards per user, and the index also serves lookups by user_id
+ALTER TABLE payment_cards ADD CONSTRAINT uq_payment_cards_user_slot UNIQUE (user_id, card_slot);
+
+-- changeset dolartand:10 splitStatements:false
+-- Inserts that do not pick a slot (plain JPA saves) get the first free one
+CREATE OR REPLACE FUNCTION assign_card_slot() RETURNS trigger AS $$
+BEGIN
+    IF NEW.card_slot IS NULL THEN
+        SELECT s.slot INTO NEW.card_slot
+        FROM generate_series(1, 5) AS s(slot)
+        WHERE NOT EXISTS (SELECT 1 FROM payment_cards c WHERE c.user_id = NEW.user_id AND c.card_slot = s.slot)
+        ORDER BY s.slot
+        LIMIT 1;
+
+        IF NEW.card_slot IS NULL THEN
+            RAISE EXCEPTION 'User with id % already has 5 cards', NEW.user_id USING ERRCODE = 'check_violation';
+        END IF;
+    END IF;
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_payment_cards_card_slot
+    BEFORE INSERT ON payment_cards
+    FOR EACH ROW EXECUTE FUNCTION assign_card_slot();
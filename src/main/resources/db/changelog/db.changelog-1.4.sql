@@ -0,0 +1,11 @@
+-- liquibase formatted sql
+
+-- changeset dolartand:11
+-- Same key as the users_email_key constraint index, only doubled the write cost
+DROP INDEX IF EXISTS idx_unique_user_email;
+
+-- changeset dolartand:12 runInTransaction:false
+-- Activity filters page by id, so the index returns a page in order without a sort.
+-- payment_cards.user_id needs no own index, uq_payment_cards_user_slot leads with it
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_active_id ON users (active, id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_payment_cards_active_id ON payment_cards (active, id);
@@ -0,0 +1,173 @@
+-- liquibase formatted sql
+
+-- Moves payment_cards to 16 hash partitions by user_id in three steps: the partitioned
+-- table is created and kept in sync by a trigger, existing rows are copied in batches,
+-- and the tables are swapped. On a large table run CALL copy_payment_cards() from psql
+-- before deploying; the copy resumes where it stopped and the changeset then only
+-- checks that it has finished. Until changeset 15 the migration is undone by dropping
+-- payment_cards_p, payment_card_numbers and the sync trigger.
+
+-- changeset dolartand:13 splitStatements:false
+CREATE TABLE payment_cards_p (
+    id BIGINT NOT NULL DEFAULT nextval('payment_cards_id_seq'),
+    user_id BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    number VARCHAR(19) NOT NULL,
+    holder VARCHAR(255) NOT NULL,
+    expiration_date DATE NOT NULL,
+    active BOOLEAN NOT NULL DEFAULT true,
+    created_at TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP NOT NULL,
+    card_slot SMALLINT NOT NULL,
+    CONSTRAINT payment_cards_p_pkey PRIMARY KEY (id, user_id),
+    CONSTRAINT chk_payment_cards_card_slot CHECK (card_slot BETWEEN 1 AND 5),
+    CONSTRAINT uq_payment_cards_p_user_slot UNIQUE (user_id, card_slot)
+) PARTITION BY HASH (user_id);
+
+DO $$
+BEGIN
+    FOR i IN 0..15 LOOP
+        EXECUTE format('CREATE TABLE payment_cards_p_%s PARTITION OF payment_cards_p ' ||
+                       'FOR VALUES WITH (MODULUS 16, REMAINDER %s)', i, i);
+    END LOOP;
+END;
+$$;
+
+CREATE INDEX idx_payment_cards_p_active_id ON payment_cards_p (active, id);
+CREATE INDEX idx_payment_cards_p_number ON payment_cards_p (number);
+CREATE INDEX idx_payment_cards_p_holder_trgm ON payment_cards_p USING gin (lower(holder) gin_trgm_ops);
+
+-- A unique index on a partitioned table has to contain user_id, so card numbers are
+-- reserved here. Deleting a card or its user releases the number through the foreign key
+CREATE TABLE payment_card_numbers (
+    number VARCHAR(19) NOT NULL,
+    card_id BIGINT NOT NULL,
+    user_id BIGINT NOT NULL,
+    CONSTRAINT payment_card_numbers_pkey PRIMARY KEY (number),
+    CONSTRAINT payment_card_numbers_card_fkey FOREIGN KEY (card_id, user_id)
+        REFERENCES payment_cards_p (id, user_id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_payment_card_numbers_card ON payment_card_numbers (card_id, user_id);
+
+CREATE OR REPLACE FUNCTION reserve_card_number() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO payment_card_numbers (number, card_id, user_id) VALUES (NEW.number, NEW.id, NEW.user_id);
+    ELSIF NEW.number <> OLD.number THEN
+        UPDATE payment_card_numbers SET number = NEW.number WHERE number = OLD.number;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_payment_cards_number
+    AFTER INSERT OR UPDATE OF number ON payment_cards_p
+    FOR EACH ROW EXECUTE FUNCTION reserve_card_number();
+
+-- Every write to the old table from now on is repeated on the new one, so the copy
+-- below only has to cover rows that existed before this changeset
+CREATE OR REPLACE FUNCTION mirror_payment_card() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        DELETE FROM payment_cards_p WHERE id = OLD.id AND user_id = OLD.user_id;
+    ELSE
+        INSERT INTO payment_cards_p (id, user_id, number, holder, expiration_date, active, created_at, updated_at,
+                                     card_slot)
+        VALUES (NEW.id, NEW.user_id, NEW.number, NEW.holder, NEW.expiration_date, NEW.active, NEW.created_at,
+                NEW.updated_at, NEW.card_slot)
+        ON CONFLICT (id, user_id) DO UPDATE
+            SET number = EXCLUDED.number,
+                holder = EXCLUDED.holder,
+                expiration_date = EXCLUDED.expiration_date,
+                active = EXCLUDED.active,
+                updated_at = EXCLUDED.updated_at,
+                card_slot = EXCLUDED.card_slot;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_payment_cards_mirror
+    AFTER INSERT OR UPDATE OR DELETE ON payment_cards
+    FOR EACH ROW EXECUTE FUNCTION mirror_payment_card();
+
+CREATE TABLE payment_cards_copy_progress (
+    last_id BIGINT NOT NULL,
+    finished_at TIMESTAMP
+);
+
+INSERT INTO payment_cards_copy_progress (last_id) VALUES (0);
+
+-- Copies in id order and commits every batch, so neither locks nor WAL pile up.
+-- FOR SHARE keeps a row from being deleted between reading and copying it
+CREATE OR REPLACE PROCEDURE copy_payment_cards(batch_size INT DEFAULT 10000) AS $$
+DECLARE
+    copied_to BIGINT;
+BEGIN
+    LOOP
+        WITH batch AS (
+            SELECT id, user_id, number, holder, expiration_date, active, created_at, updated_at, card_slot
+            FROM payment_cards
+            WHERE id > (SELECT last_id FROM payment_cards_copy_progress)
+            ORDER BY id
+            LIMIT batch_size
+            FOR SHARE
+        ), copied AS (
+            INSERT INTO payment_cards_p (id, user_id, number, holder, expiration_date, active, created_at,
+                                         updated_at, card_slot)
+            SELECT id, user_id, number, holder, expiration_date, active, created_at, updated_at, card_slot
+            FROM batch
+            ON CONFLICT DO NOTHING
+        )
+        SELECT max(id) INTO copied_to FROM batch;
+
+        EXIT WHEN copied_to IS NULL;
+        UPDATE payment_cards_copy_progress SET last_id = copied_to;
+        COMMIT;
+    END LOOP;
+
+    UPDATE payment_cards_copy_progress SET finished_at = now() WHERE finished_at IS NULL;
+    COMMIT;
+END;
+$$ LANGUAGE plpgsql;
+
+-- changeset dolartand:14 runInTransaction:false
+CALL copy_payment_cards();
+
+-- changeset dolartand:15 splitStatements:false
+LOCK TABLE payment_cards IN ACCESS EXCLUSIVE MODE;
+
+DO $$
+BEGIN
+    IF (SELECT finished_at FROM payment_cards_copy_progress) IS NULL THEN
+        RAISE EXCEPTION 'payment_cards copy has not finished, run CALL copy_payment_cards()';
+    END IF;
+END;
+$$;
+
+ALTER SEQUENCE payment_cards_id_seq OWNED BY payment_cards_p.id;
+DROP TABLE payment_cards;
+DROP TABLE payment_cards_copy_progress;
+DROP PROCEDURE copy_payment_cards(INT);
+DROP FUNCTION mirror_payment_card();
+
+ALTER TABLE payment_cards_p RENAME TO payment_cards;
+ALTER TABLE payment_cards RENAME CONSTRAINT payment_cards_p_pkey TO payment_cards_pkey;
+ALTER TABLE payment_cards RENAME CONSTRAINT payment_cards_p_user_id_fkey TO payment_cards_user_id_fkey;
+ALTER TABLE payment_cards RENAME CONSTRAINT uq_payment_cards_p_user_slot TO uq_payment_cards_user_slot;
+ALTER INDEX idx_payment_cards_p_active_id RENAME TO idx_payment_cards_active_id;
+ALTER INDEX idx_payment_cards_p_number RENAME TO idx_payment_cards_number;
+ALTER INDEX idx_payment_cards_p_holder_trgm RENAME TO idx_payment_cards_holder_trgm;
+ALTER TABLE payment_card_numbers RENAME CONSTRAINT payment_card_numbers_pkey TO payment_cards_number_key;
+
+DO $$
+BEGIN
+    FOR i IN 0..15 LOOP
+        EXECUTE format('ALTER TABLE payment_cards_p_%s RENAME TO payment_cards_%s', i, i);
+    END LOOP;
+END;
+$$;
+
+CREATE TRIGGER trg_payment_cards_card_slot
+    BEFORE INSERT ON payment_cards
+    FOR EACH ROW EXECUTE FUNCTION assign_card_slot();
@@ -0,0 +1,8 @@
+-- liquibase formatted sql
+
+-- changeset dolartand:16
+-- Email to shard directory, only used on shard 0 when sharding is enabled
+CREATE TABLE user_shard_directory (
+    email VARCHAR(255) PRIMARY KEY,
+    shard INT NOT NULL
+);
@@ -0,0 +1,16 @@
+-- liquibase formatted sql
+
+-- changeset dolartand:17
+-- Users inactive past the archive horizon, moved out of users with their cards.
+-- One read model document per user; email is not unique, a new user may take it
+CREATE TABLE users_archive (
+    id BIGINT PRIMARY KEY,
+    email VARCHAR(255) NOT NULL,
+    document JSONB NOT NULL,
+    archived_at TIMESTAMP NOT NULL
+);
+CREATE INDEX idx_users_archive_email ON users_archive (email, archived_at);
+
+-- changeset dolartand:18 runInTransaction:false
+-- Archiver candidates, oldest first; only inactive rows are indexed
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_inactive_updated_at ON users (updated_at) WHERE active = false;
@@ -0,0 +1,16 @@
+-- liquibase formatted sql
+
+-- changeset dolartand:19
+-- Tombstone of a deleted user, the row and its cards are purged in the background
+ALTER TABLE users ADD COLUMN deleted_at TIMESTAMP;
+
+-- changeset dolartand:20 runInTransaction:false
+-- Email uniqueness only among live users, so a deleted user's email is free right away.
+-- The purger takes tombstones oldest first, the index holds tombstones only
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS users_email_live_key ON users (email) WHERE deleted_at IS NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_deleted_at ON users (deleted_at) WHERE deleted_at IS NOT NULL;
+
+-- changeset dolartand:21
+-- Keeps the users_email_key name, violations are recognized by it
+ALTER TABLE users DROP CONSTRAINT users_email_key;
+ALTER INDEX users_email_live_key RENAME TO users_email_key;
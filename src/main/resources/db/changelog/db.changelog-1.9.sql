@@ -0,0 +1,156 @@
+-- liquibase formatted sql
+
+-- Counters behind GET /api/v1/statistics, kept up to date by triggers so every write path
+-- (JPA saves, native updates, archiving, soft delete, purging) is covered. A counter is
+-- split into 16 stripes by user id so concurrent writers rarely update the same row; a
+-- reader sums the stripes. Only live users and their cards are counted:
+--   users, users.active                 live users, active ones
+--   users.cards.<n>                     live users with n cards
+--   cards, cards.active                 cards of live users, active ones
+--   cards.expiring.<yyyy-mm>            active cards of live users expiring in that month
+
+-- changeset dolartand:22 splitStatements:false
+CREATE TABLE statistics_counters (
+    name VARCHAR(64) NOT NULL,
+    stripe SMALLINT NOT NULL,
+    value BIGINT NOT NULL,
+    PRIMARY KEY (name, stripe)
+);
+
+CREATE OR REPLACE FUNCTION bump_statistic(counter TEXT, user_id BIGINT, delta BIGINT) RETURNS void AS $$
+BEGIN
+    IF delta <> 0 THEN
+        INSERT INTO statistics_counters (name, stripe, value)
+        VALUES (counter, user_id % 16, delta)
+        ON CONFLICT (name, stripe) DO UPDATE SET value = statistics_counters.value + EXCLUDED.value;
+    END IF;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION bump_card_statistics(user_id BIGINT, active BOOLEAN, expiration_date DATE,
+                                                delta BIGINT) RETURNS void AS $$
+BEGIN
+    PERFORM bump_statistic('cards', user_id, delta);
+    IF active THEN
+        PERFORM bump_statistic('cards.active', user_id, delta);
+        PERFORM bump_statistic('cards.expiring.' || to_char(expiration_date, 'YYYY-MM'), user_id, delta);
+    END IF;
+END;
+$$ LANGUAGE plpgsql;
+
+-- A user leaving the statistics takes its cards along
+CREATE OR REPLACE FUNCTION remove_user_statistics(removed users) RETURNS void AS $$
+DECLARE
+    card RECORD;
+    cards BIGINT := 0;
+BEGIN
+    FOR card IN SELECT c.active, c.expiration_date FROM payment_cards c WHERE c.user_id = removed.id LOOP
+        PERFORM bump_card_statistics(removed.id, card.active, card.expiration_date, -1);
+        cards := cards + 1;
+    END LOOP;
+    PERFORM bump_statistic('users', removed.id, -1);
+    PERFORM bump_statistic('users.active', removed.id, CASE WHEN removed.active THEN -1 ELSE 0 END);
+    PERFORM bump_statistic('users.cards.' || cards, removed.id, -1);
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION maintain_user_statistics() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        IF NEW.deleted_at IS NULL THEN
+            PERFORM bump_statistic('users', NEW.id, 1);
+            PERFORM bump_statistic('users.active', NEW.id, CASE WHEN NEW.active THEN 1 ELSE 0 END);
+            PERFORM bump_statistic('users.cards.0', NEW.id, 1);
+        END IF;
+        RETURN NULL;
+    ELSIF TG_OP = 'UPDATE' THEN
+        IF OLD.deleted_at IS NULL AND NEW.deleted_at IS NOT NULL THEN
+            PERFORM remove_user_statistics(OLD);
+        ELSIF NEW.deleted_at IS NULL AND NEW.active IS DISTINCT FROM OLD.active THEN
+            PERFORM bump_statistic('users.active', NEW.id, CASE WHEN NEW.active THEN 1 ELSE -1 END);
+        END IF;
+        RETURN NULL;
+    END IF;
+    -- Before the delete, while the cards are still there; ON DELETE CASCADE runs afterwards
+    IF OLD.deleted_at IS NULL THEN
+        PERFORM remove_user_statistics(OLD);
+    END IF;
+    RETURN OLD;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_users_statistics
+    AFTER INSERT OR UPDATE OF active, deleted_at ON users
+    FOR EACH ROW EXECUTE FUNCTION maintain_user_statistics();
+
+CREATE TRIGGER trg_users_statistics_delete
+    BEFORE DELETE ON users
+    FOR EACH ROW EXECUTE FUNCTION maintain_user_statistics();
+
+-- The user row lock serializes card writes of one user, so the card count read after it
+-- sees every committed card. Cards of a deleted user (tombstoned, or removed by the cascade
+-- of its delete) were already taken out with the user
+CREATE OR REPLACE FUNCTION maintain_card_statistics() RETURNS trigger AS $$
+DECLARE
+    owner BIGINT := COALESCE(NEW.user_id, OLD.user_id);
+    cards BIGINT;
+BEGIN
+    PERFORM 1 FROM users WHERE id = owner AND deleted_at IS NULL FOR NO KEY UPDATE;
+    IF NOT FOUND THEN
+        RETURN NULL;
+    END IF;
+
+    IF TG_OP = 'UPDATE' THEN
+        IF NEW.active IS DISTINCT FROM OLD.active OR NEW.expiration_date IS DISTINCT FROM OLD.expiration_date THEN
+            PERFORM bump_card_statistics(owner, OLD.active, OLD.expiration_date, -1);
+            PERFORM bump_card_statistics(owner, NEW.active, NEW.expiration_date, 1);
+        END IF;
+        RETURN NULL;
+    END IF;
+
+    SELECT count(*) INTO cards FROM payment_cards WHERE user_id = owner;
+    IF TG_OP = 'INSERT' THEN
+        PERFORM bump_card_statistics(owner, NEW.active, NEW.expiration_date, 1);
+        PERFORM bump_statistic('users.cards.' || (cards - 1), owner, -1);
+    ELSE
+        PERFORM bump_card_statistics(owner, OLD.active, OLD.expiration_date, -1);
+        PERFORM bump_statistic('users.cards.' || (cards + 1), owner, -1);
+    END IF;
+    PERFORM bump_statistic('users.cards.' || cards, owner, 1);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_payment_cards_statistics
+    AFTER INSERT OR DELETE OR UPDATE OF active, expiration_date ON payment_cards
+    FOR EACH ROW EXECUTE FUNCTION maintain_card_statistics();
+
+-- Creating the triggers locked out writers until commit, so the backfill and the triggers
+-- see the same rows
+INSERT INTO statistics_counters (name, stripe, value)
+SELECT name, user_id % 16, count(*)
+FROM (
+    SELECT 'users' AS name, u.id AS user_id
+    FROM users u
+    WHERE u.deleted_at IS NULL
+    UNION ALL
+    SELECT 'users.active', u.id
+    FROM users u
+    WHERE u.deleted_at IS NULL AND u.active
+    UNION ALL
+    SELECT 'users.cards.' || (SELECT count(*) FROM payment_cards c WHERE c.user_id = u.id), u.id
+    FROM users u
+    WHERE u.deleted_at IS NULL
+    UNION ALL
+    SELECT 'cards', c.user_id
+    FROM payment_cards c
+    JOIN users u ON u.id = c.user_id AND u.deleted_at IS NULL
+    UNION ALL
+    SELECT counter, c.user_id
+    FROM payment_cards c
+    JOIN users u ON u.id = c.user_id AND u.deleted_at IS NULL
+    CROSS JOIN LATERAL (VALUES ('cards.active'), ('cards.expiring.' || to_char(c.expiration_date, 'YYYY-MM')))
+        AS counters(counter)
+    WHERE c.active
+) AS counted
+GROUP BY name, user_id % 16;
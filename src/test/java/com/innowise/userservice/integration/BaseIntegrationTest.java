@@ -46,5 +46,8 @@ public class BaseIntegrationTest {
         registry.add("spring.liquibase.enabled", () -> "true");
 
         registry.add("service.api.key", () -> TEST_SERVICE_KEY);
+        // Contexts with different properties run side by side, each on a port of its own
+        registry.add("service.grpc.port", () -> "0");
+        registry.add("service.reactive.port", () -> "0");
     }
 }
@@ -6,6 +6,7 @@ import com.innowise.userservice.entity.Card;
 import com.innowise.userservice.entity.User;
 import com.innowise.userservice.repository.CardRepository;
 import com.innowise.userservice.repository.UserRepository;
+import com.innowise.userservice.service.archive.UserPurger;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -14,14 +15,22 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -44,6 +53,9 @@ public class CardControllerIT extends BaseIntegrationTest {
     @Autowired
     private CacheManager cacheManager;
 
+    @Autowired
+    private UserPurger userPurger;
+
     @BeforeEach
     void setUp() {
         cardRepository.deleteAll();
@@ -169,6 +181,46 @@ public class CardControllerIT extends BaseIntegrationTest {
                     .andExpect(jsonPath("$.message").value(Matchers.containsString("already has 5 cards")));
         }
 
+        @Test
+        @DisplayName("should never store more than 5 cards under concurrent adds")
+        void shouldKeepCardLimit_UnderConcurrentAdds() throws Exception {
+            User user = createAndSaveUser("Ivan", "ivan@example.com");
+            int requests = 20;
+            ExecutorService executor = Executors.newFixedThreadPool(requests);
+            CountDownLatch start = new CountDownLatch(1);
+
+            try {
+                List<Future<Integer>> statuses = new ArrayList<>();
+                for (int i = 0; i < requests; i++) {
+                    CardRequestDto requestDto = createCardRequestDto(String.format("4000-0000-0000-%04d", i));
+                    statuses.add(executor.submit(() -> {
+                        start.await();
+                        return mockMvc.perform(post("/api/v1/users/{userId}/cards", user.getId())
+                                        .header("X-User-Id", user.getId().toString())
+                                        .header("X-User-Email", user.getEmail())
+                                        .header("X-User-Role", "USER")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content(objectMapper.writeValueAsString(requestDto)))
+                                .andReturn()
+                                .getResponse()
+                                .getStatus();
+                    }));
+                }
+                start.countDown();
+
+                List<Integer> results = new ArrayList<>();
+                for (Future<Integer> status : statuses) {
+                    results.add(status.get(30, TimeUnit.SECONDS));
+                }
+
+                assertThat(results).filteredOn(status -> status == 201).hasSize(5);
+                assertThat(results).filteredOn(status -> status == 409).hasSize(requests - 5);
+                assertThat(cardRepository.countByUserId(user.getId())).isEqualTo(5);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
         @Test
         @DisplayName("should return 400 when invalid card data")
         void shouldReturnBadRequest_WhenInvalidCardData() throws Exception {
@@ -214,6 +266,53 @@ public class CardControllerIT extends BaseIntegrationTest {
                     .andExpect(jsonPath("$.length()").value(3));
         }
 
+        @Test
+        @DisplayName("should revalidate user cards with ETag until a card is added")
+        void shouldRevalidateUserCards_WithETag() throws Exception {
+            User user = createAndSaveUser("Ivan", "ivan@example.com");
+            createAndSaveCard(user, "1234-5678-9012-3451");
+
+            String etag = mockMvc.perform(get("/api/v1/users/{userId}/cards", user.getId())
+                            .header("X-User-Id", user.getId().toString())
+                            .header("X-User-Email", user.getEmail())
+                            .header("X-User-Role", "USER"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache, private"))
+                    .andReturn()
+                    .getResponse()
+                    .getHeader(HttpHeaders.ETAG);
+
+            mockMvc.perform(get("/api/v1/users/{userId}/cards", user.getId())
+                            .header("X-User-Id", user.getId().toString())
+                            .header("X-User-Email", user.getEmail())
+                            .header("X-User-Role", "USER")
+                            .header(HttpHeaders.IF_NONE_MATCH, etag))
+                    .andExpect(status().isNotModified());
+
+            CardRequestDto requestDto = CardRequestDto.builder()
+                    .number("1234-5678-9012-3452")
+                    .holder("IVAN IVANOV")
+                    .expirationDate(LocalDate.now().plusYears(3))
+                    .active(true)
+                    .build();
+
+            mockMvc.perform(post("/api/v1/users/{userId}/cards", user.getId())
+                            .header("X-User-Id", user.getId().toString())
+                            .header("X-User-Email", user.getEmail())
+                            .header("X-User-Role", "USER")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(requestDto)))
+                    .andExpect(status().isCreated());
+
+            mockMvc.perform(get("/api/v1/users/{userId}/cards", user.getId())
+                            .header("X-User-Id", user.getId().toString())
+                            .header("X-User-Email", user.getEmail())
+                            .header("X-User-Role", "USER")
+                            .header(HttpHeaders.IF_NONE_MATCH, etag))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.length()").value(2));
+        }
+
         @Test
         @DisplayName("should successfully return user cards when authenticated as admin")
         void shouldReturnUserCards_WhenAuthenticatedAsAdmin() throws Exception {
@@ -351,6 +450,53 @@ public class CardControllerIT extends BaseIntegrationTest {
                     .andExpect(jsonPath("$.message").value(Matchers.containsString("You cant update this card")));
         }
 
+        @Test
+        @DisplayName("should leave card unchanged when user tries to update card of another user")
+        void shouldLeaveCardUnchanged_WhenUserIsNotOwner() throws Exception {
+            User user1 = createAndSaveUser("Ivan", "ivan@example.com");
+            User user2 = createAndSaveUser("Petr", "petr@example.com");
+            Card user2Card = createAndSaveCard(user2, "1234-5678-9012-3456");
+            String originalHolder = user2Card.getHolder();
+
+            CardRequestDto updateDto = CardRequestDto.builder()
+                    .number("1234-5678-9012-3456")
+                    .holder("PETR PETROV")
+                    .expirationDate(LocalDate.now().plusYears(3))
+                    .active(false)
+                    .build();
+
+            mockMvc.perform(put("/api/v1/cards/{cardId}", user2Card.getId())
+                            .header("X-User-Id", user1.getId().toString())
+                            .header("X-User-Email", user1.getEmail())
+                            .header("X-User-Role", "USER")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(updateDto)))
+                    .andExpect(status().isForbidden());
+
+            Card unchangedCard = cardRepository.findById(user2Card.getId()).orElseThrow();
+            assertThat(unchangedCard.getHolder()).isEqualTo(originalHolder);
+            assertThat(unchangedCard.getActive()).isTrue();
+        }
+
+        @Test
+        @DisplayName("should return 409 when card number is taken by another card")
+        void shouldReturn409_WhenCardNumberTaken() throws Exception {
+            User user = createAndSaveUser("Ivan", "ivan@example.com");
+            Card card = createAndSaveCard(user, "1234-5678-9012-3456");
+            createAndSaveCard(user, "1111-2222-3333-4444");
+
+            CardRequestDto updateDto = createCardRequestDto("1111-2222-3333-4444");
+
+            mockMvc.perform(put("/api/v1/cards/{cardId}", card.getId())
+                            .header("X-User-Id", user.getId().toString())
+                            .header("X-User-Email", user.getEmail())
+                            .header("X-User-Role", "USER")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(updateDto)))
+                    .andExpect(status().isConflict())
+                    .andExpect(jsonPath("$.message").value(Matchers.containsString("already taken")));
+        }
+
         @Test
         @DisplayName("should return 404 when card doesn't exist")
         void shouldReturnNotFound_WhenCardDoesNotExist() throws Exception {
@@ -401,8 +547,8 @@ public class CardControllerIT extends BaseIntegrationTest {
         }
 
         @Test
-        @DisplayName("Cards should cascade delete when user deleted")
-        void shouldCascadeDelete_WhenUserDeleted() throws Exception {
+        @DisplayName("Cards should cascade delete when deleted user is purged")
+        void shouldCascadeDelete_WhenUserPurged() throws Exception {
             User user = createAndSaveUser("Ivan", "ivan@example.com");
             User admin = createAndSaveUser("Admin", "admin@example.com");
             Card card1 = createAndSaveCard(user, "1234-5678-9012-3451");
@@ -413,6 +559,7 @@ public class CardControllerIT extends BaseIntegrationTest {
                             .header("X-User-Email", user.getEmail())
                             .header("X-User-Role", "ADMIN"))
                     .andExpect(status().isNoContent());
+            userPurger.purge();
 
             assertThat(cardRepository.findById(card1.getId())).isEmpty();
             assertThat(cardRepository.findById(card2.getId())).isEmpty();
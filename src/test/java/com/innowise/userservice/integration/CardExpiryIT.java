@@ -0,0 +1,232 @@
+package com.innowise.userservice.integration;
+
+import com.innowise.userservice.datasource.ShardFanOut;
+import com.innowise.userservice.dto.card.CardRequestDto;
+import com.innowise.userservice.dto.card.CardResponseDto;
+import com.innowise.userservice.dto.user.UserResponseDto;
+import com.innowise.userservice.entity.User;
+import com.innowise.userservice.repository.CardRepository;
+import com.innowise.userservice.repository.UserRepository;
+import com.innowise.userservice.service.CardService;
+import com.innowise.userservice.service.UserService;
+import com.innowise.userservice.service.expiry.CardExpirySweeper;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@TestPropertySource(properties = {
+        "service.card-expiry.enabled=true",
+        "service.card-expiry.interval-ms=3600000"
+})
+@DisplayName("Card expiry integration tests")
+public class CardExpiryIT extends BaseIntegrationTest {
+
+    private static final String ACTIVE_EXPIRED_CARDS =
+            "SELECT count(*) FROM payment_cards WHERE active = true AND expiration_date < current_date";
+
+    @Autowired
+    private CardExpirySweeper cardExpirySweeper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ShardFanOut shardFanOut;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private HikariDataSource dataSource;
+
+    private int cardNumberSequence;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("TRUNCATE users CASCADE");
+        cacheManager.getCacheNames().forEach(cacheName -> {
+            var cache = cacheManager.getCache(cacheName);
+            if (cache != null) {
+                cache.clear();
+            }
+        });
+    }
+
+    @Test
+    @DisplayName("should deactivate expired cards and refresh only their owners")
+    void shouldDeactivateExpiredCards() {
+        User ivan = createUser("ivan@example.com");
+        User petr = createUser("petr@example.com");
+        User sidor = createUser("sidor@example.com");
+        CardResponseDto expired = addCard(ivan, LocalDate.now().minusDays(1), true);
+        CardResponseDto valid = addCard(ivan, LocalDate.now(), true);
+        addCard(petr, LocalDate.now().minusMonths(3), true);
+        addCard(petr, LocalDate.now().minusMonths(6), false);
+        addCard(sidor, LocalDate.now().plusYears(1), true);
+
+        // Warm the caches the sweep has to invalidate
+        userService.findUserById(ivan.getId());
+        userService.findUserByEmail(ivan.getEmail());
+        userService.findUserById(sidor.getId());
+        cardService.findCardsByUserId(ivan.getId());
+
+        assertThat(cardExpirySweeper.sweep()).isEqualTo(2);
+
+        assertThat(jdbcTemplate.queryForObject(ACTIVE_EXPIRED_CARDS, Long.class)).isZero();
+        assertThat(cardRepository.findById(valid.id())).get()
+                .satisfies(card -> assertThat(card.getActive()).isTrue());
+
+        UserResponseDto document = userRepository.findUserResponseById(ivan.getId()).orElseThrow();
+        assertThat(document.cards())
+                .filteredOn(card -> card.id().equals(expired.id()))
+                .singleElement()
+                .satisfies(card -> assertThat(card.active()).isFalse());
+
+        assertThat(cacheManager.getCache("user").get(ivan.getId())).isNull();
+        assertThat(cacheManager.getCache("user").get(ivan.getEmail())).isNull();
+        assertThat(cacheManager.getCache("userCards").get(ivan.getId())).isNull();
+        assertThat(cacheManager.getCache("user").get(sidor.getId())).isNotNull();
+
+        assertThat(cardExpirySweeper.sweep()).isZero();
+    }
+
+    @Test
+    @DisplayName("should skip cards locked by another transaction")
+    void shouldSkipLockedCards() throws Exception {
+        User ivan = createUser("ivan@example.com");
+        User petr = createUser("petr@example.com");
+        CardResponseDto locked = addCard(ivan, LocalDate.now().minusDays(1), true);
+        addCard(petr, LocalDate.now().minusDays(1), true);
+
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement lock = connection.prepareStatement(
+                    "SELECT id FROM payment_cards WHERE id = ? FOR UPDATE")) {
+                lock.setLong(1, locked.id());
+                lock.executeQuery();
+                assertThat(cardExpirySweeper.sweep()).isEqualTo(1);
+            }
+            connection.rollback();
+        }
+
+        assertThat(cardExpirySweeper.sweep()).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject(ACTIVE_EXPIRED_CARDS, Long.class)).isZero();
+    }
+
+    @Test
+    @DisplayName("should leave cards of a locked owner for the next run instead of waiting")
+    void shouldSkipCardsOfLockedOwners() throws Exception {
+        User ivan = createUser("ivan@example.com");
+        User petr = createUser("petr@example.com");
+        CardResponseDto skipped = addCard(ivan, LocalDate.now().minusDays(1), true);
+        addCard(petr, LocalDate.now().minusDays(1), true);
+
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement lock = connection.prepareStatement(
+                    "SELECT id FROM users WHERE id = ? FOR NO KEY UPDATE")) {
+                lock.setLong(1, ivan.getId());
+                lock.executeQuery();
+                assertThat(cardExpirySweeper.sweep()).isEqualTo(1);
+            }
+            connection.rollback();
+        }
+        assertThat(cardRepository.findById(skipped.id())).get()
+                .satisfies(card -> assertThat(card.getActive()).isTrue());
+
+        assertThat(cardExpirySweeper.sweep()).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject(ACTIVE_EXPIRED_CARDS, Long.class)).isZero();
+    }
+
+    @Test
+    @DisplayName("should share the work between concurrent sweeps")
+    void shouldShareWork_WhenSweepsRunConcurrently() {
+        for (int i = 0; i < 10; i++) {
+            User user = createUser("user" + i + "@example.com");
+            for (int card = 0; card < 3; card++) {
+                addCard(user, LocalDate.now().minusDays(card + 1), true);
+            }
+        }
+
+        int sweeps = 4;
+        CyclicBarrier start = new CyclicBarrier(sweeps);
+        ExecutorService executor = Executors.newFixedThreadPool(sweeps);
+        try {
+            List<CompletableFuture<Integer>> runs = new ArrayList<>();
+            for (int i = 0; i < sweeps; i++) {
+                CardExpirySweeper sweeper = new CardExpirySweeper(cardRepository, userRepository,
+                        transactionTemplate, shardFanOut, cacheManager, 4, 100);
+                runs.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        start.await();
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                    return sweeper.sweep();
+                }, executor));
+            }
+
+            // A sweep ends its run early when another holds some of its owners, those cards
+            // are left for the next run
+            int deactivated = runs.stream().mapToInt(CompletableFuture::join).sum();
+            assertThat(deactivated + cardExpirySweeper.sweep()).isEqualTo(30);
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(jdbcTemplate.queryForObject(ACTIVE_EXPIRED_CARDS, Long.class)).isZero();
+    }
+
+    private User createUser(String email) {
+        return userRepository.save(User.builder()
+                .name("Ivan")
+                .surname("Ivanov")
+                .birthDate(LocalDate.of(1990, 1, 1))
+                .email(email)
+                .active(true)
+                .build());
+    }
+
+    // The service validates nothing about dates, the request DTO is checked by the controller
+    private CardResponseDto addCard(User user, LocalDate expirationDate, boolean active) {
+        return cardService.addCardToUser(user.getId(), CardRequestDto.builder()
+                .number("4000-0000-0000-%04d".formatted(++cardNumberSequence))
+                .holder("IVAN IVANOV")
+                .expirationDate(expirationDate)
+                .active(active)
+                .build());
+    }
+}
@@ -0,0 +1,238 @@
+package com.innowise.userservice.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Checks payment_cards hash partitioning: per-user reads touch one partition and card
+ * numbers stay unique across partitions. With -Dpartition.benchmark.rows it also seeds
+ * that many cards and compares per-user reads and cascade deletes with an unpartitioned
+ * copy of the table.
+ */
+@Slf4j
+@DisplayName("Card partitioning integration tests")
+public class CardPartitioningIT extends BaseIntegrationTest {
+
+    private static final int SAMPLES = 200;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("TRUNCATE users CASCADE");
+    }
+
+    @Nested
+    @DisplayName("Partitioned layout")
+    class PartitionedLayoutTests {
+
+        @Test
+        @DisplayName("should read the cards of a user from one partition")
+        void findByUserId_ShouldScanOnePartition() throws Exception {
+            long userId = createUser(1);
+            createCard(userId, "4000-0000-0000-0001");
+
+            JsonNode plan = objectMapper.readTree(jdbcTemplate.queryForObject(
+                    "EXPLAIN (FORMAT JSON) SELECT * FROM payment_cards WHERE user_id = ?", String.class, userId));
+
+            assertThat(relationNames(plan.get(0).get("Plan"), new TreeSet<>())).hasSize(1);
+        }
+
+        @Test
+        @DisplayName("should reject a number used by a card in another partition")
+        void insert_ShouldRejectNumberFromOtherPartition() {
+            long firstUser = createUser(1);
+            long secondUser = userInOtherPartition(firstUser);
+            createCard(firstUser, "4000-0000-0000-0001");
+
+            assertThatThrownBy(() -> createCard(secondUser, "4000-0000-0000-0001"))
+                    .isInstanceOf(DuplicateKeyException.class)
+                    .hasMessageContaining("\"payment_cards_number_key\"");
+        }
+
+        @Test
+        @DisplayName("should release the number when the owner is deleted")
+        void deleteUser_ShouldReleaseNumber() {
+            long firstUser = createUser(1);
+            long secondUser = userInOtherPartition(firstUser);
+            createCard(firstUser, "4000-0000-0000-0001");
+
+            jdbcTemplate.update("DELETE FROM users WHERE id = ?", firstUser);
+            createCard(secondUser, "4000-0000-0000-0001");
+
+            assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM payment_card_numbers", Long.class))
+                    .isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("should move the reservation when the number changes")
+        void updateNumber_ShouldMoveReservation() {
+            long firstUser = createUser(1);
+            long secondUser = userInOtherPartition(firstUser);
+            long cardId = createCard(firstUser, "4000-0000-0000-0001");
+            createCard(secondUser, "4000-0000-0000-0002");
+
+            jdbcTemplate.update("UPDATE payment_cards SET number = ? WHERE id = ?", "4000-0000-0000-0003", cardId);
+            createCard(secondUser, "4000-0000-0000-0001");
+
+            assertThatThrownBy(() -> jdbcTemplate.update(
+                    "UPDATE payment_cards SET number = ? WHERE id = ?", "4000-0000-0000-0002", cardId))
+                    .isInstanceOf(DuplicateKeyException.class);
+        }
+    }
+
+    @Nested
+    @DisplayName("Partitioning benchmark")
+    @EnabledIfSystemProperty(named = "partition.benchmark.rows", matches = "\\d+")
+    class PartitioningBenchmarkTests {
+
+        private static final int CARDS_PER_USER = 4;
+
+        @Test
+        @DisplayName("should compare per-user reads and cascade deletes with an unpartitioned table")
+        void compareWithUnpartitionedTable() {
+            long rows = Long.getLong("partition.benchmark.rows");
+            long users = rows / CARDS_PER_USER;
+            seed(users);
+            long firstUser = jdbcTemplate.queryForObject("SELECT min(id) FROM users", Long.class);
+
+            try {
+                for (String table : List.of("payment_cards_flat", "payment_cards")) {
+                    List<Double> reads = new ArrayList<>();
+                    List<Double> deletes = new ArrayList<>();
+                    for (int i = 0; i < SAMPLES; i++) {
+                        long userId = ThreadLocalRandom.current().nextLong(firstUser, firstUser + users);
+                        reads.add(executionTime("SELECT * FROM " + table + " WHERE user_id = " + userId));
+                        deletes.add(executionTime("DELETE FROM " + table + " WHERE user_id = " + userId));
+                    }
+                    log.info("{} at {} rows: read p50 {} ms p99 {} ms, cascade delete p50 {} ms p99 {} ms",
+                            table, rows, percentile(reads, 50), percentile(reads, 99),
+                            percentile(deletes, 50), percentile(deletes, 99));
+                }
+            } finally {
+                jdbcTemplate.execute("DROP TABLE IF EXISTS payment_cards_flat");
+                jdbcTemplate.execute("TRUNCATE users CASCADE");
+            }
+        }
+
+        private void seed(long users) {
+            jdbcTemplate.update("""
+                    INSERT INTO users (name, surname, birth_date, email, active, created_at, updated_at)
+                    SELECT 'Ivan', 'Ivanov', DATE '1990-01-01', 'user' || i || '@example.com', true, now(), now()
+                    FROM generate_series(1, ?) AS i
+                    """, users);
+            jdbcTemplate.update("""
+                    INSERT INTO payment_cards (user_id, card_slot, number, holder, expiration_date, active,
+                                               created_at, updated_at)
+                    SELECT u.id, s.slot, lpad((u.id * 10 + s.slot)::text, 19, '0'), 'IVAN IVANOV',
+                           DATE '2030-01-01', true, now(), now()
+                    FROM users u
+                    CROSS JOIN generate_series(1, ?) AS s(slot)
+                    """, CARDS_PER_USER);
+
+            // The layout before partitioning, with the same keys as changesets 2, 9 and 12
+            jdbcTemplate.execute("DROP TABLE IF EXISTS payment_cards_flat");
+            jdbcTemplate.execute("CREATE TABLE payment_cards_flat AS SELECT * FROM payment_cards");
+            jdbcTemplate.execute("ALTER TABLE payment_cards_flat ADD PRIMARY KEY (id), ADD UNIQUE (number), " +
+                    "ADD UNIQUE (user_id, card_slot)");
+            jdbcTemplate.execute("CREATE INDEX ON payment_cards_flat (active, id)");
+
+            jdbcTemplate.execute("VACUUM ANALYZE users");
+            jdbcTemplate.execute("VACUUM ANALYZE payment_cards");
+            jdbcTemplate.execute("VACUUM ANALYZE payment_card_numbers");
+            jdbcTemplate.execute("VACUUM ANALYZE payment_cards_flat");
+        }
+
+        // Execution time includes the triggers, so the delete pays for releasing card numbers
+        private double executionTime(String sql) {
+            return transactionTemplate.execute(status -> {
+                status.setRollbackOnly();
+                try {
+                    String plan = jdbcTemplate.queryForObject("EXPLAIN (ANALYZE, FORMAT JSON) " + sql, String.class);
+                    return objectMapper.readTree(plan).get(0).get("Execution Time").asDouble();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        }
+
+        private double percentile(List<Double> values, int percentile) {
+            List<Double> sorted = values.stream().sorted().toList();
+            return sorted.get(Math.min(sorted.size() - 1, sorted.size() * percentile / 100));
+        }
+    }
+
+    private long createUser(int i) {
+        return jdbcTemplate.queryForObject("""
+                INSERT INTO users (name, surname, birth_date, email, active, created_at, updated_at)
+                VALUES ('Ivan', 'Ivanov', DATE '1990-01-01', ?, true, now(), now())
+                RETURNING id
+                """, Long.class, "user" + i + "@example.com");
+    }
+
+    private long createCard(long userId, String number) {
+        return jdbcTemplate.queryForObject("""
+                INSERT INTO payment_cards (user_id, number, holder, expiration_date, active, created_at, updated_at)
+                VALUES (?, ?, 'IVAN IVANOV', DATE '2030-01-01', true, now(), now())
+                RETURNING id
+                """, Long.class, userId, number);
+    }
+
+    // Adds users until one lands in a different partition than the given one
+    private long userInOtherPartition(long userId) {
+        String partition = partitionOf(userId);
+        for (int i = 2; ; i++) {
+            long candidate = createUser(i);
+            if (!partition.equals(partitionOf(candidate))) {
+                return candidate;
+            }
+        }
+    }
+
+    private String partitionOf(long userId) {
+        return jdbcTemplate.queryForObject("""
+                SELECT c.oid::regclass::text
+                FROM pg_inherits i
+                JOIN pg_class c ON c.oid = i.inhrelid
+                WHERE i.inhparent = 'payment_cards'::regclass
+                  AND satisfies_hash_partition('payment_cards'::regclass, 16,
+                          substring(pg_get_expr(c.relpartbound, c.oid) FROM 'remainder (\\d+)')::int, ?::bigint)
+                """, String.class, userId);
+    }
+
+    private Set<String> relationNames(JsonNode node, Set<String> names) {
+        if (node.has("Relation Name")) {
+            names.add(node.get("Relation Name").asText());
+        }
+        if (node.has("Plans")) {
+            node.get("Plans").forEach(child -> relationNames(child, names));
+        }
+        return names;
+    }
+}
@@ -0,0 +1,246 @@
+package com.innowise.userservice.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.innowise.userservice.dto.card.CardResponseDto;
+import com.innowise.userservice.dto.user.UserResponseDto;
+import com.innowise.userservice.entity.Card;
+import com.innowise.userservice.entity.User;
+import com.innowise.userservice.grpc.GrpcServer;
+import com.innowise.userservice.grpc.ServiceKeyInterceptor;
+import com.innowise.userservice.grpc.v1.BatchGetUsersResponse;
+import com.innowise.userservice.grpc.v1.CreateUserRequest;
+import com.innowise.userservice.grpc.v1.Date;
+import com.innowise.userservice.grpc.v1.GetUserByEmailRequest;
+import com.innowise.userservice.grpc.v1.GetUserRequest;
+import com.innowise.userservice.grpc.v1.InternalUserServiceGrpc;
+import com.innowise.userservice.repository.UserRepository;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.MetadataUtils;
+import io.grpc.stub.StreamObserver;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.web.client.RestClient;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * The gRPC internal API against /internal/users, including a local latency comparison of
+ * both with warm caches over loopback.
+ */
+@Slf4j
+@TestPropertySource(properties = "service.grpc.enabled=true")
+@DisplayName("gRPC internal user API integration tests")
+public class GrpcInternalUserIT extends BaseIntegrationTest {
+
+    private static final int WARMUP = 500;
+    private static final int ITERATIONS = 2_000;
+
+    @Autowired
+    private GrpcServer grpcServer;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @LocalServerPort
+    private int httpPort;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private ManagedChannel channel;
+    private InternalUserServiceGrpc.InternalUserServiceBlockingStub blockingStub;
+    private InternalUserServiceGrpc.InternalUserServiceStub asyncStub;
+    private int cardNumberSequence;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+        cacheManager.getCacheNames().forEach(cacheName -> {
+            var cache = cacheManager.getCache(cacheName);
+            if (cache != null) {
+                cache.clear();
+            }
+        });
+
+        Metadata serviceKey = new Metadata();
+        serviceKey.put(ServiceKeyInterceptor.SERVICE_KEY, TEST_SERVICE_KEY);
+        channel = ManagedChannelBuilder.forAddress("localhost", grpcServer.getPort())
+                .usePlaintext()
+                .build();
+        blockingStub = InternalUserServiceGrpc.newBlockingStub(channel)
+                .withInterceptors(MetadataUtils.newAttachHeadersInterceptor(serviceKey));
+        asyncStub = InternalUserServiceGrpc.newStub(channel)
+                .withInterceptors(MetadataUtils.newAttachHeadersInterceptor(serviceKey));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    @DisplayName("should create a user and read it back by id and email")
+    void shouldCreateAndGetUser() {
+        var created = blockingStub.createUser(CreateUserRequest.newBuilder()
+                .setName("Ivan")
+                .setSurname("Ivanov")
+                .setBirthDate(Date.newBuilder().setYear(2005).setMonth(12).setDay(22))
+                .setEmail("ivan@example.com")
+                .setActive(true)
+                .build());
+        assertThat(created.getId()).isPositive();
+        assertThat(created.hasCreatedAt()).isTrue();
+
+        var byId = blockingStub.getUser(GetUserRequest.newBuilder()
+                .setId(created.getId())
+                .setIncludeCards(true)
+                .build());
+        assertThat(byId).isEqualTo(created);
+
+        var byEmail = blockingStub.getUserByEmail(GetUserByEmailRequest.newBuilder()
+                .setEmail("ivan@example.com")
+                .build());
+        assertThat(byEmail.getId()).isEqualTo(created.getId());
+        assertThat(byEmail.getBirthDate().getDay()).isEqualTo(22);
+    }
+
+    @Test
+    @DisplayName("should map service errors to gRPC status codes")
+    void shouldMapErrorsToStatus() {
+        assertThatThrownBy(() -> blockingStub.getUser(GetUserRequest.newBuilder().setId(999_999L).build()))
+                .isInstanceOfSatisfying(StatusRuntimeException.class,
+                        e -> assertThat(e.getStatus().getCode()).isEqualTo(Status.Code.NOT_FOUND));
+
+        assertThatThrownBy(() -> blockingStub.createUser(CreateUserRequest.newBuilder()
+                .setName("Iv")
+                .setEmail("not-an-email")
+                .build()))
+                .isInstanceOfSatisfying(StatusRuntimeException.class,
+                        e -> assertThat(e.getStatus().getCode()).isEqualTo(Status.Code.INVALID_ARGUMENT));
+
+        var withoutKey = InternalUserServiceGrpc.newBlockingStub(channel);
+        assertThatThrownBy(() -> withoutKey.getUser(GetUserRequest.newBuilder().setId(1L).build()))
+                .isInstanceOfSatisfying(StatusRuntimeException.class,
+                        e -> assertThat(e.getStatus().getCode()).isEqualTo(Status.Code.PERMISSION_DENIED));
+    }
+
+    @Test
+    @DisplayName("should answer every streamed lookup in order, missing users included")
+    void shouldStreamBatchLookups() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            ids.add(createUser("user" + i + "@example.com", 2));
+        }
+        ids.add(25, 999_999L);
+
+        List<BatchGetUsersResponse> responses = new ArrayList<>();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        StreamObserver<GetUserRequest> requests = asyncStub.batchGetUsers(new StreamObserver<>() {
+            @Override
+            public void onNext(BatchGetUsersResponse response) {
+                responses.add(response);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                done.completeExceptionally(t);
+            }
+
+            @Override
+            public void onCompleted() {
+                done.complete(null);
+            }
+        });
+        ids.forEach(id -> requests.onNext(GetUserRequest.newBuilder().setId(id).setIncludeCards(true).build()));
+        requests.onCompleted();
+        done.orTimeout(30, TimeUnit.SECONDS).join();
+
+        assertThat(responses).extracting(BatchGetUsersResponse::getId).containsExactlyElementsOf(ids);
+        assertThat(responses.get(25).hasNotFound()).isTrue();
+        assertThat(responses).filteredOn(BatchGetUsersResponse::hasUser)
+                .hasSize(50)
+                .allSatisfy(response -> assertThat(response.getUser().getCardsCount()).isEqualTo(2));
+    }
+
+    @Test
+    @DisplayName("gRPC lookups should return the same user as REST lookups")
+    void grpcLookup_ShouldMatchRestLookup() throws Exception {
+        long userId = createUser("ivan@example.com", 5);
+        GetUserRequest request = GetUserRequest.newBuilder().setId(userId).setIncludeCards(true).build();
+        RestClient restClient = RestClient.builder()
+                .baseUrl("http://localhost:" + httpPort)
+                .defaultHeader("X-Service-Key", TEST_SERVICE_KEY)
+                .build();
+
+        Runnable grpcCall = () -> blockingStub.getUser(request);
+        Runnable restCall = () -> restClient.get()
+                .uri("/internal/users/{id}", userId)
+                .retrieve()
+                .body(byte[].class);
+
+        var fromGrpc = blockingStub.getUser(request);
+        UserResponseDto fromRest = objectMapper.readValue(restClient.get()
+                .uri("/internal/users/{id}", userId)
+                .retrieve()
+                .body(byte[].class), UserResponseDto.class);
+        assertThat(fromGrpc.getEmail()).isEqualTo(fromRest.email());
+        assertThat(fromGrpc.getCardsList())
+                .extracting(card -> card.getNumber())
+                .containsExactlyElementsOf(fromRest.cards().stream().map(CardResponseDto::number).toList());
+
+        long grpcMicros = measure(grpcCall);
+        long restMicros = measure(restCall);
+        log.info("Internal lookup per call: gRPC {} us, REST {} us", grpcMicros, restMicros);
+    }
+
+    private long measure(Runnable call) {
+        for (int i = 0; i < WARMUP; i++) {
+            call.run();
+        }
+        long started = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            call.run();
+        }
+        return (System.nanoTime() - started) / ITERATIONS / 1_000;
+    }
+
+    private long createUser(String email, int cards) {
+        User user = User.builder()
+                .name("Ivan")
+                .surname("Ivanov")
+                .birthDate(LocalDate.of(1990, 1, 1))
+                .email(email)
+                .active(true)
+                .build();
+        for (int i = 0; i < cards; i++) {
+            user.addCard(Card.builder()
+                    .number("4000-0000-0000-%04d".formatted(++cardNumberSequence))
+                    .holder("IVAN IVANOV")
+                    .expirationDate(LocalDate.of(2030, 1, 1))
+                    .active(true)
+                    .build());
+        }
+        return userRepository.save(user).getId();
+    }
+}
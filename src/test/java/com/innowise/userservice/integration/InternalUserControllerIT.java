@@ -1,6 +1,7 @@
 package com.innowise.userservice.integration;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.innowise.userservice.dto.card.CardRequestDto;
 import com.innowise.userservice.dto.user.UserRequestDto;
 import com.innowise.userservice.dto.user.UserResponseDto;
 import com.innowise.userservice.entity.User;
@@ -10,7 +11,10 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
@@ -18,6 +22,7 @@ import java.time.LocalDate;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -34,9 +39,21 @@ public class InternalUserControllerIT extends BaseIntegrationTest {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CacheManager cacheManager;
+
     @BeforeEach
     void setUp() {
         userRepository.deleteAll();
+        cacheManager.getCacheNames().forEach(cacheName -> {
+            var cache = cacheManager.getCache(cacheName);
+            if (cache != null) {
+                cache.clear();
+            }
+        });
     }
 
     @Test
@@ -139,6 +156,53 @@ public class InternalUserControllerIT extends BaseIntegrationTest {
         assertThat(userRepository.findById(user.getId())).isEmpty();
     }
 
+    @Test
+    @DisplayName("should keep user read model in sync with card writes")
+    void shouldKeepReadModelInSync_WithCardWrites() throws Exception {
+        UserRequestDto requestDto = UserRequestDto.builder()
+                .name("Ivan")
+                .surname("Ivanov")
+                .birthDate(LocalDate.of(2005, 12, 22))
+                .email("ivan@example.com")
+                .active(true)
+                .build();
+
+        MvcResult created = mockMvc.perform(post("/internal/users")
+                        .header("X-Service-Key", TEST_SERVICE_KEY)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(requestDto)))
+                .andExpect(status().isCreated())
+                .andReturn();
+        Long userId = objectMapper.readValue(created.getResponse().getContentAsString(), UserResponseDto.class).id();
+
+        CardRequestDto cardRequestDto = CardRequestDto.builder()
+                .number("1234-5678-9012-3456")
+                .holder("IVAN IVANOV")
+                .expirationDate(LocalDate.now().plusYears(3))
+                .active(true)
+                .build();
+
+        mockMvc.perform(post("/api/v1/users/{userId}/cards", userId)
+                        .header("X-User-Id", userId.toString())
+                        .header("X-User-Email", "ivan@example.com")
+                        .header("X-User-Role", "USER")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(cardRequestDto)))
+                .andExpect(status().isCreated());
+
+        String document = jdbcTemplate.queryForObject(
+                "SELECT document FROM user_read_model WHERE user_id = ?", String.class, userId);
+        assertThat(document).contains("1234-5678-9012-3456");
+
+        mockMvc.perform(get("/internal/users/by-email")
+                        .header("X-Service-Key", TEST_SERVICE_KEY)
+                        .param("email", "ivan@example.com"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(userId))
+                .andExpect(jsonPath("$.cards.length()").value(1))
+                .andExpect(jsonPath("$.cards[0].number").value("1234-5678-9012-3456"));
+    }
+
     private User createAndSaveUser(String name, String surname, String email) {
         User user = User.builder()
                 .name(name)
@@ -149,4 +213,90 @@ public class InternalUserControllerIT extends BaseIntegrationTest {
                 .build();
         return userRepository.save(user);
     }
+
+    @Test
+    @DisplayName("should let callers cache user lookups for a short max-age")
+    void shouldReturnCacheHeaders_ForUserLookup() throws Exception {
+        User user = userRepository.save(User.builder()
+                .name("Ivan")
+                .surname("Ivanov")
+                .birthDate(LocalDate.of(2005, 12, 22))
+                .email("ivan@example.com")
+                .active(true)
+                .build());
+
+        String etag = mockMvc.perform(get("/internal/users/{id}", user.getId())
+                        .header("X-Service-Key", TEST_SERVICE_KEY))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=30, private"))
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn()
+                .getResponse()
+                .getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/internal/users/{id}", user.getId())
+                        .header("X-Service-Key", TEST_SERVICE_KEY)
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    @DisplayName("should return only the requested fields without reading cards")
+    void shouldReturnSparseFieldset_ForLoginLookup() throws Exception {
+        User user = userRepository.save(User.builder()
+                .name("Ivan")
+                .surname("Ivanov")
+                .birthDate(LocalDate.of(2005, 12, 22))
+                .email("ivan@example.com")
+                .active(true)
+                .build());
+        jdbcTemplate.update("""
+                INSERT INTO payment_cards (user_id, number, holder, expiration_date, active, created_at, updated_at)
+                VALUES (?, '1234-5678-9012-3456', 'IVAN IVANOV', DATE '2030-01-01', true, now(), now())
+                """, user.getId());
+
+        mockMvc.perform(get("/internal/users/by-email")
+                        .header("X-Service-Key", TEST_SERVICE_KEY)
+                        .param("email", "ivan@example.com")
+                        .param("fields", "id,email,active"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(user.getId()))
+                .andExpect(jsonPath("$.email").value("ivan@example.com"))
+                .andExpect(jsonPath("$.active").value(true))
+                .andExpect(jsonPath("$.name").doesNotExist())
+                .andExpect(jsonPath("$.createdAt").doesNotExist())
+                .andExpect(jsonPath("$.cards").doesNotExist());
+
+        // The lean projection has its own entry, the full document is not cached by it
+        assertThat(cacheManager.getCache("userSummary").get("ivan@example.com")).isNotNull();
+        assertThat(cacheManager.getCache("user").get("ivan@example.com")).isNull();
+
+        mockMvc.perform(get("/internal/users/by-email")
+                        .header("X-Service-Key", TEST_SERVICE_KEY)
+                        .param("email", "ivan@example.com")
+                        .param("fields", "id,email")
+                        .param("include", "cards"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").doesNotExist())
+                .andExpect(jsonPath("$.cards.length()").value(1));
+
+        // Only shaped reads leave properties out, listings and exports keep their nulls
+        assertThat(objectMapper.writeValueAsString(UserResponseDto.builder().id(user.getId()).build()))
+                .contains("\"cards\":null", "\"birthDate\":null");
+    }
+
+    @Test
+    @DisplayName("should return 400 when unknown fields are requested")
+    void shouldReturn400_WhenFieldIsUnknown() throws Exception {
+        mockMvc.perform(get("/internal/users/by-email")
+                        .header("X-Service-Key", TEST_SERVICE_KEY)
+                        .param("email", "ivan@example.com")
+                        .param("fields", "id,password"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/internal/users/{id}", 1L)
+                        .header("X-Service-Key", TEST_SERVICE_KEY)
+                        .param("include", "orders"))
+                .andExpect(status().isBadRequest());
+    }
 }
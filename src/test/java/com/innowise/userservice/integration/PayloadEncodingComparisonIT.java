@@ -0,0 +1,210 @@
+package com.innowise.userservice.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.innowise.userservice.dto.user.UserRequestDto;
+import com.innowise.userservice.dto.user.UserResponseDto;
+import com.innowise.userservice.entity.Card;
+import com.innowise.userservice.entity.User;
+import com.innowise.userservice.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasItem;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Compares JSON with the binary encodings of /internal by payload size and CPU time spent
+ * serializing a user on the calling thread.
+ */
+@Slf4j
+@AutoConfigureMockMvc
+@DisplayName("Payload encoding comparison integration tests")
+public class PayloadEncodingComparisonIT extends BaseIntegrationTest {
+
+    private static final MediaType SMILE = MediaType.valueOf("application/x-jackson-smile");
+
+    private static final int WARMUP = 2_000;
+    private static final int ITERATIONS = 20_000;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MappingJackson2CborHttpMessageConverter cborConverter;
+
+    @Autowired
+    private MappingJackson2SmileHttpMessageConverter smileConverter;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private Long userId;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+        cacheManager.getCacheNames().forEach(cacheName -> {
+            var cache = cacheManager.getCache(cacheName);
+            if (cache != null) {
+                cache.clear();
+            }
+        });
+
+        User user = User.builder()
+                .name("Ivan")
+                .surname("Ivanov")
+                .birthDate(LocalDate.of(1990, 1, 1))
+                .email("ivan@example.com")
+                .active(true)
+                .build();
+        for (int i = 0; i < 5; i++) {
+            user.addCard(Card.builder()
+                    .number("4000-0000-0000-000" + i)
+                    .holder("IVAN IVANOV")
+                    .expirationDate(LocalDate.of(2030, 1, 1))
+                    .active(true)
+                    .build());
+        }
+        userId = userRepository.save(user).getId();
+    }
+
+    @Test
+    @DisplayName("binary encodings should carry the same user in fewer bytes")
+    void binaryEncodings_ShouldMatchJson_AndBeSmaller() throws Exception {
+        byte[] json = fetchUser(MediaType.APPLICATION_JSON);
+        byte[] cbor = fetchUser(MediaType.APPLICATION_CBOR);
+        byte[] smile = fetchUser(SMILE);
+
+        UserResponseDto fromJson = objectMapper.readValue(json, UserResponseDto.class);
+        assertThat(new String(json)).doesNotContain("@class");
+        assertThat(cborConverter.getObjectMapper().readValue(cbor, UserResponseDto.class)).isEqualTo(fromJson);
+        assertThat(smileConverter.getObjectMapper().readValue(smile, UserResponseDto.class)).isEqualTo(fromJson);
+
+        long jsonNanos = serializationNanos(objectMapper, fromJson);
+        long cborNanos = serializationNanos(cborConverter.getObjectMapper(), fromJson);
+        long smileNanos = serializationNanos(smileConverter.getObjectMapper(), fromJson);
+
+        log.info("User payload: json {} B / {} ns, cbor {} B / {} ns, smile {} B / {} ns",
+                json.length, jsonNanos, cbor.length, cborNanos, smile.length, smileNanos);
+
+        assertThat(cbor.length).isLessThan(json.length);
+        assertThat(smile.length).isLessThan(json.length);
+    }
+
+    @Test
+    @DisplayName("should accept a CBOR request body")
+    void shouldCreateUser_FromCborBody() throws Exception {
+        UserRequestDto requestDto = UserRequestDto.builder()
+                .name("Petr")
+                .surname("Petrov")
+                .birthDate(LocalDate.of(2001, 3, 4))
+                .email("petr@example.com")
+                .active(true)
+                .build();
+
+        MvcResult result = mockMvc.perform(post("/internal/users")
+                        .header("X-Service-Key", TEST_SERVICE_KEY)
+                        .contentType(MediaType.APPLICATION_CBOR)
+                        .accept(MediaType.APPLICATION_CBOR)
+                        .content(cborConverter.getObjectMapper().writeValueAsBytes(requestDto)))
+                .andExpect(status().isCreated())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn();
+
+        UserResponseDto created = cborConverter.getObjectMapper()
+                .readValue(result.getResponse().getContentAsByteArray(), UserResponseDto.class);
+        assertThat(created.email()).isEqualTo("petr@example.com");
+        assertThat(created.birthDate()).isEqualTo(LocalDate.of(2001, 3, 4));
+    }
+
+    @Test
+    @DisplayName("should tag each encoding weakly and revalidate across them")
+    void shouldSendWeakETag_ForEveryEncoding() throws Exception {
+        String etag = mockMvc.perform(get("/internal/users/{id}", userId)
+                        .header("X-Service-Key", TEST_SERVICE_KEY)
+                        .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(header().stringValues(HttpHeaders.VARY, hasItem(containsString(HttpHeaders.ACCEPT))))
+                .andReturn()
+                .getResponse()
+                .getHeader(HttpHeaders.ETAG);
+        assertThat(etag).startsWith("W/");
+
+        mockMvc.perform(get("/internal/users/{id}", userId)
+                        .header("X-Service-Key", TEST_SERVICE_KEY)
+                        .header(HttpHeaders.IF_NONE_MATCH, etag)
+                        .accept(SMILE))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    @DisplayName("should serve only JSON outside of /internal")
+    void shouldReturn406_WhenPublicApiAsksForCbor() throws Exception {
+        mockMvc.perform(get("/api/v1/users/{id}", userId)
+                        .header("X-User-Id", userId.toString())
+                        .header("X-User-Email", "ivan@example.com")
+                        .header("X-User-Role", "USER")
+                        .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isNotAcceptable());
+
+        mockMvc.perform(get("/api/v1/users/{id}", userId)
+                        .header("X-User-Id", userId.toString())
+                        .header("X-User-Email", "ivan@example.com")
+                        .header("X-User-Role", "USER"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(header().stringValues(HttpHeaders.VARY, hasItem(containsString(HttpHeaders.ACCEPT))));
+    }
+
+    private byte[] fetchUser(MediaType mediaType) throws Exception {
+        return mockMvc.perform(get("/internal/users/{id}", userId)
+                        .header("X-Service-Key", TEST_SERVICE_KEY)
+                        .accept(mediaType))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(mediaType))
+                .andReturn()
+                .getResponse()
+                .getContentAsByteArray();
+    }
+
+    private long serializationNanos(ObjectMapper mapper, UserResponseDto user) throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+        for (int i = 0; i < WARMUP; i++) {
+            mapper.writeValueAsBytes(user);
+        }
+
+        long started = threads.getCurrentThreadCpuTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            mapper.writeValueAsBytes(user);
+        }
+        return (threads.getCurrentThreadCpuTime() - started) / ITERATIONS;
+    }
+}
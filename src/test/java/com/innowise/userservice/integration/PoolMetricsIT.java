@@ -0,0 +1,190 @@
+package com.innowise.userservice.integration;
+
+import com.innowise.userservice.datasource.AdaptivePoolSizer;
+import com.innowise.userservice.datasource.PoolMetricsTrackerFactory;
+import com.innowise.userservice.entity.User;
+import com.innowise.userservice.repository.UserRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@AutoConfigureMockMvc
+@TestPropertySource(properties = {
+        "service.datasource.adaptive-pool.enabled=true",
+        "service.datasource.adaptive-pool.min-size=2",
+        "service.datasource.adaptive-pool.max-size=6",
+        "service.datasource.adaptive-pool.target-acquire-ms=5",
+        "service.datasource.adaptive-pool.max-usage-ms=150",
+        "service.datasource.adaptive-pool.interval-ms=3600000"
+})
+@DisplayName("Connection pool metrics integration tests")
+public class PoolMetricsIT extends BaseIntegrationTest {
+
+    private static final int CALLERS = 8;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private HikariDataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private PoolMetricsTrackerFactory poolMetricsTrackerFactory;
+
+    @Autowired
+    private AdaptivePoolSizer adaptivePoolSizer;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+        cacheManager.getCacheNames().forEach(cacheName -> {
+            var cache = cacheManager.getCache(cacheName);
+            if (cache != null) {
+                cache.clear();
+            }
+        });
+    }
+
+    @Nested
+    @DisplayName("Pool metrics")
+    class PoolMetricsTests {
+
+        @Test
+        @DisplayName("should attribute connection hold time to the endpoint")
+        void shouldAttributeHoldTimeToEndpoint() throws Exception {
+            User user = userRepository.save(User.builder()
+                    .name("Ivan")
+                    .surname("Ivanov")
+                    .birthDate(LocalDate.of(1990, 1, 1))
+                    .email("ivan@example.com")
+                    .active(true)
+                    .build());
+
+            mockMvc.perform(get("/api/v1/users/{id}", user.getId())
+                            .header("X-User-Id", user.getId().toString())
+                            .header("X-User-Email", user.getEmail())
+                            .header("X-User-Role", "USER"))
+                    .andExpect(status().isOk());
+
+            Timer hold = meterRegistry.find("db.connection.hold")
+                    .tag("pool", dataSource.getPoolName())
+                    .tag("endpoint", "GET /api/v1/users/{id}")
+                    .timer();
+            assertThat(hold).isNotNull();
+            assertThat(hold.count()).isPositive();
+
+            assertThat(meterRegistry.find("hikaricp.connections.acquire")
+                    .tag("pool", dataSource.getPoolName())
+                    .timer()).isNotNull();
+        }
+    }
+
+    @Nested
+    @DisplayName("Adaptive pool sizing")
+    class AdaptivePoolSizingTests {
+
+        @Test
+        @DisplayName("should grow the pool when callers wait and the database is fast")
+        void shouldGrowPool_WhenCallersWait() throws Exception {
+            resetPool(2);
+
+            runConcurrently(0.05);
+            adaptivePoolSizer.adjust();
+
+            assertThat(dataSource.getHikariConfigMXBean().getMaximumPoolSize()).isGreaterThan(2);
+        }
+
+        @Test
+        @DisplayName("should shrink the pool when the database is slow even if callers wait")
+        void shouldShrinkPool_WhenDatabaseIsSlow() throws Exception {
+            resetPool(4);
+
+            runConcurrently(0.3);
+            adaptivePoolSizer.adjust();
+
+            assertThat(dataSource.getHikariConfigMXBean().getMaximumPoolSize()).isEqualTo(3);
+        }
+
+        @Test
+        @DisplayName("should not shrink the pool for one long hold among fast ones")
+        void shouldKeepPool_WhenOneHoldIsLong() throws Exception {
+            resetPool(4);
+
+            // Mean hold above max-usage-ms, median well below it
+            CompletableFuture<Void> export = CompletableFuture.runAsync(() ->
+                    transactionTemplate.executeWithoutResult(status ->
+                            jdbcTemplate.queryForObject("SELECT pg_sleep(?)", Object.class, 1.5)));
+            runConcurrently(0.01);
+            export.get();
+            adaptivePoolSizer.adjust();
+
+            assertThat(dataSource.getHikariConfigMXBean().getMaximumPoolSize()).isGreaterThanOrEqualTo(4);
+        }
+
+        @Test
+        @DisplayName("should give connections back down to the minimum when idle")
+        void shouldShrinkToMinimum_WhenIdle() throws Exception {
+            resetPool(5);
+            runConcurrently(0.05);
+            poolMetricsTrackerFactory.drain(dataSource.getPoolName());
+
+            for (int i = 0; i < 5; i++) {
+                adaptivePoolSizer.adjust();
+            }
+
+            assertThat(dataSource.getHikariConfigMXBean().getMaximumPoolSize()).isEqualTo(2);
+        }
+    }
+
+    private void resetPool(int maximumPoolSize) {
+        dataSource.getHikariConfigMXBean().setMaximumPoolSize(maximumPoolSize);
+        // Connections opened under an earlier cap would otherwise stay in the pool
+        dataSource.getHikariPoolMXBean().softEvictConnections();
+        poolMetricsTrackerFactory.drain(dataSource.getPoolName());
+    }
+
+    private void runConcurrently(double sleepSeconds) throws Exception {
+        try (ExecutorService executor = Executors.newFixedThreadPool(CALLERS)) {
+            CompletableFuture.allOf(IntStream.range(0, CALLERS)
+                    .mapToObj(i -> CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(status ->
+                            jdbcTemplate.queryForObject("SELECT pg_sleep(?)", Object.class, sleepSeconds)), executor))
+                    .toArray(CompletableFuture[]::new)).get();
+        }
+    }
+}
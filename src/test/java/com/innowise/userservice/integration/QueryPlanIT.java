@@ -0,0 +1,510 @@
+package com.innowise.userservice.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.innowise.userservice.dto.card.CardRequestDto;
+import com.innowise.userservice.repository.CardRepository;
+import com.innowise.userservice.repository.UserRepository;
+import com.innowise.userservice.repository.specification.UserSpecification;
+import com.zaxxer.hikari.HikariDataSource;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.lang.NonNull;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Seeds a large dataset (-Dplan.rows, 200k users by default) and checks that
+ * repository queries are planned with the expected indexes. Every method of
+ * UserRepository, CardRepository and UserSpecification is called, the statements
+ * it sends through the pool are captured with their parameters and explained, and a
+ * case fails on a sequential scan over a table larger than -Dplan.seq-scan-threshold
+ * rows, unless reading the whole table is what the query is for.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@DisplayName("Query plan integration tests")
+public class QueryPlanIT extends BaseIntegrationTest {
+
+    private static final int ROWS = Integer.getInteger("plan.rows", 200_000);
+    private static final int SEQ_SCAN_THRESHOLD = Integer.getInteger("plan.seq-scan-threshold", 10_000);
+    private static final Pattern EXPLAINABLE = Pattern.compile("^\\s*(select|with|insert|update|delete)\\b",
+            Pattern.CASE_INSENSITIVE);
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private StatementCapture statementCapture;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private String searchTerm;
+    private long userId;
+    private String email;
+    private long cardId;
+    private String cardNumber;
+
+    @TestConfiguration
+    static class StatementCaptureConfig {
+
+        @Bean
+        static StatementCapture statementCapture() {
+            return new StatementCapture();
+        }
+    }
+
+    @BeforeAll
+    void seedDataset() {
+        jdbcTemplate.execute("TRUNCATE users CASCADE");
+
+        jdbcTemplate.update("""
+                INSERT INTO users (name, surname, birth_date, email, active, created_at, updated_at)
+                SELECT initcap(substr(md5(i::text), 1, 10)),
+                       initcap(substr(md5((i * 7)::text), 1, 12)),
+                       DATE '1960-01-01' + (i % 15000),
+                       'user' || i || '@example.com',
+                       i % 50 <> 0,
+                       now(),
+                       now()
+                FROM generate_series(1, ?) AS i
+                """, ROWS);
+
+        jdbcTemplate.update("""
+                INSERT INTO payment_cards (user_id, number, holder, expiration_date, active, created_at, updated_at)
+                SELECT u.id,
+                       substr(p, 1, 4) || '-' || substr(p, 5, 4) || '-' || substr(p, 9, 4) || '-' || substr(p, 13, 4),
+                       upper(u.name || ' ' || u.surname),
+                       DATE '2030-01-01' + (u.id % 365)::int,
+                       u.id % 40 <> 0,
+                       now(),
+                       now()
+                FROM users u, lpad(u.id::text, 16, '0') AS p
+                WHERE u.id % 2 = 0
+                """);
+
+        jdbcTemplate.update("""
+                INSERT INTO user_read_model (user_id, email, document, refreshed_at)
+                SELECT id, email, jsonb_build_object('id', id), now()
+                FROM users
+                """);
+
+        // VACUUM sets the visibility map, so counts can use index-only scans as in production
+        jdbcTemplate.execute("VACUUM ANALYZE users");
+        jdbcTemplate.execute("VACUUM ANALYZE payment_cards");
+        jdbcTemplate.execute("VACUUM ANALYZE user_read_model");
+
+        searchTerm = jdbcTemplate.queryForObject("SELECT substr(md5('4242'), 3, 6)", String.class);
+        userId = jdbcTemplate.queryForObject(
+                "SELECT user_id FROM payment_cards ORDER BY id OFFSET ? LIMIT 1", Long.class, ROWS / 4);
+        email = jdbcTemplate.queryForObject("SELECT email FROM users WHERE id = ?", String.class, userId);
+        cardId = jdbcTemplate.queryForObject("SELECT id FROM payment_cards WHERE user_id = ?", Long.class, userId);
+        cardNumber = jdbcTemplate.queryForObject("SELECT number FROM payment_cards WHERE id = ?", String.class, cardId);
+    }
+
+    @AfterAll
+    void cleanUp() {
+        jdbcTemplate.execute("TRUNCATE users CASCADE");
+    }
+
+    @Test
+    @DisplayName("UserSpecification.hasName should use trigram index on lower(name)")
+    void hasName_ShouldUseTrigramIndex() {
+        List<JsonNode> nodes = explain(capture(() ->
+                userRepository.findAll(UserSpecification.hasName(searchTerm), PageRequest.of(0, 20, Sort.by("id")))));
+
+        assertThat(indexNames(nodes)).contains("idx_users_name_trgm");
+    }
+
+    @Test
+    @DisplayName("UserSpecification.hasSurname should use trigram index on lower(surname)")
+    void hasSurname_ShouldUseTrigramIndex() {
+        List<JsonNode> nodes = explain(capture(() ->
+                userRepository.findAll(UserSpecification.hasSurname(searchTerm), PageRequest.of(0, 20, Sort.by("id")))));
+
+        assertThat(indexNames(nodes)).contains("idx_users_surname_trgm");
+    }
+
+    @Test
+    @DisplayName("UserRepository.searchByNameOrSurname should combine both trigram indexes")
+    void searchByNameOrSurname_ShouldUseBothTrigramIndexes() {
+        List<JsonNode> nodes = explain(capture(() ->
+                userRepository.searchByNameOrSurname(searchTerm, PageRequest.of(0, 20, Sort.by("id")))));
+
+        assertThat(indexNames(nodes)).contains("idx_users_name_trgm", "idx_users_surname_trgm");
+    }
+
+    @Test
+    @DisplayName("CardRepository.findByHolderContaining should use trigram index on lower(holder)")
+    void findByHolderContaining_ShouldUseTrigramIndex() {
+        List<JsonNode> nodes = explain(capture(() ->
+                cardRepository.findByHolderContaining(searchTerm, PageRequest.of(0, 20, Sort.by("id")))));
+
+        assertThat(indexNames(nodes)).contains("idx_payment_cards_holder_trgm");
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("repositoryQueries")
+    @DisplayName("repository queries should not sequentially scan large tables")
+    void repositoryQuery_ShouldNotSeqScanLargeTables(PlanCase planCase) {
+        List<CapturedStatement> statements = capture(planCase.call());
+        assertThat(statements).as("statements sent by %s", planCase.name()).isNotEmpty();
+
+        List<String> seqScans = explain(statements).stream()
+                .filter(node -> "Seq Scan".equals(node.path("Node Type").asText()))
+                .map(node -> parentOf(node.get("Relation Name").asText()))
+                .filter(relation -> !planCase.seqScanAllowed().contains(relation))
+                .filter(relation -> estimatedRows(relation) > SEQ_SCAN_THRESHOLD)
+                .toList();
+
+        assertThat(seqScans)
+                .as("sequential scans in plans of %s: %s", planCase.name(), statements)
+                .isEmpty();
+    }
+
+    private List<PlanCase> repositoryQueries() {
+        CardRequestDto newCard = CardRequestDto.builder()
+                .number("0000-0000-0000-0001")
+                .holder("IVAN IVANOV")
+                .expirationDate(LocalDate.of(2031, 1, 1))
+                .active(true)
+                .build();
+        CardRequestDto sameCard = CardRequestDto.builder()
+                .number(cardNumber)
+                .holder("IVAN IVANOV")
+                .expirationDate(LocalDate.of(2031, 1, 1))
+                .active(true)
+                .build();
+
+        return List.of(
+                // UserRepository
+                new PlanCase("UserRepository.findById", () -> userRepository.findById(userId)),
+                new PlanCase("UserRepository.findByEmail", () -> userRepository.findByEmail(email)),
+                new PlanCase("UserRepository.existsByEmail", () -> userRepository.existsByEmail(email)),
+                new PlanCase("UserRepository.findWithCardsById", () -> userRepository.findWithCardsById(userId)),
+                new PlanCase("UserRepository.findByActive", () -> userRepository.findByActive(false)),
+                new PlanCase("UserRepository.searchByNameOrSurname",
+                        () -> userRepository.searchByNameOrSurname(searchTerm, PageRequest.of(0, 20, Sort.by("id")))),
+                new PlanCase("UserRepository.countCardsByUserId", () -> userRepository.countCardsByUserId(userId)),
+                new PlanCase("UserRepository.activateUser", () -> userRepository.activateUser(userId)),
+                new PlanCase("UserRepository.deactivateUser", () -> userRepository.deactivateUser(userId)),
+                new PlanCase("UserRepository.updateUser", () -> userRepository.updateUser(userId, "Ivan", "Ivanov",
+                        LocalDate.of(1990, 1, 1), email, true)),
+                new PlanCase("UserRepository.tombstoneUser", () -> userRepository.tombstoneUser(userId)),
+                new PlanCase("UserRepository.purgeDeletedUsers", () -> userRepository.purgeDeletedUsers(500)),
+                new PlanCase("UserRepository.streamUsersWithCards", () -> {
+                    try (Stream<?> rows = userRepository.streamUsersWithCards(
+                            UserSpecification.withFilters(null, null, null))) {
+                        rows.findFirst();
+                    }
+                }, Set.of("users", "payment_cards")),
+                new PlanCase("UserRepository.sumStatisticsCounters",
+                        () -> userRepository.sumStatisticsCounters(List.of("users", "users.active", "cards"))),
+
+                // UserSpecification through findAll / count
+                new PlanCase("UserSpecification.withFilters no filters", () -> userRepository.findAll(
+                        UserSpecification.withFilters(null, null, null), PageRequest.of(0, 20, Sort.by("id"))),
+                        Set.of("users")),
+                new PlanCase("UserSpecification.isActive", () -> userRepository.findAll(
+                        UserSpecification.isActive(false), PageRequest.of(1, 20, Sort.by("id")))),
+                new PlanCase("UserSpecification.hasName and isActive", () -> userRepository.findAll(
+                        UserSpecification.withFilters(searchTerm, null, true), PageRequest.of(0, 20, Sort.by("id")))),
+                new PlanCase("UserSpecification.hasName and hasSurname count", () -> userRepository.count(
+                        UserSpecification.withFilters(searchTerm, searchTerm, null))),
+
+                // UserProjectionRepository
+                new PlanCase("UserProjectionRepository.findUserResponseById",
+                        () -> userRepository.findUserResponseById(userId)),
+                new PlanCase("UserProjectionRepository.findUserResponseByEmail",
+                        () -> userRepository.findUserResponseByEmail(email)),
+                new PlanCase("UserProjectionRepository.findUserSummaryById",
+                        () -> userRepository.findUserSummaryById(userId)),
+                new PlanCase("UserProjectionRepository.findUserSummaryByEmail",
+                        () -> userRepository.findUserSummaryByEmail(email)),
+                new PlanCase("UserProjectionRepository.lockUserResponseById",
+                        () -> userRepository.lockUserResponseById(userId)),
+                new PlanCase("UserProjectionRepository.refreshReadModel",
+                        () -> userRepository.refreshReadModel(userId)),
+                new PlanCase("UserProjectionRepository.refreshReadModels",
+                        () -> userRepository.refreshReadModels(List.of(userId, userId + 2))),
+                new PlanCase("UserProjectionRepository.findArchivedUserResponseById",
+                        () -> userRepository.findArchivedUserResponseById(userId)),
+                new PlanCase("UserProjectionRepository.findArchivedUserResponseByEmail",
+                        () -> userRepository.findArchivedUserResponseByEmail(email)),
+                new PlanCase("UserProjectionRepository.archiveInactiveUsers",
+                        () -> userRepository.archiveInactiveUsers(LocalDateTime.now().minusYears(1), 500)),
+
+                // CardRepository
+                new PlanCase("CardRepository.findByUserId", () -> cardRepository.findByUserId(userId)),
+                new PlanCase("CardRepository.countByUserId", () -> cardRepository.countByUserId(userId)),
+                new PlanCase("CardRepository.findByNumber", () -> cardRepository.findByNumber(cardNumber)),
+                new PlanCase("CardRepository.findCardResponsesByUserId",
+                        () -> cardRepository.findCardResponsesByUserId(userId)),
+                new PlanCase("CardRepository.findActiveCardsWithUser", () -> cardRepository.findActiveCardsWithUser(
+                        false, PageRequest.of(0, 20, Sort.by("id")))),
+                new PlanCase("CardRepository.findActiveCardsWithUserAfter",
+                        () -> cardRepository.findActiveCardsWithUserAfter(false, cardId, Limit.of(21))),
+                new PlanCase("CardRepository.findByHolderContaining", () -> cardRepository.findByHolderContaining(
+                        searchTerm, PageRequest.of(0, 20, Sort.by("id")))),
+                new PlanCase("CardRepository.activateCard", () -> cardRepository.activateCard(cardId)),
+                new PlanCase("CardRepository.deactivateCard", () -> cardRepository.deactivateCard(cardId)),
+                new PlanCase("CardRepository.deleteCardReturningUserId",
+                        () -> cardRepository.deleteCardReturningUserId(cardId)),
+                new PlanCase("CardRepository.updateCard", () -> cardRepository.updateCard(cardId, userId, sameCard)),
+                new PlanCase("CardRepository.deactivateExpiredCards",
+                        () -> cardRepository.deactivateExpiredCards(LocalDate.of(2030, 3, 1), 500)),
+                new PlanCase("CardRepository.insertIntoFreeSlot",
+                        () -> cardRepository.insertIntoFreeSlot(userId, newCard))
+        );
+    }
+
+    // Runs the call in a transaction that is rolled back, so every case sees the seeded dataset
+    private List<CapturedStatement> capture(Runnable call) {
+        return statementCapture.capture(() -> transactionTemplate.executeWithoutResult(status -> {
+            status.setRollbackOnly();
+            call.run();
+        }));
+    }
+
+    private List<JsonNode> explain(List<CapturedStatement> statements) {
+        // DML is executed by ANALYZE, the transaction keeps the dataset intact for the next case
+        return transactionTemplate.execute(status -> {
+            status.setRollbackOnly();
+            List<JsonNode> nodes = new ArrayList<>();
+            statements.stream()
+                    .filter(statement -> EXPLAINABLE.matcher(statement.sql()).find())
+                    .forEach(statement -> collectNodes(explain(statement), nodes));
+            return nodes;
+        });
+    }
+
+    private JsonNode explain(CapturedStatement statement) {
+        String plan = jdbcTemplate.query("EXPLAIN (ANALYZE, BUFFERS, FORMAT JSON) " + statement.sql(),
+                preparedStatement -> {
+                    for (Binding binding : statement.bindings()) {
+                        StatementCapture.invoke(binding.method(), preparedStatement, binding.args());
+                    }
+                },
+                resultSet -> resultSet.next() ? resultSet.getString(1) : null);
+        try {
+            return objectMapper.readTree(plan).get(0).get("Plan");
+        } catch (Exception e) {
+            throw new IllegalStateException("Unreadable plan of " + statement.sql(), e);
+        }
+    }
+
+    // Plans name partitions and their indexes, checks are about the partitioned table and index
+    private String parentOf(String relation) {
+        return jdbcTemplate.queryForObject("""
+                SELECT COALESCE((SELECT inhparent::regclass::text FROM pg_inherits WHERE inhrelid = ?::regclass), ?)
+                """, String.class, relation, relation);
+    }
+
+    private long estimatedRows(String table) {
+        return jdbcTemplate.queryForObject("""
+                SELECT sum(c.reltuples)::bigint
+                FROM pg_partition_tree(?::regclass) t
+                JOIN pg_class c ON c.oid = t.relid
+                WHERE t.isleaf
+                """, Long.class, table);
+    }
+
+    private void collectNodes(JsonNode node, List<JsonNode> nodes) {
+        nodes.add(node);
+        if (node.has("Plans")) {
+            node.get("Plans").forEach(child -> collectNodes(child, nodes));
+        }
+    }
+
+    private List<String> indexNames(List<JsonNode> nodes) {
+        return nodes.stream()
+                .filter(node -> node.has("Index Name"))
+                .map(node -> parentOf(node.get("Index Name").asText()))
+                .toList();
+    }
+
+    private record PlanCase(String name, Runnable call, Set<String> seqScanAllowed) {
+
+        PlanCase(String name, Runnable call) {
+            this(name, call, Set.of());
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private record CapturedStatement(String sql, List<Binding> bindings) {
+
+        @Override
+        public String toString() {
+            return sql;
+        }
+    }
+
+    // A setter call on a prepared statement, replayed on the EXPLAIN of the same SQL
+    private record Binding(Method method, Object[] args) {
+    }
+
+    /**
+     * Wraps the pool so that statements sent on the thread inside {@link #capture} are
+     * recorded with the parameters bound to them, whatever issued them: Hibernate,
+     * Spring Data or JdbcClient.
+     */
+    static final class StatementCapture implements BeanPostProcessor, MethodInterceptor {
+
+        private final ThreadLocal<List<CapturedStatement>> recording = new ThreadLocal<>();
+
+        List<CapturedStatement> capture(Runnable call) {
+            List<CapturedStatement> statements = new ArrayList<>();
+            recording.set(statements);
+            try {
+                call.run();
+            } finally {
+                recording.remove();
+            }
+            return statements;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(@NonNull Object bean, @NonNull String beanName) {
+            if (!(bean instanceof DataSource)) {
+                return bean;
+            }
+            if (bean instanceof Advised advised && !advised.isFrozen()) {
+                advised.addAdvice(0, this);
+                return bean;
+            }
+            ProxyFactory proxyFactory = new ProxyFactory(bean);
+            // Beans are injected as HikariDataSource
+            proxyFactory.setProxyTargetClass(bean instanceof HikariDataSource);
+            proxyFactory.addAdvice(this);
+            return proxyFactory.getProxy(bean.getClass().getClassLoader());
+        }
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            Object result = invocation.proceed();
+            if (!"getConnection".equals(invocation.getMethod().getName())) {
+                return result;
+            }
+            Connection connection = (Connection) result;
+            return proxy(Connection.class, connection, (method, args) -> {
+                Object created = invoke(method, connection, args);
+                if ("prepareStatement".equals(method.getName())) {
+                    return preparedStatement((PreparedStatement) created, (String) args[0]);
+                }
+                if ("createStatement".equals(method.getName())) {
+                    return statement((Statement) created);
+                }
+                return created;
+            });
+        }
+
+        private PreparedStatement preparedStatement(PreparedStatement target, String sql) {
+            List<Binding> bindings = new ArrayList<>();
+            return proxy(PreparedStatement.class, target, (method, args) -> {
+                String name = method.getName();
+                if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                    bindings.add(new Binding(method, args.clone()));
+                } else if ("clearParameters".equals(name)) {
+                    bindings.clear();
+                } else if ((name.startsWith("execute") && !"executeBatch".equals(name) && args == null)
+                        || "addBatch".equals(name)) {
+                    record(sql, List.copyOf(bindings));
+                }
+                return invoke(method, target, args);
+            });
+        }
+
+        private Statement statement(Statement target) {
+            return proxy(Statement.class, target, (method, args) -> {
+                if ((method.getName().startsWith("execute") || "addBatch".equals(method.getName()))
+                        && args != null && args[0] instanceof String sql) {
+                    record(sql, List.of());
+                }
+                return invoke(method, target, args);
+            });
+        }
+
+        private void record(String sql, List<Binding> bindings) {
+            List<CapturedStatement> statements = recording.get();
+            if (statements != null) {
+                statements.add(new CapturedStatement(sql, bindings));
+            }
+        }
+
+        private static <T> T proxy(Class<T> type, T target, Handler handler) {
+            return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                    (proxy, method, args) -> switch (method.getName()) {
+                        case "equals" -> proxy == args[0];
+                        case "hashCode" -> System.identityHashCode(proxy);
+                        default -> handler.handle(method, args);
+                    }));
+        }
+
+        static Object invoke(Method method, Object target, Object[] args) throws SQLException {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                switch (e.getCause()) {
+                    case SQLException sqlException -> throw sqlException;
+                    case RuntimeException runtimeException -> throw runtimeException;
+                    case Error error -> throw error;
+                    default -> throw new IllegalStateException(e.getCause());
+                }
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @FunctionalInterface
+        private interface Handler {
+            Object handle(Method method, Object[] args) throws Throwable;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.innowise.userservice.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.innowise.userservice.entity.Card;
+import com.innowise.userservice.entity.User;
+import com.innowise.userservice.reactive.ReactiveReadServer;
+import com.innowise.userservice.repository.UserRepository;
+import com.innowise.userservice.service.UserService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The reactive read path against /internal/users on the servlet port, including a local
+ * comparison of both under the same concurrent load.
+ */
+@Slf4j
+@TestPropertySource(properties = "service.reactive.enabled=true")
+@DisplayName("Reactive read path integration tests")
+public class ReactiveReadIT extends BaseIntegrationTest {
+
+    private static final int USERS = 200;
+    private static final int REQUESTS = 5_000;
+    // Above Tomcat's default server.tomcat.threads.max of 200
+    private static final int CONCURRENCY = 256;
+
+    @Autowired
+    private ReactiveReadServer reactiveReadServer;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @LocalServerPort
+    private int httpPort;
+
+    private WebClient servletClient;
+    private WebClient reactiveClient;
+    private int cardNumberSequence;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+        clearCaches();
+
+        servletClient = client(httpPort);
+        reactiveClient = client(reactiveReadServer.getPort());
+    }
+
+    @Test
+    @DisplayName("should return the same users and ETags as the servlet path")
+    void shouldMatchServletResponses() throws Exception {
+        long userId = createUser("ivan@example.com", 3);
+
+        for (String uri : List.of(
+                "/internal/users/" + userId,
+                "/internal/users/" + userId + "?fields=id,email,active",
+                "/internal/users/by-email?email=ivan@example.com",
+                "/internal/users/by-email?email=ivan@example.com&fields=id,name&include=cards")) {
+            ResponseEntity<String> fromServlet = get(servletClient, uri);
+            ResponseEntity<String> fromReactive = get(reactiveClient, uri);
+
+            assertThat(fromReactive.getStatusCode()).as(uri).isEqualTo(HttpStatus.OK);
+            assertThat(json(fromReactive.getBody())).as(uri).isEqualTo(json(fromServlet.getBody()));
+            assertThat(fromReactive.getHeaders().getETag()).as(uri).isEqualTo(fromServlet.getHeaders().getETag());
+        }
+    }
+
+    @Test
+    @DisplayName("should answer 304, 404 and 403 like the servlet path")
+    void shouldMapConditionalAndErrorResponses() throws Exception {
+        long userId = createUser("ivan@example.com", 1);
+        String etag = get(reactiveClient, "/internal/users/" + userId).getHeaders().getETag();
+
+        ResponseEntity<String> notModified = reactiveClient.get()
+                .uri("/internal/users/{id}", userId)
+                .header(HttpHeaders.IF_NONE_MATCH, etag)
+                .exchangeToMono(response -> response.toEntity(String.class))
+                .block();
+        assertThat(notModified.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(notModified.getHeaders().getETag()).isEqualTo(etag);
+
+        ResponseEntity<String> notFound = get(reactiveClient, "/internal/users/999999");
+        assertThat(notFound.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(json(notFound.getBody()).get("message").asText()).contains("999999");
+
+        ResponseEntity<String> forbidden = WebClient.create("http://localhost:" + reactiveReadServer.getPort())
+                .get()
+                .uri("/internal/users/{id}", userId)
+                .exchangeToMono(response -> response.toEntity(String.class))
+                .block();
+        assertThat(forbidden.getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN);
+    }
+
+    @Test
+    @DisplayName("should share cache entries and evictions with the servlet path")
+    void shouldShareCacheWithServletPath() throws Exception {
+        long userId = createUser("ivan@example.com", 1);
+
+        get(servletClient, "/internal/users/" + userId);
+        assertThat(cacheManager.getCache("user").get(userId)).isNotNull();
+        assertThat(json(get(reactiveClient, "/internal/users/" + userId).getBody()).get("active").asBoolean())
+                .isTrue();
+
+        userService.changeUserActivity(userId, false);
+
+        assertThat(json(get(reactiveClient, "/internal/users/" + userId).getBody()).get("active").asBoolean())
+                .isFalse();
+        assertThat(cacheManager.getCache("user").get(userId)).isNotNull();
+    }
+
+    @Test
+    @DisplayName("servlet and reactive paths should serve the same load without failures")
+    void shouldServeSameLoad_OnServletAndReactivePaths() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            ids.add(createUser("user" + i + "@example.com", 2));
+        }
+
+        clearCaches();
+        LoadResult servlet = run(servletClient, ids);
+        clearCaches();
+        LoadResult reactive = run(reactiveClient, ids);
+
+        log.info("{} requests at concurrency {} on the servlet path: {} req/s, p50 {} ms, p99 {} ms, peak {} threads",
+                REQUESTS, CONCURRENCY, servlet.throughput(), servlet.p50Millis(), servlet.p99Millis(),
+                servlet.peakThreads());
+        log.info("{} requests at concurrency {} on the reactive path: {} req/s, p50 {} ms, p99 {} ms, peak {} threads",
+                REQUESTS, CONCURRENCY, reactive.throughput(), reactive.p50Millis(), reactive.p99Millis(),
+                reactive.peakThreads());
+
+        assertThat(servlet.failures()).isZero();
+        assertThat(reactive.failures()).isZero();
+    }
+
+    private LoadResult run(WebClient client, List<Long> ids) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        long[] latencies = new long[REQUESTS];
+        long started = System.nanoTime();
+        long failures = Flux.range(0, REQUESTS)
+                .flatMap(i -> Mono.defer(() -> {
+                    long requestStarted = System.nanoTime();
+                    return client.get()
+                            .uri("/internal/users/{id}", ids.get(i % ids.size()))
+                            .exchangeToMono(response -> response.releaseBody().thenReturn(response.statusCode()))
+                            .map(status -> status.is2xxSuccessful())
+                            .onErrorReturn(false)
+                            .doFinally(signal -> latencies[i] = System.nanoTime() - requestStarted);
+                }), CONCURRENCY)
+                .filter(ok -> !ok)
+                .count()
+                .block();
+        long elapsed = System.nanoTime() - started;
+
+        Arrays.sort(latencies);
+        return new LoadResult(
+                REQUESTS * TimeUnit.SECONDS.toNanos(1) / elapsed,
+                TimeUnit.NANOSECONDS.toMillis(latencies[REQUESTS / 2]),
+                TimeUnit.NANOSECONDS.toMillis(latencies[REQUESTS * 99 / 100]),
+                threads.getPeakThreadCount(),
+                failures
+        );
+    }
+
+    private ResponseEntity<String> get(WebClient client, String uri) {
+        return client.get()
+                .uri(uri)
+                .exchangeToMono(response -> response.toEntity(String.class))
+                .block();
+    }
+
+    private JsonNode json(String body) throws Exception {
+        return objectMapper.readTree(body);
+    }
+
+    private WebClient client(int port) {
+        return WebClient.builder()
+                .baseUrl("http://localhost:" + port)
+                .defaultHeader("X-Service-Key", TEST_SERVICE_KEY)
+                .build();
+    }
+
+    private void clearCaches() {
+        cacheManager.getCacheNames().forEach(cacheName -> {
+            var cache = cacheManager.getCache(cacheName);
+            if (cache != null) {
+                cache.clear();
+            }
+        });
+    }
+
+    private long createUser(String email, int cards) {
+        User user = User.builder()
+                .name("Ivan")
+                .surname("Ivanov")
+                .birthDate(LocalDate.of(1990, 1, 1))
+                .email(email)
+                .active(true)
+                .build();
+        for (int i = 0; i < cards; i++) {
+            user.addCard(Card.builder()
+                    .number("4000-0000-0000-%04d".formatted(++cardNumberSequence))
+                    .holder("IVAN IVANOV")
+                    .expirationDate(LocalDate.of(2030, 1, 1))
+                    .active(true)
+                    .build());
+        }
+        return userRepository.save(user).getId();
+    }
+
+    private record LoadResult(long throughput, long p50Millis, long p99Millis, int peakThreads, long failures) {
+    }
+}
@@ -0,0 +1,113 @@
+package com.innowise.userservice.integration;
+
+import com.innowise.userservice.dto.user.UserResponseDto;
+import com.innowise.userservice.entity.Card;
+import com.innowise.userservice.entity.User;
+import com.innowise.userservice.mapper.UserMapper;
+import com.innowise.userservice.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the entity + MapStruct read path with the DTO projection path
+ * by latency and bytes allocated per call on the calling thread.
+ */
+@Slf4j
+@DisplayName("Read path comparison integration tests")
+public class ReadPathComparisonIT extends BaseIntegrationTest {
+
+    private static final int WARMUP = 500;
+    private static final int ITERATIONS = 2_000;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserMapper userMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate readOnlyTransaction;
+    private Long userId;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+
+        User user = User.builder()
+                .name("Ivan")
+                .surname("Ivanov")
+                .birthDate(LocalDate.of(1990, 1, 1))
+                .email("ivan@example.com")
+                .active(true)
+                .build();
+        for (int i = 0; i < 5; i++) {
+            user.addCard(Card.builder()
+                    .number("4000-0000-0000-000" + i)
+                    .holder("IVAN IVANOV")
+                    .expirationDate(LocalDate.of(2030, 1, 1))
+                    .active(true)
+                    .build());
+        }
+        userId = userRepository.save(user).getId();
+    }
+
+    @Test
+    @DisplayName("projection should return the same user as the entity path and allocate less")
+    void projectionPath_ShouldMatchEntityPath_AndAllocateLess() {
+        Supplier<UserResponseDto> entityPath = () -> readOnlyTransaction.execute(status ->
+                userMapper.toUserResponseDto(userRepository.findWithCardsById(userId).orElseThrow()));
+        Supplier<UserResponseDto> projectionPath = () -> readOnlyTransaction.execute(status ->
+                userRepository.findUserResponseById(userId).orElseThrow());
+
+        assertThat(projectionPath.get())
+                .usingRecursiveComparison()
+                .ignoringCollectionOrder()
+                .isEqualTo(entityPath.get());
+
+        Measurement entity = measure(entityPath);
+        Measurement projection = measure(projectionPath);
+
+        log.info("Read path per call: entity {} us / {} B, projection {} us / {} B",
+                entity.micros(), entity.bytes(), projection.micros(), projection.bytes());
+
+        assertThat(projection.bytes()).isLessThan(entity.bytes());
+    }
+
+    private Measurement measure(Supplier<UserResponseDto> path) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+
+        for (int i = 0; i < WARMUP; i++) {
+            path.get();
+        }
+
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long started = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            path.get();
+        }
+        long elapsed = System.nanoTime() - started;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        return new Measurement(elapsed / ITERATIONS / 1_000, allocated / ITERATIONS);
+    }
+
+    private record Measurement(long micros, long bytes) {
+    }
+}
@@ -0,0 +1,246 @@
+package com.innowise.userservice.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.innowise.userservice.datasource.ConsistencyTokens;
+import com.innowise.userservice.datasource.ReplicaSet;
+import com.innowise.userservice.dto.user.UserRequestDto;
+import com.innowise.userservice.entity.User;
+import com.innowise.userservice.repository.UserRepository;
+import com.redis.testcontainers.RedisContainer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.Network;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+import org.testcontainers.images.builder.Transferable;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.time.Duration;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Runs against a primary and a streaming replica cloned from it with pg_basebackup.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "service.replicas.enabled=true",
+        "service.replicas.max-lag-ms=3000",
+        "service.replicas.lag-check-interval-ms=100"
+})
+@AutoConfigureMockMvc
+@Testcontainers
+@ActiveProfiles("test")
+@DisplayName("Replica routing integration tests")
+public class ReplicaRoutingIT {
+
+    private static final Network network = Network.newNetwork();
+
+    @Container
+    private static final PostgreSQLContainer<?> primary =
+            new PostgreSQLContainer<>(DockerImageName.parse("postgres:15-alpine"))
+                    .withDatabaseName("testdb")
+                    .withUsername("test")
+                    .withPassword("test")
+                    .withNetwork(network)
+                    .withNetworkAliases("primary")
+                    .withCommand("postgres", "-c", "fsync=off", "-c", "wal_level=replica")
+                    .withCopyToContainer(
+                            Transferable.of("echo 'host replication all all scram-sha-256' >> \"$PGDATA/pg_hba.conf\""),
+                            "/docker-entrypoint-initdb.d/replication.sh");
+
+    @Container
+    private static final GenericContainer<?> replica =
+            new GenericContainer<>(DockerImageName.parse("postgres:15-alpine"))
+                    .withNetwork(network)
+                    .withEnv("PGPASSWORD", "test")
+                    .withCommand("sh", "-c", """
+                            mkdir -p "$PGDATA" && chown postgres "$PGDATA" && chmod 700 "$PGDATA"
+                            until su-exec postgres pg_basebackup -h primary -U test -D "$PGDATA" -R -X stream; do
+                                rm -rf "$PGDATA"/* && sleep 1
+                            done
+                            exec su-exec postgres postgres
+                            """)
+                    .withExposedPorts(5432)
+                    .dependsOn(primary)
+                    .waitingFor(Wait.forLogMessage(".*ready to accept read-only connections.*", 1)
+                            .withStartupTimeout(Duration.ofMinutes(2)));
+
+    @Container
+    private static final RedisContainer redisContainer =
+            new RedisContainer(DockerImageName.parse("redis:7-alpine"))
+                    .withExposedPorts(6379);
+
+    @DynamicPropertySource
+    static void dynamicProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", primary::getJdbcUrl);
+        registry.add("spring.datasource.username", primary::getUsername);
+        registry.add("spring.datasource.password", primary::getPassword);
+        registry.add("service.replicas.urls", ReplicaRoutingIT::replicaJdbcUrl);
+
+        registry.add("spring.data.redis.host", redisContainer::getHost);
+        registry.add("spring.data.redis.port", () -> redisContainer.getMappedPort(6379).toString());
+
+        registry.add("spring.liquibase.enabled", () -> "true");
+
+        registry.add("service.api.key", () -> BaseIntegrationTest.TEST_SERVICE_KEY);
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ReplicaSet replicaSet;
+
+    private JdbcClient replicaClient;
+
+    @BeforeEach
+    void setUp() {
+        replicaClient = JdbcClient.create(new DriverManagerDataSource(replicaJdbcUrl(), "test", "test"));
+        userRepository.deleteAll();
+        clearCaches();
+        await().atMost(Duration.ofSeconds(30)).until(() -> replicaSet.select(null).isPresent());
+    }
+
+    @AfterEach
+    void tearDown() {
+        replicaClient.sql("SELECT pg_wal_replay_resume()").query((rs, rowNum) -> rowNum).list();
+    }
+
+    @Test
+    @DisplayName("should run read-only transactions on the replica and the rest on the primary")
+    void shouldRouteByTransactionReadOnlyFlag() {
+        Boolean readOnlyInRecovery = transactionTemplate.execute(status -> {
+            status.setRollbackOnly();
+            return jdbcTemplate.queryForObject("SELECT pg_is_in_recovery()", Boolean.class);
+        });
+        TransactionTemplate readOnly = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        readOnly.setReadOnly(true);
+        Boolean replicaInRecovery = readOnly.execute(status ->
+                jdbcTemplate.queryForObject("SELECT pg_is_in_recovery()", Boolean.class));
+
+        assertThat(readOnlyInRecovery).isFalse();
+        assertThat(replicaInRecovery).isTrue();
+    }
+
+    @Test
+    @DisplayName("should read own write with the consistency token while the replica lags")
+    void shouldReadOwnWrite_WhenReplicaLags() throws Exception {
+        User user = userRepository.save(User.builder()
+                .name("Ivan")
+                .surname("Ivanov")
+                .birthDate(LocalDate.of(1990, 1, 1))
+                .email("ivan@example.com")
+                .active(true)
+                .build());
+        transactionTemplate.executeWithoutResult(status -> userRepository.refreshReadModel(user.getId()));
+        await().atMost(Duration.ofSeconds(10)).until(() -> replicaClient
+                .sql("SELECT count(*) FROM user_read_model WHERE user_id = :id")
+                .param("id", user.getId())
+                .query(Long.class)
+                .single() == 1);
+
+        replicaClient.sql("SELECT pg_wal_replay_pause()").query((rs, rowNum) -> rowNum).list();
+
+        UserRequestDto update = UserRequestDto.builder()
+                .name("Petr")
+                .surname("Ivanov")
+                .birthDate(LocalDate.of(1990, 1, 1))
+                .email("ivan@example.com")
+                .active(true)
+                .build();
+        MvcResult result = mockMvc.perform(put("/api/v1/users/{id}", user.getId())
+                        .header("X-User-Id", user.getId().toString())
+                        .header("X-User-Email", user.getEmail())
+                        .header("X-User-Role", "USER")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(update)))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(ConsistencyTokens.HEADER))
+                .andReturn();
+        String token = result.getResponse().getHeader(ConsistencyTokens.HEADER);
+
+        // The paused replica still has the old name, the token sends the read to the primary
+        clearCaches();
+        mockMvc.perform(get("/api/v1/users/{id}", user.getId())
+                        .header("X-User-Id", user.getId().toString())
+                        .header("X-User-Email", user.getEmail())
+                        .header("X-User-Role", "USER")
+                        .header(ConsistencyTokens.HEADER, token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Petr"));
+
+        // Without it the read may be stale until the lag guard takes the replica out
+        clearCaches();
+        mockMvc.perform(get("/api/v1/users/{id}", user.getId())
+                        .header("X-User-Id", user.getId().toString())
+                        .header("X-User-Email", user.getEmail())
+                        .header("X-User-Role", "USER"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Ivan"));
+
+        await().atMost(Duration.ofSeconds(15)).pollInterval(Duration.ofMillis(200)).untilAsserted(() -> {
+            clearCaches();
+            mockMvc.perform(get("/api/v1/users/{id}", user.getId())
+                            .header("X-User-Id", user.getId().toString())
+                            .header("X-User-Email", user.getEmail())
+                            .header("X-User-Role", "USER"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.name").value("Petr"));
+        });
+        assertThat(replicaSet.select(null)).isEmpty();
+    }
+
+    private void clearCaches() {
+        cacheManager.getCacheNames().forEach(cacheName -> {
+            var cache = cacheManager.getCache(cacheName);
+            if (cache != null) {
+                cache.clear();
+            }
+        });
+    }
+
+    private static String replicaJdbcUrl() {
+        return "jdbc:postgresql://" + replica.getHost() + ":" + replica.getMappedPort(5432) + "/testdb";
+    }
+}
@@ -0,0 +1,59 @@
+package com.innowise.userservice.integration;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Index advisor over the migrated schema: every foreign key has an index leading
+ * with its columns, and no two indexes of a table share the same key.
+ */
+@DisplayName("Schema index integration tests")
+public class SchemaIndexIT extends BaseIntegrationTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    @DisplayName("every foreign key should be covered by an index")
+    void foreignKeys_ShouldBeCoveredByIndex() {
+        List<String> uncovered = jdbcTemplate.queryForList("""
+                SELECT con.conrelid::regclass || '.' || con.conname
+                FROM pg_constraint con
+                JOIN pg_namespace n ON n.oid = con.connamespace
+                WHERE con.contype = 'f'
+                  AND n.nspname = current_schema()
+                  AND NOT EXISTS (
+                      SELECT 1
+                      FROM pg_index i
+                      WHERE i.indrelid = con.conrelid
+                        AND (string_to_array(i.indkey::text, ' ')::int2[])[1:cardinality(con.conkey)] = con.conkey
+                  )
+                """, String.class);
+
+        assertThat(uncovered).isEmpty();
+    }
+
+    @Test
+    @DisplayName("no table should have two indexes with the same key")
+    void indexes_ShouldNotDuplicateEachOther() {
+        List<String> duplicates = jdbcTemplate.queryForList("""
+                SELECT string_agg(i.indexrelid::regclass::text, ', ' ORDER BY i.indexrelid::regclass::text)
+                FROM pg_index i
+                JOIN pg_class c ON c.oid = i.indrelid
+                JOIN pg_namespace n ON n.oid = c.relnamespace
+                WHERE n.nspname = current_schema()
+                GROUP BY i.indrelid, i.indkey::text, i.indclass::text,
+                         COALESCE(pg_get_expr(i.indexprs, i.indrelid), ''),
+                         COALESCE(pg_get_expr(i.indpred, i.indrelid), '')
+                HAVING count(*) > 1
+                """, String.class);
+
+        assertThat(duplicates).isEmpty();
+    }
+}
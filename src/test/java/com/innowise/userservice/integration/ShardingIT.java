@@ -0,0 +1,461 @@
+package com.innowise.userservice.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.innowise.userservice.datasource.ShardSet;
+import com.innowise.userservice.dto.card.CardRequestDto;
+import com.innowise.userservice.dto.user.UserRequestDto;
+import com.redis.testcontainers.RedisContainer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Runs against three databases with users spread over them.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "service.shards.enabled=true"
+})
+@AutoConfigureMockMvc
+@Testcontainers
+@ActiveProfiles("test")
+@DisplayName("Sharding integration tests")
+public class ShardingIT {
+
+    private static final int USERS = 30;
+
+    @Container
+    private static final PostgreSQLContainer<?> shard0 = shardContainer();
+
+    @Container
+    private static final PostgreSQLContainer<?> shard1 = shardContainer();
+
+    @Container
+    private static final PostgreSQLContainer<?> shard2 = shardContainer();
+
+    @Container
+    private static final RedisContainer redisContainer =
+            new RedisContainer(DockerImageName.parse("redis:7-alpine"))
+                    .withExposedPorts(6379);
+
+    @DynamicPropertySource
+    static void dynamicProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", shard0::getJdbcUrl);
+        registry.add("spring.datasource.username", shard0::getUsername);
+        registry.add("spring.datasource.password", shard0::getPassword);
+        registry.add("service.shards.urls", () -> String.join(",",
+                shard0.getJdbcUrl(), shard1.getJdbcUrl(), shard2.getJdbcUrl()));
+
+        registry.add("spring.data.redis.host", redisContainer::getHost);
+        registry.add("spring.data.redis.port", () -> redisContainer.getMappedPort(6379).toString());
+
+        registry.add("spring.liquibase.enabled", () -> "true");
+
+        registry.add("service.api.key", () -> BaseIntegrationTest.TEST_SERVICE_KEY);
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ShardSet shardSet;
+
+    private List<JdbcClient> shards;
+
+    @BeforeEach
+    void setUp() {
+        shards = shardSet.dataSources().stream().map(JdbcClient::create).toList();
+        shards.forEach(shard -> shard.sql("TRUNCATE users, user_shard_directory, card_number_directory CASCADE").update());
+        clearCaches();
+    }
+
+    @Test
+    @DisplayName("should store each user on the shard its id and its directory entry name")
+    void shouldPlaceUsersOnTheShardOfTheirId() throws Exception {
+        List<JsonNode> users = createUsers();
+
+        Map<Integer, Integer> perShard = new HashMap<>();
+        for (JsonNode user : users) {
+            long id = user.get("id").asLong();
+            String email = user.get("email").asText();
+            int shard = shardSet.shardOf(id);
+
+            assertThat(countUsers(shard, id)).isEqualTo(1);
+            assertThat(shards.getFirst().sql("SELECT shard FROM user_shard_directory WHERE email = :email")
+                    .param("email", email)
+                    .query(Integer.class)
+                    .single()).isEqualTo(shard);
+            perShard.merge(shard, 1, Integer::sum);
+
+            mockMvc.perform(get("/internal/users/{id}", id)
+                            .header("X-Service-Key", BaseIntegrationTest.TEST_SERVICE_KEY))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.email").value(email));
+            mockMvc.perform(get("/internal/users/by-email")
+                            .header("X-Service-Key", BaseIntegrationTest.TEST_SERVICE_KEY)
+                            .param("email", email))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.id").value(id));
+        }
+        assertThat(perShard).containsOnlyKeys(0, 1, 2);
+    }
+
+    @Test
+    @DisplayName("should return 409 when an email taken on another shard is claimed")
+    void shouldRejectEmailTakenOnAnotherShard() throws Exception {
+        List<JsonNode> users = createUsers();
+        JsonNode owner = users.getFirst();
+        JsonNode other = users.stream()
+                .filter(user -> shardSet.shardOf(user.get("id").asLong())
+                        != shardSet.shardOf(owner.get("id").asLong()))
+                .findFirst()
+                .orElseThrow();
+
+        mockMvc.perform(post("/internal/users")
+                        .header("X-Service-Key", BaseIntegrationTest.TEST_SERVICE_KEY)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(userRequest(owner.get("email").asText()))))
+                .andExpect(status().isConflict());
+
+        mockMvc.perform(asAdmin(put("/api/v1/users/{id}", other.get("id").asLong()))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(userRequest(owner.get("email").asText()))))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    @DisplayName("should let only one of concurrent claims on different shards take an email")
+    void shouldSerializeConcurrentClaimsOfAnEmail() throws Exception {
+        List<JsonNode> users = createUsers();
+        List<Long> claimants = new ArrayList<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            int current = shard;
+            users.stream()
+                    .map(user -> user.get("id").asLong())
+                    .filter(id -> shardSet.shardOf(id) == current)
+                    .limit(2)
+                    .forEach(claimants::add);
+        }
+        String request = objectMapper.writeValueAsString(userRequest("shared@example.com"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(claimants.size());
+        List<Integer> statuses;
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Integer>> results = new ArrayList<>();
+            for (long id : claimants) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return mockMvc.perform(asAdmin(put("/api/v1/users/{id}", id))
+                                    .contentType(MediaType.APPLICATION_JSON)
+                                    .content(request))
+                            .andReturn()
+                            .getResponse()
+                            .getStatus();
+                }));
+            }
+            start.countDown();
+            statuses = new ArrayList<>();
+            for (Future<Integer> result : results) {
+                statuses.add(result.get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(statuses).containsOnly(200, 409).filteredOn(status -> status == 200).hasSize(1);
+        int owners = 0;
+        for (JdbcClient shard : shards) {
+            owners += shard.sql("SELECT count(*) FROM users WHERE email = 'shared@example.com'")
+                    .query(Integer.class)
+                    .single();
+        }
+        assertThat(owners).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("should create more users on shard 0 at once than its pool has connections")
+    void shouldCreateConcurrentlyOnShardZeroBeyondItsPool() throws Exception {
+        int writers = 3 * shardSet.dataSource(0).getHikariConfigMXBean().getMaximumPoolSize();
+        List<String> emails = new ArrayList<>();
+        for (int i = 0; emails.size() < writers; i++) {
+            String email = "zero%03d@example.com".formatted(i);
+            if (shardSet.placementOf(email) == 0) {
+                emails.add(email);
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        List<Integer> statuses;
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Integer>> results = new ArrayList<>();
+            for (String email : emails) {
+                String request = objectMapper.writeValueAsString(userRequest(email));
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return mockMvc.perform(post("/internal/users")
+                                    .header("X-Service-Key", BaseIntegrationTest.TEST_SERVICE_KEY)
+                                    .contentType(MediaType.APPLICATION_JSON)
+                                    .content(request))
+                            .andReturn()
+                            .getResponse()
+                            .getStatus();
+                }));
+            }
+            start.countDown();
+            statuses = new ArrayList<>();
+            for (Future<Integer> result : results) {
+                // Well below the connection timeout, a pool deadlock would only end there
+                statuses.add(result.get(20, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(statuses).hasSize(writers).containsOnly(201);
+        assertThat(shards.getFirst().sql("SELECT count(*) FROM users")
+                .query(Integer.class)
+                .single()).isEqualTo(writers);
+    }
+
+    @Test
+    @DisplayName("should keep cards on the shard of their owner")
+    void shouldStoreCardsWithTheirOwner() throws Exception {
+        List<JsonNode> users = createUsers();
+
+        for (JsonNode user : users.subList(0, 6)) {
+            long userId = user.get("id").asLong();
+            CardRequestDto card = CardRequestDto.builder()
+                    .number("4000-0000-%04d-%04d".formatted(userId / 10_000, userId % 10_000))
+                    .holder("IVAN IVANOV")
+                    .expirationDate(LocalDate.now().plusYears(2))
+                    .active(true)
+                    .build();
+            JsonNode created = read(mockMvc.perform(asAdmin(post("/api/v1/users/{userId}/cards", userId))
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(card)))
+                    .andExpect(status().isCreated())
+                    .andReturn());
+
+            int shard = shardSet.shardOf(userId);
+            assertThat(shardSet.shardOf(created.get("id").asLong())).isEqualTo(shard);
+            assertThat(shards.get(shard).sql("SELECT user_id FROM payment_cards WHERE id = :id")
+                    .param("id", created.get("id").asLong())
+                    .query(Long.class)
+                    .single()).isEqualTo(userId);
+
+            mockMvc.perform(asAdmin(get("/api/v1/users/{userId}/cards", userId)))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$[0].id").value(created.get("id").asLong()));
+        }
+
+        JsonNode scroll = read(mockMvc.perform(asAdmin(get("/api/v1/cards/scroll")).param("size", "4"))
+                .andExpect(status().isOk())
+                .andReturn());
+        assertThat(ids(scroll.get("content"))).isSorted().hasSize(4);
+        assertThat(scroll.get("hasNext").asBoolean()).isTrue();
+    }
+
+    @Test
+    @DisplayName("should return 409 when a card number used on another shard is added or set")
+    void shouldRejectCardNumberTakenOnAnotherShard() throws Exception {
+        List<JsonNode> users = createUsers();
+        long owner = users.getFirst().get("id").asLong();
+        List<Long> others = users.stream()
+                .map(user -> user.get("id").asLong())
+                .filter(id -> shardSet.shardOf(id) != shardSet.shardOf(owner))
+                .toList();
+        CardRequestDto card = CardRequestDto.builder()
+                .number("4000-1111-2222-3333")
+                .holder("IVAN IVANOV")
+                .expirationDate(LocalDate.now().plusYears(2))
+                .active(true)
+                .build();
+
+        mockMvc.perform(asAdmin(post("/api/v1/users/{userId}/cards", owner))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(card)))
+                .andExpect(status().isCreated());
+        mockMvc.perform(asAdmin(post("/api/v1/users/{userId}/cards", others.getFirst()))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(card)))
+                .andExpect(status().isConflict());
+
+        JsonNode other = read(mockMvc.perform(asAdmin(post("/api/v1/users/{userId}/cards", others.getFirst()))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(CardRequestDto.builder()
+                                .number("4000-1111-2222-4444")
+                                .holder(card.holder())
+                                .expirationDate(card.expirationDate())
+                                .active(true)
+                                .build())))
+                .andExpect(status().isCreated())
+                .andReturn());
+        mockMvc.perform(asAdmin(put("/api/v1/cards/{id}", other.get("id").asLong()))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(card)))
+                .andExpect(status().isConflict());
+
+        int holders = 0;
+        for (JdbcClient shard : shards) {
+            holders += shard.sql("SELECT count(*) FROM payment_cards WHERE number = '4000-1111-2222-3333'")
+                    .query(Integer.class)
+                    .single();
+        }
+        assertThat(holders).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("should merge admin listings of all shards in the requested order")
+    void shouldMergeListingsAcrossShards() throws Exception {
+        List<JsonNode> users = createUsers();
+        List<Long> byEmail = users.stream()
+                .sorted(Comparator.comparing(user -> user.get("email").asText()))
+                .map(user -> user.get("id").asLong())
+                .toList();
+
+        JsonNode page = read(mockMvc.perform(asAdmin(get("/api/v1/users"))
+                        .param("page", "1")
+                        .param("size", "7")
+                        .param("sort", "email")
+                        .param("count", "EXACT"))
+                .andExpect(status().isOk())
+                .andReturn());
+        assertThat(ids(page.get("content"))).isEqualTo(byEmail.subList(7, 14));
+        assertThat(page.get("totalElements").asLong()).isEqualTo(USERS);
+        assertThat(page.get("hasNext").asBoolean()).isTrue();
+
+        List<Long> scrolled = new ArrayList<>();
+        String cursor = null;
+        do {
+            MockHttpServletRequestBuilder request = asAdmin(get("/api/v1/users/scroll"))
+                    .param("size", "4")
+                    .param("sort", "email");
+            if (cursor != null) {
+                request.param("cursor", cursor);
+            }
+            JsonNode window = read(mockMvc.perform(request).andExpect(status().isOk()).andReturn());
+            scrolled.addAll(ids(window.get("content")));
+            cursor = window.get("hasNext").asBoolean() ? window.get("nextCursor").asText() : null;
+        } while (cursor != null);
+        assertThat(scrolled).isEqualTo(byEmail);
+
+        MvcResult export = mockMvc.perform(asAdmin(get("/api/v1/users/export")).param("format", "CSV"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String csv = mockMvc.perform(asyncDispatch(export))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        assertThat(csv.lines()).hasSize(USERS + 1);
+        assertThat(csv.lines().filter(line -> line.startsWith("user_id,"))).hasSize(1);
+    }
+
+    private List<JsonNode> createUsers() throws Exception {
+        List<JsonNode> users = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            users.add(read(mockMvc.perform(post("/internal/users")
+                            .header("X-Service-Key", BaseIntegrationTest.TEST_SERVICE_KEY)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(userRequest("user%02d@example.com".formatted(i)))))
+                    .andExpect(status().isCreated())
+                    .andReturn()));
+        }
+        return users;
+    }
+
+    private UserRequestDto userRequest(String email) {
+        return UserRequestDto.builder()
+                .name("Ivan")
+                .surname("Ivanov")
+                .birthDate(LocalDate.of(1990, 1, 1))
+                .email(email)
+                .active(true)
+                .build();
+    }
+
+    private MockHttpServletRequestBuilder asAdmin(MockHttpServletRequestBuilder request) {
+        return request
+                .header("X-User-Id", "1")
+                .header("X-User-Email", "admin@example.com")
+                .header("X-User-Role", "ADMIN");
+    }
+
+    private int countUsers(int shard, long id) {
+        return shards.get(shard).sql("SELECT count(*) FROM users WHERE id = :id")
+                .param("id", id)
+                .query(Integer.class)
+                .single();
+    }
+
+    private JsonNode read(MvcResult result) throws Exception {
+        return objectMapper.readTree(result.getResponse().getContentAsString());
+    }
+
+    private List<Long> ids(JsonNode content) {
+        List<Long> ids = new ArrayList<>();
+        content.forEach(row -> ids.add(row.get("id").asLong()));
+        return ids;
+    }
+
+    private void clearCaches() {
+        cacheManager.getCacheNames().forEach(cacheName -> {
+            var cache = cacheManager.getCache(cacheName);
+            if (cache != null) {
+                cache.clear();
+            }
+        });
+    }
+
+    private static PostgreSQLContainer<?> shardContainer() {
+        return new PostgreSQLContainer<>(DockerImageName.parse("postgres:15-alpine"))
+                .withDatabaseName("testdb")
+                .withUsername("test")
+                .withPassword("test");
+    }
+}
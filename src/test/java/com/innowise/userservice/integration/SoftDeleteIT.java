@@ -0,0 +1,259 @@
+package com.innowise.userservice.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.innowise.userservice.dto.card.CardRequestDto;
+import com.innowise.userservice.dto.user.UserRequestDto;
+import com.innowise.userservice.entity.User;
+import com.innowise.userservice.repository.UserRepository;
+import com.innowise.userservice.service.CardService;
+import com.innowise.userservice.service.archive.UserPurger;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.sql.Connection;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@AutoConfigureMockMvc
+@TestPropertySource(properties = "service.purge.interval-ms=3600000")
+@DisplayName("Soft delete integration tests")
+public class SoftDeleteIT extends BaseIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private UserPurger userPurger;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private HikariDataSource dataSource;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private User admin;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("TRUNCATE users CASCADE");
+        cacheManager.getCacheNames().forEach(cacheName -> {
+            var cache = cacheManager.getCache(cacheName);
+            if (cache != null) {
+                cache.clear();
+            }
+        });
+        admin = createUser("admin@example.com");
+    }
+
+    @Test
+    @DisplayName("should hide a deleted user and its cards from every read and write")
+    void shouldHideDeletedUser() throws Exception {
+        User user = createUser("ivan@example.com");
+        long cardId = addCard(user, "4000-0000-0000-0001");
+        // Cached before the delete, must not outlive it
+        mockMvc.perform(asAdmin(get("/api/v1/users/{id}", user.getId()))).andExpect(status().isOk());
+        mockMvc.perform(get("/internal/users/by-email")
+                        .header("X-Service-Key", TEST_SERVICE_KEY)
+                        .param("email", "ivan@example.com"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(asAdmin(delete("/api/v1/users/{id}", user.getId())))
+                .andExpect(status().isNoContent());
+
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT deleted_at IS NOT NULL FROM users WHERE id = ?", Boolean.class, user.getId())).isTrue();
+        mockMvc.perform(asAdmin(get("/api/v1/users/{id}", user.getId()))).andExpect(status().isNotFound());
+        mockMvc.perform(get("/internal/users/by-email")
+                        .header("X-Service-Key", TEST_SERVICE_KEY)
+                        .param("email", "ivan@example.com"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(asAdmin(get("/api/v1/users")).param("count", "EXACT"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalElements").value(1))
+                .andExpect(jsonPath("$.content[0].id").value(admin.getId()));
+        mockMvc.perform(asAdmin(get("/api/v1/users/{userId}/cards", user.getId())))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(asAdmin(get("/api/v1/cards/scroll")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content").isEmpty());
+        mockMvc.perform(asAdmin(get("/api/v1/cards/search")).param("holder", "ivan"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content").isEmpty());
+
+        mockMvc.perform(asAdmin(put("/api/v1/users/{id}", user.getId()))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(userRequest("ivan@example.com"))))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(asAdmin(patch("/api/v1/users/{id}/activity", user.getId())).param("isActive", "false"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(asAdmin(post("/api/v1/users/{userId}/cards", user.getId()))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(cardRequest("4000-0000-0000-0002"))))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(asAdmin(delete("/api/v1/users/{id}", user.getId())))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(asAdmin(put("/api/v1/cards/{cardId}", cardId))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(cardRequest("4000-0000-0000-0003"))))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(put("/api/v1/cards/{cardId}", cardId)
+                        .header("X-User-Id", user.getId().toString())
+                        .header("X-User-Email", user.getEmail())
+                        .header("X-User-Role", "USER")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(cardRequest("4000-0000-0000-0003"))))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(asAdmin(patch("/api/v1/cards/{cardId}/activity", cardId)).param("isActive", "false"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(asAdmin(delete("/api/v1/cards/{cardId}", cardId)))
+                .andExpect(status().isNotFound());
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT number FROM payment_cards WHERE id = ? AND active", String.class, cardId))
+                .isEqualTo("4000-0000-0000-0001");
+
+        MvcResult export = mockMvc.perform(asAdmin(get("/api/v1/users/export")))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(export))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        assertThat(body.lines()).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("should free the email of a deleted user right away")
+    void shouldFreeEmail_WhenDeleted() throws Exception {
+        User user = createUser("ivan@example.com");
+
+        mockMvc.perform(delete("/internal/users/{userId}", user.getId())
+                        .header("X-Service-Key", TEST_SERVICE_KEY))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(post("/internal/users")
+                        .header("X-Service-Key", TEST_SERVICE_KEY)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(userRequest("ivan@example.com"))))
+                .andExpect(status().isCreated());
+        mockMvc.perform(post("/internal/users")
+                        .header("X-Service-Key", TEST_SERVICE_KEY)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(userRequest("ivan@example.com"))))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    @DisplayName("should purge deleted users with their cards")
+    void shouldPurgeDeletedUsers() throws Exception {
+        User user = createUser("ivan@example.com");
+        addCard(user, "4000-0000-0000-0001");
+        mockMvc.perform(asAdmin(delete("/api/v1/users/{id}", user.getId())))
+                .andExpect(status().isNoContent());
+
+        assertThat(userPurger.purge()).isEqualTo(1);
+
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM users", Long.class)).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM payment_cards WHERE user_id = ?", Long.class, user.getId())).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM payment_card_numbers", Long.class)).isZero();
+        assertThat(userPurger.purge()).isZero();
+    }
+
+    @Test
+    @DisplayName("should leave deleted users alone while the pool is busy")
+    void shouldPausePurge_WhenPoolBusy() throws Exception {
+        User user = createUser("ivan@example.com");
+        mockMvc.perform(asAdmin(delete("/api/v1/users/{id}", user.getId())))
+                .andExpect(status().isNoContent());
+
+        List<Connection> held = new ArrayList<>();
+        try {
+            while (held.size() <= dataSource.getMaximumPoolSize() / 2) {
+                held.add(dataSource.getConnection());
+            }
+            assertThat(userPurger.purge()).isZero();
+        } finally {
+            for (Connection connection : held) {
+                connection.close();
+            }
+        }
+
+        assertThat(userPurger.purge()).isEqualTo(1);
+    }
+
+    private User createUser(String email) {
+        return userRepository.save(User.builder()
+                .name("Ivan")
+                .surname("Ivanov")
+                .birthDate(LocalDate.of(1990, 1, 1))
+                .email(email)
+                .active(true)
+                .build());
+    }
+
+    private long addCard(User user, String number) {
+        return cardService.addCardToUser(user.getId(), cardRequest(number)).id();
+    }
+
+    private CardRequestDto cardRequest(String number) {
+        return CardRequestDto.builder()
+                .number(number)
+                .holder("IVAN IVANOV")
+                .expirationDate(LocalDate.now().plusYears(2))
+                .active(true)
+                .build();
+    }
+
+    private UserRequestDto userRequest(String email) {
+        return UserRequestDto.builder()
+                .name("Ivan")
+                .surname("Ivanov")
+                .birthDate(LocalDate.of(1990, 1, 1))
+                .email(email)
+                .active(true)
+                .build();
+    }
+
+    private MockHttpServletRequestBuilder asAdmin(MockHttpServletRequestBuilder request) {
+        return request
+                .header("X-User-Id", admin.getId().toString())
+                .header("X-User-Email", admin.getEmail())
+                .header("X-User-Role", "ADMIN");
+    }
+}
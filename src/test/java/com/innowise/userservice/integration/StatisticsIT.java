@@ -0,0 +1,257 @@
+package com.innowise.userservice.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.innowise.userservice.dto.card.CardRequestDto;
+import com.innowise.userservice.dto.card.CardResponseDto;
+import com.innowise.userservice.entity.User;
+import com.innowise.userservice.repository.UserRepository;
+import com.innowise.userservice.service.CardService;
+import com.innowise.userservice.service.UserService;
+import com.innowise.userservice.service.archive.UserArchiver;
+import com.innowise.userservice.service.archive.UserPurger;
+import com.innowise.userservice.service.statistics.StatisticsSettler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@AutoConfigureMockMvc
+@TestPropertySource(properties = {
+        "service.archive.enabled=true",
+        "service.archive.horizon=30d",
+        "service.archive.interval-ms=3600000",
+        "service.purge.interval-ms=3600000",
+        "service.statistics.settle-interval-ms=3600000"
+})
+@DisplayName("Statistics integration tests")
+public class StatisticsIT extends BaseIntegrationTest {
+
+    // The same totals computed from the tables, what the counters have to agree with
+    private static final String RECOUNT = """
+            SELECT count(*) AS total_users,
+                   count(*) FILTER (WHERE u.active) AS active_users,
+                   coalesce(sum(c.cards), 0) AS total_cards,
+                   coalesce(sum(c.active_cards), 0) AS active_cards,
+                   coalesce(sum(c.expiring), 0) AS expiring
+            FROM users u
+            LEFT JOIN LATERAL (
+                SELECT count(*) AS cards,
+                       count(*) FILTER (WHERE active) AS active_cards,
+                       count(*) FILTER (WHERE active AND date_trunc('month', expiration_date)
+                                                         = date_trunc('month', current_date)) AS expiring
+                FROM payment_cards
+                WHERE user_id = u.id
+            ) c ON true
+            WHERE u.deleted_at IS NULL
+            """;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private UserArchiver userArchiver;
+
+    @Autowired
+    private UserPurger userPurger;
+
+    @Autowired
+    private StatisticsSettler statisticsSettler;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User admin;
+    private int cardNumberSequence;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("TRUNCATE users CASCADE");
+        jdbcTemplate.execute("TRUNCATE statistics_counters, statistics_contributions, statistics_pending_users");
+        admin = createUser("admin@example.com", true);
+    }
+
+    @Test
+    @DisplayName("should keep the totals in step with every write path")
+    void shouldMatchRecount_AfterWrites() throws Exception {
+        User ivan = createUser("ivan@example.com", true);
+        User petr = createUser("petr@example.com", true);
+        User sidor = createUser("sidor@example.com", false);
+        CardResponseDto expiring = addCard(ivan, YearMonth.now().atEndOfMonth());
+        CardResponseDto second = addCard(ivan, LocalDate.now().plusYears(2));
+        addCard(ivan, LocalDate.now().plusYears(2));
+        addCard(petr, YearMonth.now().atEndOfMonth());
+        addCard(sidor, LocalDate.now().plusYears(1));
+        assertMatchesRecount();
+
+        userService.changeUserActivity(petr.getId(), false);
+        cardService.changeCardActivity(expiring.id(), false);
+        cardService.updateCard(second.id(), cardRequest(second.number(), YearMonth.now().atEndOfMonth()),
+                ivan.getId());
+        cardService.deleteCard(expiring.id());
+        assertMatchesRecount();
+
+        // Soft delete takes the user out right away, the purge must not count it twice
+        userService.deleteUser(petr.getId());
+        assertMatchesRecount();
+        userPurger.purge();
+        assertMatchesRecount();
+
+        // Archiving deletes live users with their cards
+        jdbcTemplate.update("UPDATE users SET updated_at = now() - interval '60 days' WHERE id = ?", sidor.getId());
+        assertThat(userArchiver.archive()).isEqualTo(1);
+        assertMatchesRecount();
+
+        JsonNode statistics = statistics();
+        assertThat(statistics.get("totalUsers").asLong()).isEqualTo(2);
+        assertThat(statistics.get("activeUsers").asLong()).isEqualTo(2);
+        assertThat(statistics.get("totalCards").asLong()).isEqualTo(2);
+        assertThat(statistics.get("activeCardsExpiringThisMonth").asLong()).isEqualTo(1);
+        assertThat(statistics.get("usersByCardCount").get("0").asLong()).isEqualTo(1);
+        assertThat(statistics.get("usersByCardCount").get("2").asLong()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("should count cards added to one user concurrently")
+    void shouldMatchRecount_AfterConcurrentCardInserts() throws Exception {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            users.add(createUser("user" + i + "@example.com", true));
+        }
+
+        int writers = 8;
+        CyclicBarrier start = new CyclicBarrier(writers);
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        try {
+            List<CompletableFuture<Void>> inserts = new ArrayList<>();
+            for (int writer = 0; writer < writers; writer++) {
+                User user = users.get(writer % users.size());
+                inserts.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        start.await();
+                        for (int card = 0; card < 2; card++) {
+                            addCard(user, LocalDate.now().plusYears(1));
+                        }
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }, executor));
+            }
+            CompletableFuture.allOf(inserts.toArray(CompletableFuture[]::new)).join();
+        } finally {
+            executor.shutdown();
+        }
+
+        assertMatchesRecount();
+        assertThat(statistics().get("usersByCardCount").get("4").asLong()).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("should return 403 when a regular user asks for statistics")
+    void shouldReturn403_WhenNotAdmin() throws Exception {
+        User user = createUser("ivan@example.com", true);
+
+        mockMvc.perform(get("/api/v1/statistics")
+                        .header("X-User-Id", user.getId().toString())
+                        .header("X-User-Email", user.getEmail())
+                        .header("X-User-Role", "USER"))
+                .andExpect(status().isForbidden());
+    }
+
+    // Card counters move when the settler runs, users and active users right away
+    private void assertMatchesRecount() throws Exception {
+        statisticsSettler.settle();
+        Map<String, Object> recount = jdbcTemplate.queryForMap(RECOUNT);
+        Map<String, Long> histogram = jdbcTemplate.query("""
+                        SELECT (SELECT count(*) FROM payment_cards c WHERE c.user_id = u.id) AS cards, count(*) AS users
+                        FROM users u
+                        WHERE u.deleted_at IS NULL
+                        GROUP BY 1
+                        """, (rs, rowNum) -> Map.entry(rs.getString("cards"), rs.getLong("users")))
+                .stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+
+        JsonNode statistics = statistics();
+        assertThat(statistics.get("totalUsers").asLong()).isEqualTo(((Number) recount.get("total_users")).longValue());
+        assertThat(statistics.get("activeUsers").asLong()).isEqualTo(((Number) recount.get("active_users")).longValue());
+        assertThat(statistics.get("totalCards").asLong()).isEqualTo(((Number) recount.get("total_cards")).longValue());
+        assertThat(statistics.get("activeCards").asLong()).isEqualTo(((Number) recount.get("active_cards")).longValue());
+        assertThat(statistics.get("activeCardsExpiringThisMonth").asLong())
+                .isEqualTo(((Number) recount.get("expiring")).longValue());
+        for (int cards = 0; cards <= 5; cards++) {
+            assertThat(statistics.get("usersByCardCount").get(String.valueOf(cards)).asLong())
+                    .as("users with %d cards", cards)
+                    .isEqualTo(histogram.getOrDefault(String.valueOf(cards), 0L));
+        }
+    }
+
+    private JsonNode statistics() throws Exception {
+        String body = mockMvc.perform(get("/api/v1/statistics")
+                        .header("X-User-Id", admin.getId().toString())
+                        .header("X-User-Email", admin.getEmail())
+                        .header("X-User-Role", "ADMIN"))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        return objectMapper.readTree(body);
+    }
+
+    private User createUser(String email, boolean active) {
+        return userRepository.save(User.builder()
+                .name("Ivan")
+                .surname("Ivanov")
+                .birthDate(LocalDate.of(1990, 1, 1))
+                .email(email)
+                .active(active)
+                .build());
+    }
+
+    private synchronized String nextCardNumber() {
+        return "4000-0000-0000-%04d".formatted(++cardNumberSequence);
+    }
+
+    private CardResponseDto addCard(User user, LocalDate expirationDate) {
+        return cardService.addCardToUser(user.getId(), cardRequest(nextCardNumber(), expirationDate));
+    }
+
+    private CardRequestDto cardRequest(String number, LocalDate expirationDate) {
+        return CardRequestDto.builder()
+                .number(number)
+                .holder("IVAN IVANOV")
+                .expirationDate(expirationDate)
+                .active(true)
+                .build();
+    }
+}
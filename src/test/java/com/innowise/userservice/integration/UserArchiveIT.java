@@ -0,0 +1,167 @@
+package com.innowise.userservice.integration;
+
+import com.innowise.userservice.dto.card.CardRequestDto;
+import com.innowise.userservice.entity.User;
+import com.innowise.userservice.repository.UserRepository;
+import com.innowise.userservice.service.CardService;
+import com.innowise.userservice.service.archive.UserArchiver;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@AutoConfigureMockMvc
+@TestPropertySource(properties = {
+        "service.archive.enabled=true",
+        "service.archive.horizon=30d",
+        "service.archive.batch-size=2",
+        "service.archive.max-batches-per-run=2",
+        "service.archive.interval-ms=3600000"
+})
+@DisplayName("User archive integration tests")
+public class UserArchiveIT extends BaseIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private UserArchiver userArchiver;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+        jdbcTemplate.update("TRUNCATE users_archive");
+        cacheManager.getCacheNames().forEach(cacheName -> {
+            var cache = cacheManager.getCache(cacheName);
+            if (cache != null) {
+                cache.clear();
+            }
+        });
+    }
+
+    @Test
+    @DisplayName("should move long inactive users with their cards in batches and keep the rest")
+    void shouldArchiveLongInactiveUsers() {
+        List<User> stale = IntStream.range(0, 5)
+                .mapToObj(i -> createUser("stale" + i + "@example.com", false))
+                .toList();
+        createUser("recent@example.com", false);
+        User longActive = createUser("active@example.com", true);
+        addCard(stale.getFirst(), "4000-0000-0000-0001");
+        addCard(longActive, "4000-0000-0000-0002");
+        backdate(stale);
+        backdate(List.of(longActive));
+        double archivedBefore = meterRegistry.get("users.archived").counter().count();
+
+        // Two batches of two per run
+        assertThat(userArchiver.archive()).isEqualTo(4);
+        assertThat(userArchiver.archive()).isEqualTo(1);
+        assertThat(userArchiver.archive()).isZero();
+
+        assertThat(jdbcTemplate.queryForList("SELECT email FROM users ORDER BY email", String.class))
+                .containsExactly("active@example.com", "recent@example.com");
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM users_archive", Long.class)).isEqualTo(5);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM payment_cards WHERE user_id = ?", Long.class, stale.getFirst().getId()))
+                .isZero();
+        // The number of an archived card is free again
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM payment_card_numbers WHERE number = '4000-0000-0000-0001'", Long.class))
+                .isZero();
+        assertThat(meterRegistry.get("users.archived").counter().count() - archivedBefore).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("should serve archived users by id and email with their cards")
+    void shouldFindArchivedUsers() throws Exception {
+        User user = createUser("archived@example.com", false);
+        addCard(user, "4000-0000-0000-0003");
+        backdate(List.of(user));
+        userArchiver.archive();
+
+        mockMvc.perform(get("/internal/users/{userId}", user.getId())
+                        .header("X-Service-Key", TEST_SERVICE_KEY))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.email").value("archived@example.com"))
+                .andExpect(jsonPath("$.active").value(false))
+                .andExpect(jsonPath("$.cards[0].number").value("4000-0000-0000-0003"));
+
+        mockMvc.perform(get("/internal/users/by-email")
+                        .header("X-Service-Key", TEST_SERVICE_KEY)
+                        .param("email", "archived@example.com"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(user.getId()));
+
+        mockMvc.perform(get("/internal/users/{userId}", user.getId() + 1000)
+                        .header("X-Service-Key", TEST_SERVICE_KEY))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("should report the size of the hot and archive tables")
+    void shouldReportTableSizes() {
+        User user = createUser("size@example.com", false);
+        backdate(List.of(user));
+        userArchiver.archive();
+
+        userArchiver.refreshTableStats();
+
+        assertThat(meterRegistry.get("db.table.size").tag("table", "users").gauge().value()).isPositive();
+        assertThat(meterRegistry.get("db.table.size").tag("table", "users_archive").gauge().value()).isPositive();
+        assertThat(meterRegistry.get("db.table.rows").tag("table", "users").gauge().value()).isNotNegative();
+    }
+
+    private User createUser(String email, boolean active) {
+        return userRepository.save(User.builder()
+                .name("Ivan")
+                .surname("Ivanov")
+                .birthDate(LocalDate.of(1990, 1, 1))
+                .email(email)
+                .active(active)
+                .build());
+    }
+
+    private void addCard(User user, String number) {
+        cardService.addCardToUser(user.getId(), CardRequestDto.builder()
+                .number(number)
+                .holder("IVAN IVANOV")
+                .expirationDate(LocalDate.now().plusYears(2))
+                .active(true)
+                .build());
+    }
+
+    private void backdate(List<User> users) {
+        users.forEach(user -> jdbcTemplate.update(
+                "UPDATE users SET updated_at = now() - interval '60 days' WHERE id = ?", user.getId()));
+    }
+}
@@ -1,25 +1,39 @@
 package com.innowise.userservice.integration;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.innowise.userservice.dto.card.CardRequestDto;
 import com.innowise.userservice.dto.user.UserRequestDto;
+import com.innowise.userservice.entity.Card;
 import com.innowise.userservice.entity.User;
 import com.innowise.userservice.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
 import org.hamcrest.Matchers;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.time.LocalDate;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @AutoConfigureMockMvc
@@ -38,9 +52,18 @@ public class UserControllerIT extends BaseIntegrationTest {
     @Autowired
     private CacheManager cacheManager;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private int cardNumberSequence;
+
     @BeforeEach
     void setUp() {
-        userRepository.deleteAll();
+        // deleteAll skips tombstoned users, they would still count in the estimated total
+        jdbcTemplate.execute("TRUNCATE users CASCADE");
         cacheManager.getCacheNames().forEach(cacheName -> {
             var cache = cacheManager.getCache(cacheName);
             if (cache != null) {
@@ -84,6 +107,47 @@ public class UserControllerIT extends BaseIntegrationTest {
                     .andExpect(jsonPath("$.name").value("Ivan"));
         }
 
+        @Test
+        @DisplayName("should return 304 when If-None-Match holds the current ETag")
+        void shouldReturn304_WhenETagMatches() throws Exception {
+            User user = createAndSaveUser("Ivan", "Ivanov", "ivan@example.com");
+
+            String etag = mockMvc.perform(get("/api/v1/users/{id}", user.getId())
+                            .header("X-User-Id", user.getId().toString())
+                            .header("X-User-Email", user.getEmail())
+                            .header("X-User-Role", "USER"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache, private"))
+                    .andReturn()
+                    .getResponse()
+                    .getHeader(HttpHeaders.ETAG);
+            assertThat(etag).startsWith("\"");
+
+            mockMvc.perform(get("/api/v1/users/{id}", user.getId())
+                            .header("X-User-Id", user.getId().toString())
+                            .header("X-User-Email", user.getEmail())
+                            .header("X-User-Role", "USER")
+                            .header(HttpHeaders.IF_NONE_MATCH, etag))
+                    .andExpect(status().isNotModified())
+                    .andExpect(header().string(HttpHeaders.ETAG, etag))
+                    .andExpect(content().string(""));
+
+            mockMvc.perform(patch("/api/v1/users/{id}/activity", user.getId())
+                            .header("X-User-Id", user.getId().toString())
+                            .header("X-User-Email", user.getEmail())
+                            .header("X-User-Role", "ADMIN")
+                            .param("isActive", "false"))
+                    .andExpect(status().isOk());
+
+            mockMvc.perform(get("/api/v1/users/{id}", user.getId())
+                            .header("X-User-Id", user.getId().toString())
+                            .header("X-User-Email", user.getEmail())
+                            .header("X-User-Role", "USER")
+                            .header(HttpHeaders.IF_NONE_MATCH, etag))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.active").value(false));
+        }
+
         @Test
         @DisplayName("should return 403 when user tries to get another user's data")
         void shouldReturn403_WhenUserTriesToGetAnotherUserData() throws Exception {
@@ -164,7 +228,8 @@ public class UserControllerIT extends BaseIntegrationTest {
                             .header("X-User-Email", admin.getEmail())
                             .header("X-User-Role", "ADMIN")
                             .param("page", "0")
-                            .param("size", "2"))
+                            .param("size", "2")
+                            .param("count", "EXACT"))
                     .andExpect(status().isOk())
                     .andExpect(jsonPath("$.content").isArray())
                     .andExpect(jsonPath("$.content.length()").value(2))
@@ -172,6 +237,80 @@ public class UserControllerIT extends BaseIntegrationTest {
                     .andExpect(jsonPath("$.totalPages").value(2));
         }
 
+        @Test
+        @DisplayName("should return has-next without totals by default")
+        void shouldReturnHasNextWithoutTotals_ByDefault() throws Exception {
+            createAndSaveUser("Ivan", "Ivanov", "ivan@example.com");
+            createAndSaveUser("Petr", "Petrov", "petr@example.com");
+
+            User admin = createAndSaveUser("Admin", "Admin", "admin@example.com");
+
+            mockMvc.perform(get("/api/v1/users")
+                            .header("X-User-Id", admin.getId().toString())
+                            .header("X-User-Email", admin.getEmail())
+                            .header("X-User-Role", "ADMIN")
+                            .param("size", "2"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.content.length()").value(2))
+                    .andExpect(jsonPath("$.hasNext").value(true))
+                    .andExpect(jsonPath("$.totalElements").value(Matchers.nullValue()))
+                    .andExpect(jsonPath("$.countMode").value("NONE"));
+
+            mockMvc.perform(get("/api/v1/users")
+                            .header("X-User-Id", admin.getId().toString())
+                            .header("X-User-Email", admin.getEmail())
+                            .header("X-User-Role", "ADMIN")
+                            .param("page", "1")
+                            .param("size", "2"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.content.length()").value(1))
+                    .andExpect(jsonPath("$.hasNext").value(false));
+        }
+
+        @Test
+        @DisplayName("should serve repeated listing from cache")
+        void shouldServeRepeatedListing_FromCache() throws Exception {
+            createAndSaveUser("Ivan", "Ivanov", "ivan@example.com");
+            User admin = createAndSaveUser("Admin", "Admin", "admin@example.com");
+
+            for (int i = 0; i < 2; i++) {
+                mockMvc.perform(get("/api/v1/users")
+                                .header("X-User-Id", admin.getId().toString())
+                                .header("X-User-Email", admin.getEmail())
+                                .header("X-User-Role", "ADMIN")
+                                .param("count", "EXACT"))
+                        .andExpect(status().isOk())
+                        .andExpect(jsonPath("$.content.length()").value(2))
+                        .andExpect(jsonPath("$.totalElements").value(2));
+            }
+
+            var cache = cacheManager.getCache("users");
+            assertThat(cache).isNotNull();
+            assertThat(cache.get("null_null_null_0_20_id: ASC_EXACT")).isNotNull();
+        }
+
+        @Test
+        @DisplayName("should return estimated total for unfiltered listing")
+        void shouldReturnEstimatedTotal_WhenUnfiltered() throws Exception {
+            createAndSaveUser("Ivan", "Ivanov", "ivan@example.com");
+            createAndSaveUser("Petr", "Petrov", "petr@example.com");
+            createAndSaveUser("Sidor", "Sidorov", "sidor@example.com");
+
+            User admin = createAndSaveUser("Admin", "Admin", "admin@example.com");
+            jdbcTemplate.execute("ANALYZE users");
+
+            mockMvc.perform(get("/api/v1/users")
+                            .header("X-User-Id", admin.getId().toString())
+                            .header("X-User-Email", admin.getEmail())
+                            .header("X-User-Role", "ADMIN")
+                            .param("size", "2")
+                            .param("count", "ESTIMATED"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.content.length()").value(2))
+                    .andExpect(jsonPath("$.totalElements").value(4))
+                    .andExpect(jsonPath("$.countMode").value("ESTIMATED"));
+        }
+
         @Test
         @DisplayName("should return 403 when regular user tries to get all users")
         void shouldReturn403_WhenRegularUserTriesToGetAllUsers() throws Exception {
@@ -260,6 +399,141 @@ public class UserControllerIT extends BaseIntegrationTest {
             assertThat(updatedUser.getSurname()).isEqualTo("Petrov");
         }
 
+        @Test
+        @DisplayName("should update user only while If-Match holds the current ETag")
+        void shouldReturn412_WhenIfMatchIsOutdated() throws Exception {
+            User existingUser = createAndSaveUser("Ivan", "Ivanov", "ivan@example.com");
+
+            String etag = mockMvc.perform(get("/api/v1/users/{id}", existingUser.getId())
+                            .header("X-User-Id", existingUser.getId().toString())
+                            .header("X-User-Email", existingUser.getEmail())
+                            .header("X-User-Role", "USER"))
+                    .andExpect(status().isOk())
+                    .andReturn()
+                    .getResponse()
+                    .getHeader(HttpHeaders.ETAG);
+
+            UserRequestDto updateDto = UserRequestDto.builder()
+                    .name("Petr")
+                    .surname("Petrov")
+                    .birthDate(LocalDate.of(1991, 2, 2))
+                    .email("ivan@example.com")
+                    .active(true)
+                    .build();
+
+            String newEtag = mockMvc.perform(put("/api/v1/users/{id}", existingUser.getId())
+                            .header("X-User-Id", existingUser.getId().toString())
+                            .header("X-User-Email", existingUser.getEmail())
+                            .header("X-User-Role", "USER")
+                            .header(HttpHeaders.IF_MATCH, etag)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(updateDto)))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.name").value("Petr"))
+                    .andReturn()
+                    .getResponse()
+                    .getHeader(HttpHeaders.ETAG);
+            assertThat(newEtag).isNotEqualTo(etag);
+
+            // A second writer still holding the first version loses
+            mockMvc.perform(put("/api/v1/users/{id}", existingUser.getId())
+                            .header("X-User-Id", existingUser.getId().toString())
+                            .header("X-User-Email", existingUser.getEmail())
+                            .header("X-User-Role", "USER")
+                            .header(HttpHeaders.IF_MATCH, etag)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(updateDto)))
+                    .andExpect(status().isPreconditionFailed());
+
+            // The tag of the PUT response is the one later reads serve
+            mockMvc.perform(get("/api/v1/users/{id}", existingUser.getId())
+                            .header("X-User-Id", existingUser.getId().toString())
+                            .header("X-User-Email", existingUser.getEmail())
+                            .header("X-User-Role", "USER")
+                            .header(HttpHeaders.IF_NONE_MATCH, newEtag))
+                    .andExpect(status().isNotModified());
+        }
+
+        @Test
+        @DisplayName("should serve a new ETag after a card update and accept it in If-Match")
+        void shouldRefreshETag_AfterCardUpdate() throws Exception {
+            User user = createAndSaveUserWithCards("ivan@example.com", 1);
+            Long cardId = user.getCards().getFirst().getId();
+
+            String etag = getUserETag(user);
+            // Warms the by-email entry, which embeds the cards as well
+            mockMvc.perform(get("/internal/users/by-email")
+                            .header("X-Service-Key", TEST_SERVICE_KEY)
+                            .param("email", user.getEmail())
+                            .param("include", "cards"))
+                    .andExpect(status().isOk());
+
+            CardRequestDto cardDto = CardRequestDto.builder()
+                    .number(user.getCards().getFirst().getNumber())
+                    .holder("IVAN IVANOV")
+                    .expirationDate(LocalDate.of(2031, 6, 30))
+                    .active(true)
+                    .build();
+            mockMvc.perform(put("/api/v1/cards/{cardId}", cardId)
+                            .header("X-User-Id", user.getId().toString())
+                            .header("X-User-Email", user.getEmail())
+                            .header("X-User-Role", "USER")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(cardDto)))
+                    .andExpect(status().isOk());
+
+            mockMvc.perform(get("/api/v1/users/{id}", user.getId())
+                            .header("X-User-Id", user.getId().toString())
+                            .header("X-User-Email", user.getEmail())
+                            .header("X-User-Role", "USER")
+                            .header(HttpHeaders.IF_NONE_MATCH, etag))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.cards[0].expirationDate").value("2031-06-30"));
+            mockMvc.perform(get("/internal/users/by-email")
+                            .header("X-Service-Key", TEST_SERVICE_KEY)
+                            .param("email", user.getEmail())
+                            .param("include", "cards"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.cards[0].expirationDate").value("2031-06-30"));
+
+            String newEtag = getUserETag(user);
+            assertThat(newEtag).isNotEqualTo(etag);
+
+            UserRequestDto updateDto = UserRequestDto.builder()
+                    .name("Petr")
+                    .surname("Petrov")
+                    .birthDate(LocalDate.of(1991, 2, 2))
+                    .email("petr@example.com")
+                    .active(true)
+                    .build();
+            mockMvc.perform(put("/api/v1/users/{id}", user.getId())
+                            .header("X-User-Id", user.getId().toString())
+                            .header("X-User-Email", user.getEmail())
+                            .header("X-User-Role", "USER")
+                            .header(HttpHeaders.IF_MATCH, newEtag)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(updateDto)))
+                    .andExpect(status().isOk());
+
+            // The entry under the old email went with the update
+            mockMvc.perform(get("/internal/users/by-email")
+                            .header("X-Service-Key", TEST_SERVICE_KEY)
+                            .param("email", "ivan@example.com")
+                            .param("include", "cards"))
+                    .andExpect(status().isNotFound());
+        }
+
+        private String getUserETag(User user) throws Exception {
+            return mockMvc.perform(get("/api/v1/users/{id}", user.getId())
+                            .header("X-User-Id", user.getId().toString())
+                            .header("X-User-Email", user.getEmail())
+                            .header("X-User-Role", "USER"))
+                    .andExpect(status().isOk())
+                    .andReturn()
+                    .getResponse()
+                    .getHeader(HttpHeaders.ETAG);
+        }
+
         @Test
         @DisplayName("should successfully update user when authenticated as admin")
         void shouldUpdateUser_WhenAuthenticatedAsAdmin() throws Exception {
@@ -439,6 +713,43 @@ public class UserControllerIT extends BaseIntegrationTest {
             assertThat(updatedUser.getActive()).isFalse();
         }
 
+        @Test
+        @DisplayName("should keep cached user when activity is already set")
+        void shouldKeepCache_WhenActivityAlreadySet() throws Exception {
+            User user = createAndSaveUser("Ivan", "Ivanov", "ivan@example.com");
+            User admin = createAndSaveUser("Admin", "Admin", "admin@example.com");
+
+            mockMvc.perform(get("/api/v1/users/{id}", user.getId())
+                            .header("X-User-Id", admin.getId().toString())
+                            .header("X-User-Email", admin.getEmail())
+                            .header("X-User-Role", "ADMIN"))
+                    .andExpect(status().isOk());
+
+            mockMvc.perform(patch("/api/v1/users/{id}/activity", user.getId())
+                            .header("X-User-Id", admin.getId().toString())
+                            .header("X-User-Email", admin.getEmail())
+                            .header("X-User-Role", "ADMIN")
+                            .param("isActive", "true"))
+                    .andExpect(status().isOk());
+
+            var cache = cacheManager.getCache("user");
+            assertThat(cache).isNotNull();
+            assertThat(cache.get(user.getId())).isNotNull();
+        }
+
+        @Test
+        @DisplayName("should return 404 when user doesnt exist")
+        void shouldReturn404_WhenUserDoesntExist() throws Exception {
+            User admin = createAndSaveUser("Admin", "Admin", "admin@example.com");
+
+            mockMvc.perform(patch("/api/v1/users/{id}/activity", 999999L)
+                            .header("X-User-Id", admin.getId().toString())
+                            .header("X-User-Email", admin.getEmail())
+                            .header("X-User-Role", "ADMIN")
+                            .param("isActive", "true"))
+                    .andExpect(status().isNotFound());
+        }
+
         @Test
         @DisplayName("should return 403 when regular user tries to change activity")
         void shouldReturn403_WhenRegularUserTriesToChangeActivity() throws Exception {
@@ -454,6 +765,205 @@ public class UserControllerIT extends BaseIntegrationTest {
         }
     }
 
+    @Nested
+    @DisplayName("Test GET /api/v1/users/scroll")
+    class ScrollUsersTests {
+
+        @Test
+        @DisplayName("should walk all users page by page using next cursor")
+        void shouldScrollAllUsers_UsingNextCursor() throws Exception {
+            createAndSaveUser("Ivan", "Ivanov", "ivan@example.com");
+            createAndSaveUser("Petr", "Petrov", "petr@example.com");
+            User admin = createAndSaveUser("Admin", "Admin", "admin@example.com");
+
+            MvcResult first = mockMvc.perform(get("/api/v1/users/scroll")
+                            .header("X-User-Id", admin.getId().toString())
+                            .header("X-User-Email", admin.getEmail())
+                            .header("X-User-Role", "ADMIN")
+                            .param("size", "2")
+                            .param("sort", "name,asc"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.content.length()").value(2))
+                    .andExpect(jsonPath("$.content[0].name").value("Admin"))
+                    .andExpect(jsonPath("$.hasNext").value(true))
+                    .andExpect(jsonPath("$.totalElements").doesNotExist())
+                    .andReturn();
+
+            String cursor = objectMapper.readTree(first.getResponse().getContentAsString())
+                    .get("nextCursor").asText();
+
+            mockMvc.perform(get("/api/v1/users/scroll")
+                            .header("X-User-Id", admin.getId().toString())
+                            .header("X-User-Email", admin.getEmail())
+                            .header("X-User-Role", "ADMIN")
+                            .param("size", "2")
+                            .param("sort", "name,asc")
+                            .param("cursor", cursor))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.content.length()").value(1))
+                    .andExpect(jsonPath("$.content[0].name").value("Petr"))
+                    .andExpect(jsonPath("$.hasNext").value(false));
+        }
+
+        @Test
+        @DisplayName("should return 400 when cursor is malformed")
+        void shouldReturn400_WhenCursorMalformed() throws Exception {
+            User admin = createAndSaveUser("Admin", "Admin", "admin@example.com");
+
+            mockMvc.perform(get("/api/v1/users/scroll")
+                            .header("X-User-Id", admin.getId().toString())
+                            .header("X-User-Email", admin.getEmail())
+                            .header("X-User-Role", "ADMIN")
+                            .param("cursor", "not-a-cursor"))
+                    .andExpect(status().isBadRequest());
+        }
+    }
+
+    @Nested
+    @DisplayName("Test GET /api/v1/users/export")
+    class ExportUsersTests {
+
+        @Test
+        @DisplayName("should stream filtered users as NDJSON when authenticated as admin")
+        void shouldExportUsersAsNdjson_WhenAuthenticatedAsAdmin() throws Exception {
+            createAndSaveUser("Ivan", "Ivanov", "ivan@example.com");
+            createAndSaveUser("Petr", "Petrov", "petr@example.com");
+            User admin = createAndSaveUser("Admin", "Admin", "admin@example.com");
+
+            MvcResult result = mockMvc.perform(get("/api/v1/users/export")
+                            .header("X-User-Id", admin.getId().toString())
+                            .header("X-User-Email", admin.getEmail())
+                            .header("X-User-Role", "ADMIN")
+                            .param("surname", "ov"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+
+            String body = mockMvc.perform(asyncDispatch(result))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                    .andReturn()
+                    .getResponse()
+                    .getContentAsString();
+
+            assertThat(body.lines()).hasSize(2);
+            assertThat(body).contains("ivan@example.com").contains("petr@example.com");
+        }
+
+        @Test
+        @DisplayName("should stream users as CSV with header row")
+        void shouldExportUsersAsCsv() throws Exception {
+            createAndSaveUser("Ivan", "Ivanov", "ivan@example.com");
+            User admin = createAndSaveUser("Admin", "Admin", "admin@example.com");
+
+            MvcResult result = mockMvc.perform(get("/api/v1/users/export")
+                            .header("X-User-Id", admin.getId().toString())
+                            .header("X-User-Email", admin.getEmail())
+                            .header("X-User-Role", "ADMIN")
+                            .param("format", "CSV"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+
+            String body = mockMvc.perform(asyncDispatch(result))
+                    .andExpect(status().isOk())
+                    .andReturn()
+                    .getResponse()
+                    .getContentAsString();
+
+            assertThat(body.lines()).hasSize(3);
+            assertThat(body).startsWith("user_id,name,surname");
+        }
+
+        @Test
+        @DisplayName("should return 403 when regular user tries to export users")
+        void shouldReturn403_WhenRegularUserTriesToExport() throws Exception {
+            User user = createAndSaveUser("Ivan", "Ivanov", "ivan@example.com");
+
+            mockMvc.perform(get("/api/v1/users/export")
+                            .header("X-User-Id", user.getId().toString())
+                            .header("X-User-Email", user.getEmail())
+                            .header("X-User-Role", "USER"))
+                    .andExpect(status().isForbidden());
+        }
+    }
+
+    @Nested
+    @DisplayName("Statement count per request")
+    class StatementCountTests {
+
+        private Statistics statistics;
+
+        @BeforeEach
+        void enableStatistics() {
+            statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+            statistics.setStatisticsEnabled(true);
+        }
+
+        @AfterEach
+        void disableStatistics() {
+            statistics.setStatisticsEnabled(false);
+        }
+
+        @ParameterizedTest
+        @ValueSource(ints = {5, 20, 50})
+        @DisplayName("should load users page with cards in a constant number of statements")
+        void shouldLoadUsersPage_InConstantStatements(int size) throws Exception {
+            User admin = createAndSaveUser("Admin", "Admin", "admin@example.com");
+            for (int i = 0; i < 50; i++) {
+                createAndSaveUserWithCards("user" + i + "@example.com", 2);
+            }
+            statistics.clear();
+
+            mockMvc.perform(get("/api/v1/users")
+                            .header("X-User-Id", admin.getId().toString())
+                            .header("X-User-Email", admin.getEmail())
+                            .header("X-User-Role", "ADMIN")
+                            .param("size", String.valueOf(size)))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.content.length()").value(size))
+                    .andExpect(jsonPath("$.content[1].cards.length()").value(2));
+
+            // users page + one batched cards query
+            assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        }
+
+        @Test
+        @DisplayName("should read user by id without loading entities")
+        void shouldReadUserById_WithoutLoadingEntities() throws Exception {
+            User user = createAndSaveUserWithCards("ivan@example.com", 3);
+            statistics.clear();
+
+            mockMvc.perform(get("/api/v1/users/{id}", user.getId())
+                            .header("X-User-Id", user.getId().toString())
+                            .header("X-User-Email", user.getEmail())
+                            .header("X-User-Role", "USER"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.cards.length()").value(3));
+
+            // Single JdbcClient statement, nothing goes through the persistence context
+            assertThat(statistics.getEntityLoadCount()).isZero();
+            assertThat(statistics.getPrepareStatementCount()).isZero();
+        }
+    }
+
+    private User createAndSaveUserWithCards(String email, int cards) {
+        User user = User.builder()
+                .name("Ivan")
+                .surname("Ivanov")
+                .birthDate(LocalDate.of(1990, 1, 1))
+                .email(email)
+                .active(true)
+                .build();
+        for (int i = 0; i < cards; i++) {
+            user.addCard(Card.builder()
+                    .number(String.format("4000-0000-0000-%04d", cardNumberSequence++))
+                    .holder("IVAN IVANOV")
+                    .expirationDate(LocalDate.of(2030, 1, 1))
+                    .active(true)
+                    .build());
+        }
+        return userRepository.save(user);
+    }
+
     private User createAndSaveUser(String name, String surname, String email) {
         User user = User.builder()
                 .name(name)
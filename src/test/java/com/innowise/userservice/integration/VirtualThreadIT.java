@@ -0,0 +1,238 @@
+package com.innowise.userservice.integration;
+
+import com.innowise.userservice.entity.User;
+import com.innowise.userservice.repository.UserRepository;
+import com.innowise.userservice.service.UserService;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Virtual-thread mode and the connection bulkheads, including a local comparison of
+ * platform and virtual threads under the same load.
+ */
+@Slf4j
+@TestPropertySource(properties = {
+        "spring.threads.virtual.enabled=true",
+        "spring.datasource.hikari.maximum-pool-size=5",
+        "spring.datasource.hikari.connection-timeout=3000"
+})
+@DisplayName("Virtual thread integration tests")
+public class VirtualThreadIT extends BaseIntegrationTest {
+
+    private static final int POOL_SIZE = 5;
+    private static final int REQUESTS = 2_000;
+    // Tomcat's default server.tomcat.threads.max
+    private static final int PLATFORM_THREADS = 200;
+    // Stands in for the Redis and downstream round trips of a request under load
+    private static final long REMOTE_WAIT_MS = 50;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private HikariDataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    @Qualifier("applicationTaskExecutor")
+    private AsyncTaskExecutor applicationTaskExecutor;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+        cacheManager.getCacheNames().forEach(cacheName -> {
+            var cache = cacheManager.getCache(cacheName);
+            if (cache != null) {
+                cache.clear();
+            }
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.getHikariConfigMXBean().setMaximumPoolSize(POOL_SIZE);
+    }
+
+    @Test
+    @DisplayName("should run application tasks on virtual threads and record pinning")
+    void shouldRunTasksOnVirtualThreads() throws Exception {
+        boolean virtual = applicationTaskExecutor.submit(() -> Thread.currentThread().isVirtual())
+                .get(5, TimeUnit.SECONDS);
+
+        assertThat(virtual).isTrue();
+        assertThat(meterRegistry.find("jvm.threads.virtual.pinned").timer()).isNotNull();
+    }
+
+    @Test
+    @DisplayName("should turn callers away once the pool stays exhausted past its timeout")
+    void shouldRejectCaller_WhenPoolStaysExhausted() throws Exception {
+        double rejectedBefore = bulkheadRejections();
+        List<Connection> held = new ArrayList<>();
+        try {
+            for (int i = 0; i < POOL_SIZE; i++) {
+                held.add(dataSource.getConnection());
+            }
+
+            assertThatThrownBy(dataSource::getConnection)
+                    .isInstanceOf(SQLTransientConnectionException.class)
+                    .hasMessageContaining("bulkhead");
+            assertThat(bulkheadRejections()).isEqualTo(rejectedBefore + 1);
+
+            held.remove(0).close();
+            try (Connection connection = dataSource.getConnection()) {
+                assertThat(connection.isValid(1)).isTrue();
+            }
+        } finally {
+            for (Connection connection : held) {
+                connection.close();
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("should hand out as many permits as the pool currently allows")
+    void shouldFollowPoolResize() throws Exception {
+        dataSource.getHikariConfigMXBean().setMaximumPoolSize(3);
+        double rejectedBefore = bulkheadRejections();
+
+        List<Connection> held = new ArrayList<>();
+        try {
+            for (int i = 0; i < 3; i++) {
+                held.add(dataSource.getConnection());
+            }
+            assertThatThrownBy(dataSource::getConnection).isInstanceOf(SQLTransientConnectionException.class);
+            assertThat(bulkheadRejections()).isEqualTo(rejectedBefore + 1);
+        } finally {
+            for (Connection connection : held) {
+                connection.close();
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("platform and virtual threads should serve the same load without failures")
+    void shouldServeSameLoad_OnPlatformAndVirtualThreads() throws Exception {
+        long userId = userRepository.save(User.builder()
+                .name("Ivan")
+                .surname("Ivanov")
+                .birthDate(LocalDate.of(1990, 1, 1))
+                .email("ivan@example.com")
+                .active(true)
+                .build()).getId();
+        userService.findUserById(userId);
+        Runnable request = () -> {
+            try {
+                Thread.sleep(REMOTE_WAIT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+            userService.findUserById(userId);
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.queryForObject("SELECT count(*) FROM payment_cards WHERE user_id = ?",
+                            Long.class, userId));
+        };
+
+        LoadResult platform;
+        try (ExecutorService executor = Executors.newFixedThreadPool(PLATFORM_THREADS)) {
+            platform = run(executor, request);
+        }
+        Timer bulkheadWait = meterRegistry.find("db.bulkhead.wait").tag("pool", dataSource.getPoolName()).timer();
+        long waitsBefore = bulkheadWait == null ? 0 : bulkheadWait.count();
+        LoadResult virtual;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            virtual = run(executor, request);
+        }
+
+        log.info("{} requests on {} platform threads: {} req/s, p50 {} ms, p99 {} ms", REQUESTS, PLATFORM_THREADS,
+                platform.throughput(), platform.p50Millis(), platform.p99Millis());
+        log.info("{} requests on virtual threads: {} req/s, p50 {} ms, p99 {} ms", REQUESTS,
+                virtual.throughput(), virtual.p50Millis(), virtual.p99Millis());
+
+        assertThat(platform.failures()).isZero();
+        assertThat(virtual.failures()).isZero();
+        // Far more virtual threads than connections, they queued in the bulkhead
+        assertThat(meterRegistry.find("db.bulkhead.wait").tag("pool", dataSource.getPoolName()).timer())
+                .isNotNull()
+                .satisfies(timer -> assertThat(timer.count()).isGreaterThan(waitsBefore));
+    }
+
+    private LoadResult run(ExecutorService executor, Runnable request) {
+        long[] latencies = new long[REQUESTS];
+        long started = System.nanoTime();
+        List<CompletableFuture<Boolean>> results = IntStream.range(0, REQUESTS)
+                .mapToObj(i -> CompletableFuture.supplyAsync(() -> {
+                    long requestStarted = System.nanoTime();
+                    try {
+                        request.run();
+                        return true;
+                    } catch (RuntimeException e) {
+                        return false;
+                    } finally {
+                        latencies[i] = System.nanoTime() - requestStarted;
+                    }
+                }, executor))
+                .toList();
+        long failures = results.stream().map(CompletableFuture::join).filter(ok -> !ok).count();
+        long elapsed = System.nanoTime() - started;
+
+        Arrays.sort(latencies);
+        return new LoadResult(
+                REQUESTS * TimeUnit.SECONDS.toNanos(1) / elapsed,
+                TimeUnit.NANOSECONDS.toMillis(latencies[REQUESTS / 2]),
+                TimeUnit.NANOSECONDS.toMillis(latencies[REQUESTS * 99 / 100]),
+                failures
+        );
+    }
+
+    private double bulkheadRejections() {
+        Counter rejected = meterRegistry.find("db.bulkhead.rejected").tag("pool", dataSource.getPoolName()).counter();
+        return rejected == null ? 0 : rejected.count();
+    }
+
+    private record LoadResult(long throughput, long p50Millis, long p99Millis, long failures) {
+    }
+}
@@ -1,7 +1,11 @@
 package com.innowise.userservice.service.impl;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.innowise.userservice.datasource.ShardFanOut;
+import com.innowise.userservice.dto.CursorPageResponseDto;
 import com.innowise.userservice.dto.card.CardRequestDto;
 import com.innowise.userservice.dto.card.CardResponseDto;
+import com.innowise.userservice.dto.card.OwnedCardDto;
 import com.innowise.userservice.entity.Card;
 import com.innowise.userservice.entity.User;
 import com.innowise.userservice.exception.BusinessException;
@@ -11,6 +15,7 @@ import com.innowise.userservice.exception.ResourceNotFoundException;
 import com.innowise.userservice.mapper.CardMapper;
 import com.innowise.userservice.repository.CardRepository;
 import com.innowise.userservice.repository.UserRepository;
+import com.innowise.userservice.service.pagination.CursorCodec;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -18,7 +23,16 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContext;
@@ -31,6 +45,8 @@ import java.util.*;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -46,12 +62,21 @@ public class CardServiceImplTest {
     @Mock
     private UserRepository userRepository;
 
+    @Spy
+    private CursorCodec cursorCodec = new CursorCodec(new ObjectMapper());
+
     @Mock
     private SecurityContext securityContext;
 
     @Mock
     private Authentication authentication;
 
+    @Spy
+    private ShardFanOut shardFanOut = ShardFanOut.singleDatabase();
+
+    @Mock
+    private CacheManager cacheManager;
+
     @InjectMocks
     private CardServiceImpl cardService;
 
@@ -69,15 +94,9 @@ public class CardServiceImplTest {
         void shouldAddCardToUser_Success() {
             Long userId = 1L;
             CardRequestDto requestDto = createTestCardRequestDto();
-            User user = createTestUser(userId, 2);
-            Card newCard = createTestCard(null, user);
             CardResponseDto expected = createTestCardResponseDto(1L);
 
-            when(userRepository.findById(userId)).thenReturn(Optional.of(user));
-            when(cardRepository.findByNumber(requestDto.number())).thenReturn(Optional.empty());
-            when(cardMapper.toCard(requestDto)).thenReturn(newCard);
-            when(userRepository.save(user)).thenReturn(user);
-            when(cardMapper.toCardResponseDto(newCard)).thenReturn(expected);
+            when(cardRepository.insertIntoFreeSlot(userId, requestDto)).thenReturn(Optional.of(expected));
 
             CardResponseDto result = cardService.addCardToUser(userId, requestDto);
 
@@ -85,9 +104,9 @@ public class CardServiceImplTest {
             assertThat(result.id()).isEqualTo(1L);
             assertThat(result.number()).isEqualTo(requestDto.number());
 
-            verify(userRepository, times(1)).findById(userId);
-            verify(cardRepository, times(1)).findByNumber(requestDto.number());
-            verify(userRepository, times(1)).save(user);
+            verify(cardRepository, times(1)).insertIntoFreeSlot(userId, requestDto);
+            verify(userRepository, times(1)).refreshReadModel(userId);
+            verify(userRepository, never()).existsById(any());
         }
 
         @Test
@@ -96,15 +115,16 @@ public class CardServiceImplTest {
             Long userId = 999L;
             CardRequestDto requestDto = createTestCardRequestDto();
 
-            when(userRepository.findById(userId)).thenReturn(Optional.empty());
+            when(cardRepository.insertIntoFreeSlot(userId, requestDto)).thenReturn(Optional.empty());
+            when(userRepository.existsById(userId)).thenReturn(false);
 
             assertThatThrownBy(() -> cardService.addCardToUser(userId, requestDto))
                     .isInstanceOf(ResourceNotFoundException.class)
                     .hasMessageContaining("User")
                     .hasMessageContaining("id " + userId);
 
-            verify(userRepository, times(1)).findById(userId);
-            verify(userRepository, never()).save(any());
+            verify(userRepository, times(1)).existsById(userId);
+            verify(userRepository, never()).refreshReadModel(any());
         }
 
         @Test
@@ -112,18 +132,16 @@ public class CardServiceImplTest {
         void shouldThrowBusinessException_WhenCardNumberAlreadyExists() {
             Long userId = 1L;
             CardRequestDto requestDto = createTestCardRequestDto();
-            User user = createTestUser(userId, 2);
-            Card existingCard = createTestCard(10L, user);
 
-            when(userRepository.findById(userId)).thenReturn(Optional.of(user));
-            when(cardRepository.findByNumber(requestDto.number())).thenReturn(Optional.of(existingCard));
+            when(cardRepository.insertIntoFreeSlot(userId, requestDto)).thenThrow(new DuplicateKeyException(
+                    "ERROR: duplicate key value violates unique constraint \"payment_cards_number_key\""));
 
             assertThatThrownBy(() -> cardService.addCardToUser(userId, requestDto))
                     .isInstanceOf(BusinessException.class)
                     .hasMessageContaining("Card with number ")
                     .hasMessageContaining("already exists");
 
-            verify(userRepository, never()).save(any());
+            verify(userRepository, never()).refreshReadModel(any());
         }
 
         @Test
@@ -131,19 +149,35 @@ public class CardServiceImplTest {
         void shouldThrowCardLimitExceededException_WhenUserAlreadyHas5Cards() {
             Long userId = 1L;
             CardRequestDto requestDto = createTestCardRequestDto();
-            User user = createTestUser(userId, 5);
 
-            when(userRepository.findById(userId)).thenReturn(Optional.of(user));
-            when(cardRepository.findByNumber(requestDto.number())).thenReturn(Optional.empty());
-
-            Card newCard = createTestCard(null, user);
-            when(cardMapper.toCard(requestDto)).thenReturn(newCard);
+            when(cardRepository.insertIntoFreeSlot(userId, requestDto)).thenReturn(Optional.empty());
+            when(userRepository.existsById(userId)).thenReturn(true);
+            when(cardRepository.countByUserId(userId)).thenReturn(5);
 
             assertThatThrownBy(() -> cardService.addCardToUser(userId, requestDto))
                     .isInstanceOf(CardLimitExceededException.class)
                     .hasMessageContaining("already has 5 cards");
 
-            verify(userRepository, never()).save(any());
+            verify(cardRepository, times(1)).insertIntoFreeSlot(userId, requestDto);
+        }
+
+        @Test
+        @DisplayName("should retry insert when concurrent add took the free slot")
+        void shouldRetryInsert_WhenSlotTakenConcurrently() {
+            Long userId = 1L;
+            CardRequestDto requestDto = createTestCardRequestDto();
+            CardResponseDto expected = createTestCardResponseDto(2L);
+
+            when(cardRepository.insertIntoFreeSlot(userId, requestDto))
+                    .thenReturn(Optional.empty())
+                    .thenReturn(Optional.of(expected));
+            when(userRepository.existsById(userId)).thenReturn(true);
+            when(cardRepository.countByUserId(userId)).thenReturn(3);
+
+            CardResponseDto result = cardService.addCardToUser(userId, requestDto);
+
+            assertThat(result.id()).isEqualTo(2L);
+            verify(cardRepository, times(2)).insertIntoFreeSlot(userId, requestDto);
         }
     }
 
@@ -155,17 +189,13 @@ public class CardServiceImplTest {
         @DisplayName("should successfully return list of user's cards")
         void shouldReturnUserCards_Success() {
             Long userId = 1L;
-            User user = createTestUser(userId, 3);
-            List<Card> cards = user.getCards();
             List<CardResponseDto> expectedDtos = List.of(
                     createTestCardResponseDto(1L),
                     createTestCardResponseDto(2L),
                     createTestCardResponseDto(3L)
             );
 
-            when(userRepository.existsById(userId)).thenReturn(true);
-            when(cardRepository.findByUserId(userId)).thenReturn(cards);
-            when(cardMapper.toCardResponseDtoList(cards)).thenReturn(expectedDtos);
+            when(cardRepository.findCardResponsesByUserId(userId)).thenReturn(expectedDtos);
 
             List<CardResponseDto> result = cardService.findCardsByUserId(userId);
 
@@ -173,14 +203,29 @@ public class CardServiceImplTest {
             assertThat(result).hasSize(3);
             assertThat(result.getFirst().id()).isEqualTo(1L);
 
+            verify(cardRepository, times(1)).findCardResponsesByUserId(userId);
+            verify(userRepository, never()).existsById(any());
+            verify(cardMapper, never()).toCardResponseDtoList(any());
+        }
+
+        @Test
+        @DisplayName("should return empty list when user has no cards")
+        void shouldReturnEmptyList_WhenUserHasNoCards() {
+            Long userId = 1L;
+            when(cardRepository.findCardResponsesByUserId(userId)).thenReturn(List.of());
+            when(userRepository.existsById(userId)).thenReturn(true);
+
+            List<CardResponseDto> result = cardService.findCardsByUserId(userId);
+
+            assertThat(result).isEmpty();
             verify(userRepository, times(1)).existsById(userId);
-            verify(cardRepository, times(1)).findByUserId(userId);
         }
 
         @Test
         @DisplayName("should throw ResourceNotFoundException when user not found")
         void shouldThrowResourceNotFoundException_WhenUserNotFound() {
             Long userId = 999L;
+            when(cardRepository.findCardResponsesByUserId(userId)).thenReturn(List.of());
             when(userRepository.existsById(userId)).thenReturn(false);
 
             assertThatThrownBy(() -> cardService.findCardsByUserId(userId))
@@ -188,7 +233,73 @@ public class CardServiceImplTest {
                     .hasMessageContaining("User");
 
             verify(userRepository, times(1)).existsById(userId);
-            verify(cardRepository, never()).findByUserId(any());
+        }
+    }
+
+    @Nested
+    @DisplayName("scrollCardsByActivity tests")
+    class ScrollCardsByActivityTests {
+
+        @Test
+        @DisplayName("should fetch one extra row and return next cursor")
+        void shouldReturnNextCursor_WhenMoreRowsExist() {
+            User user = createTestUser(1L, 3);
+            List<Card> cards = user.getCards();
+
+            when(cardRepository.findActiveCardsWithUserAfter(true, 0L, Limit.of(3))).thenReturn(cards);
+            when(cardMapper.toCardResponseDtoList(anyList())).thenAnswer(invocation -> ((List<?>) invocation.getArgument(0))
+                    .stream()
+                    .map(card -> createTestCardResponseDto(((Card) card).getId()))
+                    .toList());
+
+            CursorPageResponseDto<CardResponseDto> result = cardService.scrollCardsByActivity(true, null, 2);
+
+            assertThat(result.content()).hasSize(2);
+            assertThat(result.hasNext()).isTrue();
+            assertThat(cursorCodec.decode(result.nextCursor(), Sort.by("id"), Map.of("id", Long.class)))
+                    .containsEntry("id", 2L);
+        }
+
+        @Test
+        @DisplayName("should continue after cursor id and stop on last page")
+        void shouldContinueAfterCursor_AndStopOnLastPage() {
+            User user = createTestUser(1L, 3);
+            List<Card> lastPage = List.of(user.getCards().get(2));
+            String cursor = cursorCodec.encode(Sort.by("id"), Map.of("id", 2L));
+
+            when(cardRepository.findActiveCardsWithUserAfter(eq(true), eq(2L), any(Limit.class))).thenReturn(lastPage);
+            when(cardMapper.toCardResponseDtoList(lastPage)).thenReturn(List.of(createTestCardResponseDto(3L)));
+
+            CursorPageResponseDto<CardResponseDto> result = cardService.scrollCardsByActivity(true, cursor, 2);
+
+            assertThat(result.content()).hasSize(1);
+            assertThat(result.hasNext()).isFalse();
+            assertThat(result.nextCursor()).isNull();
+        }
+    }
+
+    @Nested
+    @DisplayName("searchCardsByHolder tests")
+    class SearchCardsByHolderTests {
+
+        @Test
+        @DisplayName("should return page of cards matching holder")
+        void shouldReturnPageOfCards_MatchingHolder() {
+            Pageable pageable = PageRequest.of(0, 10);
+            User user = createTestUser(1L, 1);
+            Card card = user.getCards().getFirst();
+            CardResponseDto expected = createTestCardResponseDto(1L);
+
+            when(cardRepository.findByHolderContaining("ivan", pageable))
+                    .thenReturn(new PageImpl<>(List.of(card), pageable, 1));
+            when(cardMapper.toCardResponseDto(card)).thenReturn(expected);
+
+            Page<CardResponseDto> result = cardService.searchCardsByHolder("ivan", pageable);
+
+            assertThat(result.getContent()).containsExactly(expected);
+            assertThat(result.getTotalElements()).isEqualTo(1);
+
+            verify(cardRepository, times(1)).findByHolderContaining("ivan", pageable);
         }
     }
 
@@ -202,26 +313,22 @@ public class CardServiceImplTest {
             Long cardId = 1L;
             Long userId = 1L;
             CardRequestDto requestDto = createTestCardRequestDto();
-            User user = createTestUser(userId, 1);
-            Card existingCard = createTestCard(cardId, user);
-            Card updatedCard = createTestCard(cardId, user);
             CardResponseDto expected = createTestCardResponseDto(cardId);
 
             setupSecurityContext(userId, "USER");
 
-            when(cardRepository.findById(cardId)).thenReturn(Optional.of(existingCard));
-            when(cardRepository.findByNumber(requestDto.number())).thenReturn(Optional.empty());
-            when(cardRepository.save(existingCard)).thenReturn(updatedCard);
-            when(cardMapper.toCardResponseDto(updatedCard)).thenReturn(expected);
+            when(cardRepository.updateCard(cardId, userId, requestDto))
+                    .thenReturn(Optional.of(new OwnedCardDto(userId, expected)));
 
             CardResponseDto result = cardService.updateCard(cardId, requestDto, userId);
 
             assertThat(result).isNotNull();
             assertThat(result.id()).isEqualTo(cardId);
 
-            verify(cardRepository, times(1)).findById(cardId);
-            verify(cardMapper, times(1)).updateCardFromDto(requestDto, existingCard);
-            verify(cardRepository, times(1)).save(existingCard);
+            verify(cardRepository, times(1)).updateCard(cardId, userId, requestDto);
+            verify(cardRepository, never()).findById(any());
+            verify(cardRepository, never()).existsLiveCardById(any());
+            verify(userRepository, times(1)).refreshReadModel(userId);
         }
 
         @Test
@@ -231,49 +338,42 @@ public class CardServiceImplTest {
             Long cardOwnerId = 1L;
             Long adminId = 2L;
             CardRequestDto requestDto = createTestCardRequestDto();
-            User cardOwner = createTestUser(cardOwnerId, 1);
-            Card existingCard = createTestCard(cardId, cardOwner);
-            Card updatedCard = createTestCard(cardId, cardOwner);
             CardResponseDto expected = createTestCardResponseDto(cardId);
 
             // Настраиваем SecurityContext для админа
             setupSecurityContext(adminId, "ADMIN");
 
-            when(cardRepository.findById(cardId)).thenReturn(Optional.of(existingCard));
-            when(cardRepository.findByNumber(requestDto.number())).thenReturn(Optional.empty());
-            when(cardRepository.save(existingCard)).thenReturn(updatedCard);
-            when(cardMapper.toCardResponseDto(updatedCard)).thenReturn(expected);
+            when(cardRepository.updateCard(cardId, null, requestDto))
+                    .thenReturn(Optional.of(new OwnedCardDto(cardOwnerId, expected)));
 
             CardResponseDto result = cardService.updateCard(cardId, requestDto, adminId);
 
             assertThat(result).isNotNull();
             assertThat(result.id()).isEqualTo(cardId);
 
-            verify(cardRepository, times(1)).findById(cardId);
-            verify(cardRepository, times(1)).save(existingCard);
+            verify(cardRepository, times(1)).updateCard(cardId, null, requestDto);
+            verify(userRepository, times(1)).refreshReadModel(cardOwnerId);
         }
 
         @Test
         @DisplayName("should throw ForbiddenException when user is not owner and not admin")
         void shouldThrowForbiddenException_WhenUserIsNotOwnerAndNotAdmin() {
             Long cardId = 1L;
-            Long cardOwnerId = 1L;
             Long anotherUserId = 2L;
             CardRequestDto requestDto = createTestCardRequestDto();
-            User cardOwner = createTestUser(cardOwnerId, 1);
-            Card existingCard = createTestCard(cardId, cardOwner);
 
             // Настраиваем SecurityContext для обычного пользователя (не владельца)
             setupSecurityContext(anotherUserId, "USER");
 
-            when(cardRepository.findById(cardId)).thenReturn(Optional.of(existingCard));
+            when(cardRepository.updateCard(cardId, anotherUserId, requestDto)).thenReturn(Optional.empty());
+            when(cardRepository.existsLiveCardById(cardId)).thenReturn(true);
 
             assertThatThrownBy(() -> cardService.updateCard(cardId, requestDto, anotherUserId))
                     .isInstanceOf(ForbiddenException.class)
                     .hasMessageContaining("You cant update this card");
 
-            verify(cardRepository, times(1)).findById(cardId);
-            verify(cardRepository, never()).save(any());
+            verify(cardRepository, times(1)).existsLiveCardById(cardId);
+            verify(userRepository, never()).refreshReadModel(any());
         }
 
         @Test
@@ -283,38 +383,53 @@ public class CardServiceImplTest {
             Long userId = 1L;
             CardRequestDto requestDto = createTestCardRequestDto();
 
-            when(cardRepository.findById(cardId)).thenReturn(Optional.empty());
+            setupSecurityContext(userId, "USER");
+
+            when(cardRepository.updateCard(cardId, userId, requestDto)).thenReturn(Optional.empty());
+            when(cardRepository.existsLiveCardById(cardId)).thenReturn(false);
 
             assertThatThrownBy(() -> cardService.updateCard(cardId, requestDto, userId))
                     .isInstanceOf(ResourceNotFoundException.class)
                     .hasMessageContaining("Card");
 
-            verify(cardRepository, times(1)).findById(cardId);
-            verify(cardRepository, never()).save(any());
+            verify(userRepository, never()).refreshReadModel(any());
+        }
+
+        @Test
+        @DisplayName("should throw ResourceNotFoundException without lookup when admin updates missing card")
+        void shouldThrowResourceNotFoundException_WhenAdminUpdatesMissingCard() {
+            Long cardId = 999L;
+            Long adminId = 2L;
+            CardRequestDto requestDto = createTestCardRequestDto();
+
+            setupSecurityContext(adminId, "ADMIN");
+
+            when(cardRepository.updateCard(cardId, null, requestDto)).thenReturn(Optional.empty());
+
+            assertThatThrownBy(() -> cardService.updateCard(cardId, requestDto, adminId))
+                    .isInstanceOf(ResourceNotFoundException.class)
+                    .hasMessageContaining("Card");
+
+            verify(cardRepository, never()).existsLiveCardById(any());
         }
 
         @Test
         @DisplayName("should throw BusinessException when card number taken by another card")
         void  shouldThrowBusinessException_WhenCardNumberTakenByAnotherCard() {
             Long cardId = 1L;
-            Long anotherCardId = 2L;
             Long userId = 1L;
             CardRequestDto requestDto = createTestCardRequestDto();
-            User user = createTestUser(userId, 2);
-            Card existingCard = createTestCard(cardId, user);
-            Card cardWithSameNumber = createTestCard(anotherCardId, user);
 
             setupSecurityContext(userId, "USER");
 
-            when(cardRepository.findById(cardId)).thenReturn(Optional.of(existingCard));
-            when(cardRepository.findByNumber(requestDto.number()))
-                    .thenReturn(Optional.of(cardWithSameNumber));
+            when(cardRepository.updateCard(cardId, userId, requestDto)).thenThrow(new DuplicateKeyException(
+                    "duplicate key value violates unique constraint \"payment_cards_number_key\""));
 
             assertThatThrownBy(() -> cardService.updateCard(cardId, requestDto, userId))
                     .isInstanceOf(BusinessException.class)
                     .hasMessageContaining("already taken");
 
-            verify(cardRepository, never()).save(any());
+            verify(userRepository, never()).refreshReadModel(any());
         }
     }
 
@@ -326,26 +441,26 @@ public class CardServiceImplTest {
         @DisplayName("should successfully delete card")
         void shouldDeleteCard_Success() {
             Long cardId = 1L;
-            when(cardRepository.existsById(cardId)).thenReturn(true);
+            when(cardRepository.deleteCardReturningUserId(cardId)).thenReturn(Optional.of(1L));
 
             cardService.deleteCard(cardId);
 
-            verify(cardRepository, times(1)).existsById(cardId);
-            verify(cardRepository, times(1)).deleteById(cardId);
+            verify(cardRepository, times(1)).deleteCardReturningUserId(cardId);
+            verify(cardRepository, never()).existsLiveCardById(any());
+            verify(userRepository, times(1)).refreshReadModel(1L);
         }
 
         @Test
         @DisplayName("shpuld throw ResourceNotFoundException when card doesnt exists")
         void shouldThrowResourceNotFoundException_WhenCardNotFound() {
             Long cardId = 999L;
-            when(cardRepository.existsById(cardId)).thenReturn(false);
+            when(cardRepository.deleteCardReturningUserId(cardId)).thenReturn(Optional.empty());
 
             assertThatThrownBy(() -> cardService.deleteCard(cardId))
                     .isInstanceOf(ResourceNotFoundException.class)
                     .hasMessageContaining("Card");
 
-            verify(cardRepository, times(1)).existsById(cardId);
-            verify(cardRepository, never()).deleteById(any());
+            verify(userRepository, never()).refreshReadModel(any());
         }
     }
 
@@ -357,47 +472,56 @@ public class CardServiceImplTest {
         @DisplayName("should activate card")
         void shouldActivateCard_Success() {
             Long cardId = 1L;
-            Boolean isActive = true;
+            when(cardRepository.activateCard(cardId)).thenReturn(Optional.of(1L));
 
-            when(cardRepository.existsById(cardId)).thenReturn(true);
-            when(cardRepository.activateCard(cardId)).thenReturn(1);
+            boolean changed = cardService.changeCardActivity(cardId, true);
 
-            cardService.changeCardActivity(cardId, isActive);
-
-            verify(cardRepository, times(1)).existsById(cardId);
+            assertThat(changed).isTrue();
             verify(cardRepository, times(1)).activateCard(cardId);
             verify(cardRepository, never()).deactivateCard(any());
+            verify(cardRepository, never()).existsLiveCardById(any());
+            verify(userRepository, times(1)).refreshReadModel(1L);
         }
 
         @Test
         @DisplayName("should deactivate card")
         void shouldDeactivateCard_Success() {
             Long cardId = 1L;
-            Boolean isActive = false;
-
-            when(cardRepository.existsById(cardId)).thenReturn(true);
-            when(cardRepository.deactivateCard(cardId)).thenReturn(1);
+            when(cardRepository.deactivateCard(cardId)).thenReturn(Optional.of(1L));
 
-            cardService.changeCardActivity(cardId, isActive);
+            boolean changed = cardService.changeCardActivity(cardId, false);
 
-            verify(cardRepository, times(1)).existsById(cardId);
+            assertThat(changed).isTrue();
             verify(cardRepository, times(1)).deactivateCard(cardId);
             verify(cardRepository, never()).activateCard(any());
         }
 
+        @Test
+        @DisplayName("should report no change when card already has the status")
+        void shouldReportNoChange_WhenStatusAlreadySet() {
+            Long cardId = 1L;
+            when(cardRepository.activateCard(cardId)).thenReturn(Optional.empty());
+            when(cardRepository.existsLiveCardById(cardId)).thenReturn(true);
+
+            boolean changed = cardService.changeCardActivity(cardId, true);
+
+            assertThat(changed).isFalse();
+            verify(userRepository, never()).refreshReadModel(any());
+        }
+
         @Test
         @DisplayName("should throw ResourceNotFoundException when card doesn't exist")
         void shouldThrowResourceNotFoundException_WhenCardNotFound() {
             Long cardId = 999L;
-            when(cardRepository.existsById(cardId)).thenReturn(false);
+            when(cardRepository.activateCard(cardId)).thenReturn(Optional.empty());
+            when(cardRepository.existsLiveCardById(cardId)).thenReturn(false);
 
             assertThatThrownBy(() -> cardService.changeCardActivity(cardId, true))
                     .isInstanceOf(ResourceNotFoundException.class)
                     .hasMessageContaining("Card");
 
-            verify(cardRepository, times(1)).existsById(cardId);
-            verify(cardRepository, never()).activateCard(any());
-            verify(cardRepository, never()).deactivateCard(any());
+            verify(cardRepository, times(1)).existsLiveCardById(cardId);
+            verify(userRepository, never()).refreshReadModel(any());
         }
     }
 
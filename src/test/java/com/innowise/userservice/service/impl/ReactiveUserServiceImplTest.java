@@ -0,0 +1,115 @@
+package com.innowise.userservice.service.impl;
+
+import com.innowise.userservice.dto.card.CardResponseDto;
+import com.innowise.userservice.dto.user.UserResponseDto;
+import com.innowise.userservice.exception.ResourceNotFoundException;
+import com.innowise.userservice.repository.ReactiveUserRepository;
+import com.innowise.userservice.service.cache.ReactiveUserCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ReactiveUserService unit tests")
+public class ReactiveUserServiceImplTest {
+
+    @Mock
+    private ReactiveUserRepository userRepository;
+
+    @Mock
+    private ReactiveUserCache userCache;
+
+    @InjectMocks
+    private ReactiveUserServiceImpl reactiveUserService;
+
+    private UserResponseDto user;
+
+    @BeforeEach
+    void setUp() {
+        user = UserResponseDto.builder()
+                .id(1L)
+                .name("Ivan")
+                .surname("Ivanov")
+                .birthDate(LocalDate.of(1990, 1, 1))
+                .email("ivan@example.com")
+                .active(true)
+                .cards(List.of(CardResponseDto.builder()
+                        .id(10L)
+                        .number("4000-0000-0000-0001")
+                        .holder("IVAN IVANOV")
+                        .expirationDate(LocalDate.of(2030, 1, 1))
+                        .active(true)
+                        .build()))
+                .build();
+    }
+
+    @Test
+    @DisplayName("should answer from the cache without touching the database")
+    void shouldReturnCachedUser() {
+        when(userCache.get("user", 1L)).thenReturn(Mono.just(user));
+
+        assertThat(reactiveUserService.findUserById(1L).block()).isEqualTo(user);
+
+        verifyNoInteractions(userRepository);
+        verify(userCache, never()).put(anyString(), any(), any());
+    }
+
+    @Test
+    @DisplayName("should read the user on a miss and cache it")
+    void shouldReadAndCacheUser_WhenNotCached() {
+        when(userCache.get("user", "ivan@example.com")).thenReturn(Mono.empty());
+        when(userRepository.findUserResponseByEmail("ivan@example.com")).thenReturn(Mono.just(user));
+        when(userRepository.findArchivedUserResponseByEmail("ivan@example.com")).thenReturn(Mono.empty());
+        when(userCache.put("user", "ivan@example.com", user)).thenReturn(Mono.just(user));
+
+        assertThat(reactiveUserService.findUserByEmail("ivan@example.com").block()).isEqualTo(user);
+
+        verify(userCache).put("user", "ivan@example.com", user);
+    }
+
+    @Test
+    @DisplayName("should shape archived users into summaries")
+    void shouldShapeArchivedUser_WhenSummaryRequested() {
+        when(userCache.get("userSummary", 1L)).thenReturn(Mono.empty());
+        when(userRepository.findUserSummaryById(1L)).thenReturn(Mono.empty());
+        when(userRepository.findArchivedUserResponseById(1L)).thenReturn(Mono.just(user));
+        when(userCache.put(eq("userSummary"), eq(1L), any())).thenAnswer(invocation -> Mono.just(invocation.getArgument(2)));
+
+        UserResponseDto summary = reactiveUserService.findUserSummaryById(1L).block();
+
+        assertThat(summary).isNotNull();
+        assertThat(summary.email()).isEqualTo("ivan@example.com");
+        assertThat(summary.cards()).isNull();
+    }
+
+    @Test
+    @DisplayName("should fail with ResourceNotFoundException when the user is neither live nor archived")
+    void shouldThrowNotFound_WhenUserMissing() {
+        when(userCache.get("user", 99L)).thenReturn(Mono.empty());
+        when(userRepository.findUserResponseById(99L)).thenReturn(Mono.empty());
+        when(userRepository.findArchivedUserResponseById(99L)).thenReturn(Mono.empty());
+
+        assertThatThrownBy(() -> reactiveUserService.findUserById(99L).block())
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessageContaining("id 99");
+        verify(userCache, never()).put(anyString(), any(), any());
+    }
+}
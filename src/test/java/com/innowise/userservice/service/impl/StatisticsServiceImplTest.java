@@ -0,0 +1,79 @@
+package com.innowise.userservice.service.impl;
+
+import com.innowise.userservice.datasource.ShardFanOut;
+import com.innowise.userservice.dto.statistics.StatisticsResponseDto;
+import com.innowise.userservice.repository.UserRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("StatisticsService unit tests")
+public class StatisticsServiceImplTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Spy
+    private ShardFanOut shardFanOut = ShardFanOut.singleDatabase();
+
+    @InjectMocks
+    private StatisticsServiceImpl statisticsService;
+
+    @Test
+    @DisplayName("should map counters and report missing ones as zero")
+    void shouldMapCounters() {
+        when(userRepository.sumStatisticsCounters(anyCollection())).thenReturn(Map.of(
+                "users", 3L,
+                "users.active", 2L,
+                "users.cards.0", 1L,
+                "users.cards.2", 2L,
+                "cards", 4L,
+                "cards.active", 3L,
+                "cards.expiring." + YearMonth.now(), 1L,
+                "cards.expiring." + YearMonth.now().plusMonths(1), 2L));
+
+        StatisticsResponseDto result = statisticsService.getStatistics();
+
+        assertThat(result.totalUsers()).isEqualTo(3L);
+        assertThat(result.activeUsers()).isEqualTo(2L);
+        assertThat(result.totalCards()).isEqualTo(4L);
+        assertThat(result.activeCards()).isEqualTo(3L);
+        assertThat(result.activeCardsExpiringThisMonth()).isEqualTo(1L);
+        assertThat(result.usersByCardCount())
+                .containsExactly(entry(0, 1L), entry(1, 0L), entry(2, 2L), entry(3, 0L), entry(4, 0L), entry(5, 0L));
+    }
+
+    @Test
+    @DisplayName("should add up the counters of all shards")
+    void shouldSumShards_WhenSharded() {
+        doAnswer(invocation -> {
+            Supplier<?> query = invocation.getArgument(0);
+            return List.of(query.get(), query.get());
+        }).when(shardFanOut).onEachShard(any());
+        when(userRepository.sumStatisticsCounters(anyCollection()))
+                .thenReturn(Map.of("users", 3L, "users.cards.1", 3L))
+                .thenReturn(Map.of("users", 2L, "users.cards.1", 1L, "users.cards.0", 1L));
+
+        StatisticsResponseDto result = statisticsService.getStatistics();
+
+        assertThat(result.totalUsers()).isEqualTo(5L);
+        assertThat(result.usersByCardCount()).containsEntry(0, 1L).containsEntry(1, 4L);
+    }
+}
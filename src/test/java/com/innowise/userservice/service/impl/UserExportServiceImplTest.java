@@ -0,0 +1,134 @@
+package com.innowise.userservice.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.innowise.userservice.datasource.ShardFanOut;
+import com.innowise.userservice.dto.user.ExportFormat;
+import com.innowise.userservice.dto.user.UserCardRowDto;
+import com.innowise.userservice.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("UserExportService unit tests")
+public class UserExportServiceImplTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    private UserExportServiceImpl userExportService;
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        userExportService = new UserExportServiceImpl(userRepository, objectMapper, ShardFanOut.singleDatabase());
+    }
+
+    @Nested
+    @DisplayName("NDJSON export tests")
+    class NdjsonExportTests {
+
+        @Test
+        @DisplayName("should write one line per user with grouped cards")
+        void shouldWriteOneLinePerUser() throws Exception {
+            when(userRepository.streamUsersWithCards(any(Specification.class))).thenReturn(Stream.of(
+                    createRow(1L, "Ivan", 10L),
+                    createRow(1L, "Ivan", 11L),
+                    createRow(2L, "Petr", null)
+            ));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+            userExportService.exportUsers(null, null, null, ExportFormat.NDJSON, out);
+
+            String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+            assertThat(lines).hasSize(2);
+            assertThat(lines[0]).contains("\"name\":\"Ivan\"").contains("\"id\":10").contains("\"id\":11");
+            assertThat(lines[1]).contains("\"name\":\"Petr\"").contains("\"cards\":[]");
+
+            verify(userRepository, times(1)).streamUsersWithCards(any(Specification.class));
+        }
+
+        @Test
+        @DisplayName("should write nothing when no users match")
+        void shouldWriteNothing_WhenNoUsers() throws Exception {
+            when(userRepository.streamUsersWithCards(any(Specification.class))).thenReturn(Stream.empty());
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+            userExportService.exportUsers("Nobody", null, null, ExportFormat.NDJSON, out);
+
+            assertThat(out.size()).isZero();
+        }
+    }
+
+    @Nested
+    @DisplayName("CSV export tests")
+    class CsvExportTests {
+
+        @Test
+        @DisplayName("should write header and one line per user/card row")
+        void shouldWriteHeaderAndRows() throws Exception {
+            when(userRepository.streamUsersWithCards(any(Specification.class))).thenReturn(Stream.of(
+                    createRow(1L, "Ivan", 10L),
+                    createRow(2L, "Petr", null)
+            ));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+            userExportService.exportUsers(null, null, true, ExportFormat.CSV, out);
+
+            String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+            assertThat(lines).hasSize(3);
+            assertThat(lines[0]).startsWith("user_id,name,surname");
+            assertThat(lines[1]).startsWith("1,Ivan,Ivanov,1990-01-01,").contains(",10,1234-5678-9012-3456,");
+            assertThat(lines[2]).startsWith("2,Petr,Ivanov,").endsWith(",,,,,");
+        }
+
+        @Test
+        @DisplayName("should quote values containing separators")
+        void shouldQuoteValuesWithSeparators() throws Exception {
+            when(userRepository.streamUsersWithCards(any(Specification.class)))
+                    .thenReturn(Stream.of(createRow(1L, "Ivan, \"Jr\"", null)));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+            userExportService.exportUsers(null, null, null, ExportFormat.CSV, out);
+
+            assertThat(out.toString(StandardCharsets.UTF_8)).contains("1,\"Ivan, \"\"Jr\"\"\",Ivanov,");
+        }
+    }
+
+    private UserCardRowDto createRow(Long userId, String name, Long cardId) {
+        return new UserCardRowDto(
+                userId,
+                name,
+                "Ivanov",
+                LocalDate.of(1990, 1, 1),
+                "user" + userId + "@example.com",
+                true,
+                LocalDateTime.of(2024, 1, 1, 10, 0),
+                LocalDateTime.of(2024, 1, 1, 10, 0),
+                cardId,
+                cardId == null ? null : "1234-5678-9012-3456",
+                cardId == null ? null : "IVAN IVANOV",
+                cardId == null ? null : LocalDate.of(2030, 1, 1),
+                cardId == null ? null : true
+        );
+    }
+}
@@ -1,30 +1,53 @@
 package com.innowise.userservice.service.impl;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.innowise.userservice.datasource.ShardFanOut;
+import com.innowise.userservice.dto.CountMode;
+import com.innowise.userservice.dto.CursorPageResponseDto;
+import com.innowise.userservice.dto.PageResponseDto;
 import com.innowise.userservice.dto.user.UserRequestDto;
 import com.innowise.userservice.dto.user.UserResponseDto;
+import com.innowise.userservice.dto.user.UserView;
 import com.innowise.userservice.entity.User;
 import com.innowise.userservice.exception.BusinessException;
+import com.innowise.userservice.exception.InvalidCursorException;
+import com.innowise.userservice.exception.PreconditionFailedException;
 import com.innowise.userservice.exception.ResourceNotFoundException;
 import com.innowise.userservice.mapper.UserMapper;
 import com.innowise.userservice.repository.UserRepository;
+import com.innowise.userservice.service.etag.EntityTags;
+import com.innowise.userservice.service.pagination.CursorCodec;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.domain.Specification;
 
+import java.sql.SQLException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -41,6 +64,18 @@ public class UserServiceImplTest {
     @Mock
     private UserMapper userMapper;
 
+    @Spy
+    private CursorCodec cursorCodec = new CursorCodec(new ObjectMapper().registerModule(new JavaTimeModule()));
+
+    @Mock
+    private CacheManager cacheManager;
+
+    @Spy
+    private ShardFanOut shardFanOut = ShardFanOut.singleDatabase();
+
+    @Spy
+    private EntityTags entityTags = new EntityTags(new ObjectMapper().registerModule(new JavaTimeModule()));
+
     @InjectMocks
     private UserServiceImpl userService;
 
@@ -52,43 +87,101 @@ public class UserServiceImplTest {
         @DisplayName("should successfully find user by id")
         void shouldFindUserById_Success() {
             Long userId = 1L;
-            User user = createTestUser(userId);
             UserResponseDto expected = createTestUserResponseDto(userId);
 
-            when(userRepository.findById(userId)).thenReturn(Optional.of(user));
-            when(userMapper.toUserResponseDto(user)).thenReturn(expected);
+            when(userRepository.findUserResponseById(userId)).thenReturn(Optional.of(expected));
 
             UserResponseDto result =  userService.findUserById(userId);
 
             assertThat(result).isNotNull();
             assertThat(result).isEqualTo(expected);
 
-            verify(userRepository, times(1)).findById(userId);
-            verify(userMapper, times(1)).toUserResponseDto(user);
+            verify(userRepository, times(1)).findUserResponseById(userId);
+            verify(userMapper, never()).toUserResponseDto(any());
+            verify(userRepository, never()).findArchivedUserResponseById(any());
+        }
+
+        @Test
+        @DisplayName("should return archived user when the user is no longer in the hot table")
+        void shouldFindArchivedUser_WhenNotInHotTable() {
+            Long userId = 1L;
+            UserResponseDto archived = createTestUserResponseDto(userId);
+
+            when(userRepository.findUserResponseById(userId)).thenReturn(Optional.empty());
+            when(userRepository.findArchivedUserResponseById(userId)).thenReturn(Optional.of(archived));
+
+            assertThat(userService.findUserById(userId)).isEqualTo(archived);
         }
 
         @Test
         @DisplayName("should throw ResourceNotFoundException when dont find user")
         void shouldThrowResourceNotFoundException_WhenUserNotFound() {
             Long userId = 1L;
-            when(userRepository.findById(userId)).thenReturn(Optional.empty());
+            when(userRepository.findUserResponseById(userId)).thenReturn(Optional.empty());
 
             assertThatThrownBy(() -> userService.findUserById(userId))
                     .isInstanceOf(ResourceNotFoundException.class)
                     .hasMessageContaining("User")
                     .hasMessageContaining("id " + userId);
 
-            verify(userRepository, times(1)).findById(userId);
+            verify(userRepository, times(1)).findUserResponseById(userId);
             verify(userMapper, never()).toUserResponseDto(any());
         }
     }
 
+    @Nested
+    @DisplayName("findUserSummary tests")
+    class FindUserSummaryTests {
+
+        @Test
+        @DisplayName("should read the summary without touching the document")
+        void shouldFindUserSummaryById_Success() {
+            Long userId = 1L;
+            UserResponseDto summary = UserView.SUMMARY.shape(createTestUserResponseDto(userId));
+
+            when(userRepository.findUserSummaryById(userId)).thenReturn(Optional.of(summary));
+
+            assertThat(userService.findUserSummaryById(userId)).isEqualTo(summary);
+
+            verify(userRepository, never()).findUserResponseById(any());
+            verify(userRepository, never()).findArchivedUserResponseById(any());
+        }
+
+        @Test
+        @DisplayName("should strip cards from the archived document")
+        void shouldFindArchivedSummaryByEmail_WhenNotInHotTable() {
+            String email = "ivan@example.com";
+            UserResponseDto archived = createTestUserResponseDto(1L);
+
+            when(userRepository.findUserSummaryByEmail(email)).thenReturn(Optional.empty());
+            when(userRepository.findArchivedUserResponseByEmail(email)).thenReturn(Optional.of(archived));
+
+            UserResponseDto result = userService.findUserSummaryByEmail(email);
+
+            assertThat(result.cards()).isNull();
+            assertThat(result.email()).isEqualTo(email);
+            assertThat(result.updatedAt()).isEqualTo(archived.updatedAt());
+        }
+
+        @Test
+        @DisplayName("should throw ResourceNotFoundException when dont find user")
+        void shouldThrowResourceNotFoundException_WhenSummaryNotFound() {
+            Long userId = 1L;
+            when(userRepository.findUserSummaryById(userId)).thenReturn(Optional.empty());
+            when(userRepository.findArchivedUserResponseById(userId)).thenReturn(Optional.empty());
+
+            assertThatThrownBy(() -> userService.findUserSummaryById(userId))
+                    .isInstanceOf(ResourceNotFoundException.class)
+                    .hasMessageContaining("id " + userId);
+        }
+    }
+
     @Nested
     @DisplayName("findAllUsers tests")
     class FindAllUsersTests {
 
         @Test
-        @DisplayName("should return page of users with filters")
+        @DisplayName("should return page of users with exact total")
         void shouldFindAllUsers_WithFilters() {
             String name = "Ivan";
             String surname = "Ivanov";
@@ -108,12 +201,13 @@ public class UserServiceImplTest {
             when(userMapper.toUserResponseDto(user1)).thenReturn(dto1);
             when(userMapper.toUserResponseDto(user2)).thenReturn(dto2);
 
-            Page<UserResponseDto> result = userService.findAllUsers(name, surname, active, pageable);
+            PageResponseDto<UserResponseDto> result =
+                    userService.findAllUsers(name, surname, active, pageable, CountMode.EXACT);
 
             assertThat(result).isNotNull();
-            assertThat(result.getContent()).hasSize(2);
-            assertThat(result.getTotalElements()).isEqualTo(2);
-            assertThat(result.getContent().getFirst().name()).isEqualTo("Ivan");
+            assertThat(result.content()).hasSize(2);
+            assertThat(result.totalElements()).isEqualTo(2);
+            assertThat(result.content().getFirst().name()).isEqualTo("Ivan");
 
             verify(userRepository, times(1)).findAll(any(Specification.class), eq(pageable));
             verify(userMapper, times(2)).toUserResponseDto(any(User.class));
@@ -129,15 +223,199 @@ public class UserServiceImplTest {
             when(userRepository.findAll(any(Specification.class), eq(pageable)))
                     .thenReturn(emptyPage);
 
-            Page<UserResponseDto> result = userService.findAllUsers(null, null, null, pageable);
+            PageResponseDto<UserResponseDto> result =
+                    userService.findAllUsers(null, null, null, pageable, CountMode.EXACT);
 
             assertThat(result).isNotNull();
-            assertThat(result.getContent()).isEmpty();
-            assertThat(result.getTotalElements()).isZero();
+            assertThat(result.content()).isEmpty();
+            assertThat(result.totalElements()).isZero();
 
             verify(userRepository, times(1)).findAll(any(Specification.class), eq(pageable));
             verify(userMapper, never()).toUserResponseDto(any(User.class));
         }
+
+        @Test
+        @DisplayName("should return slice without count query when count mode is NONE")
+        void shouldReturnSliceWithoutCount_WhenCountModeNone() {
+            Pageable pageable = PageRequest.of(0, 2);
+            Slice<User> slice = new SliceImpl<>(List.of(createTestUser(1L), createTestUser(2L)), pageable, true);
+
+            when(userRepository.findBy(any(Specification.class), any())).thenReturn(slice);
+            when(userMapper.toUserResponseDto(any(User.class))).thenReturn(createTestUserResponseDto(1L));
+
+            PageResponseDto<UserResponseDto> result =
+                    userService.findAllUsers("Ivan", null, null, pageable, CountMode.NONE);
+
+            assertThat(result.content()).hasSize(2);
+            assertThat(result.hasNext()).isTrue();
+            assertThat(result.totalElements()).isNull();
+            assertThat(result.totalPages()).isNull();
+
+            verify(userRepository, never()).findAll(any(Specification.class), any(Pageable.class));
+            verify(userRepository, never()).estimateCount();
+        }
+
+        @Test
+        @DisplayName("should use planner estimate for unfiltered listing when count mode is ESTIMATED")
+        void shouldUsePlannerEstimate_WhenUnfiltered() {
+            Pageable pageable = PageRequest.of(0, 2);
+            Slice<User> slice = new SliceImpl<>(List.of(createTestUser(1L), createTestUser(2L)), pageable, true);
+
+            when(userRepository.findBy(any(Specification.class), any())).thenReturn(slice);
+            when(userRepository.estimateCount()).thenReturn(1_000L);
+            when(userMapper.toUserResponseDto(any(User.class))).thenReturn(createTestUserResponseDto(1L));
+
+            PageResponseDto<UserResponseDto> result =
+                    userService.findAllUsers(null, null, null, pageable, CountMode.ESTIMATED);
+
+            assertThat(result.totalElements()).isEqualTo(1_000L);
+            assertThat(result.totalPages()).isEqualTo(500);
+            verify(userRepository, never()).count();
+        }
+
+        @Test
+        @DisplayName("should not estimate filtered listing when count mode is ESTIMATED")
+        void shouldNotEstimate_WhenFiltered() {
+            Pageable pageable = PageRequest.of(0, 2);
+            Slice<User> slice = new SliceImpl<>(List.of(createTestUser(1L)), pageable, true);
+
+            when(userRepository.findBy(any(Specification.class), any())).thenReturn(slice);
+            when(userMapper.toUserResponseDto(any(User.class))).thenReturn(createTestUserResponseDto(1L));
+
+            PageResponseDto<UserResponseDto> result =
+                    userService.findAllUsers(null, null, true, pageable, CountMode.ESTIMATED);
+
+            assertThat(result.totalElements()).isNull();
+            verify(userRepository, never()).estimateCount();
+        }
+
+        @Test
+        @DisplayName("should return exact total from last page when count mode is ESTIMATED")
+        void shouldReturnExactTotal_WhenLastPage() {
+            Pageable pageable = PageRequest.of(1, 2);
+            Slice<User> slice = new SliceImpl<>(List.of(createTestUser(3L)), pageable, false);
+
+            when(userRepository.findBy(any(Specification.class), any())).thenReturn(slice);
+            when(userMapper.toUserResponseDto(any(User.class))).thenReturn(createTestUserResponseDto(3L));
+
+            PageResponseDto<UserResponseDto> result =
+                    userService.findAllUsers(null, null, null, pageable, CountMode.ESTIMATED);
+
+            assertThat(result.totalElements()).isEqualTo(3L);
+            assertThat(result.totalPages()).isEqualTo(2);
+            verify(userRepository, never()).estimateCount();
+        }
+
+        @Test
+        @DisplayName("should cap estimate at the offset for an empty page past the end when count mode is ESTIMATED")
+        void shouldCapEstimateAtOffset_WhenPagePastEnd() {
+            Pageable pageable = PageRequest.of(10, 10);
+            Slice<User> slice = new SliceImpl<>(List.of(), pageable, false);
+
+            when(userRepository.findBy(any(Specification.class), any())).thenReturn(slice);
+            when(userRepository.estimateCount()).thenReturn(50L);
+
+            PageResponseDto<UserResponseDto> result =
+                    userService.findAllUsers(null, null, null, pageable, CountMode.ESTIMATED);
+
+            assertThat(result.content()).isEmpty();
+            assertThat(result.totalElements()).isEqualTo(50L);
+            assertThat(result.totalPages()).isEqualTo(5);
+        }
+
+        @Test
+        @DisplayName("should merge shard listings in sort order and sum their totals")
+        void shouldMergeShards_WhenSharded() {
+            Pageable pageable = PageRequest.of(0, 2, Sort.by("id"));
+            doReturn(true).when(shardFanOut).isSharded();
+            doAnswer(invocation -> {
+                Supplier<?> query = invocation.getArgument(0);
+                return List.of(query.get(), query.get());
+            }).when(shardFanOut).onEachShard(any());
+
+            when(userRepository.findBy(any(Specification.class), any()))
+                    .thenReturn(List.of(createTestUser(1L), createTestUser(3L)))
+                    .thenReturn(List.of(createTestUser(2L), createTestUser(4L)));
+            when(userRepository.count(any(Specification.class))).thenReturn(2L);
+            when(userMapper.toUserResponseDto(any(User.class)))
+                    .thenAnswer(invocation -> createTestUserResponseDto(((User) invocation.getArgument(0)).getId()));
+
+            PageResponseDto<UserResponseDto> result =
+                    userService.findAllUsers(null, null, null, pageable, CountMode.EXACT);
+
+            assertThat(result.content()).extracting(UserResponseDto::id).containsExactly(1L, 2L);
+            assertThat(result.hasNext()).isTrue();
+            assertThat(result.totalElements()).isEqualTo(4L);
+            verify(userRepository, never()).findAll(any(Specification.class), any(Pageable.class));
+        }
+    }
+
+    @Nested
+    @DisplayName("scrollUsers tests")
+    class ScrollUsersTests {
+
+        @Test
+        @DisplayName("should return first window with next cursor")
+        void shouldReturnFirstWindow_WithNextCursor() {
+            Sort sort = Sort.by("name");
+            User user1 = createTestUser(1L);
+            User user2 = createTestUser(2L);
+            Window<User> window = Window.from(List.of(user1, user2),
+                    index -> ScrollPosition.forward(Map.of("name", "Ivan", "id", index + 1L)), true);
+
+            when(userRepository.findBy(any(Specification.class), any())).thenReturn(window);
+            when(userMapper.toUserResponseDto(any(User.class)))
+                    .thenAnswer(invocation -> createTestUserResponseDto(((User) invocation.getArgument(0)).getId()));
+
+            CursorPageResponseDto<UserResponseDto> result =
+                    userService.scrollUsers(null, null, null, null, 2, sort);
+
+            assertThat(result.content()).hasSize(2);
+            assertThat(result.hasNext()).isTrue();
+            assertThat(result.nextCursor()).isNotBlank();
+
+            Map<String, Object> keys = cursorCodec.decode(result.nextCursor(), sort,
+                    Map.of("name", String.class, "id", Long.class));
+            assertThat(keys).containsEntry("id", 2L).containsEntry("name", "Ivan");
+        }
+
+        @Test
+        @DisplayName("should return last window without next cursor")
+        void shouldReturnLastWindow_WithoutNextCursor() {
+            Sort sort = Sort.by("id");
+            String cursor = cursorCodec.encode(sort, Map.of("id", 2L));
+            Window<User> window = Window.from(List.of(createTestUser(3L)),
+                    index -> ScrollPosition.forward(Map.of("id", 3L)), false);
+
+            when(userRepository.findBy(any(Specification.class), any())).thenReturn(window);
+            when(userMapper.toUserResponseDto(any(User.class))).thenReturn(createTestUserResponseDto(3L));
+
+            CursorPageResponseDto<UserResponseDto> result =
+                    userService.scrollUsers(null, null, true, cursor, 2, sort);
+
+            assertThat(result.content()).hasSize(1);
+            assertThat(result.hasNext()).isFalse();
+            assertThat(result.nextCursor()).isNull();
+        }
+
+        @Test
+        @DisplayName("should throw InvalidCursorException when cursor was issued for another sort")
+        void shouldThrowInvalidCursorException_WhenSortChanged() {
+            String cursor = cursorCodec.encode(Sort.by("name"), Map.of("name", "Ivan", "id", 1L));
+
+            assertThatThrownBy(() -> userService.scrollUsers(null, null, null, cursor, 2, Sort.by("email")))
+                    .isInstanceOf(InvalidCursorException.class);
+
+            verify(userRepository, never()).findBy(any(Specification.class), any());
+        }
+
+        @Test
+        @DisplayName("should throw InvalidCursorException when sort property is not supported")
+        void shouldThrowInvalidCursorException_WhenSortPropertyUnsupported() {
+            assertThatThrownBy(() -> userService.scrollUsers(null, null, null, null, 2, Sort.by("cards")))
+                    .isInstanceOf(InvalidCursorException.class)
+                    .hasMessageContaining("cards");
+        }
     }
 
     @Nested
@@ -152,10 +430,9 @@ public class UserServiceImplTest {
             User savedUser = createTestUser(1L);
             UserResponseDto expected = createTestUserResponseDto(1L);
 
-            when(userRepository.existsByEmail(requestDto.email())).thenReturn(false);
             when(userMapper.toUser(requestDto)).thenReturn(userToSave);
             when(userRepository.save(userToSave)).thenReturn(savedUser);
-            when(userMapper.toUserResponseDto(savedUser)).thenReturn(expected);
+            when(userRepository.refreshReadModel(1L)).thenReturn(Optional.of(expected));
 
             UserResponseDto result = userService.saveUser(requestDto);
 
@@ -163,26 +440,41 @@ public class UserServiceImplTest {
             assertThat(result.id()).isEqualTo(1L);
             assertThat(result.email()).isEqualTo(requestDto.email());
 
-            verify(userRepository, times(1)).existsByEmail(requestDto.email());
+            verify(userRepository, never()).existsByEmail(any());
             verify(userMapper, times(1)).toUser(requestDto);
             verify(userRepository, times(1)).save(userToSave);
-            verify(userMapper, times(1)).toUserResponseDto(savedUser);
+            verify(userRepository, times(1)).refreshReadModel(1L);
+            verify(userMapper, never()).toUserResponseDto(any());
         }
 
         @Test
         @DisplayName("should throw BusinessException when email exists")
         void shouldThrowBusinessException_WhenEmailExists() {
             UserRequestDto requestDto = createTestUserRequestDto();
-            when(userRepository.existsByEmail(requestDto.email())).thenReturn(true);
+            User userToSave = createTestUser(null);
+
+            when(userMapper.toUser(requestDto)).thenReturn(userToSave);
+            when(userRepository.save(userToSave)).thenThrow(emailViolation());
 
             assertThatThrownBy(() -> userService.saveUser(requestDto))
                     .isInstanceOf(BusinessException.class)
                     .hasMessageContaining("email")
                     .hasMessageContaining("already exists");
 
-            verify(userRepository, times(1)).existsByEmail(requestDto.email());
-            verify(userMapper, never()).toUser(any());
-            verify(userRepository, never()).save(any());
+            verify(userRepository, never()).refreshReadModel(any());
+        }
+
+        @Test
+        @DisplayName("should rethrow other integrity violations")
+        void shouldRethrowOtherIntegrityViolations() {
+            UserRequestDto requestDto = createTestUserRequestDto();
+            User userToSave = createTestUser(null);
+
+            when(userMapper.toUser(requestDto)).thenReturn(userToSave);
+            when(userRepository.save(userToSave)).thenThrow(new DataIntegrityViolationException("not-null"));
+
+            assertThatThrownBy(() -> userService.saveUser(requestDto))
+                    .isInstanceOf(DataIntegrityViolationException.class);
         }
     }
 
@@ -195,24 +487,69 @@ public class UserServiceImplTest {
         void shouldUpdateUser_Success() {
             Long userId = 1L;
             UserRequestDto requestDto = createTestUserRequestDto();
-            User existingUser = createTestUser(userId);
-            User updatedUser = createTestUser(userId);
             UserResponseDto expected = createTestUserResponseDto(userId);
 
-            when(userRepository.findById(userId)).thenReturn(Optional.of(existingUser));
-            when(userRepository.findByEmail(requestDto.email())).thenReturn(Optional.of(existingUser));
-            when(userRepository.save(existingUser)).thenReturn(updatedUser);
-            when(userMapper.toUserResponseDto(updatedUser)).thenReturn(expected);
+            Cache userCache = mock(Cache.class);
+            when(userRepository.updateUser(userId, requestDto.name(), requestDto.surname(), requestDto.birthDate(),
+                    requestDto.email(), requestDto.active())).thenReturn(Optional.of("old@example.com"));
+            when(userRepository.refreshReadModel(userId)).thenReturn(Optional.of(expected));
+            when(cacheManager.getCache("user")).thenReturn(userCache);
 
-            UserResponseDto result = userService.updateUser(userId, requestDto);
+            UserResponseDto result = userService.updateUser(userId, requestDto, null);
 
             assertThat(result).isNotNull();
             assertThat(result.id()).isEqualTo(userId);
 
-            verify(userRepository, times(1)).findById(userId);
-            verify(userRepository, times(1)).findByEmail(requestDto.email());
-            verify(userMapper, times(1)).updateUserFromDto(requestDto, existingUser);
-            verify(userRepository, times(1)).save(existingUser);
+            verify(userCache).evict("old@example.com");
+
+            verify(userRepository, never()).findById(any());
+            verify(userRepository, never()).findByEmail(any());
+            verify(userRepository, never()).lockUserResponseById(any());
+            verify(userRepository, times(1)).refreshReadModel(userId);
+        }
+
+        @Test
+        @DisplayName("should update user when If-Match holds the current ETag")
+        void shouldUpdateUser_WhenIfMatchIsCurrent() {
+            Long userId = 1L;
+            UserRequestDto requestDto = createTestUserRequestDto();
+            UserResponseDto current = createTestUserResponseDto(userId);
+            UserResponseDto expected = createTestUserResponseDto(userId);
+
+            when(userRepository.lockUserResponseById(userId)).thenReturn(Optional.of(current));
+            when(userRepository.updateUser(userId, requestDto.name(), requestDto.surname(), requestDto.birthDate(),
+                    requestDto.email(), requestDto.active())).thenReturn(Optional.of("old@example.com"));
+            when(userRepository.refreshReadModel(userId)).thenReturn(Optional.of(expected));
+
+            UserResponseDto result = userService.updateUser(userId, requestDto, "\"other\", " + entityTags.of(current));
+
+            assertThat(result).isEqualTo(expected);
+        }
+
+        @Test
+        @DisplayName("should throw PreconditionFailedException when If-Match is outdated")
+        void shouldThrowPreconditionFailedException_WhenIfMatchIsOutdated() {
+            Long userId = 1L;
+            UserRequestDto requestDto = createTestUserRequestDto();
+
+            when(userRepository.lockUserResponseById(userId))
+                    .thenReturn(Optional.of(createTestUserResponseDto(userId)));
+
+            assertThatThrownBy(() -> userService.updateUser(userId, requestDto, "\"outdated\""))
+                    .isInstanceOf(PreconditionFailedException.class);
+
+            verify(userRepository, never()).updateUser(any(), any(), any(), any(), any(), any());
+        }
+
+        @Test
+        @DisplayName("should throw ResourceNotFoundException when If-Match is sent for a missing user")
+        void shouldThrowResourceNotFoundException_WhenIfMatchAndUserNotFound() {
+            Long userId = 999L;
+
+            when(userRepository.lockUserResponseById(userId)).thenReturn(Optional.empty());
+
+            assertThatThrownBy(() -> userService.updateUser(userId, createTestUserRequestDto(), "*"))
+                    .isInstanceOf(ResourceNotFoundException.class);
         }
 
         @Test
@@ -221,34 +558,31 @@ public class UserServiceImplTest {
             Long userId = 999L;
             UserRequestDto requestDto = createTestUserRequestDto();
 
-            when(userRepository.findById(userId)).thenReturn(Optional.empty());
+            when(userRepository.updateUser(userId, requestDto.name(), requestDto.surname(), requestDto.birthDate(),
+                    requestDto.email(), requestDto.active())).thenReturn(Optional.empty());
 
-            assertThatThrownBy(() -> userService.updateUser(userId, requestDto))
+            assertThatThrownBy(() -> userService.updateUser(userId, requestDto, null))
                     .isInstanceOf(ResourceNotFoundException.class)
                     .hasMessageContaining("User");
 
-            verify(userRepository, times(1)).findById(userId);
-            verify(userRepository, never()).save(any());
+            verify(userRepository, never()).refreshReadModel(any());
         }
 
         @Test
         @DisplayName("should throw BusinessException when email is taken by existing user")
         void shouldThrowBusinessException_WhenEmailIsTakenByExistingUser() {
             Long userId = 1L;
-            Long existingUserId = 2L;
             UserRequestDto requestDto = createTestUserRequestDto();
-            User existingUser = createTestUser(userId);
-            User userWithSameEmail = createTestUser(existingUserId);
 
-            when(userRepository.findById(userId)).thenReturn(Optional.of(existingUser));
-            when(userRepository.findByEmail(requestDto.email())).thenReturn(Optional.of(userWithSameEmail));
+            when(userRepository.updateUser(userId, requestDto.name(), requestDto.surname(), requestDto.birthDate(),
+                    requestDto.email(), requestDto.active())).thenThrow(emailViolation());
 
-            assertThatThrownBy(() -> userService.updateUser(userId, requestDto))
+            assertThatThrownBy(() -> userService.updateUser(userId, requestDto, null))
                     .isInstanceOf(BusinessException.class)
                     .hasMessageContaining("Email")
                     .hasMessageContaining("is already taken");
 
-            verify(userRepository, never()).save(any());
+            verify(userRepository, never()).refreshReadModel(any());
         }
     }
 
@@ -257,16 +591,22 @@ public class UserServiceImplTest {
     class DeleteUserTests {
 
         @Test
-        @DisplayName("should successfully delete user")
+        @DisplayName("should tombstone user and evict its entries")
         void shouldDeleteUser_Success() {
             Long userId = 1L;
 
-            when(userRepository.existsById(userId)).thenReturn(true);
+            Cache userCache = mock(Cache.class);
+            Cache userSummaryCache = mock(Cache.class);
+            when(userRepository.tombstoneUser(userId)).thenReturn(Optional.of("ivan@example.com"));
+            when(cacheManager.getCache("user")).thenReturn(userCache);
+            when(cacheManager.getCache("userSummary")).thenReturn(userSummaryCache);
 
             userService.deleteUser(userId);
 
-            verify(userRepository, times(1)).existsById(userId);
-            verify(userRepository, times(1)).deleteById(userId);
+            verify(userRepository, times(1)).tombstoneUser(userId);
+            verify(userCache).evict("ivan@example.com");
+            verify(userSummaryCache).evict("ivan@example.com");
+            verify(userRepository, never()).existsById(any());
         }
 
         @Test
@@ -274,14 +614,11 @@ public class UserServiceImplTest {
         void shouldThrowResourceNotFoundException_WhenUserDoesntExists() {
             Long userId = 999L;
 
-            when(userRepository.existsById(userId)).thenReturn(false);
+            when(userRepository.tombstoneUser(userId)).thenReturn(Optional.empty());
 
             assertThatThrownBy(() -> userService.deleteUser(userId))
                     .isInstanceOf(ResourceNotFoundException.class)
                     .hasMessageContaining("User");
-
-            verify(userRepository, times(1)).existsById(userId);
-            verify(userRepository, never()).deleteById(userId);
         }
     }
 
@@ -293,39 +630,52 @@ public class UserServiceImplTest {
         @DisplayName("should activate user")
         void shouldActivateUser_Success() {
             Long userId = 1L;
-            Boolean isActive = true;
 
-            when(userRepository.existsById(userId)).thenReturn(true);
             when(userRepository.activateUser(userId)).thenReturn(1);
 
-            userService.changeUserActivity(userId, isActive);
+            boolean changed = userService.changeUserActivity(userId, true);
 
-            verify(userRepository, times(1)).existsById(userId);
+            assertThat(changed).isTrue();
             verify(userRepository, times(1)).activateUser(userId);
             verify(userRepository, never()).deactivateUser(any());
+            verify(userRepository, never()).existsById(any());
+            verify(userRepository, times(1)).refreshReadModel(userId);
         }
 
         @Test
         @DisplayName("should deactivate user")
         void shouldDeactivateUser_Success() {
             Long userId = 1L;
-            Boolean isActive = false;
 
-            when(userRepository.existsById(userId)).thenReturn(true);
             when(userRepository.deactivateUser(userId)).thenReturn(1);
 
-            userService.changeUserActivity(userId, isActive);
+            boolean changed = userService.changeUserActivity(userId, false);
 
-            verify(userRepository, times(1)).existsById(userId);
+            assertThat(changed).isTrue();
             verify(userRepository, times(1)).deactivateUser(userId);
             verify(userRepository, never()).activateUser(any());
         }
 
+        @Test
+        @DisplayName("should report no change when user already has the status")
+        void shouldReportNoChange_WhenStatusAlreadySet() {
+            Long userId = 1L;
+
+            when(userRepository.activateUser(userId)).thenReturn(0);
+            when(userRepository.existsById(userId)).thenReturn(true);
+
+            boolean changed = userService.changeUserActivity(userId, true);
+
+            assertThat(changed).isFalse();
+            verify(userRepository, never()).refreshReadModel(any());
+        }
+
         @Test
         @DisplayName("should throw ResourceNotFoundException when user doesnt exists")
         void shouldThrowResourceNotFoundException_WhenUserDoesntExists() {
             Long userId = 999L;
 
+            when(userRepository.activateUser(userId)).thenReturn(0);
             when(userRepository.existsById(userId)).thenReturn(false);
 
             assertThatThrownBy(() -> userService.changeUserActivity(userId, true))
@@ -333,7 +683,6 @@ public class UserServiceImplTest {
                     .hasMessageContaining("User");
 
             verify(userRepository, times(1)).existsById(userId);
-            verify(userRepository, never()).activateUser(any());
             verify(userRepository, never()).deactivateUser(any());
         }
     }
@@ -347,19 +696,17 @@ public class UserServiceImplTest {
         void shouldFindUserByEmail_Success() {
             String email = "ivan@example.com";
             Long userId = 1L;
-            User user = createTestUser(userId);
             UserResponseDto expected = createTestUserResponseDto(userId);
 
-            when(userRepository.findByEmail(email)).thenReturn(Optional.of(user));
-            when(userMapper.toUserResponseDto(user)).thenReturn(expected);
+            when(userRepository.findUserResponseByEmail(email)).thenReturn(Optional.of(expected));
 
             UserResponseDto result = userService.findUserByEmail(email);
 
             assertThat(result).isNotNull();
             assertThat(result).isEqualTo(expected);
 
-            verify(userRepository, times(1)).findByEmail(email);
-            verify(userMapper, times(1)).toUserResponseDto(user);
+            verify(userRepository, times(1)).findUserResponseByEmail(email);
+            verify(userMapper, never()).toUserResponseDto(any());
         }
 
         @Test
@@ -367,14 +714,14 @@ public class UserServiceImplTest {
         void shouldThrowResourceNotFoundException_WhenUserNotFoundByEmail() {
             String email = "notfound@example.com";
 
-            when(userRepository.findByEmail(email)).thenReturn(Optional.empty());
+            when(userRepository.findUserResponseByEmail(email)).thenReturn(Optional.empty());
 
             assertThatThrownBy(() -> userService.findUserByEmail(email))
                     .isInstanceOf(ResourceNotFoundException.class)
                     .hasMessageContaining("User")
                     .hasMessageContaining("email" + email);
 
-            verify(userRepository, times(1)).findByEmail(email);
+            verify(userRepository, times(1)).findUserResponseByEmail(email);
             verify(userMapper, never()).toUserResponseDto(any());
         }
     }
@@ -417,4 +764,9 @@ public class UserServiceImplTest {
                 .cards(List.of())
                 .build();
     }
+
+    private DataIntegrityViolationException emailViolation() {
+        return new DataIntegrityViolationException("could not execute statement",
+                new SQLException("ERROR: duplicate key value violates unique constraint \"users_email_key\""));
+    }
 }